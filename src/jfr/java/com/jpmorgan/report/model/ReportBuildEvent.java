@@ -0,0 +1,120 @@
+package com.jpmorgan.report.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event committed each time a <code>Report</code> is produced, holding
+ * what the build added to its <code>ReportMetrics</code>: from the
+ * accumulator's construction, or its previous <code>Report</code>, until the
+ * <code>Report</code>'s sections are computed. A lazy <code>Report</code>
+ * commits one more event for each section computed on first access. Metrics
+ * shared by concurrent builds are added to by all of them, so each event also
+ * holds the others' work in the meantime.
+ * <p>
+ * Only loaded through <code>ReportEvents</code>, so that the model still runs
+ * on a JVM without <code>jdk.jfr</code>.
+ */
+@Name("com.jpmorgan.report.ReportBuild")
+@Label("Report Build")
+@Category("Daily Price Report")
+@Description("Per-phase metrics of building a Report")
+final class ReportBuildEvent extends Event implements ReportBuildRecording {
+
+    @Label("Section")
+    @Description("The section computed on first access by a lazy Report, or null for the build")
+    String section;
+
+    @Label("Instructions")
+    long instructionCount;
+
+    @Label("Invalid Instructions")
+    long invalidInstructionCount;
+
+    @Label("Validation")
+    @Timespan(Timespan.NANOSECONDS)
+    long validationTime;
+
+    @Label("Enum Resolution")
+    @Timespan(Timespan.NANOSECONDS)
+    long enumResolutionTime;
+
+    @Label("Date Rolling")
+    @Timespan(Timespan.NANOSECONDS)
+    long dateRollingTime;
+
+    @Label("USD Amount")
+    @Timespan(Timespan.NANOSECONDS)
+    long usdAmountTime;
+
+    @Label("Grouping")
+    @Timespan(Timespan.NANOSECONDS)
+    long groupingTime;
+
+    @Label("Ranking")
+    @Timespan(Timespan.NANOSECONDS)
+    long rankingTime;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    long allocatedBytes;
+
+    /**
+     * <code>true</code> once the baseline is taken, which it is not if the
+     * event was disabled when the build started. Transient fields are not
+     * recorded.
+     */
+    private transient boolean baselined;
+
+    @Override
+    public void start(final ReportMetrics metrics) {
+
+	if (!this.isEnabled()) {
+	    return;
+	}
+
+	/*
+	 * The baseline is held in the fields, which finish() turns into
+	 * deltas...
+	 */
+	this.instructionCount = metrics.getInstructionCount();
+	this.invalidInstructionCount = metrics.getInvalidInstructionCount();
+	this.validationTime = metrics.getPhaseNanos(ReportPhase.VALIDATION);
+	this.enumResolutionTime = metrics.getPhaseNanos(ReportPhase.ENUM_RESOLUTION);
+	this.dateRollingTime = metrics.getPhaseNanos(ReportPhase.DATE_ROLLING);
+	this.usdAmountTime = metrics.getPhaseNanos(ReportPhase.USD_AMOUNT);
+	this.groupingTime = metrics.getPhaseNanos(ReportPhase.GROUPING);
+	this.rankingTime = metrics.getPhaseNanos(ReportPhase.RANKING);
+	this.allocatedBytes = metrics.getAllocatedBytes();
+	this.baselined = true;
+	this.begin();
+    }
+
+    @Override
+    public void finish(final ReportMetrics metrics, final ReportSection section) {
+
+	this.end();
+
+	if (!this.baselined || !this.shouldCommit()) {
+	    return;
+	}
+
+	this.section = section == null ? null : section.name();
+	this.instructionCount = metrics.getInstructionCount() - this.instructionCount;
+	this.invalidInstructionCount = metrics.getInvalidInstructionCount() - this.invalidInstructionCount;
+	this.validationTime = metrics.getPhaseNanos(ReportPhase.VALIDATION) - this.validationTime;
+	this.enumResolutionTime = metrics.getPhaseNanos(ReportPhase.ENUM_RESOLUTION) - this.enumResolutionTime;
+	this.dateRollingTime = metrics.getPhaseNanos(ReportPhase.DATE_ROLLING) - this.dateRollingTime;
+	this.usdAmountTime = metrics.getPhaseNanos(ReportPhase.USD_AMOUNT) - this.usdAmountTime;
+	this.groupingTime = metrics.getPhaseNanos(ReportPhase.GROUPING) - this.groupingTime;
+	this.rankingTime = metrics.getPhaseNanos(ReportPhase.RANKING) - this.rankingTime;
+	this.allocatedBytes = this.allocatedBytes == ReportMetrics.UNSUPPORTED ? ReportMetrics.UNSUPPORTED
+		: metrics.getAllocatedBytes() - this.allocatedBytes;
+	this.commit();
+    }
+}
@@ -0,0 +1,60 @@
+package com.jpmorgan.report.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jpmorgan.report.model.EntityRanking;
+import com.jpmorgan.report.model.EntityRankingAggregator;
+import com.jpmorgan.report.model.Instruction;
+import com.jpmorgan.report.model.Report;
+
+/**
+ * Measures <code>getEntityRankingList</code> once the highest amount of every
+ * entity is known, ranking every entity or only the top ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityRankingBenchmark {
+
+    @Param({ "100", "10000", "1000000" })
+    public int entities;
+
+    @Param({ "0", "10" })
+    public int limit;
+
+    private EntityRankingAggregator aggregator;
+
+    @Setup
+    public void setUp() {
+
+	/*
+	 * Building a Report sets the USD amount of every valid Instruction...
+	 */
+	final List<Instruction> instructions = InstructionWorkload.create(42L, this.entities * 4, this.entities, 0);
+	final Report report = new Report(instructions);
+
+	this.aggregator = new EntityRankingAggregator(this.limit);
+	report.getValidInstructions().forEach(this.aggregator::accept);
+    }
+
+    @Benchmark
+    public List<EntityRanking> getEntityRankingList() {
+	return this.aggregator.getEntityRankingList();
+    }
+}
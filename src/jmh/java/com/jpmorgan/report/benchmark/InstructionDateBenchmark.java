@@ -0,0 +1,59 @@
+package com.jpmorgan.report.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jpmorgan.report.model.Instruction;
+
+/**
+ * Measures the <code>Instruction</code> date <code>String</code> setters,
+ * with few distinct dates (as in a daily file) and with many.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InstructionDateBenchmark {
+
+    private static final int DATES = 4096;
+
+    @Param({ "30", "4096" })
+    public int distinct;
+
+    private String[] dates;
+
+    private final Instruction instruction = new Instruction();
+
+    @Setup
+    public void setUp() {
+	this.dates = InstructionWorkload.dateStrings(42L, InstructionDateBenchmark.DATES, this.distinct);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(InstructionDateBenchmark.DATES)
+    public int setSettlementDate() {
+
+	int sum = 0;
+
+	for (final String date : this.dates) {
+	    this.instruction.setSettlementDate(date);
+	    sum += this.instruction.getSettlementEpochDay();
+	}
+
+	return sum;
+    }
+}
@@ -0,0 +1,128 @@
+package com.jpmorgan.report.benchmark;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import com.jpmorgan.report.model.Instruction;
+import com.jpmorgan.report.model.InstructionBatch;
+
+/**
+ * Generates reproducible synthetic <code>Instructions</code> for the
+ * benchmarks. The same seed and parameters always give the same workload, so
+ * numbers from different runs and builds can be compared.
+ */
+public final class InstructionWorkload {
+
+    private static final String[] CURRENCIES = { "AED", "SAR", "SGP" };
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd MMM yyyy", Locale.ENGLISH);
+
+    private static final LocalDate FIRST_INSTRUCTION_DATE = LocalDate.of(2018, 1, 1);
+
+    private static final LocalDate FIRST_SETTLEMENT_DATE = LocalDate.of(2018, 9, 1);
+
+    /**
+     * The number of distinct dates of each kind.
+     */
+    private static final int DAYS = 60;
+
+    private InstructionWorkload() {
+    }
+
+    /**
+     * Generates <code>Instructions</code>.
+     *
+     * @param seed
+     *            the random seed
+     * @param count
+     *            the number of <code>Instructions</code>
+     * @param entities
+     *            the number of distinct entities
+     * @param invalidRatio
+     *            the fraction of <code>Instructions</code> that are invalid,
+     *            from 0 to 1
+     * @return the <code>Instructions</code>
+     */
+    public static List<Instruction> create(final long seed, final int count, final int entities,
+	    final double invalidRatio) {
+
+	final Random random = new Random(seed);
+	final String[] entityNames = InstructionWorkload.entityNames(entities);
+	final List<Instruction> instructions = new ArrayList<>(count);
+
+	for (int i = 0; i < count; i++) {
+
+	    final Instruction instruction = new Instruction();
+	    instruction.setEntity(entityNames[random.nextInt(entities)]);
+	    instruction.setBuySellString(random.nextBoolean() ? "B" : "S");
+	    instruction.setCurrencyString(random.nextDouble() < invalidRatio ? "GBP"
+		    : InstructionWorkload.CURRENCIES[random.nextInt(InstructionWorkload.CURRENCIES.length)]);
+	    instruction.setExchangeRate(BigDecimal.valueOf(1 + random.nextInt(100000), random.nextInt(5)));
+	    instruction.setInstructionEpochDay(
+		    (int) InstructionWorkload.FIRST_INSTRUCTION_DATE.toEpochDay() + random.nextInt(InstructionWorkload.DAYS));
+	    instruction.setSettlementEpochDay(
+		    (int) InstructionWorkload.FIRST_SETTLEMENT_DATE.toEpochDay() + random.nextInt(InstructionWorkload.DAYS));
+	    instruction.setUnits(BigInteger.valueOf(1 + random.nextInt(10000)));
+	    instruction.setPricePerUnit(BigDecimal.valueOf(1 + random.nextInt(Integer.MAX_VALUE), random.nextInt(7)));
+	    instructions.add(instruction);
+	}
+
+	return instructions;
+    }
+
+    /**
+     * Generates the same <code>Instructions</code> as <code>create</code>, in
+     * a columnar batch.
+     */
+    public static InstructionBatch createBatch(final long seed, final int count, final int entities,
+	    final double invalidRatio) {
+
+	final InstructionBatch batch = new InstructionBatch();
+	InstructionWorkload.create(seed, count, entities, invalidRatio).forEach(batch::add);
+
+	return batch;
+    }
+
+    /**
+     * Generates dates in the form <code>dd MMM yyyy</code>.
+     *
+     * @param seed
+     *            the random seed
+     * @param count
+     *            the number of dates
+     * @param distinct
+     *            the number of distinct dates
+     * @return the dates
+     */
+    public static String[] dateStrings(final long seed, final int count, final int distinct) {
+
+	final Random random = new Random(seed);
+	final String[] dates = new String[count];
+
+	for (int i = 0; i < count; i++) {
+	    /*
+	     * A new String each time, as a file reader would produce...
+	     */
+	    dates[i] = new String(InstructionWorkload.FIRST_SETTLEMENT_DATE.plusDays(random.nextInt(distinct))
+		    .format(InstructionWorkload.DATE_FORMAT));
+	}
+
+	return dates;
+    }
+
+    private static String[] entityNames(final int entities) {
+
+	final String[] names = new String[entities];
+	for (int i = 0; i < entities; i++) {
+	    names[i] = "entity" + i;
+	}
+
+	return names;
+    }
+}
@@ -0,0 +1,132 @@
+package com.jpmorgan.report.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jpmorgan.report.model.Instruction;
+import com.jpmorgan.report.model.LiveReport;
+import com.jpmorgan.report.model.ReportAccumulator;
+import com.jpmorgan.report.model.ReportConfiguration;
+
+/**
+ * Measures the throughput of producer threads adding
+ * <code>Instructions</code> to a shared <code>LiveReport</code>, against a
+ * <code>ReportAccumulator</code> behind a single lock, for 1 to 8 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LiveReportBenchmark {
+
+    private static final int INSTRUCTIONS_PER_THREAD = 4096;
+
+    @Param({ "-1", "12" })
+    public int fixedPointScale;
+
+    private ReportAccumulator accumulator;
+
+    private LiveReport liveReport;
+
+    private final AtomicLong seeds = new AtomicLong(42L);
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+
+	final ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setFixedPointScale(this.fixedPointScale);
+
+	this.liveReport = new LiveReport(configuration);
+	this.accumulator = new ReportAccumulator(configuration);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void live1(final Producer producer) {
+	this.liveReport.accept(producer.next());
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void live2(final Producer producer) {
+	this.liveReport.accept(producer.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void live4(final Producer producer) {
+	this.liveReport.accept(producer.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void live8(final Producer producer) {
+	this.liveReport.accept(producer.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void locked1(final Producer producer) {
+	this.acceptLocked(producer.next());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void locked4(final Producer producer) {
+	this.acceptLocked(producer.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void locked8(final Producer producer) {
+	this.acceptLocked(producer.next());
+    }
+
+    private void acceptLocked(final Instruction instruction) {
+	synchronized (this.accumulator) {
+	    this.accumulator.accept(instruction);
+	}
+    }
+
+    /**
+     * The <code>Instructions</code> of one producer thread, which are added
+     * over and over.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+
+	private int index;
+
+	private Instruction[] instructions;
+
+	@Setup(Level.Trial)
+	public void setUp(final LiveReportBenchmark benchmark) {
+	    final List<Instruction> list = InstructionWorkload.create(benchmark.seeds.getAndIncrement(),
+		    LiveReportBenchmark.INSTRUCTIONS_PER_THREAD, 1000, 0.0);
+	    this.instructions = list.toArray(new Instruction[0]);
+	}
+
+	Instruction next() {
+	    final Instruction instruction = this.instructions[this.index];
+	    this.index = (this.index + 1) & LiveReportBenchmark.INSTRUCTIONS_PER_THREAD - 1;
+	    return instruction;
+	}
+    }
+}
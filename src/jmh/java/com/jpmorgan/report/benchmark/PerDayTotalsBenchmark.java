@@ -0,0 +1,70 @@
+package com.jpmorgan.report.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jpmorgan.report.model.Report;
+import com.jpmorgan.report.model.ReportAccumulator;
+
+/**
+ * Measures producing the per-day total maps from the aggregates, and reading
+ * them back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PerDayTotalsBenchmark {
+
+    @Param({ "10000", "1000000" })
+    public int count;
+
+    private ReportAccumulator accumulator;
+
+    private Report report;
+
+    @Setup
+    public void setUp() {
+	this.accumulator = new ReportAccumulator()
+		.acceptAll(InstructionWorkload.create(42L, this.count, 1000, 0).iterator());
+	this.report = this.accumulator.toReport();
+    }
+
+    /**
+     * Materialises the per-day maps and the rankings from the aggregates.
+     */
+    @Benchmark
+    public Report toReport() {
+	return this.accumulator.toReport();
+    }
+
+    @Benchmark
+    public void readPerDayTotals(final Blackhole blackhole) {
+	PerDayTotalsBenchmark.consume(this.report.getMapOfTotalUSDAmountSettledIncomingPerDay(), blackhole);
+	PerDayTotalsBenchmark.consume(this.report.getMapOfTotalUSDAmountSettledOutgoingPerDay(), blackhole);
+    }
+
+    private static void consume(final Map<Date, BigDecimal> totals, final Blackhole blackhole) {
+	totals.forEach((date, total) -> {
+	    blackhole.consume(date);
+	    blackhole.consume(total);
+	});
+    }
+}
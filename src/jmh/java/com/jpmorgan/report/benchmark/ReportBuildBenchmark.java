@@ -0,0 +1,146 @@
+package com.jpmorgan.report.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.jpmorgan.report.model.Instruction;
+import com.jpmorgan.report.model.InstructionBatch;
+import com.jpmorgan.report.model.ParallelReportBuilder;
+import com.jpmorgan.report.model.Report;
+import com.jpmorgan.report.model.ReportAccumulator;
+import com.jpmorgan.report.model.ReportConfiguration;
+import com.jpmorgan.report.model.ReportPlan;
+import com.jpmorgan.report.model.ReportSection;
+
+/**
+ * Measures building a <code>Report</code> from 10<sup>3</sup> to
+ * 10<sup>7</sup> <code>Instructions</code>. The largest sizes need a heap of
+ * several GB, for example <code>-jvmArgs -Xmx8g</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReportBuildBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int count;
+
+    @Param({ "10", "1000", "100000" })
+    public int entities;
+
+    @Param({ "0.0", "0.1" })
+    public double invalidRatio;
+
+    private InstructionBatch batch;
+
+    private ReportConfiguration fixedPointConfiguration;
+
+    private List<Instruction> instructions;
+
+    private ParallelReportBuilder parallelReportBuilder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+	this.instructions = InstructionWorkload.create(42L, this.count, this.entities, this.invalidRatio);
+	this.batch = InstructionWorkload.createBatch(42L, this.count, this.entities, this.invalidRatio);
+
+	this.fixedPointConfiguration = new ReportConfiguration();
+	this.fixedPointConfiguration.setFixedPointScale(12);
+
+	this.parallelReportBuilder = new ParallelReportBuilder(new ReportConfiguration());
+    }
+
+    /**
+     * Reads every planned section of a <code>Report</code>, so that a lazy
+     * one is measured doing the work that <code>toReport()</code> does.
+     */
+    private static void consume(final Report report, final Blackhole blackhole) {
+
+	final ReportPlan plan = report.getPlan();
+
+	if (plan.includes(ReportSection.INSTRUCTIONS)) {
+	    blackhole.consume(report.getValidInstructions());
+	    blackhole.consume(report.getInvalidInstructions());
+	    blackhole.consume(report.getIncomingInstructions());
+	    blackhole.consume(report.getOutgoingInstructions());
+	}
+
+	if (plan.includes(ReportSection.TOTALS)) {
+	    blackhole.consume(report.getTotalUSDAmountSettledIncoming());
+	    blackhole.consume(report.getTotalUSDAmountSettledOutgoing());
+	}
+
+	if (plan.includes(ReportSection.DAILY_TOTALS)) {
+	    blackhole.consume(report.getIncomingDailyTotals());
+	    blackhole.consume(report.getOutgoingDailyTotals());
+	}
+
+	if (plan.includes(ReportSection.INCOMING_RANKING)) {
+	    blackhole.consume(report.getIncomingEntityRankingList());
+	}
+
+	if (plan.includes(ReportSection.OUTGOING_RANKING)) {
+	    blackhole.consume(report.getOutgoingEntityRankingList());
+	}
+
+	if (plan.includes(ReportSection.NET_POSITIONS)) {
+	    blackhole.consume(report.getNetPositions());
+	}
+    }
+
+    /**
+     * The original entry point, which retains every <code>Instruction</code>.
+     * Its <code>Report</code> is lazy, so every section is read.
+     */
+    @Benchmark
+    public void report(final Blackhole blackhole) {
+	ReportBuildBenchmark.consume(new Report(this.instructions), blackhole);
+    }
+
+    @Benchmark
+    public Report streaming() {
+	return new ReportAccumulator().acceptAll(this.instructions.iterator()).toReport();
+    }
+
+    @Benchmark
+    public Report streamingFixedPoint() {
+	return new ReportAccumulator(this.fixedPointConfiguration).acceptAll(this.instructions.iterator())
+		.toReport();
+    }
+
+    @Benchmark
+    public Report columnar() {
+	return new ReportAccumulator().acceptAll(this.batch).toReport();
+    }
+
+    @Benchmark
+    public Report columnarFixedPoint() {
+	return new ReportAccumulator(this.fixedPointConfiguration).acceptAll(this.batch).toReport();
+    }
+
+    /**
+     * The <code>Report</code> is lazy, so every section is read.
+     */
+    @Benchmark
+    public void parallel(final Blackhole blackhole) {
+	ReportBuildBenchmark.consume(this.parallelReportBuilder.build(this.instructions), blackhole);
+    }
+}
@@ -0,0 +1,51 @@
+package com.jpmorgan.report.date;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Converts between <code>Dates</code> at midnight in the default time zone
+ * and epoch days (days since 1970-01-01).
+ */
+public final class EpochDays {
+
+    /**
+     * Stands for a missing or unparseable date.
+     */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    private EpochDays() {
+    }
+
+    /**
+     * @param epochDay
+     *            days since 1970-01-01
+     * @return a new <code>Date</code> at the start of that day in the default
+     *         time zone, or <code>null</code> for <code>NONE</code>
+     */
+    public static Date toDate(final long epochDay) {
+
+	if (epochDay == EpochDays.NONE) {
+	    return null;
+	}
+
+	return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * @param date
+     *            a <code>Date</code>
+     * @return the days since 1970-01-01 of that <code>Date</code> in the
+     *         default time zone, or <code>NONE</code> for <code>null</code>
+     */
+    public static int toEpochDay(final Date date) {
+
+	if (date == null) {
+	    return EpochDays.NONE;
+	}
+
+	return (int) Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+}
@@ -0,0 +1,211 @@
+package com.jpmorgan.report.date;
+
+/**
+ * Parses dates in the fixed form <code>dd MMM yyyy</code> (for example
+ * <code>08 Sep 2018</code>) into epoch days, without allocating.
+ * <p>
+ * Month names are matched case insensitively, the day may have one or two
+ * digits and the year must have four. Unlike a lenient
+ * <code>SimpleDateFormat</code>, dates that do not exist (such as
+ * <code>31 Feb 2018</code>) are rejected. Anything that cannot be parsed gives
+ * <code>EpochDays.NONE</code>.
+ * <p>
+ * A daily file only holds a few dozen distinct dates, so the most recently
+ * parsed <code>Strings</code> are kept in a small direct-mapped cache. A
+ * parser is thread-safe.
+ */
+public final class InstructionDateParser {
+
+    /**
+     * A parser shared by every <code>Instruction</code>.
+     */
+    public static final InstructionDateParser DEFAULT = new InstructionDateParser();
+
+    private static final int CACHE_SIZE = 64;
+
+    private static final int DAYS_0000_TO_1970 = 719468;
+
+    private static final String[] MONTHS = { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT",
+	    "NOV", "DEC" };
+
+    /**
+     * Cache entries are immutable, so a thread reading a slot sees either
+     * <code>null</code> or a complete entry, and no locking is needed.
+     */
+    private final CacheEntry[] cache = new CacheEntry[InstructionDateParser.CACHE_SIZE];
+
+    /**
+     * @param year
+     *            the year
+     * @param month
+     *            the month, from 1 to 12
+     * @return the number of days in the month
+     */
+    private static int daysInMonth(final int year, final int month) {
+
+	if (month == 2) {
+	    return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+	}
+
+	return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * Finds the month of a three letter English abbreviation, ignoring case.
+     *
+     * @param c0
+     *            the first letter
+     * @param c1
+     *            the second letter
+     * @param c2
+     *            the third letter
+     * @return the month, from 1 to 12, or 0 if there is no such month
+     */
+    public static int parseMonth(final int c0, final int c1, final int c2) {
+
+	final int u0 = c0 & ~0x20;
+	final int u1 = c1 & ~0x20;
+	final int u2 = c2 & ~0x20;
+
+	for (int m = 0; m < InstructionDateParser.MONTHS.length; m++) {
+
+	    final String name = InstructionDateParser.MONTHS[m];
+
+	    if (u0 == name.charAt(0) && u1 == name.charAt(1) && u2 == name.charAt(2)) {
+		return m + 1;
+	    }
+	}
+
+	return 0;
+    }
+
+    /**
+     * Converts a date to epoch days.
+     *
+     * @param year
+     *            the year
+     * @param month
+     *            the month, from 1 to 12
+     * @param day
+     *            the day of the month
+     * @return days since 1970-01-01, or <code>EpochDays.NONE</code> if there
+     *         is no such date
+     */
+    public static int toEpochDay(final int year, final int month, final int day) {
+
+	if (month < 1 || month > 12 || day < 1 || day > InstructionDateParser.daysInMonth(year, month)) {
+	    return EpochDays.NONE;
+	}
+
+	/*
+	 * Count from 1 March so that the leap day is the last day of the
+	 * year...
+	 */
+	final int y = month <= 2 ? year - 1 : year;
+	final int era = Math.floorDiv(y, 400);
+	final int yearOfEra = y - era * 400;
+	final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+	final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+	return era * 146097 + dayOfEra - InstructionDateParser.DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Parses a date.
+     *
+     * @param text
+     *            the date in the form <code>dd MMM yyyy</code>
+     * @return days since 1970-01-01, or <code>EpochDays.NONE</code> if the
+     *         text is <code>null</code> or not a valid date
+     */
+    public int parse(final CharSequence text) {
+
+	if (text == null) {
+	    return EpochDays.NONE;
+	}
+
+	if (!(text instanceof String)) {
+	    return InstructionDateParser.parseRegion(text, 0, text.length());
+	}
+
+	final int slot = text.hashCode() & InstructionDateParser.CACHE_SIZE - 1;
+	final CacheEntry entry = this.cache[slot];
+
+	if (entry != null && entry.text.equals(text)) {
+	    return entry.epochDay;
+	}
+
+	final int epochDay = InstructionDateParser.parseRegion(text, 0, text.length());
+	this.cache[slot] = new CacheEntry((String) text, epochDay);
+
+	return epochDay;
+    }
+
+    /**
+     * Parses a date from part of a <code>CharSequence</code>.
+     *
+     * @param text
+     *            the text holding the date
+     * @param start
+     *            the index of the first character of the date
+     * @param end
+     *            the index after the last character of the date
+     * @return days since 1970-01-01, or <code>EpochDays.NONE</code> if the
+     *         text is not a valid date
+     */
+    public static int parseRegion(final CharSequence text, final int start, final int end) {
+
+	int from = start;
+	int to = end;
+
+	while (from < to && text.charAt(from) == ' ') {
+	    from++;
+	}
+	while (to > from && text.charAt(to - 1) == ' ') {
+	    to--;
+	}
+
+	int i = from;
+	int day = 0;
+
+	while (i < to && i - from < 2 && InstructionDateParser.isDigit(text.charAt(i))) {
+	    day = day * 10 + text.charAt(i) - '0';
+	    i++;
+	}
+
+	if (i == from || i + 9 != to || text.charAt(i) != ' ' || text.charAt(i + 4) != ' ') {
+	    return EpochDays.NONE;
+	}
+
+	final int month = InstructionDateParser.parseMonth(text.charAt(i + 1), text.charAt(i + 2),
+		text.charAt(i + 3));
+
+	int year = 0;
+	for (int y = i + 5; y < to; y++) {
+
+	    if (!InstructionDateParser.isDigit(text.charAt(y))) {
+		return EpochDays.NONE;
+	    }
+
+	    year = year * 10 + text.charAt(y) - '0';
+	}
+
+	return InstructionDateParser.toEpochDay(year, month, day);
+    }
+
+    private static boolean isDigit(final char c) {
+	return c >= '0' && c <= '9';
+    }
+
+    private static final class CacheEntry {
+
+	private final int epochDay;
+
+	private final String text;
+
+	CacheEntry(final String text, final int epochDay) {
+	    this.text = text;
+	    this.epochDay = epochDay;
+	}
+    }
+}
@@ -0,0 +1,228 @@
+package com.jpmorgan.report.date;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.jpmorgan.report.model.Currency;
+
+/**
+ * Rolls settlement dates forward to the next business day of a
+ * <code>Currency</code>.
+ * <p>
+ * A work week starts Monday and ends Friday, unless the currency is AED or
+ * SAR, where the work week starts Sunday and ends Thursday. Holidays may be
+ * supplied per currency; they are stored as one <code>BitSet</code> per year.
+ * <p>
+ * Dates are epoch days (days since 1970-01-01). For every currency the number
+ * of days to roll is precomputed for each day from 1970 to 2099, so rolling a
+ * date in that range is a single array read. Dates outside it are rolled day
+ * by day. A calendar is immutable and may be shared between threads.
+ */
+public class SettlementCalendar {
+
+    private static final int TABLE_START = (int) LocalDate.of(1970, 1, 1).toEpochDay();
+
+    private static final int TABLE_END = (int) LocalDate.of(2100, 1, 1).toEpochDay();
+
+    /**
+     * A calendar with the standard work weeks and no holidays. Declared after
+     * the table bounds, which it needs when it is initialised.
+     */
+    public static final SettlementCalendar DEFAULT = new SettlementCalendar();
+
+    /**
+     * Map where the key is the Currency and the value is a Map from year to
+     * the holidays of that year, indexed by day of year (0 based).
+     */
+    private final Map<Currency, Map<Integer, BitSet>> holidaysByCurrency = new EnumMap<>(Currency.class);
+
+    /**
+     * Days to add to reach the next business day, indexed by currency ordinal
+     * then by epoch day less <code>TABLE_START</code>.
+     */
+    private final byte[][] rollDays = new byte[Currency.values().length][];
+
+    /**
+     * Weekend days, indexed by currency ordinal then by
+     * <code>DayOfWeek</code> ordinal.
+     */
+    private final boolean[][] weekends = new boolean[Currency.values().length][DayOfWeek.values().length];
+
+    /**
+     * Constructs a calendar with the standard work weeks and no holidays.
+     */
+    public SettlementCalendar() {
+	this(Collections.emptyMap());
+    }
+
+    /**
+     * Constructs a calendar with the standard work weeks.
+     *
+     * @param holidays
+     *            <code>Map</code> where the key is the Currency and the value
+     *            is the holidays of that Currency
+     */
+    public SettlementCalendar(final Map<Currency, ? extends Collection<LocalDate>> holidays) {
+
+	Objects.requireNonNull(holidays);
+
+	for (final Currency currency : Currency.values()) {
+
+	    for (final DayOfWeek dayOfWeek : SettlementCalendar.getWeekendDays(currency)) {
+		this.weekends[currency.ordinal()][dayOfWeek.ordinal()] = true;
+	    }
+
+	    final Map<Integer, BitSet> holidaysByYear = new HashMap<>();
+
+	    if (holidays.get(currency) != null) {
+		for (final LocalDate holiday : holidays.get(currency)) {
+		    holidaysByYear.computeIfAbsent(holiday.getYear(), year -> new BitSet(366))
+			    .set(holiday.getDayOfYear() - 1);
+		}
+	    }
+
+	    this.holidaysByCurrency.put(currency, holidaysByYear);
+	    this.rollDays[currency.ordinal()] = this.buildRollDays(currency);
+	}
+    }
+
+    /**
+     * The weekend of a currency. AED and SAR have a Friday and Saturday
+     * weekend, all other currencies a Saturday and Sunday weekend.
+     *
+     * @param currency
+     *            the Currency
+     * @return the weekend days
+     */
+    public static Set<DayOfWeek> getWeekendDays(final Currency currency) {
+
+	Objects.requireNonNull(currency);
+
+	if (currency == Currency.AED || currency == Currency.SAR) {
+	    return EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY);
+	}
+
+	return EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+    }
+
+    /**
+     * @param epochDay
+     *            days since 1970-01-01
+     * @return the <code>DayOfWeek</code> ordinal, where Monday is 0
+     */
+    static int dayOfWeekOrdinal(final long epochDay) {
+	return (int) Math.floorMod(epochDay + 3, 7L);
+    }
+
+    /**
+     * The holidays of a currency.
+     *
+     * @param currency
+     *            the Currency
+     * @return the holidays, in date order
+     */
+    public List<LocalDate> getHolidays(final Currency currency) {
+
+	Objects.requireNonNull(currency);
+
+	final List<LocalDate> holidays = new ArrayList<>();
+
+	new TreeMap<>(this.holidaysByCurrency.get(currency)).forEach((year, days) -> days.stream()
+		.forEach(dayOfYear -> holidays.add(LocalDate.ofYearDay(year, dayOfYear + 1))));
+
+	return holidays;
+    }
+
+    /**
+     * Determines whether a date is a business day for a Currency.
+     *
+     * @param currency
+     *            the Currency
+     * @param epochDay
+     *            days since 1970-01-01
+     * @return <code>true</code> if the date is neither a weekend day nor a
+     *         holiday
+     */
+    public boolean isBusinessDay(final Currency currency, final int epochDay) {
+
+	if (this.weekends[currency.ordinal()][SettlementCalendar.dayOfWeekOrdinal(epochDay)]) {
+	    return false;
+	}
+
+	final Map<Integer, BitSet> holidaysByYear = this.holidaysByCurrency.get(currency);
+
+	if (holidaysByYear.isEmpty()) {
+	    return true;
+	}
+
+	final LocalDate date = LocalDate.ofEpochDay(epochDay);
+	final BitSet holidays = holidaysByYear.get(date.getYear());
+
+	return holidays == null || !holidays.get(date.getDayOfYear() - 1);
+    }
+
+    /**
+     * Rolls a settlement date forward to the first business day on or after
+     * it.
+     *
+     * @param currency
+     *            the Currency of the trade
+     * @param epochDay
+     *            the settlement date, in days since 1970-01-01
+     * @return the actual settlement date, in days since 1970-01-01
+     */
+    public int roll(final Currency currency, final int epochDay) {
+
+	if (epochDay >= SettlementCalendar.TABLE_START && epochDay < SettlementCalendar.TABLE_END) {
+	    return epochDay + this.rollDays[currency.ordinal()][epochDay - SettlementCalendar.TABLE_START];
+	}
+
+	int rolled = epochDay;
+	while (!this.isBusinessDay(currency, rolled)) {
+	    rolled++;
+	}
+
+	return rolled;
+    }
+
+    private byte[] buildRollDays(final Currency currency) {
+
+	final byte[] table = new byte[SettlementCalendar.TABLE_END - SettlementCalendar.TABLE_START];
+
+	/*
+	 * Walk backwards so that each non business day is one more than the
+	 * day after it...
+	 */
+	int next = this.roll(currency, SettlementCalendar.TABLE_END) - SettlementCalendar.TABLE_END;
+
+	for (int i = table.length - 1; i >= 0; i--) {
+
+	    if (this.isBusinessDay(currency, SettlementCalendar.TABLE_START + i)) {
+		next = 0;
+	    } else {
+		next++;
+	    }
+
+	    if (next > Byte.MAX_VALUE) {
+		throw new IllegalArgumentException("More than " + Byte.MAX_VALUE
+			+ " consecutive non business days for " + currency);
+	    }
+
+	    table[i] = (byte) next;
+	}
+
+	return table;
+    }
+}
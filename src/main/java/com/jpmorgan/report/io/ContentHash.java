@@ -0,0 +1,190 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A 64 bit XXH64 hash of a stream of bytes, which may be supplied in pieces
+ * of any size.
+ * <p>
+ * XXH64 consumes 32 bytes at a time with multiplies and rotates of four
+ * independent lanes, so hashing a memory mapped file runs at close to memory
+ * bandwidth. It is not a cryptographic hash.
+ */
+final class ContentHash {
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private static final int STRIPE_SIZE = 32;
+
+    /**
+     * The largest region of a file mapped at once, a multiple of the stripe
+     * size.
+     */
+    private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+    private long length;
+
+    private final long seed;
+
+    /**
+     * Bytes of a stripe that is not yet complete.
+     */
+    private final ByteBuffer tail = ByteBuffer.allocate(ContentHash.STRIPE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private long v1;
+
+    private long v2;
+
+    private long v3;
+
+    private long v4;
+
+    ContentHash(final long seed) {
+	this.seed = seed;
+	this.v1 = seed + ContentHash.PRIME64_1 + ContentHash.PRIME64_2;
+	this.v2 = seed + ContentHash.PRIME64_2;
+	this.v3 = seed;
+	this.v4 = seed - ContentHash.PRIME64_1;
+    }
+
+    /**
+     * Hashes the contents of a file, mapping it window by window.
+     *
+     * @param path
+     *            the file
+     * @param seed
+     *            the seed
+     * @return the hash
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    static long hash(final Path path, final long seed) throws IOException {
+
+	final ContentHash hash = new ContentHash(seed);
+
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+	    final long size = channel.size();
+
+	    for (long position = 0; position < size; position += ContentHash.MAX_WINDOW_SIZE) {
+		hash.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+			Math.min(ContentHash.MAX_WINDOW_SIZE, size - position)));
+	    }
+	}
+
+	return hash.digest();
+    }
+
+    /**
+     * Adds the remaining bytes of a buffer, leaving it at its limit.
+     *
+     * @param buffer
+     *            the bytes, whose byte order is set to little endian
+     */
+    void update(final ByteBuffer buffer) {
+
+	buffer.order(ByteOrder.LITTLE_ENDIAN);
+	this.length += buffer.remaining();
+
+	while (buffer.hasRemaining()) {
+
+	    if (this.tail.position() == 0 && buffer.remaining() >= ContentHash.STRIPE_SIZE) {
+		this.stripe(buffer);
+		continue;
+	    }
+
+	    while (this.tail.hasRemaining() && buffer.hasRemaining()) {
+		this.tail.put(buffer.get());
+	    }
+
+	    if (!this.tail.hasRemaining()) {
+		this.tail.flip();
+		this.stripe(this.tail);
+		this.tail.clear();
+	    }
+	}
+    }
+
+    void updateInt(final int value) {
+	this.update(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value));
+    }
+
+    void updateLong(final long value) {
+	this.update(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, value));
+    }
+
+    /**
+     * @return the hash of the bytes added so far
+     */
+    long digest() {
+
+	long hash;
+
+	if (this.length >= ContentHash.STRIPE_SIZE) {
+	    hash = Long.rotateLeft(this.v1, 1) + Long.rotateLeft(this.v2, 7) + Long.rotateLeft(this.v3, 12)
+		    + Long.rotateLeft(this.v4, 18);
+	    hash = ContentHash.mergeRound(hash, this.v1);
+	    hash = ContentHash.mergeRound(hash, this.v2);
+	    hash = ContentHash.mergeRound(hash, this.v3);
+	    hash = ContentHash.mergeRound(hash, this.v4);
+	} else {
+	    hash = this.seed + ContentHash.PRIME64_5;
+	}
+
+	hash += this.length;
+
+	final ByteBuffer rest = this.tail.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+	rest.flip();
+
+	while (rest.remaining() >= 8) {
+	    hash ^= ContentHash.round(0, rest.getLong());
+	    hash = Long.rotateLeft(hash, 27) * ContentHash.PRIME64_1 + ContentHash.PRIME64_4;
+	}
+
+	if (rest.remaining() >= 4) {
+	    hash ^= (rest.getInt() & 0xFFFFFFFFL) * ContentHash.PRIME64_1;
+	    hash = Long.rotateLeft(hash, 23) * ContentHash.PRIME64_2 + ContentHash.PRIME64_3;
+	}
+
+	while (rest.hasRemaining()) {
+	    hash ^= (rest.get() & 0xFFL) * ContentHash.PRIME64_5;
+	    hash = Long.rotateLeft(hash, 11) * ContentHash.PRIME64_1;
+	}
+
+	hash ^= hash >>> 33;
+	hash *= ContentHash.PRIME64_2;
+	hash ^= hash >>> 29;
+	hash *= ContentHash.PRIME64_3;
+	hash ^= hash >>> 32;
+
+	return hash;
+    }
+
+    private void stripe(final ByteBuffer buffer) {
+	this.v1 = ContentHash.round(this.v1, buffer.getLong());
+	this.v2 = ContentHash.round(this.v2, buffer.getLong());
+	this.v3 = ContentHash.round(this.v3, buffer.getLong());
+	this.v4 = ContentHash.round(this.v4, buffer.getLong());
+    }
+
+    private static long round(final long acc, final long input) {
+	return Long.rotateLeft(acc + input * ContentHash.PRIME64_2, 31) * ContentHash.PRIME64_1;
+    }
+
+    private static long mergeRound(final long acc, final long value) {
+	return (acc ^ ContentHash.round(0, value)) * ContentHash.PRIME64_1 + ContentHash.PRIME64_4;
+    }
+}
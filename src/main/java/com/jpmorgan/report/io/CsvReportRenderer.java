@@ -0,0 +1,111 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.jpmorgan.report.model.DailyTotals;
+import com.jpmorgan.report.model.EntityRanking;
+import com.jpmorgan.report.model.InvalidReason;
+import com.jpmorgan.report.model.NetPositions;
+import com.jpmorgan.report.model.Report;
+import com.jpmorgan.report.model.ReportPlan;
+import com.jpmorgan.report.model.ReportSection;
+
+/**
+ * Renders the aggregates of a <code>Report</code> as comma separated rows
+ * with a common header, one aggregate per row. The first column names the
+ * kind of row and only the columns that apply to it are filled in. The
+ * <code>Instructions</code> are not rendered.
+ */
+final class CsvReportRenderer implements ReportRenderer {
+
+    private static final String HEADER = "record,direction,date,rank,entity,reason,count,amount";
+
+    private static final String INCOMING = "incoming";
+
+    private static final String OUTGOING = "outgoing";
+
+    @Override
+    public void render(final Report report, final ReportWriter writer) throws IOException {
+
+	final ReportPlan plan = report.getPlan();
+
+	writer.write(CsvReportRenderer.HEADER).newLine();
+
+	writer.write("count,").write(CsvReportRenderer.INCOMING).write(",,,,,")
+		.writeLong(report.getIncomingInstructionCount()).write(',').newLine();
+	writer.write("count,").write(CsvReportRenderer.OUTGOING).write(",,,,,")
+		.writeLong(report.getOutgoingInstructionCount()).write(',').newLine();
+
+	for (final InvalidReason invalidReason : InvalidReason.values()) {
+
+	    final Long count = report.getInvalidInstructionCountByReason().get(invalidReason);
+
+	    if (count != null) {
+		writer.write("invalid,,,,,").write(invalidReason.name()).write(',').writeLong(count).write(',')
+			.newLine();
+	    }
+	}
+
+	if (plan.includes(ReportSection.TOTALS)) {
+	    CsvReportRenderer.renderTotal(CsvReportRenderer.INCOMING, report.getTotalUSDAmountSettledIncoming(),
+		    writer);
+	    CsvReportRenderer.renderTotal(CsvReportRenderer.OUTGOING, report.getTotalUSDAmountSettledOutgoing(),
+		    writer);
+	}
+
+	if (plan.includes(ReportSection.DAILY_TOTALS)) {
+	    CsvReportRenderer.renderDailyTotals(CsvReportRenderer.INCOMING, report.getIncomingDailyTotals(), writer);
+	    CsvReportRenderer.renderDailyTotals(CsvReportRenderer.OUTGOING, report.getOutgoingDailyTotals(), writer);
+	}
+
+	if (plan.includes(ReportSection.INCOMING_RANKING)) {
+	    CsvReportRenderer.renderRanking(CsvReportRenderer.INCOMING, report.getIncomingEntityRankingList(),
+		    writer);
+	}
+
+	if (plan.includes(ReportSection.OUTGOING_RANKING)) {
+	    CsvReportRenderer.renderRanking(CsvReportRenderer.OUTGOING, report.getOutgoingEntityRankingList(),
+		    writer);
+	}
+
+	if (plan.includes(ReportSection.NET_POSITIONS)) {
+	    CsvReportRenderer.renderNetPositions(report.getNetPositions(), writer);
+	}
+    }
+
+    private static void renderTotal(final String direction, final BigDecimal total, final ReportWriter writer)
+	    throws IOException {
+	writer.write("total,").write(direction).write(",,,,,,").writeDecimal(total).newLine();
+    }
+
+    private static void renderDailyTotals(final String direction, final DailyTotals dailyTotals,
+	    final ReportWriter writer) throws IOException {
+
+	for (int i = 0; i < dailyTotals.size(); i++) {
+	    writer.write("daily,").write(direction).write(',').writeDate(dailyTotals.getEpochDay(i)).write(",,,,,")
+		    .writeDecimal(dailyTotals.getTotal(i)).newLine();
+	}
+    }
+
+    private static void renderRanking(final String direction, final List<EntityRanking> entityRankingList,
+	    final ReportWriter writer) throws IOException {
+
+	for (final EntityRanking entityRanking : entityRankingList) {
+	    writer.write("ranking,").write(direction).write(",,").writeLong(entityRanking.getRank()).write(',')
+		    .writeCsvField(entityRanking.getEntity()).write(",,,")
+		    .writeDecimal(entityRanking.getHighestUSDAmount()).newLine();
+	}
+    }
+
+    private static void renderNetPositions(final NetPositions netPositions, final ReportWriter writer)
+	    throws IOException {
+
+	for (int i = 0; i < netPositions.size(); i++) {
+	    writer.write("net,,").writeDate(netPositions.getEpochDay(i)).write(",,")
+		    .writeCsvField(netPositions.getEntity(i)).write(",,,").writeDecimal(netPositions.getNetUSDAmount(i))
+		    .newLine();
+	}
+    }
+}
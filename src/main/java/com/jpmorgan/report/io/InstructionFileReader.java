@@ -0,0 +1,675 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.jpmorgan.report.date.EpochDays;
+import com.jpmorgan.report.date.InstructionDateParser;
+import com.jpmorgan.report.model.BuySell;
+import com.jpmorgan.report.model.Currency;
+import com.jpmorgan.report.model.Instruction;
+import com.jpmorgan.report.model.InstructionBatch;
+
+/**
+ * Reads delimited instruction files through memory-mapped buffers.
+ * <p>
+ * Each line holds the fields entity, buy/sell, exchange rate, currency,
+ * instruction date, settlement date, units and price per unit, for example
+ * <code>foo,B,0.50,SGP,01 Jan 2016,02 Jan 2016,200,100.25</code>. Fields are
+ * parsed straight from the mapped bytes: numbers and dates never pass through
+ * an intermediate <code>String</code>, and entity, buy/sell and currency
+ * values are shared between lines that repeat them.
+ * <p>
+ * A reader is not thread-safe, but may be used for any number of files. An
+ * <code>InstructionPipeline</code> reads many files at once with a reader per
+ * worker.
+ */
+public class InstructionFileReader {
+
+    /**
+     * The number of fields on each line.
+     */
+    public static final int FIELD_COUNT = 8;
+
+    /**
+     * The largest region of a file mapped at once. Files larger than this are
+     * mapped in consecutive windows that end on a line boundary.
+     */
+    private static final int MAX_WINDOW_SIZE = 1 << 30;
+
+    /**
+     * The most digits an unscaled value may have and still be accumulated in
+     * a <code>long</code> without overflowing.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * Stands for a number with more than <code>MAX_LONG_DIGITS</code> digits.
+     */
+    private static final long TOO_MANY_DIGITS = Long.MIN_VALUE;
+
+    private final byte delimiter;
+
+    /**
+     * Entities seen so far, so that repeated entities share one
+     * <code>String</code>.
+     */
+    private final ByteStringTable entities = new ByteStringTable();
+
+    private final boolean header;
+
+    /**
+     * Unknown buy/sell and currency codes seen so far.
+     */
+    private final ByteStringTable unknownCodes = new ByteStringTable();
+
+    private final int[] fieldEnds = new int[InstructionFileReader.FIELD_COUNT];
+
+    private final int[] fieldStarts = new int[InstructionFileReader.FIELD_COUNT];
+
+    /**
+     * The number of lines passed to the handler by the current scan.
+     */
+    private long lineCount;
+
+    /**
+     * The one based number of the line last scanned, including empty lines
+     * and the header.
+     */
+    private long lineNumber;
+
+    /**
+     * The scale of the value last returned by <code>parseUnscaled</code>.
+     */
+    private int parsedScale;
+
+    /**
+     * Constructs a reader for comma delimited files without a header line.
+     */
+    public InstructionFileReader() {
+	this(',', false);
+    }
+
+    /**
+     * Constructs a reader.
+     *
+     * @param delimiter
+     *            the single byte character between fields
+     * @param header
+     *            <code>true</code> if the first line of each file is a header
+     *            to be skipped
+     */
+    public InstructionFileReader(final char delimiter, final boolean header) {
+
+	if (delimiter > 0x7F || delimiter == '\n' || delimiter == '\r') {
+	    throw new IllegalArgumentException("Unsupported delimiter: " + delimiter);
+	}
+
+	this.delimiter = (byte) delimiter;
+	this.header = header;
+    }
+
+    /**
+     * Reads every <code>Instruction</code> of a file, in file order.
+     *
+     * @param path
+     *            the file to read
+     * @param consumer
+     *            receives each <code>Instruction</code>
+     * @return the number of <code>Instructions</code> read
+     * @throws IOException
+     *             if the file cannot be read, or a line is malformed
+     */
+    public long read(final Path path, final Consumer<Instruction> consumer) throws IOException {
+
+	Objects.requireNonNull(consumer);
+
+	return this.scan(path, (buffer, start, end, lineNumber) -> consumer
+		.accept(this.parseLine(buffer, start, end, lineNumber)));
+    }
+
+    /**
+     * Reads every <code>Instruction</code> of a file into the rows of a
+     * columnar batch, in file order. Numbers are parsed straight into the
+     * columns, so no <code>Instruction</code> or <code>BigDecimal</code> is
+     * created for a line unless one of its numbers has more than 18 digits.
+     *
+     * @param path
+     *            the file to read
+     * @param batch
+     *            receives a row for each <code>Instruction</code>
+     * @return the number of <code>Instructions</code> read
+     * @throws IOException
+     *             if the file cannot be read, or a line is malformed
+     */
+    public long read(final Path path, final InstructionBatch batch) throws IOException {
+
+	Objects.requireNonNull(batch);
+
+	return this.scan(path, (buffer, start, end, lineNumber) -> this.parseRow(buffer, start, end, lineNumber,
+		batch));
+    }
+
+    /**
+     * Reads every <code>Instruction</code> of a file into a new columnar
+     * batch.
+     *
+     * @param path
+     *            the file to read
+     * @return the batch, in file order
+     * @throws IOException
+     *             if the file cannot be read, or a line is malformed
+     */
+    public InstructionBatch readBatch(final Path path) throws IOException {
+
+	final InstructionBatch batch = new InstructionBatch();
+	this.read(path, batch);
+
+	return batch;
+    }
+
+    /**
+     * Reads the lines of a chunk of a file into the rows of a columnar batch.
+     * The chunk holds whole lines, so only the last chunk of a file may end
+     * without a line break.
+     *
+     * @param chunk
+     *            the bytes from its position to its limit
+     * @param lineNumber
+     *            the number of lines of the file before the chunk, so the
+     *            header is only skipped from the first chunk
+     * @param batch
+     *            receives a row for each <code>Instruction</code>
+     * @return the number of lines in the chunk, including empty lines
+     * @throws MalformedInstructionException
+     *             if a line is malformed
+     */
+    long read(final ByteBuffer chunk, final long lineNumber, final InstructionBatch batch)
+	    throws MalformedInstructionException {
+
+	Objects.requireNonNull(batch);
+
+	this.lineCount = 0;
+	this.lineNumber = lineNumber;
+
+	final ByteBuffer buffer = chunk.slice();
+	this.scanWindow(buffer, buffer.remaining(), true, (window, start, end, number) -> this.parseRow(window,
+		start, end, number, batch));
+
+	return this.lineNumber - lineNumber;
+    }
+
+    /**
+     * Maps a file window by window and passes each non empty line, other than
+     * the header, to a handler.
+     */
+    private long scan(final Path path, final LineHandler handler) throws IOException {
+
+	Objects.requireNonNull(path);
+
+	this.lineCount = 0;
+	this.lineNumber = 0;
+
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+	    final long size = channel.size();
+	    long position = 0;
+
+	    while (position < size) {
+
+		final long remaining = size - position;
+		final int windowSize = (int) Math.min(remaining, InstructionFileReader.MAX_WINDOW_SIZE);
+		final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+		final int lineStart = this.scanWindow(buffer, windowSize, windowSize == remaining, handler);
+
+		if (lineStart == 0) {
+		    throw new MalformedInstructionException(this.lineNumber + 1, "line longer than "
+			    + InstructionFileReader.MAX_WINDOW_SIZE + " bytes");
+		}
+
+		position += Math.min(lineStart, windowSize);
+	    }
+	}
+
+	return this.lineCount;
+    }
+
+    /**
+     * Passes each non empty line of a window, other than the header, to a
+     * handler, counting lines on from <code>lineNumber</code>.
+     *
+     * @return the offset after the last whole line, which is where the next
+     *         window starts
+     */
+    private int scanWindow(final ByteBuffer buffer, final int windowSize, final boolean lastWindow,
+	    final LineHandler handler) throws MalformedInstructionException {
+
+	int lineStart = 0;
+
+	while (lineStart < windowSize) {
+
+	    int lineEnd = lineStart;
+	    while (lineEnd < windowSize && buffer.get(lineEnd) != '\n') {
+		lineEnd++;
+	    }
+
+	    if (lineEnd == windowSize && !lastWindow) {
+		/*
+		 * The line continues in the next window...
+		 */
+		break;
+	    }
+
+	    this.lineNumber++;
+
+	    int contentEnd = lineEnd;
+	    if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+		contentEnd--;
+	    }
+
+	    if (contentEnd > lineStart && !(this.header && this.lineNumber == 1)) {
+		handler.handle(buffer, lineStart, contentEnd, this.lineNumber);
+		this.lineCount++;
+	    }
+
+	    lineStart = lineEnd + 1;
+	}
+
+	return lineStart;
+    }
+
+    /**
+     * Reads every <code>Instruction</code> of a file into a <code>List</code>.
+     *
+     * @param path
+     *            the file to read
+     * @return the <code>Instructions</code>, in file order
+     * @throws IOException
+     *             if the file cannot be read, or a line is malformed
+     */
+    public List<Instruction> readAll(final Path path) throws IOException {
+
+	final List<Instruction> instructions = new ArrayList<>();
+	this.read(path, instructions::add);
+
+	return instructions;
+    }
+
+    private Instruction parseLine(final ByteBuffer buffer, final int start, final int end, final long lineNumber)
+	    throws MalformedInstructionException {
+
+	this.splitFields(buffer, start, end, lineNumber);
+
+	final Instruction instruction = new Instruction();
+	instruction.setEntity(this.entities.get(buffer, this.fieldStarts[0], this.fieldEnds[0]));
+	instruction.setBuySellString(this.parseCode(buffer, this.fieldStarts[1], this.fieldEnds[1], BuySell.values()));
+	instruction.setExchangeRate(this.parseDecimal(buffer, this.fieldStarts[2], this.fieldEnds[2], lineNumber));
+	instruction.setCurrencyString(this.parseCode(buffer, this.fieldStarts[3], this.fieldEnds[3], Currency.values()));
+	instruction.setInstructionEpochDay(this.parseDate(buffer, this.fieldStarts[4], this.fieldEnds[4]));
+	instruction.setSettlementEpochDay(this.parseDate(buffer, this.fieldStarts[5], this.fieldEnds[5]));
+	instruction.setUnits(this.parseInteger(buffer, this.fieldStarts[6], this.fieldEnds[6], lineNumber));
+	instruction.setPricePerUnit(this.parseDecimal(buffer, this.fieldStarts[7], this.fieldEnds[7], lineNumber));
+
+	return instruction;
+    }
+
+    private void parseRow(final ByteBuffer buffer, final int start, final int end, final long lineNumber,
+	    final InstructionBatch batch) throws MalformedInstructionException {
+
+	this.splitFields(buffer, start, end, lineNumber);
+
+	final long exchangeRate = this.parseUnscaled(buffer, this.fieldStarts[2], this.fieldEnds[2], lineNumber);
+	final int exchangeRateScale = this.parsedScale;
+	final long units = this.parseUnscaled(buffer, this.fieldStarts[6], this.fieldEnds[6], lineNumber);
+	final int unitsScale = this.parsedScale;
+	final long pricePerUnit = this.parseUnscaled(buffer, this.fieldStarts[7], this.fieldEnds[7], lineNumber);
+	final int pricePerUnitScale = this.parsedScale;
+
+	if (unitsScale != 0) {
+	    throw new MalformedInstructionException(lineNumber, "invalid units");
+	}
+
+	final Enum<?> buySell = this.parseConstant(buffer, this.fieldStarts[1], this.fieldEnds[1], BuySell.values());
+	final Enum<?> currency = this.parseConstant(buffer, this.fieldStarts[3], this.fieldEnds[3],
+		Currency.values());
+
+	if (exchangeRate == InstructionFileReader.TOO_MANY_DIGITS || units == InstructionFileReader.TOO_MANY_DIGITS
+		|| pricePerUnit == InstructionFileReader.TOO_MANY_DIGITS || buySell == null || currency == null) {
+	    /*
+	     * Rare rows with wide numbers or unknown codes go through an
+	     * Instruction, so the batch keeps their values exactly...
+	     */
+	    batch.add(this.parseLine(buffer, start, end, lineNumber));
+	    return;
+	}
+
+	batch.add(this.entities.get(buffer, this.fieldStarts[0], this.fieldEnds[0]), (BuySell) buySell,
+		(Currency) currency, this.parseDate(buffer, this.fieldStarts[4], this.fieldEnds[4]),
+		this.parseDate(buffer, this.fieldStarts[5], this.fieldEnds[5]), units, exchangeRate, exchangeRateScale,
+		pricePerUnit, pricePerUnitScale);
+    }
+
+    private void splitFields(final ByteBuffer buffer, final int start, final int end, final long lineNumber)
+	    throws MalformedInstructionException {
+
+	int field = 0;
+	int fieldStart = start;
+
+	for (int i = start; i <= end; i++) {
+
+	    if (i == end || buffer.get(i) == this.delimiter) {
+
+		if (field == InstructionFileReader.FIELD_COUNT) {
+		    throw new MalformedInstructionException(lineNumber,
+			    "more than " + InstructionFileReader.FIELD_COUNT + " fields");
+		}
+
+		/*
+		 * Trim surrounding spaces from each field...
+		 */
+		int trimmedStart = fieldStart;
+		int trimmedEnd = i;
+		while (trimmedStart < trimmedEnd && buffer.get(trimmedStart) == ' ') {
+		    trimmedStart++;
+		}
+		while (trimmedEnd > trimmedStart && buffer.get(trimmedEnd - 1) == ' ') {
+		    trimmedEnd--;
+		}
+
+		this.fieldStarts[field] = trimmedStart;
+		this.fieldEnds[field] = trimmedEnd;
+		field++;
+		fieldStart = i + 1;
+	    }
+	}
+
+	if (field != InstructionFileReader.FIELD_COUNT) {
+	    throw new MalformedInstructionException(lineNumber,
+		    "expected " + InstructionFileReader.FIELD_COUNT + " fields but found " + field);
+	}
+    }
+
+    /**
+     * Returns the name of the matching <code>Enum</code> constant, so that
+     * every line shares the same <code>String</code>. Codes matching no
+     * constant are kept as read, and left for validation to reject.
+     */
+    private String parseCode(final ByteBuffer buffer, final int start, final int end,
+	    final Enum<?>[] constants) {
+
+	final Enum<?> constant = this.parseConstant(buffer, start, end, constants);
+
+	return constant != null ? constant.name() : this.unknownCodes.get(buffer, start, end);
+    }
+
+    /**
+     * Finds the <code>Enum</code> constant whose name matches a code,
+     * ignoring case, or <code>null</code> if there is none.
+     */
+    private Enum<?> parseConstant(final ByteBuffer buffer, final int start, final int end,
+	    final Enum<?>[] constants) {
+
+	for (final Enum<?> constant : constants) {
+
+	    final String name = constant.name();
+
+	    if (name.length() == end - start) {
+
+		boolean matches = true;
+		for (int i = 0; i < name.length() && matches; i++) {
+		    matches = (buffer.get(start + i) & ~0x20) == name.charAt(i);
+		}
+
+		if (matches) {
+		    return constant;
+		}
+	    }
+	}
+
+	return null;
+    }
+
+    /**
+     * Parses a date in the form <code>dd MMM yyyy</code>, for example
+     * <code>08 Sep 2018</code>. A date that cannot be parsed is left for
+     * validation to reject.
+     */
+    private int parseDate(final ByteBuffer buffer, final int start, final int end) {
+
+	int i = start;
+	int day = 0;
+
+	while (i < end && i - start < 2 && InstructionFileReader.isDigit(buffer.get(i))) {
+	    day = day * 10 + buffer.get(i) - '0';
+	    i++;
+	}
+
+	if (i == start || i + 9 != end || buffer.get(i) != ' ' || buffer.get(i + 4) != ' ') {
+	    return EpochDays.NONE;
+	}
+
+	final int month = InstructionDateParser.parseMonth(buffer.get(i + 1), buffer.get(i + 2), buffer.get(i + 3));
+
+	int year = 0;
+	for (int y = i + 5; y < end; y++) {
+
+	    if (!InstructionFileReader.isDigit(buffer.get(y))) {
+		return EpochDays.NONE;
+	    }
+
+	    year = year * 10 + buffer.get(y) - '0';
+	}
+
+	return InstructionDateParser.toEpochDay(year, month, day);
+    }
+
+    /**
+     * Parses a decimal number, keeping the scale as written so that
+     * <code>9.50</code> has a scale of 2.
+     */
+    private BigDecimal parseDecimal(final ByteBuffer buffer, final int start, final int end,
+	    final long lineNumber) throws MalformedInstructionException {
+
+	final long unscaled = this.parseUnscaled(buffer, start, end, lineNumber);
+
+	if (unscaled == InstructionFileReader.TOO_MANY_DIGITS) {
+	    return new BigDecimal(InstructionFileReader.toChars(buffer, start, end));
+	}
+
+	return BigDecimal.valueOf(unscaled, this.parsedScale);
+    }
+
+    /**
+     * Parses a decimal number into its unscaled value, and sets
+     * <code>parsedScale</code> to its scale.
+     *
+     * @return the unscaled value, or <code>TOO_MANY_DIGITS</code> if it may not
+     *         fit in a <code>long</code>
+     */
+    private long parseUnscaled(final ByteBuffer buffer, final int start, final int end,
+	    final long lineNumber) throws MalformedInstructionException {
+
+	int i = start;
+	final boolean negative = i < end && buffer.get(i) == '-';
+	if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+	    i++;
+	}
+
+	long unscaled = 0;
+	int digits = 0;
+	int scale = -1;
+	boolean sawDigit = false;
+
+	for (; i < end; i++) {
+
+	    final byte b = buffer.get(i);
+
+	    if (b == '.' && scale < 0) {
+		scale = 0;
+	    } else if (InstructionFileReader.isDigit(b)) {
+		sawDigit = true;
+		unscaled = unscaled * 10 + b - '0';
+		if (unscaled != 0) {
+		    digits++;
+		}
+		if (scale >= 0) {
+		    scale++;
+		}
+	    } else {
+		throw new MalformedInstructionException(lineNumber, "invalid number");
+	    }
+	}
+
+	if (!sawDigit) {
+	    throw new MalformedInstructionException(lineNumber, "invalid number");
+	}
+
+	this.parsedScale = Math.max(scale, 0);
+
+	if (digits > InstructionFileReader.MAX_LONG_DIGITS) {
+	    return InstructionFileReader.TOO_MANY_DIGITS;
+	}
+
+	return negative ? -unscaled : unscaled;
+    }
+
+    private BigInteger parseInteger(final ByteBuffer buffer, final int start, final int end,
+	    final long lineNumber) throws MalformedInstructionException {
+
+	final BigDecimal value = this.parseDecimal(buffer, start, end, lineNumber);
+
+	if (value.scale() != 0) {
+	    throw new MalformedInstructionException(lineNumber, "invalid units");
+	}
+
+	return value.toBigIntegerExact();
+    }
+
+    private static boolean isDigit(final byte b) {
+	return b >= '0' && b <= '9';
+    }
+
+    private static char[] toChars(final ByteBuffer buffer, final int start, final int end) {
+
+	final char[] chars = new char[end - start];
+	for (int i = 0; i < chars.length; i++) {
+	    chars[i] = (char) buffer.get(start + i);
+	}
+
+	return chars;
+    }
+
+    /**
+     * Receives the bytes of a line.
+     */
+    @FunctionalInterface
+    private interface LineHandler {
+
+	void handle(ByteBuffer buffer, int start, int end, long lineNumber) throws MalformedInstructionException;
+    }
+
+    /**
+     * An open addressing table from byte sequences to the
+     * <code>Strings</code> decoded from them, so that a value repeated on
+     * many lines is only decoded once.
+     */
+    private static final class ByteStringTable {
+
+	private byte[][] keys = new byte[64][];
+
+	private int size;
+
+	private String[] values = new String[64];
+
+	String get(final ByteBuffer buffer, final int start, final int end) {
+
+	    int hash = 1;
+	    for (int i = start; i < end; i++) {
+		hash = 31 * hash + buffer.get(i);
+	    }
+	    hash ^= hash >>> 16;
+
+	    final int mask = this.keys.length - 1;
+	    int slot = hash & mask;
+
+	    while (this.keys[slot] != null) {
+
+		if (ByteStringTable.equals(this.keys[slot], buffer, start, end)) {
+		    return this.values[slot];
+		}
+
+		slot = slot + 1 & mask;
+	    }
+
+	    final byte[] key = new byte[end - start];
+	    for (int i = 0; i < key.length; i++) {
+		key[i] = buffer.get(start + i);
+	    }
+
+	    final String value = new String(key, StandardCharsets.UTF_8);
+	    this.keys[slot] = key;
+	    this.values[slot] = value;
+
+	    if (++this.size * 2 > this.keys.length) {
+		this.resize();
+	    }
+
+	    return value;
+	}
+
+	private void resize() {
+
+	    final byte[][] oldKeys = this.keys;
+	    final String[] oldValues = this.values;
+
+	    this.keys = new byte[oldKeys.length * 2][];
+	    this.values = new String[oldValues.length * 2];
+
+	    final int mask = this.keys.length - 1;
+
+	    for (int i = 0; i < oldKeys.length; i++) {
+
+		if (oldKeys[i] != null) {
+
+		    int hash = Arrays.hashCode(oldKeys[i]);
+		    hash ^= hash >>> 16;
+
+		    int slot = hash & mask;
+		    while (this.keys[slot] != null) {
+			slot = slot + 1 & mask;
+		    }
+
+		    this.keys[slot] = oldKeys[i];
+		    this.values[slot] = oldValues[i];
+		}
+	    }
+	}
+
+	private static boolean equals(final byte[] key, final ByteBuffer buffer, final int start, final int end) {
+
+	    if (key.length != end - start) {
+		return false;
+	    }
+
+	    for (int i = 0; i < key.length; i++) {
+		if (key[i] != buffer.get(start + i)) {
+		    return false;
+		}
+	    }
+
+	    return true;
+	}
+    }
+}
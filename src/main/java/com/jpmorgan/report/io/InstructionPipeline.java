@@ -0,0 +1,474 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.jpmorgan.report.model.InstructionBatch;
+import com.jpmorgan.report.model.Report;
+import com.jpmorgan.report.model.ReportAccumulator;
+import com.jpmorgan.report.model.ReportConfiguration;
+
+/**
+ * Builds a single <code>Report</code> from many instruction files at once.
+ * <p>
+ * The files go through three stages joined by bounded queues, so a stage that
+ * falls behind holds back the stages before it instead of letting buffers
+ * pile up:
+ * <ol>
+ * <li>a reader per file reads it into chunks of whole lines. Readers run on
+ * virtual threads when the JVM has them, and on a fixed pool of platform
+ * threads otherwise, so a file that is slow to read only holds back its own
+ * reader;</li>
+ * <li>parse workers parse and validate each chunk into a columnar batch and
+ * aggregate it with its own <code>ReportAccumulator</code>;</li>
+ * <li>the calling thread merges the chunk accumulators of each file in chunk
+ * order, whatever order they arrive in, and finally merges the files in the
+ * order given.</li>
+ * </ol>
+ * The resulting <code>Report</code> is therefore identical to one built by
+ * reading the files one after another, including the scale of every
+ * <code>BigDecimal</code>, the tie order of the rankings and the order of any
+ * retained <code>Instructions</code>.
+ */
+public class InstructionPipeline {
+
+    /**
+     * The default number of bytes read into each chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The default number of chunks each queue holds.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /**
+     * The default number of platform reader threads, used when the JVM has no
+     * virtual threads.
+     */
+    public static final int DEFAULT_READER_COUNT = 8;
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final int chunkSize;
+
+    private final ReportConfiguration configuration;
+
+    private final Supplier<InstructionFileReader> fileReaders;
+
+    private final int parserCount;
+
+    private final int queueCapacity;
+
+    private final int readerCount;
+
+    /**
+     * Constructs a pipeline for comma delimited files without a header line,
+     * with a parse worker per processor.
+     *
+     * @param configuration
+     *            the options used to build the <code>Report</code>
+     */
+    public InstructionPipeline(final ReportConfiguration configuration) {
+	this(configuration, InstructionFileReader::new, InstructionPipeline.DEFAULT_READER_COUNT,
+		Runtime.getRuntime().availableProcessors(), InstructionPipeline.DEFAULT_QUEUE_CAPACITY,
+		InstructionPipeline.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a pipeline.
+     *
+     * @param configuration
+     *            the options used to build the <code>Report</code>
+     * @param fileReaders
+     *            creates the <code>InstructionFileReader</code> of each parse
+     *            worker, which decides the delimiter and header of the files
+     * @param readerCount
+     *            the number of files read at once when the JVM has no virtual
+     *            threads
+     * @param parserCount
+     *            the number of parse workers
+     * @param queueCapacity
+     *            the number of chunks each queue holds
+     * @param chunkSize
+     *            the number of bytes read into each chunk, which grows to hold
+     *            a longer line
+     */
+    public InstructionPipeline(final ReportConfiguration configuration,
+	    final Supplier<InstructionFileReader> fileReaders, final int readerCount, final int parserCount,
+	    final int queueCapacity, final int chunkSize) {
+
+	Objects.requireNonNull(configuration);
+	Objects.requireNonNull(fileReaders);
+
+	if (readerCount < 1 || parserCount < 1 || queueCapacity < 1 || chunkSize < 1) {
+	    throw new IllegalArgumentException("Thread counts, queue capacity and chunk size must be positive");
+	}
+
+	this.configuration = configuration;
+	this.fileReaders = fileReaders;
+	this.readerCount = readerCount;
+	this.parserCount = parserCount;
+	this.queueCapacity = queueCapacity;
+	this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Builds a <code>Report</code> from instruction files.
+     *
+     * @param paths
+     *            the files to report on
+     * @return the <code>Report</code>
+     * @throws IOException
+     *             if a file cannot be read, or a line is malformed
+     */
+    public Report build(final List<Path> paths) throws IOException {
+
+	final List<Path> files = new ArrayList<>(paths);
+	files.forEach(Objects::requireNonNull);
+
+	final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(this.queueCapacity);
+	final BlockingQueue<Result> results = new ArrayBlockingQueue<>(this.queueCapacity);
+
+	final ExecutorService readers = InstructionPipeline.newReaderExecutor(this.readerCount);
+	final ExecutorService parsers = Executors.newFixedThreadPool(this.parserCount,
+		InstructionPipeline.newThreadFactory("instruction-parser-"));
+
+	try {
+	    for (int i = 0; i < files.size(); i++) {
+		final int file = i;
+		readers.execute(() -> this.read(files.get(file), file, chunks, results));
+	    }
+
+	    for (int i = 0; i < this.parserCount; i++) {
+		parsers.execute(() -> this.parse(chunks, results));
+	    }
+
+	    return this.aggregate(files, results).toLazyReport();
+
+	} catch (final InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    throw new IOException("Interrupted while building a Report", e);
+	} finally {
+	    /*
+	     * Interrupts any stage still blocked on a queue, when a file
+	     * failed...
+	     */
+	    readers.shutdownNow();
+	    parsers.shutdownNow();
+	}
+    }
+
+    /**
+     * Opens a file for its reader, which only calls
+     * <code>read(ByteBuffer)</code> on the channel. A subclass may read the
+     * files from another source.
+     *
+     * @param path
+     *            the file
+     * @return a channel positioned at the start of the file
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    protected ReadableByteChannel open(final Path path) throws IOException {
+	return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * The reader stage: reads a file into chunks that end on a line break,
+     * then reports how many chunks there were.
+     */
+    private void read(final Path path, final int file, final BlockingQueue<Chunk> chunks,
+	    final BlockingQueue<Result> results) {
+
+	try {
+	    int chunkCount = 0;
+
+	    try (ReadableByteChannel channel = this.open(path)) {
+
+		ByteBuffer buffer = ByteBuffer.allocate(this.chunkSize);
+		long lineNumber = 0;
+		boolean endOfFile = false;
+
+		while (!endOfFile) {
+
+		    endOfFile = channel.read(buffer) < 0;
+
+		    if (buffer.hasRemaining() && !endOfFile) {
+			continue;
+		    }
+
+		    /*
+		     * Cut the chunk after the last line break, and carry the
+		     * partial line after it over to the next chunk...
+		     */
+		    final byte[] bytes = buffer.array();
+		    int end = buffer.position();
+
+		    if (!endOfFile) {
+			while (end > 0 && bytes[end - 1] != '\n') {
+			    end--;
+			}
+		    }
+
+		    if (end == 0 && !endOfFile) {
+			buffer = InstructionPipeline.grow(buffer);
+			continue;
+		    }
+
+		    if (end > 0) {
+			chunks.put(new Chunk(path, file, chunkCount++, lineNumber, bytes, end));
+			lineNumber += InstructionPipeline.countLines(bytes, end);
+		    }
+
+		    final ByteBuffer next = ByteBuffer.allocate(Math.max(this.chunkSize, buffer.position() - end));
+		    next.put(bytes, end, buffer.position() - end);
+		    buffer = next;
+		}
+	    }
+
+	    results.put(new Result(file, chunkCount, null, null));
+
+	} catch (final IOException | RuntimeException e) {
+	    InstructionPipeline.fail(results, file, path, e);
+	} catch (final InterruptedException e) {
+	    /*
+	     * The build failed elsewhere and is shutting down...
+	     */
+	}
+    }
+
+    /**
+     * The parse stage: parses and aggregates chunks until interrupted.
+     */
+    private void parse(final BlockingQueue<Chunk> chunks, final BlockingQueue<Result> results) {
+
+	final InstructionFileReader fileReader = this.fileReaders.get();
+
+	try {
+	    while (true) {
+
+		final Chunk chunk = chunks.take();
+
+		try {
+		    final InstructionBatch batch = new InstructionBatch();
+		    fileReader.read(ByteBuffer.wrap(chunk.bytes, 0, chunk.length), chunk.lineNumber, batch);
+
+		    results.put(new Result(chunk.file, chunk.index,
+			    new ReportAccumulator(this.configuration).acceptAll(batch), null));
+
+		} catch (final MalformedInstructionException | RuntimeException e) {
+		    InstructionPipeline.fail(results, chunk.file, chunk.path, e);
+		}
+	    }
+	} catch (final InterruptedException e) {
+	    /*
+	     * The build is over...
+	     */
+	}
+    }
+
+    /**
+     * The aggregation stage: merges the chunks of each file in order as they
+     * arrive, then the files in order once every file is complete.
+     */
+    private ReportAccumulator aggregate(final List<Path> files, final BlockingQueue<Result> results)
+	    throws IOException, InterruptedException {
+
+	final ReportAccumulator[] fileAccumulators = new ReportAccumulator[files.size()];
+	final int[] merged = new int[files.size()];
+	final int[] chunkCounts = new int[files.size()];
+	Arrays.fill(chunkCounts, -1);
+
+	/*
+	 * Chunks that arrived before an earlier chunk of the same file...
+	 */
+	final Map<Long, ReportAccumulator> pending = new HashMap<>();
+
+	int completeFiles = 0;
+
+	while (completeFiles < files.size()) {
+
+	    final Result result = results.take();
+	    final int file = result.file;
+
+	    if (result.failure != null) {
+		throw result.failure;
+	    }
+
+	    if (result.accumulator == null) {
+		chunkCounts[file] = result.index;
+	    } else if (result.index != merged[file]) {
+		pending.put(InstructionPipeline.key(file, result.index), result.accumulator);
+	    } else {
+		fileAccumulators[file] = InstructionPipeline.merge(fileAccumulators[file], result.accumulator);
+		merged[file]++;
+
+		ReportAccumulator next;
+		while ((next = pending.remove(InstructionPipeline.key(file, merged[file]))) != null) {
+		    fileAccumulators[file] = fileAccumulators[file].merge(next);
+		    merged[file]++;
+		}
+	    }
+
+	    if (merged[file] == chunkCounts[file]) {
+		completeFiles++;
+		/*
+		 * Count each file once...
+		 */
+		chunkCounts[file] = -1;
+	    }
+	}
+
+	ReportAccumulator accumulator = null;
+
+	for (final ReportAccumulator fileAccumulator : fileAccumulators) {
+	    if (fileAccumulator != null) {
+		accumulator = InstructionPipeline.merge(accumulator, fileAccumulator);
+	    }
+	}
+
+	return accumulator != null ? accumulator : new ReportAccumulator(this.configuration);
+    }
+
+    private static int countLines(final byte[] bytes, final int end) {
+
+	int lineCount = 0;
+	for (int i = 0; i < end; i++) {
+	    if (bytes[i] == '\n') {
+		lineCount++;
+	    }
+	}
+
+	return lineCount;
+    }
+
+    private static void fail(final BlockingQueue<Result> results, final int file, final Path path,
+	    final Exception cause) {
+	try {
+	    results.put(new Result(file, -1, null, new IOException("Cannot read " + path + ": " + cause.getMessage(),
+		    cause)));
+	} catch (final InterruptedException e) {
+	    /*
+	     * The build failed elsewhere and is shutting down...
+	     */
+	}
+    }
+
+    private static ByteBuffer grow(final ByteBuffer buffer) {
+
+	final ByteBuffer grown = ByteBuffer.allocate(buffer.capacity() * 2);
+	buffer.flip();
+
+	return grown.put(buffer);
+    }
+
+    private static Long key(final int file, final int index) {
+	return (long) file << 32 | index;
+    }
+
+    private static ReportAccumulator merge(final ReportAccumulator accumulator, final ReportAccumulator chunk) {
+	return accumulator == null ? chunk : accumulator.merge(chunk);
+    }
+
+    /**
+     * Runs each file on its own virtual thread on JVMs that have them, which
+     * is looked up reflectively so the code still runs on Java 8, and
+     * otherwise on a fixed pool of platform threads.
+     */
+    private static ExecutorService newReaderExecutor(final int readerCount) {
+
+	try {
+	    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (final NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+	    /*
+	     * No virtual threads before Java 21...
+	     */
+	}
+
+	return Executors.newFixedThreadPool(readerCount, InstructionPipeline.newThreadFactory("instruction-reader-"));
+    }
+
+    private static ThreadFactory newThreadFactory(final String prefix) {
+	return runnable -> {
+	    final Thread thread = new Thread(runnable, prefix + InstructionPipeline.THREAD_NUMBER.incrementAndGet());
+	    thread.setDaemon(true);
+	    return thread;
+	};
+    }
+
+    /**
+     * Whole lines of a file, waiting to be parsed.
+     */
+    private static final class Chunk {
+
+	final byte[] bytes;
+
+	final int file;
+
+	final int index;
+
+	final int length;
+
+	/**
+	 * The number of lines of the file before this chunk.
+	 */
+	final long lineNumber;
+
+	final Path path;
+
+	Chunk(final Path path, final int file, final int index, final long lineNumber, final byte[] bytes,
+		final int length) {
+	    this.path = path;
+	    this.file = file;
+	    this.index = index;
+	    this.lineNumber = lineNumber;
+	    this.bytes = bytes;
+	    this.length = length;
+	}
+    }
+
+    /**
+     * The outcome of a stage for a file: the accumulator of one of its
+     * chunks, the number of chunks once the file is read, or a failure.
+     */
+    private static final class Result {
+
+	final ReportAccumulator accumulator;
+
+	final int file;
+
+	final IOException failure;
+
+	/**
+	 * The index of the chunk, or the number of chunks when there is no
+	 * accumulator.
+	 */
+	final int index;
+
+	Result(final int file, final int index, final ReportAccumulator accumulator, final IOException failure) {
+	    this.file = file;
+	    this.index = index;
+	    this.accumulator = accumulator;
+	    this.failure = failure;
+	}
+    }
+}
@@ -0,0 +1,174 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+
+import com.jpmorgan.report.model.DailyTotals;
+import com.jpmorgan.report.model.EntityRanking;
+import com.jpmorgan.report.model.Instruction;
+import com.jpmorgan.report.model.InvalidReason;
+import com.jpmorgan.report.model.NetPositions;
+import com.jpmorgan.report.model.Report;
+import com.jpmorgan.report.model.ReportPlan;
+import com.jpmorgan.report.model.ReportSection;
+
+/**
+ * Renders a <code>Report</code> as a single JSON object, with an object for
+ * each direction holding its planned sections, followed by the net positions
+ * if they are planned. Amounts are JSON numbers in
+ * plain notation, and dates are ISO 8601 strings.
+ */
+final class JsonReportRenderer implements ReportRenderer {
+
+    @Override
+    public void render(final Report report, final ReportWriter writer) throws IOException {
+
+	final ReportPlan plan = report.getPlan();
+
+	writer.write("{\"validInstructionCount\":").writeLong(report.getValidInstructionCount());
+	writer.write(",\"invalidInstructionCount\":").writeLong(report.getInvalidInstructionCount());
+	writer.write(",\"invalidInstructionCountByReason\":{");
+
+	boolean first = true;
+	for (final InvalidReason invalidReason : InvalidReason.values()) {
+
+	    final Long count = report.getInvalidInstructionCountByReason().get(invalidReason);
+
+	    if (count != null) {
+		if (!first) {
+		    writer.write(',');
+		}
+		writer.writeJsonString(invalidReason.name()).write(':').writeLong(count);
+		first = false;
+	    }
+	}
+	writer.write('}');
+
+	writer.write(",\"incoming\":{\"instructionCount\":").writeLong(report.getIncomingInstructionCount());
+
+	if (plan.includes(ReportSection.TOTALS)) {
+	    writer.write(",\"total\":").writeDecimal(report.getTotalUSDAmountSettledIncoming());
+	}
+	if (plan.includes(ReportSection.DAILY_TOTALS)) {
+	    JsonReportRenderer.renderDailyTotals(report.getIncomingDailyTotals(), writer);
+	}
+	if (plan.includes(ReportSection.INCOMING_RANKING)) {
+	    JsonReportRenderer.renderRanking(report.getIncomingEntityRankingList(), writer);
+	}
+	if (plan.includes(ReportSection.INSTRUCTIONS)) {
+	    JsonReportRenderer.renderInstructions(report.getIncomingInstructions(), writer);
+	}
+
+	writer.write("},\"outgoing\":{\"instructionCount\":").writeLong(report.getOutgoingInstructionCount());
+
+	if (plan.includes(ReportSection.TOTALS)) {
+	    writer.write(",\"total\":").writeDecimal(report.getTotalUSDAmountSettledOutgoing());
+	}
+	if (plan.includes(ReportSection.DAILY_TOTALS)) {
+	    JsonReportRenderer.renderDailyTotals(report.getOutgoingDailyTotals(), writer);
+	}
+	if (plan.includes(ReportSection.OUTGOING_RANKING)) {
+	    JsonReportRenderer.renderRanking(report.getOutgoingEntityRankingList(), writer);
+	}
+	if (plan.includes(ReportSection.INSTRUCTIONS)) {
+	    JsonReportRenderer.renderInstructions(report.getOutgoingInstructions(), writer);
+	}
+
+	writer.write('}');
+
+	if (plan.includes(ReportSection.NET_POSITIONS)) {
+	    JsonReportRenderer.renderNetPositions(report.getNetPositions(), writer);
+	}
+
+	writer.write('}').newLine();
+    }
+
+    private static void renderDailyTotals(final DailyTotals dailyTotals, final ReportWriter writer)
+	    throws IOException {
+
+	writer.write(",\"dailyTotals\":[");
+
+	for (int i = 0; i < dailyTotals.size(); i++) {
+	    writer.write(i == 0 ? "{\"date\":\"" : ",{\"date\":\"").writeDate(dailyTotals.getEpochDay(i))
+		    .write("\",\"total\":").writeDecimal(dailyTotals.getTotal(i)).write('}');
+	}
+
+	writer.write(']');
+    }
+
+    private static void renderRanking(final List<EntityRanking> entityRankingList, final ReportWriter writer)
+	    throws IOException {
+
+	writer.write(",\"ranking\":[");
+
+	boolean first = true;
+	for (final EntityRanking entityRanking : entityRankingList) {
+	    writer.write(first ? "{\"rank\":" : ",{\"rank\":").writeLong(entityRanking.getRank())
+		    .write(",\"entity\":").writeJsonString(entityRanking.getEntity()).write(",\"highestUSDAmount\":")
+		    .writeDecimal(entityRanking.getHighestUSDAmount()).write('}');
+	    first = false;
+	}
+
+	writer.write(']');
+    }
+
+    private static void renderNetPositions(final NetPositions netPositions, final ReportWriter writer)
+	    throws IOException {
+
+	writer.write(",\"netPositions\":[");
+
+	for (int i = 0; i < netPositions.size(); i++) {
+	    writer.write(i == 0 ? "{\"entity\":" : ",{\"entity\":").writeJsonString(netPositions.getEntity(i))
+		    .write(",\"date\":\"").writeDate(netPositions.getEpochDay(i)).write("\",\"netUSDAmount\":")
+		    .writeDecimal(netPositions.getNetUSDAmount(i)).write('}');
+	}
+
+	writer.write(']');
+    }
+
+    private static void renderInstructions(final List<Instruction> instructions, final ReportWriter writer)
+	    throws IOException {
+
+	writer.write(",\"instructions\":[");
+
+	boolean first = true;
+	for (final Instruction instruction : instructions) {
+	    writer.write(first ? "{\"entity\":" : ",{\"entity\":").writeJsonString(instruction.getEntity());
+	    writer.write(",\"buySell\":\"").write(instruction.getBuySell().name());
+	    writer.write("\",\"currency\":\"").write(instruction.getCurrency().name());
+	    writer.write("\",\"exchangeRate\":");
+	    JsonReportRenderer.writeDecimal(instruction.getExchangeRate(), writer);
+	    writer.write(",\"instructionDate\":\"").writeDate(instruction.getInstructionEpochDay());
+	    writer.write("\",\"settlementDate\":\"").writeDate(instruction.getSettlementEpochDay());
+	    writer.write("\",\"actualSettlementDate\":\"").writeDate(instruction.getAcutalSettlementEpochDay());
+	    writer.write("\",\"units\":");
+	    JsonReportRenderer.writeInteger(instruction.getUnits(), writer);
+	    writer.write(",\"pricePerUnit\":");
+	    JsonReportRenderer.writeDecimal(instruction.getPricePerUnit(), writer);
+	    writer.write(",\"usdAmount\":");
+	    JsonReportRenderer.writeDecimal(instruction.getUSDAmount(), writer);
+	    writer.write('}');
+	    first = false;
+	}
+
+	writer.write(']');
+    }
+
+    private static void writeDecimal(final BigDecimal value, final ReportWriter writer) throws IOException {
+	if (value == null) {
+	    writer.write("null");
+	} else {
+	    writer.writeDecimal(value);
+	}
+    }
+
+    private static void writeInteger(final BigInteger value, final ReportWriter writer) throws IOException {
+	if (value == null) {
+	    writer.write("null");
+	} else {
+	    writer.writeInteger(value);
+	}
+    }
+}
@@ -0,0 +1,29 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+
+/**
+ * Signals that a line of an instruction file cannot be read as an
+ * <code>Instruction</code>.
+ */
+public class MalformedInstructionException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long lineNumber;
+
+    /**
+     * @param lineNumber
+     *            the one based number of the malformed line
+     * @param reason
+     *            why the line is malformed
+     */
+    public MalformedInstructionException(final long lineNumber, final String reason) {
+	super("Malformed instruction on line " + lineNumber + ": " + reason);
+	this.lineNumber = lineNumber;
+    }
+
+    public long getLineNumber() {
+	return this.lineNumber;
+    }
+}
@@ -0,0 +1,327 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.jpmorgan.report.model.Currency;
+import com.jpmorgan.report.model.InstructionValidator;
+import com.jpmorgan.report.model.Report;
+import com.jpmorgan.report.model.ReportAccumulator;
+import com.jpmorgan.report.model.ReportConfiguration;
+import com.jpmorgan.report.model.ReportSection;
+import com.jpmorgan.report.model.ReportSnapshot;
+
+/**
+ * Stores built <code>Reports</code> on disk, so that rerunning a report over
+ * an unchanged instruction file loads the stored one instead of parsing the
+ * file and building it again.
+ * <p>
+ * Entries are content addressed: the key is the XXH64 hash of the file
+ * contents together with a hash of everything else the <code>Report</code>
+ * depends on, namely the file format, the <code>ReportConfiguration</code>
+ * (ranking limit, fixed point scale, retained instructions, report plan and
+ * the holidays of the calendar), the supported currencies and the snapshot
+ * version. A file that is renamed or copied still hits, and a changed one
+ * misses.
+ * Configurations with a validator other than
+ * <code>InstructionValidator.DEFAULT</code> cannot be keyed, and snapshots do
+ * not hold <code>ReportSketches</code>, so the <code>Reports</code> of those
+ * configurations, and of those that enable sketching, are always built.
+ * <p>
+ * Each entry is a <code>ReportSnapshot</code>. The directory is kept under a
+ * size limit by deleting the least recently used entries, where a hit
+ * counts as a use. Any number of caches, in this or other JVMs on the same
+ * host, may share a directory: entries are looked up, published and evicted
+ * while holding an exclusive lock on a lock file, and a new entry is written
+ * to a temporary file and then moved into place, so it is never read while
+ * incomplete. <code>Reports</code> are built without holding the lock.
+ */
+public class ReportCache {
+
+    private static final String ENTRY_SUFFIX = ".report";
+
+    private static final String LOCK_FILE = ".lock";
+
+    /**
+     * Serialises access by the caches of this JVM, since a JVM may not hold
+     * two locks on the same file.
+     */
+    private static final ConcurrentMap<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final char delimiter;
+
+    private final Path directory;
+
+    private final boolean header;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final long maxBytes;
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructs a cache of comma delimited files without a header line.
+     *
+     * @param directory
+     *            the directory holding the entries, which is created if it
+     *            does not exist
+     * @param maxBytes
+     *            the most bytes the entries may use
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    public ReportCache(final Path directory, final long maxBytes) throws IOException {
+	this(directory, maxBytes, ',', false);
+    }
+
+    /**
+     * Constructs a cache.
+     *
+     * @param directory
+     *            the directory holding the entries, which is created if it
+     *            does not exist
+     * @param maxBytes
+     *            the most bytes the entries may use
+     * @param delimiter
+     *            the single byte character between fields
+     * @param header
+     *            <code>true</code> if the first line of each file is a header
+     *            to be skipped
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    public ReportCache(final Path directory, final long maxBytes, final char delimiter, final boolean header)
+	    throws IOException {
+
+	if (maxBytes <= 0) {
+	    throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+	}
+
+	/*
+	 * Check the format now rather than on the first miss...
+	 */
+	new InstructionFileReader(delimiter, header);
+
+	this.directory = Files.createDirectories(Objects.requireNonNull(directory)).toAbsolutePath().normalize();
+	this.maxBytes = maxBytes;
+	this.delimiter = delimiter;
+	this.header = header;
+    }
+
+    /**
+     * Returns the <code>Report</code> of an instruction file, loading it from
+     * the cache if the same file was reported with the same configuration
+     * before, and otherwise building and storing it.
+     *
+     * @param path
+     *            the instruction file
+     * @param configuration
+     *            the options used to build the <code>Report</code>
+     * @return the <code>Report</code>
+     * @throws IOException
+     *             if the instruction file cannot be read, or a line is
+     *             malformed, or the cache cannot be written
+     */
+    public Report getReport(final Path path, final ReportConfiguration configuration) throws IOException {
+
+	Objects.requireNonNull(path);
+	Objects.requireNonNull(configuration);
+
+	if (configuration.getValidator() != InstructionValidator.DEFAULT || configuration.isSketching()) {
+	    return this.build(path, configuration);
+	}
+
+	final Path entry = this.directory.resolve(String.format("%016x-%016x%s", ContentHash.hash(path, 0L),
+		this.configurationKey(configuration), ReportCache.ENTRY_SUFFIX));
+
+	final Report cached = this.withLock(() -> this.load(entry));
+
+	if (cached != null) {
+	    this.hitCount.incrementAndGet();
+	    return cached;
+	}
+
+	this.missCount.incrementAndGet();
+
+	final Report report = this.build(path, configuration);
+
+	final Path temporary = Files.createTempFile(this.directory, "report", ".tmp");
+	try {
+	    ReportSnapshot.write(report, temporary);
+	    this.withLock(() -> {
+		Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.evict(entry);
+		return null;
+	    });
+	} finally {
+	    Files.deleteIfExists(temporary);
+	}
+
+	return report;
+    }
+
+    /**
+     * @return the number of <code>Reports</code> loaded from the cache
+     */
+    public long getHitCount() {
+	return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of <code>Reports</code> built and stored because
+     *         they were not in the cache
+     */
+    public long getMissCount() {
+	return this.missCount.get();
+    }
+
+    private Report build(final Path path, final ReportConfiguration configuration) throws IOException {
+	return new ReportAccumulator(configuration)
+		.acceptAll(new InstructionFileReader(this.delimiter, this.header).readBatch(path)).toReport();
+    }
+
+    /**
+     * Hashes everything other than the file contents that the
+     * <code>Report</code> depends on.
+     */
+    private long configurationKey(final ReportConfiguration configuration) {
+
+	final ContentHash hash = new ContentHash(0L);
+
+	hash.updateInt(ReportSnapshot.FORMAT_VERSION);
+	hash.updateInt(this.delimiter);
+	hash.updateInt(this.header ? 1 : 0);
+	hash.updateInt(configuration.getEntityRankingLimit());
+	hash.updateInt(configuration.getFixedPointScale());
+	hash.updateInt(configuration.isRetainInstructions() ? 1 : 0);
+
+	for (final ReportSection section : configuration.getReportPlan().getSections()) {
+	    hash.updateInt(section.ordinal());
+	}
+	hash.updateInt(-1);
+
+	for (final Currency currency : Currency.values()) {
+
+	    hash.update(ByteBuffer.wrap(currency.name().getBytes(StandardCharsets.US_ASCII)));
+
+	    final List<LocalDate> holidays = configuration.getSettlementCalendar().getHolidays(currency);
+	    hash.updateInt(holidays.size());
+
+	    for (final LocalDate holiday : holidays) {
+		hash.updateLong(holiday.toEpochDay());
+	    }
+	}
+
+	return hash.digest();
+    }
+
+    /**
+     * Reads an entry, checking every section against its checksum so that a
+     * damaged entry is never handed out, and marks it as used. Called with
+     * the lock held.
+     *
+     * @return the <code>Report</code>, or <code>null</code> if there is no
+     *         readable entry
+     */
+    private Report load(final Path entry) throws IOException {
+
+	if (!Files.exists(entry)) {
+	    return null;
+	}
+
+	try {
+	    final Report report = ReportSnapshot.read(entry, true);
+	    Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+	    return report;
+	} catch (final IOException e) {
+	    /*
+	     * An entry of an older version, or a damaged one, is rebuilt...
+	     */
+	    Files.deleteIfExists(entry);
+	    return null;
+	}
+    }
+
+    /**
+     * Deletes the least recently used entries, other than the one just
+     * stored, until the entries fit. Called with the lock held.
+     */
+    private void evict(final Path stored) throws IOException {
+
+	final List<Path> entries = new ArrayList<>();
+	long bytes = 0;
+
+	try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory,
+		"*" + ReportCache.ENTRY_SUFFIX)) {
+	    for (final Path entry : stream) {
+		entries.add(entry);
+		bytes += Files.size(entry);
+	    }
+	}
+
+	if (bytes <= this.maxBytes) {
+	    return;
+	}
+
+	final Map<Path, FileTime> lastUsed = new HashMap<>();
+	for (final Path entry : entries) {
+	    lastUsed.put(entry, Files.getLastModifiedTime(entry));
+	}
+	entries.sort(Comparator.comparing(lastUsed::get));
+
+	for (final Path entry : entries) {
+
+	    if (bytes <= this.maxBytes) {
+		return;
+	    }
+
+	    if (!entry.equals(stored)) {
+		bytes -= Files.size(entry);
+		Files.delete(entry);
+	    }
+	}
+    }
+
+    private <T> T withLock(final LockedAction<T> action) throws IOException {
+
+	synchronized (ReportCache.MONITORS.computeIfAbsent(this.directory, directory -> new Object())) {
+
+	    try (FileChannel channel = FileChannel.open(this.directory.resolve(ReportCache.LOCK_FILE),
+		    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+		final FileLock lock = channel.lock();
+
+		try {
+		    return action.run();
+		} finally {
+		    lock.release();
+		}
+	    }
+	}
+    }
+
+    @FunctionalInterface
+    private interface LockedAction<T> {
+	T run() throws IOException;
+    }
+}
@@ -0,0 +1,55 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import com.jpmorgan.report.model.Report;
+
+/**
+ * The formats a <code>Report</code> can be rendered in.
+ */
+public enum ReportFormat implements ReportRenderer {
+
+    /**
+     * Comma separated rows of the aggregates, with a header line.
+     */
+    CSV(new CsvReportRenderer()),
+
+    /**
+     * A single JSON object.
+     */
+    JSON(new JsonReportRenderer()),
+
+    /**
+     * Text for people to read.
+     */
+    TEXT(new TextReportRenderer());
+
+    private final ReportRenderer renderer;
+
+    private ReportFormat(final ReportRenderer renderer) {
+	this.renderer = renderer;
+    }
+
+    @Override
+    public void render(final Report report, final ReportWriter writer) throws IOException {
+	this.renderer.render(Objects.requireNonNull(report), Objects.requireNonNull(writer));
+    }
+
+    /**
+     * Renders a <code>Report</code> to a file, replacing it if it exists.
+     *
+     * @param report
+     *            the <code>Report</code>
+     * @param path
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void render(final Report report, final Path path) throws IOException {
+	try (ReportWriter writer = ReportWriter.open(path)) {
+	    this.render(report, writer);
+	}
+    }
+}
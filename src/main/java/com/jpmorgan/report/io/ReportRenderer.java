@@ -0,0 +1,30 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+
+import com.jpmorgan.report.model.Report;
+
+/**
+ * Renders a <code>Report</code> as text.
+ * <p>
+ * A renderer writes only the sections of the <code>ReportPlan</code> of the
+ * <code>Report</code>, always in the same order: counts, then the incoming
+ * direction, then the outgoing one. Totals per day are in date order,
+ * rankings in rank order and <code>Instructions</code> in the order they were
+ * accepted, so the same <code>Report</code> always renders to the same bytes.
+ */
+@FunctionalInterface
+public interface ReportRenderer {
+
+    /**
+     * Renders a <code>Report</code>. The writer is not flushed.
+     *
+     * @param report
+     *            the <code>Report</code>
+     * @param writer
+     *            the writer to render to
+     * @throws IOException
+     *             if the writer cannot be written
+     */
+    void render(Report report, ReportWriter writer) throws IOException;
+}
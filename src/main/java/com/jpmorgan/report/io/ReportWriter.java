@@ -0,0 +1,446 @@
+package com.jpmorgan.report.io;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+import com.jpmorgan.report.date.EpochDays;
+
+/**
+ * Writes the text of a rendered <code>Report</code> to a channel through a
+ * buffer of fixed size.
+ * <p>
+ * Numbers and dates are written digit by digit straight into the buffer, so
+ * rendering does not create a <code>String</code> per field. Text is encoded
+ * as UTF-8. Nothing reaches the channel until the buffer is full or the
+ * writer is flushed. A writer is not thread-safe.
+ */
+public final class ReportWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The most digits of a <code>long</code>.
+     */
+    private static final int MAX_LONG_DIGITS = 19;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(ReportWriter.BUFFER_SIZE);
+
+    private final WritableByteChannel channel;
+
+    /**
+     * Digits of the number being written, least significant last.
+     */
+    private final byte[] digits = new byte[ReportWriter.MAX_LONG_DIGITS];
+
+    /**
+     * Constructs a writer to a channel.
+     *
+     * @param channel
+     *            the channel, which is closed with the writer
+     */
+    public ReportWriter(final WritableByteChannel channel) {
+	this.channel = Objects.requireNonNull(channel);
+    }
+
+    /**
+     * Opens a writer to a file, replacing the file if it exists.
+     *
+     * @param path
+     *            the file
+     * @return the writer
+     * @throws IOException
+     *             if the file cannot be opened
+     */
+    public static ReportWriter open(final Path path) throws IOException {
+	return new ReportWriter(FileChannel.open(Objects.requireNonNull(path), StandardOpenOption.CREATE,
+		StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Writes an ASCII character.
+     *
+     * @param c
+     *            the character, from 0 to 127
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter write(final char c) throws IOException {
+
+	if (!this.buffer.hasRemaining()) {
+	    this.drain();
+	}
+
+	this.buffer.put((byte) c);
+
+	return this;
+    }
+
+    /**
+     * Writes text as UTF-8.
+     *
+     * @param text
+     *            the text
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter write(final CharSequence text) throws IOException {
+	return this.write(text, 0, text.length());
+    }
+
+    /**
+     * Writes the characters from <code>from</code> to <code>to</code> as
+     * UTF-8. A lone surrogate is written as <code>?</code>.
+     */
+    private ReportWriter write(final CharSequence text, final int from, final int to) throws IOException {
+
+	for (int i = from; i < to; i++) {
+
+	    final char c = text.charAt(i);
+
+	    if (c < 0x80) {
+		this.write(c);
+	    } else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+		this.writeCodePoint(Character.toCodePoint(c, text.charAt(i + 1)));
+		i++;
+	    } else {
+		this.writeCodePoint(Character.isSurrogate(c) ? '?' : c);
+	    }
+	}
+
+	return this;
+    }
+
+    private void writeCodePoint(final int codePoint) throws IOException {
+
+	if (this.buffer.remaining() < 4) {
+	    this.drain();
+	}
+
+	if (codePoint < 0x80) {
+	    this.buffer.put((byte) codePoint);
+	} else if (codePoint < 0x800) {
+	    this.buffer.put((byte) (0xC0 | codePoint >> 6));
+	    this.buffer.put((byte) (0x80 | codePoint & 0x3F));
+	} else if (codePoint < 0x10000) {
+	    this.buffer.put((byte) (0xE0 | codePoint >> 12));
+	    this.buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+	    this.buffer.put((byte) (0x80 | codePoint & 0x3F));
+	} else {
+	    this.buffer.put((byte) (0xF0 | codePoint >> 18));
+	    this.buffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+	    this.buffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+	    this.buffer.put((byte) (0x80 | codePoint & 0x3F));
+	}
+    }
+
+    /**
+     * Writes text as a CSV field, quoted if it holds a comma, a quote or a
+     * line break.
+     *
+     * @param text
+     *            the text
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter writeCsvField(final CharSequence text) throws IOException {
+
+	boolean quoted = false;
+
+	for (int i = 0; i < text.length() && !quoted; i++) {
+	    final char c = text.charAt(i);
+	    quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+	}
+
+	if (!quoted) {
+	    return this.write(text);
+	}
+
+	this.write('"');
+
+	int from = 0;
+
+	for (int i = 0; i < text.length(); i++) {
+	    if (text.charAt(i) == '"') {
+		/*
+		 * Write the run up to and including the quote, which starts
+		 * the next run, so it is doubled...
+		 */
+		this.write(text, from, i + 1);
+		from = i;
+	    }
+	}
+
+	return this.write(text, from, text.length()).write('"');
+    }
+
+    /**
+     * Writes text as a quoted JSON string.
+     *
+     * @param text
+     *            the text
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter writeJsonString(final CharSequence text) throws IOException {
+
+	this.write('"');
+
+	int from = 0;
+
+	for (int i = 0; i < text.length(); i++) {
+
+	    final char c = text.charAt(i);
+
+	    if (c >= 0x20 && c != '"' && c != '\\') {
+		continue;
+	    }
+
+	    /*
+	     * Write the run of plain characters, then escape this one...
+	     */
+	    this.write(text, from, i);
+	    from = i + 1;
+
+	    this.write('\\');
+
+	    if (c == '"' || c == '\\') {
+		this.write(c);
+	    } else if (c == '\n') {
+		this.write('n');
+	    } else if (c == '\r') {
+		this.write('r');
+	    } else if (c == '\t') {
+		this.write('t');
+	    } else {
+		this.write('u').write('0').write('0').write(Character.forDigit(c >> 4, 16))
+			.write(Character.forDigit(c & 0xF, 16));
+	    }
+	}
+
+	return this.write(text, from, text.length()).write('"');
+    }
+
+    /**
+     * Writes a number in decimal.
+     *
+     * @param value
+     *            the number
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter writeLong(final long value) throws IOException {
+	return this.writeDecimal(value, 0);
+    }
+
+    /**
+     * Writes a number in decimal.
+     *
+     * @param value
+     *            the number
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter writeInteger(final BigInteger value) throws IOException {
+
+	if (value.bitLength() < Long.SIZE) {
+	    return this.writeDecimal(value.longValue(), 0);
+	}
+
+	return this.write(value.toString());
+    }
+
+    /**
+     * Writes a number in plain decimal notation, without an exponent, with as
+     * many decimal places as its scale.
+     *
+     * @param value
+     *            the number
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter writeDecimal(final BigDecimal value) throws IOException {
+
+	final BigInteger unscaledValue = value.unscaledValue();
+
+	if (unscaledValue.bitLength() < Long.SIZE) {
+	    return this.writeDecimal(unscaledValue.longValue(), value.scale());
+	}
+
+	return this.write(value.toPlainString());
+    }
+
+    /**
+     * Writes <code>unscaledValue</code> divided by ten to the power of
+     * <code>scale</code>.
+     */
+    private ReportWriter writeDecimal(final long unscaledValue, final int scale) throws IOException {
+
+	/*
+	 * Collect the digits of the negated value, so that Long.MIN_VALUE
+	 * needs no special case...
+	 */
+	long negated = unscaledValue > 0 ? -unscaledValue : unscaledValue;
+	int start = this.digits.length;
+
+	do {
+	    this.digits[--start] = (byte) ('0' - negated % 10);
+	    negated /= 10;
+	} while (negated != 0);
+
+	final int digitCount = this.digits.length - start;
+
+	if (unscaledValue < 0) {
+	    this.write('-');
+	}
+
+	if (scale <= 0) {
+
+	    this.writeDigits(start, digitCount);
+	    for (int i = scale; i < 0; i++) {
+		this.write('0');
+	    }
+
+	} else if (digitCount > scale) {
+
+	    this.writeDigits(start, digitCount - scale);
+	    this.write('.');
+	    this.writeDigits(start + digitCount - scale, scale);
+
+	} else {
+
+	    this.write('0').write('.');
+	    for (int i = digitCount; i < scale; i++) {
+		this.write('0');
+	    }
+	    this.writeDigits(start, digitCount);
+	}
+
+	return this;
+    }
+
+    private void writeDigits(final int from, final int count) throws IOException {
+	for (int i = from; i < from + count; i++) {
+	    this.write((char) this.digits[i]);
+	}
+    }
+
+    /**
+     * Writes a date in ISO 8601 form, <code>yyyy-MM-dd</code>, computing the
+     * fields from the epoch day without a calendar.
+     *
+     * @param epochDay
+     *            the date, or <code>EpochDays.NONE</code> to write nothing
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter writeDate(final int epochDay) throws IOException {
+
+	if (epochDay == EpochDays.NONE) {
+	    return this;
+	}
+
+	/*
+	 * Days since 0000-03-01, split into 400 year eras so that the leap
+	 * day ends each year...
+	 */
+	final long days = epochDay + 719468L;
+	final long era = (days >= 0 ? days : days - 146096) / 146097;
+	final long dayOfEra = days - era * 146097;
+	final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+	final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+	final long monthFromMarch = (5 * dayOfYear + 2) / 153;
+	final int day = (int) (dayOfYear - (153 * monthFromMarch + 2) / 5 + 1);
+	final int month = (int) (monthFromMarch < 10 ? monthFromMarch + 3 : monthFromMarch - 9);
+	final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+	if (year >= 0 && year <= 9999) {
+	    this.writePadded((int) year, 4);
+	} else {
+	    this.writeLong(year);
+	}
+
+	this.write('-');
+	this.writePadded(month, 2);
+	this.write('-');
+	return this.writePadded(day, 2);
+    }
+
+    private ReportWriter writePadded(final int value, final int width) throws IOException {
+
+	int divisor = 1;
+	for (int i = 1; i < width; i++) {
+	    divisor *= 10;
+	}
+
+	for (; divisor > 0; divisor /= 10) {
+	    this.write((char) ('0' + value / divisor % 10));
+	}
+
+	return this;
+    }
+
+    /**
+     * Writes a line break.
+     *
+     * @return this writer
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public ReportWriter newLine() throws IOException {
+	return this.write('\n');
+    }
+
+    /**
+     * Writes everything buffered to the channel.
+     *
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    @Override
+    public void flush() throws IOException {
+	this.drain();
+    }
+
+    /**
+     * Flushes the writer and closes the channel.
+     *
+     * @throws IOException
+     *             if the channel cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+	try {
+	    this.flush();
+	} finally {
+	    this.channel.close();
+	}
+    }
+
+    private void drain() throws IOException {
+
+	this.buffer.flip();
+
+	while (this.buffer.hasRemaining()) {
+	    this.channel.write(this.buffer);
+	}
+
+	this.buffer.clear();
+    }
+}
@@ -0,0 +1,128 @@
+package com.jpmorgan.report.io;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.jpmorgan.report.model.DailyTotals;
+import com.jpmorgan.report.model.EntityRanking;
+import com.jpmorgan.report.model.Instruction;
+import com.jpmorgan.report.model.NetPositions;
+import com.jpmorgan.report.model.Report;
+import com.jpmorgan.report.model.ReportPlan;
+import com.jpmorgan.report.model.ReportSection;
+
+/**
+ * Renders a <code>Report</code> as text for people to read, one value per
+ * line, with dates in ISO 8601 form.
+ */
+final class TextReportRenderer implements ReportRenderer {
+
+    @Override
+    public void render(final Report report, final ReportWriter writer) throws IOException {
+
+	final ReportPlan plan = report.getPlan();
+
+	writer.write("Total Number of Valid Received Instructions: ").writeLong(report.getValidInstructionCount())
+		.newLine();
+	writer.write("Total Number of Valid Received Incoming Instructions: ")
+		.writeLong(report.getIncomingInstructionCount()).newLine();
+	writer.write("Total Number of Valid Received Outgoing Instructions: ")
+		.writeLong(report.getOutgoingInstructionCount()).newLine();
+	writer.newLine();
+
+	if (plan.includes(ReportSection.INSTRUCTIONS)) {
+	    writer.write("Valid Incoming Instructions as follows: ").newLine().newLine();
+	    TextReportRenderer.renderInstructions(report.getIncomingInstructions(), writer);
+	    writer.write("Valid Outgoing Instructions as follows: ").newLine().newLine();
+	    TextReportRenderer.renderInstructions(report.getOutgoingInstructions(), writer);
+	}
+
+	if (plan.includes(ReportSection.INCOMING_RANKING)) {
+	    writer.write("Ranking of entities based on incoming amount:").newLine();
+	    TextReportRenderer.renderRanking(report.getIncomingEntityRankingList(), writer);
+	}
+
+	if (plan.includes(ReportSection.OUTGOING_RANKING)) {
+	    writer.write("Ranking of entities based on outgoing amount:").newLine();
+	    TextReportRenderer.renderRanking(report.getOutgoingEntityRankingList(), writer);
+	}
+
+	if (plan.includes(ReportSection.TOTALS)) {
+	    writer.write("Total amount in USD settled incoming: ")
+		    .writeDecimal(report.getTotalUSDAmountSettledIncoming()).newLine();
+	    writer.write("Total amount in USD settled outgoing: ")
+		    .writeDecimal(report.getTotalUSDAmountSettledOutgoing()).newLine();
+	    writer.newLine();
+	}
+
+	if (plan.includes(ReportSection.DAILY_TOTALS)) {
+	    writer.write("Total amount in USD settled incoming everyday").newLine();
+	    TextReportRenderer.renderDailyTotals(report.getIncomingDailyTotals(), writer);
+	    writer.newLine();
+	    writer.write("Total amount in USD settled outgoing everyday").newLine();
+	    TextReportRenderer.renderDailyTotals(report.getOutgoingDailyTotals(), writer);
+	}
+
+	if (plan.includes(ReportSection.NET_POSITIONS)) {
+	    writer.newLine();
+	    writer.write("Net amount in USD settled per entity everyday").newLine();
+	    TextReportRenderer.renderNetPositions(report.getNetPositions(), writer);
+	}
+    }
+
+    private static void renderInstructions(final List<Instruction> instructions, final ReportWriter writer)
+	    throws IOException {
+
+	for (final Instruction instruction : instructions) {
+	    writer.write(instruction.getEntity()).newLine();
+	    writer.write(String.valueOf(instruction.getBuySell())).newLine();
+	    TextReportRenderer.writeDecimal(instruction.getExchangeRate(), writer).newLine();
+	    writer.write(String.valueOf(instruction.getCurrency())).newLine();
+	    writer.writeDate(instruction.getInstructionEpochDay()).newLine();
+	    writer.writeDate(instruction.getSettlementEpochDay()).newLine();
+	    writer.writeDate(instruction.getAcutalSettlementEpochDay()).newLine();
+	    writer.writeInteger(instruction.getUnits()).newLine();
+	    TextReportRenderer.writeDecimal(instruction.getPricePerUnit(), writer).newLine();
+	    TextReportRenderer.writeDecimal(instruction.getUSDAmount(), writer).newLine();
+	    writer.newLine();
+	}
+    }
+
+    private static void renderRanking(final List<EntityRanking> entityRankingList, final ReportWriter writer)
+	    throws IOException {
+
+	for (final EntityRanking entityRanking : entityRankingList) {
+	    writer.writeLong(entityRanking.getRank()).write('\t').write(entityRanking.getEntity()).write('\t')
+		    .writeDecimal(entityRanking.getHighestUSDAmount()).newLine();
+	}
+
+	writer.newLine();
+    }
+
+    private static void renderDailyTotals(final DailyTotals dailyTotals, final ReportWriter writer)
+	    throws IOException {
+
+	for (int i = 0; i < dailyTotals.size(); i++) {
+	    writer.write("Date:\t").writeDate(dailyTotals.getEpochDay(i)).write("\t Total:\t")
+		    .writeDecimal(dailyTotals.getTotal(i)).newLine();
+	}
+    }
+
+    private static void renderNetPositions(final NetPositions netPositions, final ReportWriter writer)
+	    throws IOException {
+
+	for (int i = 0; i < netPositions.size(); i++) {
+	    writer.write(netPositions.getEntity(i)).write("\t Date:\t").writeDate(netPositions.getEpochDay(i))
+		    .write("\t Net:\t").writeDecimal(netPositions.getNetUSDAmount(i)).newLine();
+	}
+    }
+
+    /**
+     * Writes an amount, or <code>null</code> if it was not computed.
+     */
+    private static ReportWriter writeDecimal(final BigDecimal amount, final ReportWriter writer)
+	    throws IOException {
+	return amount == null ? writer.write("null") : writer.writeDecimal(amount);
+    }
+}
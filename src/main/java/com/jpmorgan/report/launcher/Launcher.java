@@ -1,23 +1,41 @@
 package com.jpmorgan.report.launcher;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Objects;
-
+import java.util.Locale;
+import java.util.StringJoiner;
+
+import com.jpmorgan.report.io.InstructionFileReader;
+import com.jpmorgan.report.io.InstructionPipeline;
+import com.jpmorgan.report.io.ReportCache;
+import com.jpmorgan.report.io.ReportFormat;
+import com.jpmorgan.report.io.ReportWriter;
 import com.jpmorgan.report.model.Instruction;
 import com.jpmorgan.report.model.Report;
+import com.jpmorgan.report.model.ReportAccumulator;
+import com.jpmorgan.report.model.ReportConfiguration;
 
 /**
- * Demos the Application using sample Data.
+ * Demos the Application using sample Data, or reports on an instruction file.
  */
 public class Launcher {
 
+    private static final String CACHE_PROPERTY = "report.cache";
+
+    private static final long CACHE_SIZE = 256L * 1024 * 1024;
+
+    private static final String FORMAT_PROPERTY = "report.format";
+
+    private static final String OUTPUT_PROPERTY = "report.output";
+
     private static Report getSampleReport() {
 
 	final List<Instruction> instructions = new ArrayList<>();
@@ -141,82 +159,108 @@ public class Launcher {
     }
 
     /**
-     * @param args
+     * Builds a Report from an instruction file without retaining the
+     * Instructions, so the file may be larger than the heap. If the
+     * <code>report.cache</code> system property names a directory, the Report
+     * is loaded from a <code>ReportCache</code> there when the file is
+     * unchanged.
+     *
+     * @param path
+     *            the instruction file
+     * @return the Report
+     * @throws IOException
+     *             if the file cannot be read
      */
-    public static void main(final String[] args) {
-
-	final Report report = Launcher.getSampleReport();
+    private static Report getFileReport(final Path path) throws IOException {
 
-	System.out.println("Total Number of Valid Received Instructions: " + report.getValidInstructions().size());
+	final String cacheDirectory = System.getProperty(Launcher.CACHE_PROPERTY);
 
-	System.out.println(
-		"Total Number of Valid Received Incoming Instructions: " + report.getIncomingInstructions().size());
-
-	System.out.println(
-		"Total Number of Valid Received Outgoing Instructions: " + report.getOutgoingInstructions().size());
-
-	System.out.print("\n");
-
-	System.out.println("Valid Incoming Instructions as follows: \n");
-	report.getIncomingInstructions().forEach(x -> {
-	    Launcher.printInstruction(x);
-	    System.out.print("\n");
-	});
-
-	System.out.println("Valid Outgoing Instructions as follows: \n");
-	report.getOutgoingInstructions().forEach(x -> {
-	    Launcher.printInstruction(x);
-	    System.out.print("\n");
-	});
+	if (cacheDirectory != null) {
+	    return new ReportCache(Paths.get(cacheDirectory), Launcher.CACHE_SIZE).getReport(path,
+		    new ReportConfiguration());
+	}
 
-	System.out.println("Ranking of entities based on incoming amount:");
-	report.getIncomingEntityRankingList().forEach(x -> {
-	    System.out.println(x.getRank() + "\t" + x.getEntity() + "\t" + x.getHighestUSDAmount());
+	final ReportAccumulator accumulator = new ReportAccumulator();
+	new InstructionFileReader().read(path, accumulator::accept);
 
-	});
+	return accumulator.toReport();
+    }
 
-	System.out.print("\n");
+    /**
+     * Reads the format named by the <code>report.format</code> system
+     * property, printing the valid formats if it names none of them.
+     *
+     * @return the format, or <code>null</code> if the property is not a valid
+     *         format
+     */
+    private static ReportFormat getFormat() {
 
-	System.out.println("Ranking of entities based on outgoing amount:");
-	report.getOutgoingEntityRankingList().forEach(x -> {
-	    System.out.println(x.getRank() + "\t" + x.getEntity() + "\t" + x.getHighestUSDAmount());
+	final String name = System.getProperty(Launcher.FORMAT_PROPERTY, ReportFormat.TEXT.name());
 
-	});
+	try {
+	    return ReportFormat.valueOf(name.toUpperCase(Locale.ROOT));
+	} catch (final IllegalArgumentException e) {
 
-	System.out.print("\n");
+	    final StringJoiner formats = new StringJoiner(", ");
+	    for (final ReportFormat format : ReportFormat.values()) {
+		formats.add(format.name().toLowerCase(Locale.ROOT));
+	    }
 
-	System.out.print("Total amount in USD settled incoming everyday\n");
-	Launcher.printTotalUSDAmountSettledPerDay(report.getMapOfTotalUSDAmountSettledIncomingPerDay());
-	System.out.print("\n");
-	System.out.print("Total amount in USD settled outgoing everyday\n");
-	Launcher.printTotalUSDAmountSettledPerDay(report.getMapOfTotalUSDAmountSettledOutgoingPerDay());
+	    System.err.println("Unknown report format \"" + name + "\". Set -D" + Launcher.FORMAT_PROPERTY
+		    + " to one of: " + formats + ".");
+	    return null;
+	}
     }
 
-    private static void printInstruction(final Instruction instruction) {
+    /**
+     * Renders the Report in the format named by the <code>report.format</code>
+     * system property, <code>text</code> by default, to the file named by the
+     * <code>report.output</code> system property, or else to standard output.
+     * An unknown format is reported with the valid ones, and exits with
+     * status 1 before any file is read.
+     *
+     * @param args
+     *            optionally the paths of comma delimited instruction files,
+     *            which are read at once through an
+     *            <code>InstructionPipeline</code> when there are several,
+     *            otherwise the sample Data is used
+     * @throws IOException
+     *             if an instruction file cannot be read or the Report cannot
+     *             be written
+     */
+    public static void main(final String[] args) throws IOException {
 
-	Objects.requireNonNull(instruction);
+	final ReportFormat format = Launcher.getFormat();
 
-	System.out.println(instruction.getEntity());
-	System.out.println(instruction.getBuySell());
-	System.out.println(instruction.getExchangeRate());
-	System.out.println(instruction.getCurrency());
-	System.out.println(instruction.getInstructionDate());
-	System.out.println(instruction.getSettlementDate());
-	System.out.println(instruction.getAcutalSettlementDate());
-	System.out.println(instruction.getUnits());
-	System.out.println(instruction.getPricePerUnit());
-	System.out.println(instruction.getUSDAmount());
-    }
+	if (format == null) {
+	    System.exit(1);
+	    return;
+	}
 
-    private static void printTotalUSDAmountSettledPerDay(final Map<Date, BigDecimal> settlementTotalPerDayMap) {
+	final Report report;
 
-	Objects.requireNonNull(settlementTotalPerDayMap);
-	final Iterator<Entry<Date, BigDecimal>> it = settlementTotalPerDayMap.entrySet().iterator();
+	if (args.length > 1) {
+	    final List<Path> paths = new ArrayList<>();
+	    for (final String arg : args) {
+		paths.add(Paths.get(arg));
+	    }
+	    report = new InstructionPipeline(new ReportConfiguration()).build(paths);
+	} else {
+	    report = args.length > 0 ? Launcher.getFileReport(Paths.get(args[0])) : Launcher.getSampleReport();
+	}
+
+	final String output = System.getProperty(Launcher.OUTPUT_PROPERTY);
 
-	while (it.hasNext()) {
-	    final Entry<Date, BigDecimal> pair = it.next();
-	    System.out.println("Date:\t" + pair.getKey() + "\t Total:\t" + pair.getValue());
+	if (output != null) {
+	    format.render(report, Paths.get(output));
+	    return;
 	}
-    }
 
+	/*
+	 * Standard output is flushed but left open...
+	 */
+	final ReportWriter writer = new ReportWriter(Channels.newChannel(new FileOutputStream(FileDescriptor.out)));
+	format.render(report, writer);
+	writer.flush();
+    }
 }
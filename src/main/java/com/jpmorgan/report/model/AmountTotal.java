@@ -0,0 +1,81 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A running total of USD amounts.
+ * <p>
+ * Amounts may be added as <code>BigDecimals</code> or, in fixed point mode,
+ * as <code>longs</code> at the fixed point scale. Fixed point amounts are
+ * summed as a <code>long</code> until the sum would overflow, when it is
+ * moved into the <code>BigDecimal</code> part. The total is exactly the
+ * <code>BigDecimal</code> sum of the amounts, including its scale.
+ */
+final class AmountTotal {
+
+    private final int fixedPointScale;
+
+    private long fixedPointSum;
+
+    /**
+     * The largest scale of the amounts added, which is the scale of the
+     * total.
+     */
+    private int scale;
+
+    private BigDecimal sum = new BigDecimal("0");
+
+    /**
+     * @param fixedPointScale
+     *            the scale of fixed point amounts, or
+     *            <code>ReportConfiguration.NO_FIXED_POINT</code>
+     */
+    AmountTotal(final int fixedPointScale) {
+	this.fixedPointScale = fixedPointScale;
+    }
+
+    void add(final BigDecimal amount) {
+	this.sum = this.sum.add(amount);
+	this.scale = Math.max(this.scale, amount.scale());
+    }
+
+    /**
+     * @param fixedPointAmount
+     *            the amount at the fixed point scale
+     * @param amountScale
+     *            the scale the amount would have as a <code>BigDecimal</code>
+     */
+    void add(final long fixedPointAmount, final int amountScale) {
+
+	final long result = this.fixedPointSum + fixedPointAmount;
+
+	if (((this.fixedPointSum ^ result) & (fixedPointAmount ^ result)) < 0) {
+	    this.sum = this.sum.add(BigDecimal.valueOf(this.fixedPointSum, this.fixedPointScale));
+	    this.fixedPointSum = fixedPointAmount;
+	} else {
+	    this.fixedPointSum = result;
+	}
+
+	this.scale = Math.max(this.scale, amountScale);
+    }
+
+    void merge(final AmountTotal other) {
+	this.sum = this.sum.add(other.sum);
+	this.add(other.fixedPointSum, other.scale);
+    }
+
+    BigDecimal toBigDecimal() {
+
+	if (this.fixedPointScale == ReportConfiguration.NO_FIXED_POINT) {
+	    return this.sum;
+	}
+
+	/*
+	 * Sums moved out of the long are at the fixed point scale, but every
+	 * amount had at most the tracked scale, so the total is exact at it...
+	 */
+	return this.sum.add(BigDecimal.valueOf(this.fixedPointSum, this.fixedPointScale)).setScale(this.scale,
+		RoundingMode.UNNECESSARY);
+    }
+}
@@ -0,0 +1,196 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+import com.jpmorgan.report.date.EpochDays;
+
+/**
+ * The total amount in USD settled on each day of one direction, held in
+ * settlement date order.
+ * <p>
+ * The days are a sorted <code>int</code> array of epoch days, with the totals
+ * alongside and their prefix sums, so a range query takes two binary searches
+ * and one subtraction, O(log n), however many days the range covers. A range
+ * total is equal in value to the sum of the daily totals it covers, but its
+ * scale may be larger. Instances are immutable.
+ */
+public final class DailyTotals {
+
+    private final int[] epochDays;
+
+    /**
+     * <code>prefixSums[i]</code> is the sum of the first <code>i</code>
+     * totals.
+     */
+    private final BigDecimal[] prefixSums;
+
+    private final BigDecimal[] totals;
+
+    private DailyTotals(final int[] epochDays, final BigDecimal[] totals) {
+
+	this.epochDays = epochDays;
+	this.totals = totals;
+	this.prefixSums = new BigDecimal[totals.length + 1];
+	this.prefixSums[0] = BigDecimal.ZERO;
+
+	for (int i = 0; i < totals.length; i++) {
+	    this.prefixSums[i + 1] = this.prefixSums[i].add(totals[i]);
+	}
+    }
+
+    /**
+     * @param totalsPerDay
+     *            <code>Map</code> where the key is the Actual Date of
+     *            settlement and the value is the total amount settled that day
+     * @return the totals in date order
+     */
+    static DailyTotals of(final Map<Date, BigDecimal> totalsPerDay) {
+
+	final long[] order = new long[totalsPerDay.size()];
+	final BigDecimal[] values = new BigDecimal[totalsPerDay.size()];
+
+	/*
+	 * Sort the epoch days with the index of their total in the low bits...
+	 */
+	int i = 0;
+	for (final Map.Entry<Date, BigDecimal> entry : totalsPerDay.entrySet()) {
+	    order[i] = (long) EpochDays.toEpochDay(entry.getKey()) << 32 | i;
+	    values[i] = entry.getValue();
+	    i++;
+	}
+	Arrays.sort(order);
+
+	final int[] epochDays = new int[order.length];
+	final BigDecimal[] totals = new BigDecimal[order.length];
+
+	for (int j = 0; j < order.length; j++) {
+	    epochDays[j] = (int) (order[j] >> 32);
+	    totals[j] = values[(int) order[j]];
+	}
+
+	return new DailyTotals(epochDays, totals);
+    }
+
+    /**
+     * Calls an action for each day with a total, in date order.
+     *
+     * @param action
+     *            receives the Actual Date of settlement and its total
+     */
+    public void forEach(final BiConsumer<LocalDate, BigDecimal> action) {
+
+	Objects.requireNonNull(action);
+
+	for (int i = 0; i < this.epochDays.length; i++) {
+	    action.accept(LocalDate.ofEpochDay(this.epochDays[i]), this.totals[i]);
+	}
+    }
+
+    /**
+     * @param index
+     *            from 0 to <code>size() - 1</code>
+     * @return the epoch day of the <code>index</code>th day with a total, in
+     *         date order
+     */
+    public int getEpochDay(final int index) {
+	return this.epochDays[index];
+    }
+
+    /**
+     * @return the first day with a total, or <code>null</code> if there is
+     *         none
+     */
+    public LocalDate getFirstDay() {
+	return this.epochDays.length == 0 ? null : LocalDate.ofEpochDay(this.epochDays[0]);
+    }
+
+    /**
+     * @return the last day with a total, or <code>null</code> if there is
+     *         none
+     */
+    public LocalDate getLastDay() {
+	return this.epochDays.length == 0 ? null
+		: LocalDate.ofEpochDay(this.epochDays[this.epochDays.length - 1]);
+    }
+
+    /**
+     * @param index
+     *            from 0 to <code>size() - 1</code>
+     * @return the total of the <code>index</code>th day with a total, in date
+     *         order
+     */
+    public BigDecimal getTotal(final int index) {
+	return this.totals[index];
+    }
+
+    /**
+     * Gets the total settled between two days.
+     *
+     * @param from
+     *            the first day, inclusive
+     * @param to
+     *            the last day, inclusive
+     * @return the total, which is zero if no day in the range has a total
+     */
+    public BigDecimal getTotalBetween(final LocalDate from, final LocalDate to) {
+	return this.getTotalBetween(Math.toIntExact(from.toEpochDay()), Math.toIntExact(to.toEpochDay()));
+    }
+
+    /**
+     * Gets the total settled between two epoch days.
+     *
+     * @param fromEpochDay
+     *            the first day, inclusive
+     * @param toEpochDay
+     *            the last day, inclusive
+     * @return the total, which is zero if no day in the range has a total
+     */
+    public BigDecimal getTotalBetween(final int fromEpochDay, final int toEpochDay) {
+
+	if (fromEpochDay > toEpochDay) {
+	    return BigDecimal.ZERO;
+	}
+
+	final int from = this.indexOf(fromEpochDay);
+	final int to = toEpochDay == Integer.MAX_VALUE ? this.epochDays.length : this.indexOf(toEpochDay + 1);
+
+	return this.prefixSums[to].subtract(this.prefixSums[from]);
+    }
+
+    /**
+     * Gets the total settled on a day.
+     *
+     * @param day
+     *            the day
+     * @return the total, or <code>null</code> if nothing settled that day
+     */
+    public BigDecimal getTotalOn(final LocalDate day) {
+
+	final int index = Arrays.binarySearch(this.epochDays, Math.toIntExact(day.toEpochDay()));
+
+	return index < 0 ? null : this.totals[index];
+    }
+
+    /**
+     * @return the number of days with a total
+     */
+    public int size() {
+	return this.epochDays.length;
+    }
+
+    /**
+     * @return the index of the first day on or after <code>epochDay</code>
+     */
+    private int indexOf(final int epochDay) {
+
+	final int index = Arrays.binarySearch(this.epochDays, epochDay);
+
+	return index < 0 ? -index - 1 : index;
+    }
+}
@@ -0,0 +1,68 @@
+package com.jpmorgan.report.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Assigns each distinct entity a dense <code>int</code> id, in the order the
+ * entities are first seen, so that columns and aggregates can refer to
+ * entities by id instead of by <code>String</code>.
+ * <p>
+ * A dictionary is not thread-safe.
+ */
+public class EntityDictionary {
+
+    /**
+     * Map where the key is the entity and the value is its id.
+     */
+    private final Map<String, Integer> idsByEntity = new HashMap<>();
+
+    /**
+     * The entities, indexed by id.
+     */
+    private final List<String> entities = new ArrayList<>();
+
+    /**
+     * Returns the id of an entity, assigning the next id if the entity has
+     * not been seen before.
+     *
+     * @param entity
+     *            the entity
+     * @return the id of the entity
+     */
+    public int getId(final String entity) {
+
+	Objects.requireNonNull(entity);
+
+	final Integer id = this.idsByEntity.get(entity);
+
+	if (id != null) {
+	    return id;
+	}
+
+	final int newId = this.entities.size();
+	this.entities.add(entity);
+	this.idsByEntity.put(entity, newId);
+
+	return newId;
+    }
+
+    /**
+     * @param id
+     *            the id of an entity
+     * @return the entity
+     */
+    public String getEntity(final int id) {
+	return this.entities.get(id);
+    }
+
+    /**
+     * @return the number of distinct entities
+     */
+    public int size() {
+	return this.entities.size();
+    }
+}
@@ -0,0 +1,476 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+
+/**
+ * Builds an <code>EntityRanking List</code> in a single pass over the
+ * <code>Instructions</code>, keeping only the highest USD amount seen so far
+ * for each entity.
+ * <p>
+ * When constructed with a limit, only the <code>limit</code> largest entities
+ * are ranked. They are selected with a bounded heap, so the remaining entities
+ * are never sorted.
+ * <p>
+ * Entities are keyed by their id in an <code>EntityDictionary</code>, so each
+ * amount costs an array lookup rather than hashing the entity name, and names
+ * are only needed for the ranked entities. An aggregator may share the
+ * dictionary of the ids it is given.
+ */
+public class EntityRankingAggregator {
+
+    /**
+     * Ranking order: highest USD amount first, ties broken by entity name so
+     * that the ranking is deterministic.
+     */
+    public static final Comparator<EntityRanking> RANKING_ORDER = Comparator
+	    .comparing(EntityRanking::getHighestUSDAmount, Comparator.reverseOrder())
+	    .thenComparing(EntityRanking::getEntity);
+
+    /**
+     * Value used for the limit when every entity should be ranked.
+     */
+    public static final int UNBOUNDED = 0;
+
+    private int entityCount;
+
+    private final EntityDictionary entityDictionary;
+
+    /**
+     * Scale of fixed point amounts, or
+     * <code>ReportConfiguration.NO_FIXED_POINT</code>.
+     */
+    private final int fixedPointScale;
+
+    /**
+     * The highest USD amount seen for each entity, indexed by entity id, with
+     * <code>null</code> for the entities of the dictionary not seen here.
+     */
+    private HighestUSDAmount[] highestUSDAmounts = new HighestUSDAmount[16];
+
+    /**
+     * Maximum number of entities to rank, or <code>UNBOUNDED</code>.
+     */
+    private final int limit;
+
+    /**
+     * Every entity in ranking order, or <code>null</code> unless the order is
+     * kept as amounts arrive.
+     */
+    private TreeSet<EntityRanking> rankingOrder;
+
+    /**
+     * Constructs an aggregator that ranks every entity.
+     */
+    public EntityRankingAggregator() {
+	this(EntityRankingAggregator.UNBOUNDED);
+    }
+
+    /**
+     * Constructs an aggregator that ranks at most <code>limit</code> entities.
+     *
+     * @param limit
+     *            the maximum number of entities to rank, or
+     *            <code>UNBOUNDED</code> to rank every entity
+     */
+    public EntityRankingAggregator(final int limit) {
+	this(limit, ReportConfiguration.NO_FIXED_POINT);
+    }
+
+    /**
+     * Constructs an aggregator that ranks at most <code>limit</code> entities
+     * and accepts fixed point amounts.
+     *
+     * @param limit
+     *            the maximum number of entities to rank, or
+     *            <code>UNBOUNDED</code> to rank every entity
+     * @param fixedPointScale
+     *            the scale of fixed point amounts, or
+     *            <code>ReportConfiguration.NO_FIXED_POINT</code>
+     */
+    public EntityRankingAggregator(final int limit, final int fixedPointScale) {
+	this(limit, fixedPointScale, new EntityDictionary());
+    }
+
+    /**
+     * Constructs an aggregator whose entity ids are those of a dictionary.
+     *
+     * @param limit
+     *            the maximum number of entities to rank, or
+     *            <code>UNBOUNDED</code> to rank every entity
+     * @param fixedPointScale
+     *            the scale of fixed point amounts, or
+     *            <code>ReportConfiguration.NO_FIXED_POINT</code>
+     * @param entityDictionary
+     *            the dictionary that assigns entity ids
+     */
+    EntityRankingAggregator(final int limit, final int fixedPointScale, final EntityDictionary entityDictionary) {
+
+	if (limit < 0) {
+	    throw new IllegalArgumentException("limit must not be negative: " + limit);
+	}
+
+	this.limit = limit;
+	this.fixedPointScale = fixedPointScale;
+	this.entityDictionary = Objects.requireNonNull(entityDictionary);
+    }
+
+    /**
+     * Records the USD amount of a processed <code>Instruction</code> against
+     * its entity.
+     *
+     * @param instruction
+     *            an <code>Instruction</code> whose USD amount has been set
+     */
+    public void accept(final Instruction instruction) {
+
+	Objects.requireNonNull(instruction);
+
+	this.accept(instruction.getEntity(), instruction.getUSDAmount());
+    }
+
+    /**
+     * Records a USD amount against an entity. The first amount wins when two
+     * amounts compare as equal.
+     *
+     * @param entity
+     *            the entity
+     * @param usdAmount
+     *            the USD amount
+     */
+    public void accept(final String entity, final BigDecimal usdAmount) {
+
+	Objects.requireNonNull(entity);
+	Objects.requireNonNull(usdAmount);
+
+	this.accept(this.entityDictionary.getId(entity), usdAmount);
+    }
+
+    /**
+     * Records a USD amount against the entity with an id in the dictionary
+     * of this aggregator.
+     *
+     * @param entityId
+     *            the id of the entity
+     * @param usdAmount
+     *            the USD amount
+     */
+    void accept(final int entityId, final BigDecimal usdAmount) {
+
+	final HighestUSDAmount highestUSDAmount = this.get(entityId);
+
+	if (highestUSDAmount == null) {
+	    this.reorder(entityId, this.put(entityId, new HighestUSDAmount(usdAmount)));
+	} else if (usdAmount.compareTo(highestUSDAmount.toBigDecimal(this.fixedPointScale)) > 0) {
+	    highestUSDAmount.set(usdAmount);
+	    this.reorder(entityId, highestUSDAmount);
+	}
+    }
+
+    /**
+     * Records a fixed point USD amount against an entity. The first amount
+     * wins when two amounts compare as equal.
+     *
+     * @param entity
+     *            the entity
+     * @param fixedPointAmount
+     *            the USD amount at the fixed point scale
+     * @param amountScale
+     *            the scale the amount would have as a <code>BigDecimal</code>
+     */
+    void accept(final String entity, final long fixedPointAmount, final int amountScale) {
+	this.accept(this.entityDictionary.getId(entity), fixedPointAmount, amountScale);
+    }
+
+    /**
+     * Records a fixed point USD amount against the entity with an id in the
+     * dictionary of this aggregator.
+     *
+     * @param entityId
+     *            the id of the entity
+     * @param fixedPointAmount
+     *            the USD amount at the fixed point scale
+     * @param amountScale
+     *            the scale the amount would have as a <code>BigDecimal</code>
+     */
+    void accept(final int entityId, final long fixedPointAmount, final int amountScale) {
+
+	final HighestUSDAmount highestUSDAmount = this.get(entityId);
+
+	if (highestUSDAmount == null) {
+	    this.reorder(entityId, this.put(entityId, new HighestUSDAmount(fixedPointAmount, amountScale)));
+	} else if (highestUSDAmount.amount == null) {
+	    if (fixedPointAmount > highestUSDAmount.fixedPointAmount) {
+		highestUSDAmount.set(fixedPointAmount, amountScale);
+		this.reorder(entityId, highestUSDAmount);
+	    }
+	} else if (FixedPointAmounts.toBigDecimal(fixedPointAmount, this.fixedPointScale, amountScale)
+		.compareTo(highestUSDAmount.amount) > 0) {
+	    highestUSDAmount.set(fixedPointAmount, amountScale);
+	    this.reorder(entityId, highestUSDAmount);
+	}
+    }
+
+    /**
+     * Keeps every entity in ranking order as amounts arrive, so that
+     * <code>getEntityRankingList</code> only visits the ranked entities
+     * instead of every entity seen. Each change to an entity's highest amount
+     * then costs O(log n).
+     */
+    void enableRankingOrder() {
+
+	if (this.rankingOrder == null) {
+	    this.rankingOrder = new TreeSet<>(EntityRankingAggregator.RANKING_ORDER);
+
+	    for (int entityId = 0; entityId < this.highestUSDAmounts.length; entityId++) {
+		if (this.highestUSDAmounts[entityId] != null) {
+		    this.reorder(entityId, this.highestUSDAmounts[entityId]);
+		}
+	    }
+	}
+    }
+
+    /**
+     * @return the highest USD amount of an entity, or <code>null</code> if
+     *         none has been seen
+     */
+    private HighestUSDAmount get(final int entityId) {
+	return entityId < this.highestUSDAmounts.length ? this.highestUSDAmounts[entityId] : null;
+    }
+
+    private HighestUSDAmount put(final int entityId, final HighestUSDAmount highestUSDAmount) {
+
+	if (entityId >= this.highestUSDAmounts.length) {
+	    this.highestUSDAmounts = Arrays.copyOf(this.highestUSDAmounts,
+		    Math.max(entityId + 1, this.highestUSDAmounts.length * 2));
+	}
+
+	this.highestUSDAmounts[entityId] = highestUSDAmount;
+	this.entityCount++;
+
+	return highestUSDAmount;
+    }
+
+    private void reorder(final int entityId, final HighestUSDAmount highestUSDAmount) {
+
+	if (this.rankingOrder == null) {
+	    return;
+	}
+
+	if (highestUSDAmount.ranking != null) {
+	    this.rankingOrder.remove(highestUSDAmount.ranking);
+	}
+
+	highestUSDAmount.ranking = this.newEntityRanking(this.entityDictionary.getEntity(entityId),
+		highestUSDAmount.toBigDecimal(this.fixedPointScale));
+	this.rankingOrder.add(highestUSDAmount.ranking);
+    }
+
+    /**
+     * Adds the highest USD amounts of another aggregator to this one, as if
+     * its amounts had been accepted after the amounts of this one.
+     *
+     * @param other
+     *            the aggregator to merge into this one
+     */
+    public void merge(final EntityRankingAggregator other) {
+
+	Objects.requireNonNull(other);
+
+	final boolean sharedDictionary = other.entityDictionary == this.entityDictionary;
+
+	for (int otherId = 0; otherId < other.highestUSDAmounts.length; otherId++) {
+
+	    final HighestUSDAmount highestUSDAmount = other.highestUSDAmounts[otherId];
+
+	    if (highestUSDAmount == null) {
+		continue;
+	    }
+
+	    /*
+	     * Ids of another dictionary are translated by name, once per
+	     * entity...
+	     */
+	    final int entityId = sharedDictionary ? otherId
+		    : this.entityDictionary.getId(other.entityDictionary.getEntity(otherId));
+
+	    if (highestUSDAmount.amount == null) {
+		this.accept(entityId, highestUSDAmount.fixedPointAmount, highestUSDAmount.scale);
+	    } else {
+		this.accept(entityId, highestUSDAmount.amount);
+	    }
+	}
+    }
+
+    /**
+     * Generates the <code>EntityRanking List</code>, ordered by rank.
+     *
+     * @return the <code>EntityRanking List</code>
+     */
+    public List<EntityRanking> getEntityRankingList() {
+
+	final List<EntityRanking> entityRankingList;
+
+	if (this.rankingOrder != null) {
+
+	    /*
+	     * The entries of the ordered set are only ever compared, so each
+	     * list gets its own copies to rank...
+	     */
+	    final int size = this.limit == EntityRankingAggregator.UNBOUNDED ? this.rankingOrder.size()
+		    : Math.min(this.limit, this.rankingOrder.size());
+	    entityRankingList = new ArrayList<>(size);
+
+	    for (final EntityRanking ordered : this.rankingOrder) {
+
+		if (entityRankingList.size() == size) {
+		    break;
+		}
+
+		entityRankingList.add(this.newEntityRanking(ordered.getEntity(), ordered.getHighestUSDAmount()));
+	    }
+
+	} else if (this.limit == EntityRankingAggregator.UNBOUNDED || this.limit >= this.entityCount) {
+
+	    entityRankingList = new ArrayList<>(this.entityCount);
+
+	    for (int entityId = 0; entityId < this.highestUSDAmounts.length; entityId++) {
+		if (this.highestUSDAmounts[entityId] != null) {
+		    entityRankingList.add(this.newEntityRanking(this.entityDictionary.getEntity(entityId),
+			    this.highestUSDAmounts[entityId].toBigDecimal(this.fixedPointScale)));
+		}
+	    }
+	    entityRankingList.sort(EntityRankingAggregator.RANKING_ORDER);
+
+	} else {
+
+	    /*
+	     * Keep the current top K in a min-heap whose head is the weakest
+	     * ranked entity, so every other entity costs a single comparison.
+	     */
+	    final PriorityQueue<EntityRanking> heap = new PriorityQueue<>(this.limit + 1,
+		    EntityRankingAggregator.RANKING_ORDER.reversed());
+
+	    for (int entityId = 0; entityId < this.highestUSDAmounts.length; entityId++) {
+
+		final HighestUSDAmount highestUSDAmount = this.highestUSDAmounts[entityId];
+
+		if (highestUSDAmount == null) {
+		    continue;
+		}
+
+		final BigDecimal amount = highestUSDAmount.toBigDecimal(this.fixedPointScale);
+
+		if (heap.size() < this.limit) {
+		    heap.add(this.newEntityRanking(this.entityDictionary.getEntity(entityId), amount));
+		    continue;
+		}
+
+		/*
+		 * The name is only looked up to break a tie, or for an entity
+		 * that enters the heap...
+		 */
+		final EntityRanking weakest = heap.peek();
+		final int comparison = amount.compareTo(weakest.getHighestUSDAmount());
+
+		if (comparison > 0 || comparison == 0
+			&& this.entityDictionary.getEntity(entityId).compareTo(weakest.getEntity()) < 0) {
+		    heap.poll();
+		    heap.add(this.newEntityRanking(this.entityDictionary.getEntity(entityId), amount));
+		}
+	    }
+
+	    entityRankingList = new ArrayList<>(heap);
+	    entityRankingList.sort(EntityRankingAggregator.RANKING_ORDER);
+	}
+
+	int rank = 1;
+
+	for (final EntityRanking entityRanking : entityRankingList) {
+	    entityRanking.setRank(rank);
+	    rank++;
+	}
+
+	return Collections.unmodifiableList(entityRankingList);
+    }
+
+    /**
+     * @return the number of distinct entities seen so far
+     */
+    public int getEntityCount() {
+	return this.entityCount;
+    }
+
+    /**
+     * @return the maximum number of entities to rank, or
+     *         <code>UNBOUNDED</code>
+     */
+    public int getLimit() {
+	return this.limit;
+    }
+
+    private EntityRanking newEntityRanking(final String entity, final BigDecimal highestUSDAmount) {
+
+	final EntityRanking entityRanking = new EntityRanking();
+	entityRanking.setEntity(entity);
+	entityRanking.setHighestUSDAmount(highestUSDAmount);
+
+	return entityRanking;
+    }
+
+    /**
+     * The highest USD amount of an entity, held either as a
+     * <code>BigDecimal</code> or as a fixed point amount.
+     */
+    private static final class HighestUSDAmount {
+
+	/**
+	 * The amount, or <code>null</code> if it is held as a fixed point
+	 * amount.
+	 */
+	private BigDecimal amount;
+
+	private long fixedPointAmount;
+
+	/**
+	 * The entry of the entity in the ranking order, if it is kept.
+	 */
+	private EntityRanking ranking;
+
+	private int scale;
+
+	HighestUSDAmount(final BigDecimal amount) {
+	    this.set(amount);
+	}
+
+	HighestUSDAmount(final long fixedPointAmount, final int scale) {
+	    this.set(fixedPointAmount, scale);
+	}
+
+	void set(final BigDecimal amount) {
+	    this.amount = amount;
+	}
+
+	void set(final long fixedPointAmount, final int scale) {
+	    this.amount = null;
+	    this.fixedPointAmount = fixedPointAmount;
+	    this.scale = scale;
+	}
+
+	BigDecimal toBigDecimal(final int fixedPointScale) {
+
+	    if (this.amount == null) {
+		this.amount = FixedPointAmounts.toBigDecimal(this.fixedPointAmount, fixedPointScale, this.scale);
+	    }
+
+	    return this.amount;
+	}
+    }
+}
@@ -0,0 +1,161 @@
+package com.jpmorgan.report.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Resolves <code>Strings</code> to the <code>Enum</code> constants of one
+ * type, ignoring case and surrounding white space, without allocating or
+ * throwing.
+ * <p>
+ * Codes of up to three ASCII letters, such as <code>B</code> or
+ * <code>SGP</code>, are resolved with a single read of a table indexed by the
+ * letters. Longer codes fall back to a <code>Map</code>.
+ */
+final class EnumCodes<T extends Enum<T>> {
+
+    private static final ClassValue<EnumCodes<?>> CODES = new ClassValue<EnumCodes<?>>() {
+
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected EnumCodes<?> computeValue(final Class<?> type) {
+	    return new EnumCodes(type);
+	}
+    };
+
+    /**
+     * The longest code resolved through the table.
+     */
+    private static final int MAX_TABLE_LENGTH = 3;
+
+    /**
+     * The number of values of a letter in a table index, where 0 stands for
+     * no letter.
+     */
+    private static final int RADIX = 27;
+
+    /**
+     * Constants by name, for codes that cannot be resolved through the table.
+     */
+    private final Map<String, T> constantsByName = new HashMap<>();
+
+    /**
+     * <code>true</code> if every constant can be resolved through the table.
+     */
+    private boolean tableComplete = true;
+
+    /**
+     * Constants indexed by the letters of their names.
+     */
+    private final Object[] table = new Object[EnumCodes.RADIX * EnumCodes.RADIX * EnumCodes.RADIX];
+
+    private EnumCodes(final Class<T> type) {
+
+	for (final T constant : type.getEnumConstants()) {
+
+	    final String name = constant.name();
+	    this.constantsByName.put(name, constant);
+
+	    if (name.equals(name.toUpperCase(Locale.ROOT))) {
+		final int index = EnumCodes.index(name, 0, name.length());
+		if (index >= 0) {
+		    this.table[index] = constant;
+		    continue;
+		}
+	    }
+
+	    this.tableComplete = false;
+	}
+    }
+
+    /**
+     * @param type
+     *            the <code>Enum</code> type
+     * @return the codes of the type, created once per type
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Enum<T>> EnumCodes<T> of(final Class<T> type) {
+	return (EnumCodes<T>) EnumCodes.CODES.get(type);
+    }
+
+    /**
+     * Resolves a code.
+     *
+     * @param code
+     *            the code, case insensitive
+     * @return the matching constant, or <code>null</code> if there is none
+     */
+    @SuppressWarnings("unchecked")
+    T get(final String code) {
+
+	if (code == null) {
+	    return null;
+	}
+
+	int start = 0;
+	int end = code.length();
+
+	/*
+	 * Trim in the same way as String.trim()...
+	 */
+	while (start < end && code.charAt(start) <= ' ') {
+	    start++;
+	}
+	while (end > start && code.charAt(end - 1) <= ' ') {
+	    end--;
+	}
+
+	final int index = EnumCodes.index(code, start, end);
+
+	if (index >= 0) {
+	    return (T) this.table[index];
+	}
+
+	if (this.tableComplete && end - start <= EnumCodes.MAX_TABLE_LENGTH && EnumCodes.isAscii(code, start, end)) {
+	    /*
+	     * A short ASCII code that is not in the table cannot match...
+	     */
+	    return null;
+	}
+
+	return this.constantsByName.get(code.substring(start, end).toUpperCase());
+    }
+
+    /**
+     * @return the table index of a code, or -1 if it is empty, too long or
+     *         not all ASCII letters
+     */
+    private static int index(final String code, final int start, final int end) {
+
+	if (end == start || end - start > EnumCodes.MAX_TABLE_LENGTH) {
+	    return -1;
+	}
+
+	int index = 0;
+
+	for (int i = start; i < end; i++) {
+
+	    final int letter = (code.charAt(i) | 0x20) - 'a';
+
+	    if (letter < 0 || letter >= 26) {
+		return -1;
+	    }
+
+	    index = index * EnumCodes.RADIX + letter + 1;
+	}
+
+	return index;
+    }
+
+    private static boolean isAscii(final String code, final int start, final int end) {
+
+	for (int i = start; i < end; i++) {
+	    if (code.charAt(i) > 0x7F) {
+		return false;
+	    }
+	}
+
+	return true;
+    }
+}
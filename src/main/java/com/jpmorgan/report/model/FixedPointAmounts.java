@@ -0,0 +1,185 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic on USD amounts held as <code>long</code> values scaled by a fixed
+ * number of decimal places, for example 12.5 at a scale of 4 is 125000.
+ * <p>
+ * Any amount that cannot be held exactly at the scale (because it has more
+ * decimal places, or does not fit in a <code>long</code>) gives
+ * <code>OVERFLOW</code>, and the caller falls back to
+ * <code>BigDecimal</code> for that amount.
+ */
+final class FixedPointAmounts {
+
+    /**
+     * The largest supported scale.
+     */
+    static final int MAX_SCALE = 18;
+
+    /**
+     * Stands for an amount that cannot be held at the scale.
+     */
+    static final long OVERFLOW = Long.MIN_VALUE;
+
+    private static final long[] POWERS_OF_TEN = new long[FixedPointAmounts.MAX_SCALE + 1];
+
+    static {
+	FixedPointAmounts.POWERS_OF_TEN[0] = 1;
+	for (int i = 1; i < FixedPointAmounts.POWERS_OF_TEN.length; i++) {
+	    FixedPointAmounts.POWERS_OF_TEN[i] = FixedPointAmounts.POWERS_OF_TEN[i - 1] * 10;
+	}
+    }
+
+    private FixedPointAmounts() {
+    }
+
+    /**
+     * Rescales an unscaled value.
+     *
+     * @param unscaled
+     *            the unscaled value
+     * @param scale
+     *            the scale of the unscaled value
+     * @param fixedPointScale
+     *            the scale to convert to
+     * @return the value at <code>fixedPointScale</code>, or
+     *         <code>OVERFLOW</code>
+     */
+    static long rescale(final long unscaled, final int scale, final int fixedPointScale) {
+
+	final int shift = fixedPointScale - scale;
+
+	if (unscaled == FixedPointAmounts.OVERFLOW || shift < 0 || shift > FixedPointAmounts.MAX_SCALE) {
+	    return FixedPointAmounts.OVERFLOW;
+	}
+
+	final long power = FixedPointAmounts.POWERS_OF_TEN[shift];
+	final long rescaled = unscaled * power;
+
+	if (Math.abs(unscaled) > Long.MAX_VALUE / power || rescaled == FixedPointAmounts.OVERFLOW) {
+	    return FixedPointAmounts.OVERFLOW;
+	}
+
+	return rescaled;
+    }
+
+    /**
+     * Converts a fixed point amount back to the <code>BigDecimal</code> the
+     * <code>BigDecimal</code> arithmetic would have produced.
+     *
+     * @param fixedPointAmount
+     *            the amount at <code>fixedPointScale</code>
+     * @param fixedPointScale
+     *            the scale of the amount
+     * @param scale
+     *            the scale of the <code>BigDecimal</code> result, no greater
+     *            than <code>fixedPointScale</code>
+     * @return the amount
+     */
+    static BigDecimal toBigDecimal(final long fixedPointAmount, final int fixedPointScale, final int scale) {
+	return BigDecimal.valueOf(fixedPointAmount, fixedPointScale).setScale(scale, RoundingMode.UNNECESSARY);
+    }
+
+    /**
+     * The unscaled value of a <code>BigDecimal</code>, if it fits in a
+     * <code>long</code>.
+     *
+     * @param value
+     *            the value
+     * @return the unscaled value, or <code>OVERFLOW</code>
+     */
+    static long unscaled(final BigDecimal value) {
+
+	if (value.precision() > FixedPointAmounts.MAX_SCALE) {
+	    return FixedPointAmounts.OVERFLOW;
+	}
+
+	return value.scale() == 0 ? value.longValue() : value.scaleByPowerOfTen(value.scale()).longValue();
+    }
+
+    /**
+     * Computes price per unit &times; units &times; exchange rate at a fixed
+     * scale.
+     *
+     * @param pricePerUnit
+     *            the price per unit
+     * @param units
+     *            the number of units
+     * @param exchangeRate
+     *            the exchange rate
+     * @param fixedPointScale
+     *            the scale of the result
+     * @return the USD amount at <code>fixedPointScale</code>, or
+     *         <code>OVERFLOW</code>
+     */
+    static long usdAmount(final BigDecimal pricePerUnit, final BigInteger units, final BigDecimal exchangeRate,
+	    final int fixedPointScale) {
+
+	if (units.bitLength() > 62) {
+	    return FixedPointAmounts.OVERFLOW;
+	}
+
+	return FixedPointAmounts.usdAmount(FixedPointAmounts.unscaled(pricePerUnit), pricePerUnit.scale(),
+		units.longValue(), FixedPointAmounts.unscaled(exchangeRate), exchangeRate.scale(), fixedPointScale);
+    }
+
+    /**
+     * Computes price per unit &times; units &times; exchange rate at a fixed
+     * scale from unscaled values.
+     *
+     * @param pricePerUnit
+     *            the unscaled price per unit, or <code>OVERFLOW</code>
+     * @param pricePerUnitScale
+     *            the scale of the price per unit
+     * @param units
+     *            the number of units, or <code>OVERFLOW</code>
+     * @param exchangeRate
+     *            the unscaled exchange rate, or <code>OVERFLOW</code>
+     * @param exchangeRateScale
+     *            the scale of the exchange rate
+     * @param fixedPointScale
+     *            the scale of the result
+     * @return the USD amount at <code>fixedPointScale</code>, or
+     *         <code>OVERFLOW</code>
+     */
+    static long usdAmount(final long pricePerUnit, final int pricePerUnitScale, final long units,
+	    final long exchangeRate, final int exchangeRateScale, final int fixedPointScale) {
+
+	if (pricePerUnit == FixedPointAmounts.OVERFLOW || units == FixedPointAmounts.OVERFLOW
+		|| exchangeRate == FixedPointAmounts.OVERFLOW) {
+	    return FixedPointAmounts.OVERFLOW;
+	}
+
+	final long priceTimesUnits = pricePerUnit * units;
+	if (FixedPointAmounts.overflows(pricePerUnit, units, priceTimesUnits)) {
+	    return FixedPointAmounts.OVERFLOW;
+	}
+
+	final long product = priceTimesUnits * exchangeRate;
+	if (FixedPointAmounts.overflows(priceTimesUnits, exchangeRate, product)) {
+	    return FixedPointAmounts.OVERFLOW;
+	}
+
+	return FixedPointAmounts.rescale(product, pricePerUnitScale + exchangeRateScale, fixedPointScale);
+    }
+
+    /**
+     * Checks a <code>long</code> multiplication for overflow without throwing,
+     * in the same way as <code>Math.multiplyExact</code>.
+     */
+    private static boolean overflows(final long x, final long y, final long product) {
+
+	final long ax = Math.abs(x);
+	final long ay = Math.abs(y);
+
+	if ((ax | ay) >>> 31 != 0) {
+	    return y != 0 && (product / y != x || x == Long.MIN_VALUE && y == -1);
+	}
+
+	return false;
+    }
+}
@@ -2,15 +2,19 @@ package com.jpmorgan.report.model;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
 
+import com.jpmorgan.report.date.EpochDays;
+import com.jpmorgan.report.date.InstructionDateParser;
+
+/**
+ * A trade instruction. Dates are held as epoch days (days since 1970-01-01);
+ * the <code>Date</code> accessors convert at midnight in the default time
+ * zone, and a missing or unparseable date is <code>EpochDays.NONE</code>.
+ */
 public class Instruction {
 
-    private Date acutalSettlementDate;
+    private int acutalSettlementDate = EpochDays.NONE;
 
     private BuySell buySell;
 
@@ -24,17 +28,30 @@ public class Instruction {
 
     private BigDecimal exchangeRate;
 
-    private Date instructionDate;
+    private int instructionDate = EpochDays.NONE;
+
+    /**
+     * Why the Instruction was rejected, or <code>null</code> if it was not.
+     */
+    private InvalidReason invalidReason;
 
     private BigDecimal pricePerUnit;
 
-    private Date settlementDate;
+    private int settlementDate = EpochDays.NONE;
 
     private BigInteger units;
 
     private BigDecimal USDAmount;
 
     public Date getAcutalSettlementDate() {
+	return EpochDays.toDate(this.acutalSettlementDate);
+    }
+
+    /**
+     * @return the actual settlement date in days since 1970-01-01, or
+     *         <code>EpochDays.NONE</code>
+     */
+    public int getAcutalSettlementEpochDay() {
 	return this.acutalSettlementDate;
     }
 
@@ -54,16 +71,6 @@ public class Instruction {
 	return this.currencyString;
     }
 
-    private Date getDateFromString(final String string) {
-
-	final DateFormat format = new SimpleDateFormat("dd MMM yyyy", Locale.ENGLISH);
-	try {
-	    return format.parse(string);
-	} catch (final ParseException e) {
-	    return null;
-	}
-    }
-
     public String getEntity() {
 	return this.entity;
     }
@@ -73,14 +80,34 @@ public class Instruction {
     }
 
     public Date getInstructionDate() {
+	return EpochDays.toDate(this.instructionDate);
+    }
+
+    /**
+     * @return the instruction date in days since 1970-01-01, or
+     *         <code>EpochDays.NONE</code>
+     */
+    public int getInstructionEpochDay() {
 	return this.instructionDate;
     }
 
+    public InvalidReason getInvalidReason() {
+	return this.invalidReason;
+    }
+
     public BigDecimal getPricePerUnit() {
 	return this.pricePerUnit;
     }
 
     public Date getSettlementDate() {
+	return EpochDays.toDate(this.settlementDate);
+    }
+
+    /**
+     * @return the settlement date in days since 1970-01-01, or
+     *         <code>EpochDays.NONE</code>
+     */
+    public int getSettlementEpochDay() {
 	return this.settlementDate;
     }
 
@@ -93,6 +120,10 @@ public class Instruction {
     }
 
     public void setAcutalSettlementDate(final Date acutalSettlementDate) {
+	this.acutalSettlementDate = EpochDays.toEpochDay(acutalSettlementDate);
+    }
+
+    public void setAcutalSettlementEpochDay(final int acutalSettlementDate) {
 	this.acutalSettlementDate = acutalSettlementDate;
     }
 
@@ -121,11 +152,25 @@ public class Instruction {
     }
 
     public void setInstructionDate(final Date instructionDate) {
-	this.instructionDate = instructionDate;
+	this.instructionDate = EpochDays.toEpochDay(instructionDate);
     }
 
+    /**
+     * @param instructionDate
+     *            the instruction date in the form <code>dd MMM yyyy</code>.
+     *            If it cannot be parsed the Instruction will be rejected with
+     *            <code>InvalidReason.INVALID_INSTRUCTION_DATE</code>.
+     */
     public void setInstructionDate(final String instructionDate) {
-	this.instructionDate = this.getDateFromString(instructionDate);
+	this.instructionDate = InstructionDateParser.DEFAULT.parse(instructionDate);
+    }
+
+    public void setInstructionEpochDay(final int instructionDate) {
+	this.instructionDate = instructionDate;
+    }
+
+    public void setInvalidReason(final InvalidReason invalidReason) {
+	this.invalidReason = invalidReason;
     }
 
     public void setPricePerUnit(final BigDecimal pricePerUnit) {
@@ -133,11 +178,21 @@ public class Instruction {
     }
 
     public void setSettlementDate(final Date settlementDate) {
-	this.settlementDate = settlementDate;
+	this.settlementDate = EpochDays.toEpochDay(settlementDate);
     }
 
+    /**
+     * @param settlementDate
+     *            the settlement date in the form <code>dd MMM yyyy</code>. If
+     *            it cannot be parsed the Instruction will be rejected with
+     *            <code>InvalidReason.INVALID_SETTLEMENT_DATE</code>.
+     */
     public void setSettlementDate(final String settlementDate) {
-	this.settlementDate = this.getDateFromString(settlementDate);
+	this.settlementDate = InstructionDateParser.DEFAULT.parse(settlementDate);
+    }
+
+    public void setSettlementEpochDay(final int settlementDate) {
+	this.settlementDate = settlementDate;
     }
 
     public void setUnits(final BigInteger units) {
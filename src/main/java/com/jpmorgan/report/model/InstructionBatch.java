@@ -0,0 +1,440 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A columnar batch of <code>Instructions</code>.
+ * <p>
+ * Each field is held in its own primitive array, indexed by row: dates as
+ * epoch days, <code>BuySell</code> and <code>Currency</code> as ordinal
+ * codes, entities as ids in an <code>EntityDictionary</code>, units as a
+ * <code>long</code> and decimals as an unscaled <code>long</code> and a
+ * scale. A row takes about 40 bytes, against several hundred for an
+ * <code>Instruction</code> and the objects it refers to, and
+ * <code>ReportAccumulator.acceptAll(InstructionBatch)</code> aggregates the
+ * columns without creating an <code>Instruction</code> per row.
+ * <p>
+ * The rare values that do not fit the columns (decimals with more than 18
+ * digits, units beyond a <code>long</code>, unknown buy/sell and currency
+ * codes) are kept in side tables, so a row always reads back exactly as it
+ * was added. A missing units, price per unit or exchange rate is held as a
+ * wide value with no side table entry, reads back as <code>null</code>, and
+ * is rejected by validation like any other amount that is not positive. A
+ * batch is not thread-safe while rows are being added.
+ */
+public class InstructionBatch {
+
+    /**
+     * Code of a buy/sell or currency value that matches no constant.
+     */
+    public static final byte UNKNOWN_CODE = -1;
+
+    private static final BuySell[] BUY_SELLS = BuySell.values();
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Stands for a value held in a side table, or for a missing value if the
+     * side table has none for the row.
+     */
+    private static final long WIDE = FixedPointAmounts.OVERFLOW;
+
+    private byte[] buySells;
+
+    private byte[] currencies;
+
+    private final EntityDictionary entityDictionary;
+
+    private int[] entityIds;
+
+    private long[] exchangeRates;
+
+    private byte[] exchangeRateScales;
+
+    private int[] instructionDates;
+
+    private long[] pricesPerUnit;
+
+    private byte[] pricePerUnitScales;
+
+    private int[] settlementDates;
+
+    private int size;
+
+    private long[] units;
+
+    /**
+     * Values that do not fit the columns, keyed by row.
+     */
+    private final Map<Integer, String> unknownBuySells = new HashMap<>();
+
+    private final Map<Integer, String> unknownCurrencies = new HashMap<>();
+
+    private final Map<Integer, BigDecimal> wideExchangeRates = new HashMap<>();
+
+    private final Map<Integer, BigDecimal> widePricesPerUnit = new HashMap<>();
+
+    private final Map<Integer, BigInteger> wideUnits = new HashMap<>();
+
+    /**
+     * Constructs an empty batch with its own <code>EntityDictionary</code>.
+     */
+    public InstructionBatch() {
+	this(new EntityDictionary(), InstructionBatch.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param entityDictionary
+     *            the dictionary that entities are encoded with, which may be
+     *            shared between batches
+     * @param initialCapacity
+     *            the number of rows to allocate room for
+     */
+    public InstructionBatch(final EntityDictionary entityDictionary, final int initialCapacity) {
+
+	Objects.requireNonNull(entityDictionary);
+
+	if (initialCapacity < 0) {
+	    throw new IllegalArgumentException("initialCapacity must not be negative: " + initialCapacity);
+	}
+
+	this.entityDictionary = entityDictionary;
+	this.allocate(initialCapacity);
+    }
+
+    /**
+     * Adds a row holding the fields of an <code>Instruction</code>.
+     *
+     * @param instruction
+     *            the <code>Instruction</code>
+     * @return the row
+     */
+    public int add(final Instruction instruction) {
+
+	Objects.requireNonNull(instruction);
+
+	final BuySell buySell = EnumCodes.of(BuySell.class).get(instruction.getBuySellString());
+	final Currency currency = EnumCodes.of(Currency.class).get(instruction.getCurrencyString());
+
+	final BigInteger units = instruction.getUnits();
+	final BigDecimal exchangeRate = instruction.getExchangeRate();
+	final BigDecimal pricePerUnit = instruction.getPricePerUnit();
+
+	final int row = this.add(instruction.getEntity(), buySell, currency, instruction.getInstructionEpochDay(),
+		instruction.getSettlementEpochDay(), InstructionBatch.narrow(units),
+		InstructionBatch.unscaled(exchangeRate), InstructionBatch.scale(exchangeRate),
+		InstructionBatch.unscaled(pricePerUnit), InstructionBatch.scale(pricePerUnit));
+
+	if (buySell == null && instruction.getBuySellString() != null) {
+	    this.unknownBuySells.put(row, instruction.getBuySellString());
+	}
+	if (currency == null && instruction.getCurrencyString() != null) {
+	    this.unknownCurrencies.put(row, instruction.getCurrencyString());
+	}
+	if (units != null && this.units[row] == InstructionBatch.WIDE) {
+	    this.wideUnits.put(row, units);
+	}
+	if (exchangeRate != null && this.exchangeRates[row] == InstructionBatch.WIDE) {
+	    this.wideExchangeRates.put(row, exchangeRate);
+	}
+	if (pricePerUnit != null && this.pricesPerUnit[row] == InstructionBatch.WIDE) {
+	    this.widePricesPerUnit.put(row, pricePerUnit);
+	}
+
+	return row;
+    }
+
+    /**
+     * Adds a row from field values that fit the columns.
+     *
+     * @param entity
+     *            the entity
+     * @param buySell
+     *            the buy/sell value, or <code>null</code> if it is unknown
+     * @param currency
+     *            the currency, or <code>null</code> if it is unknown
+     * @param instructionDate
+     *            the instruction date in epoch days, or
+     *            <code>EpochDays.NONE</code>
+     * @param settlementDate
+     *            the settlement date in epoch days, or
+     *            <code>EpochDays.NONE</code>
+     * @param units
+     *            the number of units
+     * @param exchangeRate
+     *            the unscaled exchange rate
+     * @param exchangeRateScale
+     *            the scale of the exchange rate
+     * @param pricePerUnit
+     *            the unscaled price per unit
+     * @param pricePerUnitScale
+     *            the scale of the price per unit
+     * @return the row
+     */
+    public int add(final String entity, final BuySell buySell, final Currency currency, final int instructionDate,
+	    final int settlementDate, final long units, final long exchangeRate, final int exchangeRateScale,
+	    final long pricePerUnit, final int pricePerUnitScale) {
+
+	if (this.size == this.entityIds.length) {
+	    this.allocate(Math.max(InstructionBatch.DEFAULT_CAPACITY, this.size + (this.size >> 1)));
+	}
+
+	final int row = this.size;
+
+	this.entityIds[row] = this.entityDictionary.getId(entity);
+	this.buySells[row] = buySell == null ? InstructionBatch.UNKNOWN_CODE : (byte) buySell.ordinal();
+	this.currencies[row] = currency == null ? InstructionBatch.UNKNOWN_CODE : (byte) currency.ordinal();
+	this.instructionDates[row] = instructionDate;
+	this.settlementDates[row] = settlementDate;
+	this.units[row] = units;
+
+	/*
+	 * A scale outside a byte is kept in a side table with its value...
+	 */
+	final boolean narrowRate = exchangeRateScale == (byte) exchangeRateScale;
+	this.exchangeRates[row] = narrowRate ? exchangeRate : InstructionBatch.WIDE;
+	this.exchangeRateScales[row] = (byte) exchangeRateScale;
+	if (!narrowRate) {
+	    this.wideExchangeRates.put(row, BigDecimal.valueOf(exchangeRate, exchangeRateScale));
+	}
+
+	final boolean narrowPrice = pricePerUnitScale == (byte) pricePerUnitScale;
+	this.pricesPerUnit[row] = narrowPrice ? pricePerUnit : InstructionBatch.WIDE;
+	this.pricePerUnitScales[row] = (byte) pricePerUnitScale;
+	if (!narrowPrice) {
+	    this.widePricesPerUnit.put(row, BigDecimal.valueOf(pricePerUnit, pricePerUnitScale));
+	}
+
+	this.size++;
+
+	return row;
+    }
+
+    public BuySell getBuySell(final int row) {
+	final byte code = this.buySells[this.check(row)];
+	return code == InstructionBatch.UNKNOWN_CODE ? null : InstructionBatch.BUY_SELLS[code];
+    }
+
+    /**
+     * @param row
+     *            the row
+     * @return the <code>BuySell</code> ordinal, or <code>UNKNOWN_CODE</code>
+     */
+    public byte getBuySellCode(final int row) {
+	return this.buySells[this.check(row)];
+    }
+
+    public Currency getCurrency(final int row) {
+	final byte code = this.currencies[this.check(row)];
+	return code == InstructionBatch.UNKNOWN_CODE ? null : InstructionBatch.CURRENCIES[code];
+    }
+
+    /**
+     * @param row
+     *            the row
+     * @return the <code>Currency</code> ordinal, or <code>UNKNOWN_CODE</code>
+     */
+    public byte getCurrencyCode(final int row) {
+	return this.currencies[this.check(row)];
+    }
+
+    public String getEntity(final int row) {
+	return this.entityDictionary.getEntity(this.entityIds[this.check(row)]);
+    }
+
+    public EntityDictionary getEntityDictionary() {
+	return this.entityDictionary;
+    }
+
+    public int getEntityId(final int row) {
+	return this.entityIds[this.check(row)];
+    }
+
+    public BigDecimal getExchangeRate(final int row) {
+	final long unscaled = this.exchangeRates[this.check(row)];
+	return unscaled == InstructionBatch.WIDE ? this.wideExchangeRates.get(row)
+		: BigDecimal.valueOf(unscaled, this.exchangeRateScales[row]);
+    }
+
+    /**
+     * @param row
+     *            the row
+     * @return the instruction date in epoch days, or
+     *         <code>EpochDays.NONE</code>
+     */
+    public int getInstructionEpochDay(final int row) {
+	return this.instructionDates[this.check(row)];
+    }
+
+    public BigDecimal getPricePerUnit(final int row) {
+	final long unscaled = this.pricesPerUnit[this.check(row)];
+	return unscaled == InstructionBatch.WIDE ? this.widePricesPerUnit.get(row)
+		: BigDecimal.valueOf(unscaled, this.pricePerUnitScales[row]);
+    }
+
+    /**
+     * @param row
+     *            the row
+     * @return the settlement date in epoch days, or
+     *         <code>EpochDays.NONE</code>
+     */
+    public int getSettlementEpochDay(final int row) {
+	return this.settlementDates[this.check(row)];
+    }
+
+    public BigInteger getUnits(final int row) {
+	final long units = this.units[this.check(row)];
+	return units == InstructionBatch.WIDE ? this.wideUnits.get(row) : BigInteger.valueOf(units);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+	return this.size;
+    }
+
+    /**
+     * Creates an <code>Instruction</code> holding the fields of a row.
+     *
+     * @param row
+     *            the row
+     * @return a new <code>Instruction</code>
+     */
+    public Instruction toInstruction(final int row) {
+
+	final Instruction instruction = new Instruction();
+	instruction.setEntity(this.getEntity(row));
+	instruction.setBuySellString(this.getBuySell(row) == null ? this.unknownBuySells.get(row)
+		: this.getBuySell(row).name());
+	instruction.setCurrencyString(this.getCurrency(row) == null ? this.unknownCurrencies.get(row)
+		: this.getCurrency(row).name());
+	instruction.setExchangeRate(this.getExchangeRate(row));
+	instruction.setInstructionEpochDay(this.getInstructionEpochDay(row));
+	instruction.setSettlementEpochDay(this.getSettlementEpochDay(row));
+	instruction.setUnits(this.getUnits(row));
+	instruction.setPricePerUnit(this.getPricePerUnit(row));
+
+	return instruction;
+    }
+
+    /**
+     * The unscaled exchange rate of a row, for fixed point arithmetic.
+     *
+     * @return the unscaled value, or <code>FixedPointAmounts.OVERFLOW</code>
+     *         if it is held in a side table
+     */
+    long getUnscaledExchangeRate(final int row) {
+	return this.exchangeRates[row];
+    }
+
+    int getExchangeRateScale(final int row) {
+	return this.exchangeRateScales[row];
+    }
+
+    long getUnscaledPricePerUnit(final int row) {
+	return this.pricesPerUnit[row];
+    }
+
+    int getPricePerUnitScale(final int row) {
+	return this.pricePerUnitScales[row];
+    }
+
+    /**
+     * @return the units, or <code>FixedPointAmounts.OVERFLOW</code> if they
+     *         are held in a side table
+     */
+    long getUnitsAsLong(final int row) {
+	return this.units[row];
+    }
+
+    /**
+     * @return the signum of the exchange rate, or 0 if it is missing
+     */
+    int getExchangeRateSignum(final int row) {
+	final long unscaled = this.exchangeRates[row];
+	return unscaled == InstructionBatch.WIDE ? InstructionBatch.signum(this.wideExchangeRates.get(row))
+		: Long.signum(unscaled);
+    }
+
+    /**
+     * @return the signum of the price per unit, or 0 if it is missing
+     */
+    int getPricePerUnitSignum(final int row) {
+	final long unscaled = this.pricesPerUnit[row];
+	return unscaled == InstructionBatch.WIDE ? InstructionBatch.signum(this.widePricesPerUnit.get(row))
+		: Long.signum(unscaled);
+    }
+
+    /**
+     * @return the signum of the units, or 0 if they are missing
+     */
+    int getUnitsSignum(final int row) {
+	final long units = this.units[row];
+	return units == InstructionBatch.WIDE ? InstructionBatch.signum(this.wideUnits.get(row)) : Long.signum(units);
+    }
+
+    private void allocate(final int capacity) {
+	this.entityIds = InstructionBatch.copyOf(this.entityIds, capacity);
+	this.buySells = InstructionBatch.copyOf(this.buySells, capacity);
+	this.currencies = InstructionBatch.copyOf(this.currencies, capacity);
+	this.instructionDates = InstructionBatch.copyOf(this.instructionDates, capacity);
+	this.settlementDates = InstructionBatch.copyOf(this.settlementDates, capacity);
+	this.units = InstructionBatch.copyOf(this.units, capacity);
+	this.exchangeRates = InstructionBatch.copyOf(this.exchangeRates, capacity);
+	this.exchangeRateScales = InstructionBatch.copyOf(this.exchangeRateScales, capacity);
+	this.pricesPerUnit = InstructionBatch.copyOf(this.pricesPerUnit, capacity);
+	this.pricePerUnitScales = InstructionBatch.copyOf(this.pricePerUnitScales, capacity);
+    }
+
+    private int check(final int row) {
+
+	if (row < 0 || row >= this.size) {
+	    throw new IndexOutOfBoundsException("row " + row + " of " + this.size);
+	}
+
+	return row;
+    }
+
+    private static byte[] copyOf(final byte[] column, final int capacity) {
+	return column == null ? new byte[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    private static int[] copyOf(final int[] column, final int capacity) {
+	return column == null ? new int[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    private static long[] copyOf(final long[] column, final int capacity) {
+	return column == null ? new long[capacity] : Arrays.copyOf(column, capacity);
+    }
+
+    private static long narrow(final BigInteger units) {
+	return units != null && units.bitLength() < Long.SIZE - 1 ? units.longValue() : InstructionBatch.WIDE;
+    }
+
+    private static int scale(final BigDecimal value) {
+	return value == null ? 0 : value.scale();
+    }
+
+    private static int signum(final BigDecimal value) {
+	return value == null ? 0 : value.signum();
+    }
+
+    private static int signum(final BigInteger value) {
+	return value == null ? 0 : value.signum();
+    }
+
+    private static long unscaled(final BigDecimal value) {
+	return value != null && value.scale() == (byte) value.scale() ? FixedPointAmounts.unscaled(value)
+		: InstructionBatch.WIDE;
+    }
+}
@@ -0,0 +1,93 @@
+package com.jpmorgan.report.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Checks <code>Instructions</code> against an ordered list of
+ * <code>ValidationRules</code>.
+ * <p>
+ * The rules are copied into an array when the validator is constructed, and
+ * checked in a single pass that stops at the first rule an
+ * <code>Instruction</code> breaks. Nothing is allocated or thrown for an
+ * invalid <code>Instruction</code>. A validator is immutable and may be
+ * shared between threads.
+ */
+public final class InstructionValidator {
+
+    /**
+     * Checks <code>ValidationRules.DEFAULT_RULES</code>.
+     */
+    public static final InstructionValidator DEFAULT = new InstructionValidator(ValidationRules.DEFAULT_RULES);
+
+    private final ValidationRule[] rules;
+
+    /**
+     * Constructs a validator.
+     *
+     * @param rules
+     *            the rules, in the order they are checked
+     */
+    public InstructionValidator(final List<ValidationRule> rules) {
+
+	Objects.requireNonNull(rules);
+
+	this.rules = rules.toArray(new ValidationRule[0]);
+
+	for (final ValidationRule rule : this.rules) {
+	    Objects.requireNonNull(rule);
+	}
+    }
+
+    /**
+     * Constructs a validator that checks another rule after the rules of this
+     * one.
+     *
+     * @param rule
+     *            the rule to add
+     * @return the new validator
+     */
+    public InstructionValidator and(final ValidationRule rule) {
+
+	final List<ValidationRule> rules = new ArrayList<>(this.getRules());
+	rules.add(Objects.requireNonNull(rule));
+
+	return new InstructionValidator(rules);
+    }
+
+    /**
+     * @return the rules, in the order they are checked
+     */
+    public List<ValidationRule> getRules() {
+
+	final List<ValidationRule> rules = new ArrayList<>(this.rules.length);
+	for (final ValidationRule rule : this.rules) {
+	    rules.add(rule);
+	}
+
+	return rules;
+    }
+
+    /**
+     * Checks an <code>Instruction</code>.
+     *
+     * @param instruction
+     *            the <code>Instruction</code> to check
+     * @return <code>null</code> if the <code>Instruction</code> is valid,
+     *         otherwise the reason of the first rule it breaks
+     */
+    public InvalidReason validate(final Instruction instruction) {
+
+	for (final ValidationRule rule : this.rules) {
+
+	    final InvalidReason invalidReason = rule.check(instruction);
+
+	    if (invalidReason != null) {
+		return invalidReason;
+	    }
+	}
+
+	return null;
+    }
+}
@@ -0,0 +1,123 @@
+package com.jpmorgan.report.model;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Objects;
+
+/**
+ * Keeps a <code>Report</code> up to date as <code>Instructions</code> arrive
+ * during the day.
+ * <p>
+ * Each delta is added to the aggregates of the earlier ones, and a new
+ * <code>Report</code> snapshot is published. A snapshot does not depend on
+ * the number of <code>Instructions</code> so far, but it is not proportional
+ * to the delta either: it costs time proportional to the number of
+ * settlement days and of ranked entities. The totals are updated in place and
+ * only the settlement days the delta touched are converted, but each snapshot
+ * copies the totals of every day, sorts them by date and sums them again for
+ * <code>DailyTotals</code>. The rankings are kept in order as the highest
+ * amounts change, but each snapshot builds a new <code>EntityRanking</code>
+ * for every ranked entity. An entity ranking limit keeps the rankings short,
+ * and leaving <code>DAILY_TOTALS</code> out of the plan avoids the per-day
+ * copies.
+ * <p>
+ * Deltas are applied one at a time. Readers call <code>getReport()</code>
+ * from any thread without locking, and always see the complete snapshot of
+ * the last delta applied, never one that is partly updated. The
+ * <code>Instructions</code> are not retained, and net positions are left out
+ * of the plan, since they would be rebuilt from every (entity, day) pair on
+ * each snapshot.
+ */
+public class IntradayReport {
+
+    private final ReportAccumulator accumulator;
+
+    /**
+     * The latest snapshot. <code>Reports</code> are immutable, so publishing
+     * through a volatile field is enough for readers to see a consistent one.
+     */
+    private volatile Report report;
+
+    /**
+     * Constructs an intraday report over an empty day, ranking every entity.
+     */
+    public IntradayReport() {
+	this(new ReportConfiguration());
+    }
+
+    /**
+     * Constructs an intraday report over an empty day.
+     *
+     * @param configuration
+     *            the options used to build each <code>Report</code>, which
+     *            must not retain instructions; <code>NET_POSITIONS</code> is
+     *            removed from their plan
+     */
+    public IntradayReport(final ReportConfiguration configuration) {
+
+	Objects.requireNonNull(configuration);
+
+	if (configuration.isRetainInstructions()) {
+	    throw new IllegalArgumentException("An intraday report cannot retain instructions");
+	}
+
+	final EnumSet<ReportSection> sections = EnumSet.noneOf(ReportSection.class);
+	sections.addAll(configuration.getReportPlan().getSections());
+	sections.remove(ReportSection.NET_POSITIONS);
+
+	this.accumulator = new ReportAccumulator(configuration, ReportPlan.copyOf(sections))
+		.enableIncrementalSnapshots();
+	this.report = this.accumulator.toReport();
+    }
+
+    /**
+     * Applies a delta of <code>Instructions</code> and publishes a new
+     * snapshot.
+     *
+     * @param delta
+     *            the <code>Instructions</code> that arrived since the last
+     *            delta
+     * @return the new snapshot
+     */
+    public synchronized Report apply(final Collection<Instruction> delta) {
+
+	Objects.requireNonNull(delta);
+
+	this.accumulator.acceptAll(delta.iterator());
+
+	return this.publish();
+    }
+
+    /**
+     * Applies a delta of <code>Instructions</code> held in a columnar batch
+     * and publishes a new snapshot.
+     *
+     * @param delta
+     *            the <code>Instructions</code> that arrived since the last
+     *            delta
+     * @return the new snapshot
+     */
+    public synchronized Report apply(final InstructionBatch delta) {
+
+	Objects.requireNonNull(delta);
+
+	this.accumulator.acceptAll(delta);
+
+	return this.publish();
+    }
+
+    /**
+     * @return the snapshot of every delta applied so far
+     */
+    public Report getReport() {
+	return this.report;
+    }
+
+    private Report publish() {
+
+	final Report snapshot = this.accumulator.toReport();
+	this.report = snapshot;
+
+	return snapshot;
+    }
+}
@@ -0,0 +1,48 @@
+package com.jpmorgan.report.model;
+
+/**
+ * Why an <code>Instruction</code> was rejected. The ordinal is a compact code
+ * for the reason.
+ */
+public enum InvalidReason {
+
+    /**
+     * The buy/sell value is missing or neither B nor S.
+     */
+    INVALID_BUY_SELL,
+
+    /**
+     * The currency is missing or not a known <code>Currency</code>.
+     */
+    INVALID_CURRENCY,
+
+    /**
+     * The instruction date is missing or could not be parsed.
+     */
+    INVALID_INSTRUCTION_DATE,
+
+    /**
+     * The settlement date is missing or could not be parsed.
+     */
+    INVALID_SETTLEMENT_DATE,
+
+    /**
+     * The units are missing or not positive.
+     */
+    INVALID_UNITS,
+
+    /**
+     * The price per unit is missing or not positive.
+     */
+    INVALID_PRICE_PER_UNIT,
+
+    /**
+     * The exchange rate is missing or not positive.
+     */
+    INVALID_EXCHANGE_RATE,
+
+    /**
+     * Rejected by a rule added to the <code>InstructionValidator</code>.
+     */
+    REJECTED_BY_RULE
+}
@@ -0,0 +1,83 @@
+package com.jpmorgan.report.model;
+
+import java.util.function.Supplier;
+
+/**
+ * The value of a <code>Report</code> section, computed on first access and
+ * then kept. Safe to read from any thread; the value is computed once.
+ *
+ * @param <T>
+ *            the type of the value, which is never <code>null</code>
+ */
+final class LazySection<T> {
+
+    private final ReportSection section;
+
+    /**
+     * Computes the value, or <code>null</code> once it is computed or if the
+     * section was not planned.
+     */
+    private Supplier<T> supplier;
+
+    private volatile T value;
+
+    private LazySection(final ReportSection section, final Supplier<T> supplier, final T value) {
+	this.section = section;
+	this.supplier = supplier;
+	this.value = value;
+    }
+
+    /**
+     * @return a section whose value is computed on first access if it is
+     *         planned, and otherwise cannot be read
+     */
+    static <T> LazySection<T> of(final ReportPlan plan, final ReportSection section, final Supplier<T> supplier) {
+	return new LazySection<>(section, plan.includes(section) ? supplier : null, null);
+    }
+
+    /**
+     * @return a section whose value is known if it is planned, and otherwise
+     *         cannot be read
+     */
+    static <T> LazySection<T> ofValue(final ReportPlan plan, final ReportSection section, final T value) {
+	return new LazySection<>(section, null, plan.includes(section) ? value : null);
+    }
+
+    /**
+     * Computes the value now if it is planned and not yet computed.
+     */
+    synchronized void compute() {
+	if (this.supplier != null) {
+	    this.get();
+	}
+    }
+
+    /**
+     * @return the value, computing it if this is the first access
+     * @throws IllegalStateException
+     *             if the section was not planned
+     */
+    T get() {
+
+	final T known = this.value;
+
+	if (known != null) {
+	    return known;
+	}
+
+	synchronized (this) {
+
+	    if (this.value == null) {
+
+		if (this.supplier == null) {
+		    throw new IllegalStateException("The " + this.section + " section was not planned");
+		}
+
+		this.value = this.supplier.get();
+		this.supplier = null;
+	    }
+
+	    return this.value;
+	}
+    }
+}
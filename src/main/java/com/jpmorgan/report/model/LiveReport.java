@@ -0,0 +1,512 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import com.jpmorgan.report.date.EpochDays;
+import com.jpmorgan.report.date.SettlementCalendar;
+
+/**
+ * A <code>Report</code> that many producer threads may add
+ * <code>Instructions</code> to at once, without first collecting them into
+ * one <code>List</code>.
+ * <p>
+ * Totals and totals per day are <code>StripedAmounts</code>, the instruction
+ * counts are <code>LongAdders</code>, and the highest USD amount of each
+ * entity is raised with a compare and swap loop, so producers never block one
+ * another. Each thread is given one of a fixed number of stripes, and holds
+ * the read lock of its stripe while it adds an <code>Instruction</code>.
+ * <code>snapshot()</code> takes the write lock of every stripe, which waits
+ * for the <code>Instructions</code> being added to complete, so the
+ * <code>Report</code> it returns always counts each <code>Instruction</code>
+ * in full or not at all.
+ * <p>
+ * Producers only wait while the counts and totals are read and the per-entity
+ * and per-day aggregates are replaced by an empty generation, which takes the
+ * same time however many entities and days there are. Once the locks are
+ * released no producer can reach the retired generation, so it is folded into
+ * the aggregates of the earlier ones, and the rankings are sorted, while
+ * producers carry on. Snapshots are taken one at a time.
+ * <p>
+ * The <code>Instructions</code> are not retained, net positions and sketches
+ * are not kept, and when two <code>Instructions</code> of an entity have equal USD
+ * amounts it is not defined which of them is ranked.
+ */
+public class LiveReport {
+
+    private static final EnumCodes<BuySell> BUY_SELL_CODES = EnumCodes.of(BuySell.class);
+
+    private static final EnumCodes<Currency> CURRENCY_CODES = EnumCodes.of(Currency.class);
+
+    /**
+     * The sections of each snapshot.
+     */
+    private static final ReportPlan PLAN = ReportPlan.of(ReportSection.TOTALS, ReportSection.DAILY_TOTALS,
+	    ReportSection.INCOMING_RANKING, ReportSection.OUTGOING_RANKING, ReportSection.INSTRUCTIONS);
+
+    private final int entityRankingLimit;
+
+    /**
+     * Scale of fixed point amounts, or
+     * <code>ReportConfiguration.NO_FIXED_POINT</code>.
+     */
+    private final int fixedPointScale;
+
+    private final Direction incoming;
+
+    /**
+     * Invalid instruction counts, indexed by <code>InvalidReason</code>
+     * ordinal.
+     */
+    private final LongAdder[] invalidInstructionCountByReason = new LongAdder[InvalidReason.values().length];
+
+    private final Direction outgoing;
+
+    private final SettlementCalendar settlementCalendar;
+
+    /**
+     * One lock per stripe, read locked by producers and write locked by
+     * <code>snapshot()</code>.
+     */
+    private final StampedLock[] stripeLocks;
+
+    private final InstructionValidator validator;
+
+    /**
+     * Constructs a live report over an empty day, ranking every entity.
+     */
+    public LiveReport() {
+	this(new ReportConfiguration());
+    }
+
+    /**
+     * Constructs a live report over an empty day, with two stripes per
+     * processor.
+     *
+     * @param configuration
+     *            the options used to build each <code>Report</code>, which
+     *            must not retain instructions
+     */
+    public LiveReport(final ReportConfiguration configuration) {
+	this(configuration, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a live report over an empty day.
+     *
+     * @param configuration
+     *            the options used to build each <code>Report</code>, which
+     *            must not retain instructions
+     * @param stripes
+     *            the number of stripes, which is rounded up to a power of two
+     */
+    public LiveReport(final ReportConfiguration configuration, final int stripes) {
+
+	Objects.requireNonNull(configuration);
+
+	if (configuration.isRetainInstructions()) {
+	    throw new IllegalArgumentException("A live report cannot retain instructions");
+	}
+
+	if (stripes < 1) {
+	    throw new IllegalArgumentException("stripes must be positive: " + stripes);
+	}
+
+	int stripeCount = 1;
+	while (stripeCount < stripes) {
+	    stripeCount <<= 1;
+	}
+
+	this.entityRankingLimit = configuration.getEntityRankingLimit();
+	this.fixedPointScale = configuration.getFixedPointScale();
+	this.settlementCalendar = configuration.getSettlementCalendar();
+	this.validator = configuration.getValidator();
+
+	this.stripeLocks = new StampedLock[stripeCount];
+	for (int stripe = 0; stripe < stripeCount; stripe++) {
+	    this.stripeLocks[stripe] = new StampedLock();
+	}
+
+	for (int i = 0; i < this.invalidInstructionCountByReason.length; i++) {
+	    this.invalidInstructionCountByReason[i] = new LongAdder();
+	}
+
+	this.incoming = new Direction(stripeCount, this.fixedPointScale);
+	this.outgoing = new Direction(stripeCount, this.fixedPointScale);
+    }
+
+    /**
+     * Adds an <code>Instruction</code>. May be called from any number of
+     * threads at once.
+     *
+     * @param instruction
+     *            the <code>Instruction</code> to add, which is not shared
+     *            with other threads while it is added
+     */
+    public void accept(final Instruction instruction) {
+
+	Objects.requireNonNull(instruction);
+
+	final int stripe = this.stripe();
+	final StampedLock lock = this.stripeLocks[stripe];
+	final long stamp = lock.readLock();
+
+	try {
+	    this.process(stripe, instruction);
+	} finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    /**
+     * Adds <code>Instructions</code>, holding the lock of the calling
+     * thread's stripe once for all of them. A snapshot taken meanwhile either
+     * counts all of them or none.
+     *
+     * @param instructions
+     *            the <code>Instructions</code> to add
+     */
+    public void acceptAll(final Collection<Instruction> instructions) {
+
+	Objects.requireNonNull(instructions);
+
+	final int stripe = this.stripe();
+	final StampedLock lock = this.stripeLocks[stripe];
+	final long stamp = lock.readLock();
+
+	try {
+	    for (final Instruction instruction : instructions) {
+		this.process(stripe, instruction);
+	    }
+	} finally {
+	    lock.unlockRead(stamp);
+	}
+    }
+
+    private void process(final int stripe, final Instruction instruction) {
+
+	final InvalidReason invalidReason = this.validator.validate(instruction);
+	instruction.setInvalidReason(invalidReason);
+
+	if (invalidReason != null) {
+	    this.invalidInstructionCountByReason[invalidReason.ordinal()].increment();
+	    return;
+	}
+
+	instruction.setBuySell(LiveReport.BUY_SELL_CODES.get(instruction.getBuySellString()));
+	instruction.setCurrency(LiveReport.CURRENCY_CODES.get(instruction.getCurrencyString()));
+
+	final int acutalSettlementDate = this.settlementCalendar.roll(instruction.getCurrency(),
+		instruction.getSettlementEpochDay());
+	instruction.setAcutalSettlementEpochDay(acutalSettlementDate);
+
+	/*
+	 * B is outgoing, S is incoming...
+	 */
+	final Direction direction = instruction.getBuySell() == BuySell.S ? this.incoming : this.outgoing;
+
+	final long fixedPointAmount = this.fixedPointScale == ReportConfiguration.NO_FIXED_POINT
+		? FixedPointAmounts.OVERFLOW
+		: FixedPointAmounts.usdAmount(instruction.getPricePerUnit(), instruction.getUnits(),
+			instruction.getExchangeRate(), this.fixedPointScale);
+
+	final HighestAmount amount;
+
+	if (fixedPointAmount == FixedPointAmounts.OVERFLOW) {
+
+	    final BigDecimal usdAmount = instruction.getPricePerUnit()
+		    .multiply(new BigDecimal(instruction.getUnits()).multiply(instruction.getExchangeRate()));
+	    instruction.setUSDAmount(usdAmount);
+
+	    direction.total.add(stripe, usdAmount);
+	    direction.totalPerDay(acutalSettlementDate).add(stripe, usdAmount);
+	    amount = new HighestAmount(usdAmount);
+
+	} else {
+
+	    final int amountScale = instruction.getPricePerUnit().scale() + instruction.getExchangeRate().scale();
+
+	    direction.total.add(stripe, fixedPointAmount, amountScale);
+	    direction.totalPerDay(acutalSettlementDate).add(stripe, fixedPointAmount, amountScale);
+	    amount = new HighestAmount(fixedPointAmount, amountScale);
+	}
+
+	direction.raiseHighestAmount(instruction.getEntity(), amount);
+	direction.instructionCount.increment();
+    }
+
+    /**
+     * Takes a consistent snapshot of the Instructions added so far. Producers
+     * wait while the counts and totals are read and a new generation is
+     * started.
+     *
+     * @return the <code>Report</code>
+     */
+    public synchronized Report snapshot() {
+
+	final long[] stamps = new long[this.stripeLocks.length];
+	for (int stripe = 0; stripe < stamps.length; stripe++) {
+	    stamps[stripe] = this.stripeLocks[stripe].writeLock();
+	}
+
+	final Map<InvalidReason, Long> invalidInstructionCountByReason = new EnumMap<>(InvalidReason.class);
+	final Snapshot incomingSnapshot;
+	final Snapshot outgoingSnapshot;
+
+	try {
+
+	    for (final InvalidReason invalidReason : InvalidReason.values()) {
+
+		final long count = this.invalidInstructionCountByReason[invalidReason.ordinal()].sum();
+
+		if (count > 0) {
+		    invalidInstructionCountByReason.put(invalidReason, count);
+		}
+	    }
+
+	    incomingSnapshot = this.incoming.retire();
+	    outgoingSnapshot = this.outgoing.retire();
+
+	} finally {
+	    for (int stripe = stamps.length - 1; stripe >= 0; stripe--) {
+		this.stripeLocks[stripe].unlockWrite(stamps[stripe]);
+	    }
+	}
+
+	this.incoming.fold(incomingSnapshot);
+	this.outgoing.fold(outgoingSnapshot);
+
+	return new Report(LiveReport.PLAN, Collections.emptyList(), Collections.emptyList(),
+		incomingSnapshot.instructionCount, outgoingSnapshot.instructionCount, invalidInstructionCountByReason,
+		incomingSnapshot.total, outgoingSnapshot.total, incomingSnapshot.totalsPerDay,
+		outgoingSnapshot.totalsPerDay, this.rank(incomingSnapshot), this.rank(outgoingSnapshot), null, null);
+    }
+
+    private List<EntityRanking> rank(final Snapshot snapshot) {
+
+	final EntityRankingAggregator aggregator = new EntityRankingAggregator(this.entityRankingLimit,
+		this.fixedPointScale);
+
+	snapshot.highestAmounts.forEach((entity, amount) -> {
+	    if (amount.amount == null) {
+		aggregator.accept(entity, amount.fixedPointAmount, amount.scale);
+	    } else {
+		aggregator.accept(entity, amount.amount);
+	    }
+	});
+
+	return aggregator.getEntityRankingList();
+    }
+
+    /**
+     * Spreads thread ids over the stripes, so that consecutive ids do not
+     * share one.
+     */
+    private int stripe() {
+	final long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+	return (int) (hash >>> 32) & this.stripeLocks.length - 1;
+    }
+
+    /**
+     * The aggregates of one direction (incoming or outgoing).
+     */
+    private static final class Direction {
+
+	private final int fixedPointScale;
+
+	/**
+	 * The highest amount of each entity over the retired generations, only
+	 * used by <code>snapshot()</code>.
+	 */
+	private final Map<String, HighestAmount> foldedHighestAmounts = new HashMap<>();
+
+	/**
+	 * The total of each day over the retired generations, only used by
+	 * <code>snapshot()</code>.
+	 */
+	private final Map<Integer, BigDecimal> foldedTotalsPerDay = new HashMap<>();
+
+	/**
+	 * The per-entity and per-day aggregates producers add to, which is only
+	 * replaced while every stripe is write locked.
+	 */
+	private Generation generation;
+
+	private final LongAdder instructionCount = new LongAdder();
+
+	private final int stripes;
+
+	private final StripedAmount total;
+
+	Direction(final int stripes, final int fixedPointScale) {
+	    this.stripes = stripes;
+	    this.fixedPointScale = fixedPointScale;
+	    this.total = new StripedAmount(stripes, fixedPointScale);
+	    this.generation = new Generation();
+	}
+
+	/**
+	 * Folds the generation retired by a snapshot into the aggregates of the
+	 * earlier ones, keeping the earlier highest amount when two compare as
+	 * equal, and gives the snapshot the totals per day.
+	 */
+	void fold(final Snapshot snapshot) {
+
+	    snapshot.generation.totalsPerDay.forEach((epochDay, total) -> this.foldedTotalsPerDay.merge(epochDay,
+		    total.toBigDecimal(), BigDecimal::add));
+
+	    snapshot.generation.highestAmountByEntity.forEach((entity, highest) -> this.foldedHighestAmounts
+		    .merge(entity, highest.get(),
+			    (folded, amount) -> amount.compareTo(folded, this.fixedPointScale) > 0 ? amount : folded));
+
+	    final Map<Date, BigDecimal> totalsPerDay = new HashMap<>();
+	    this.foldedTotalsPerDay.forEach((epochDay, total) -> totalsPerDay.put(EpochDays.toDate(epochDay), total));
+
+	    snapshot.totalsPerDay = totalsPerDay;
+	    snapshot.highestAmounts = this.foldedHighestAmounts;
+	}
+
+	/**
+	 * Raises the highest amount of an entity. The first amount wins when
+	 * two amounts compare as equal.
+	 */
+	void raiseHighestAmount(final String entity, final HighestAmount amount) {
+
+	    final ConcurrentHashMap<String, AtomicReference<HighestAmount>> highestAmountByEntity = this.generation.highestAmountByEntity;
+	    AtomicReference<HighestAmount> highest = highestAmountByEntity.get(entity);
+
+	    if (highest == null) {
+
+		highest = highestAmountByEntity.putIfAbsent(entity, new AtomicReference<>(amount));
+
+		if (highest == null) {
+		    return;
+		}
+	    }
+
+	    HighestAmount current;
+	    do {
+		current = highest.get();
+		if (amount.compareTo(current, this.fixedPointScale) <= 0) {
+		    return;
+		}
+	    } while (!highest.compareAndSet(current, amount));
+	}
+
+	/**
+	 * Reads the count and total, and replaces the generation with an empty
+	 * one. Called while every stripe is write locked.
+	 */
+	Snapshot retire() {
+
+	    final Generation retired = this.generation;
+	    this.generation = new Generation();
+
+	    return new Snapshot(this.instructionCount.sum(), this.total.toBigDecimal(), retired);
+	}
+
+	StripedAmount totalPerDay(final int epochDay) {
+
+	    final ConcurrentHashMap<Integer, StripedAmount> totalsPerDay = this.generation.totalsPerDay;
+	    final StripedAmount total = totalsPerDay.get(epochDay);
+
+	    if (total != null) {
+		return total;
+	    }
+
+	    return totalsPerDay.computeIfAbsent(epochDay, day -> new StripedAmount(this.stripes, this.fixedPointScale));
+	}
+    }
+
+    /**
+     * The per-entity and per-day aggregates of one direction added between
+     * two snapshots.
+     */
+    private static final class Generation {
+
+	private final ConcurrentHashMap<String, AtomicReference<HighestAmount>> highestAmountByEntity = new ConcurrentHashMap<>();
+
+	private final ConcurrentHashMap<Integer, StripedAmount> totalsPerDay = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * The highest USD amount of an entity, which is replaced rather than
+     * updated so that it can be raised with a compare and swap.
+     */
+    private static final class HighestAmount {
+
+	/**
+	 * The amount, or <code>null</code> if it is held at the fixed point
+	 * scale.
+	 */
+	private final BigDecimal amount;
+
+	private final long fixedPointAmount;
+
+	private final int scale;
+
+	HighestAmount(final BigDecimal amount) {
+	    this.amount = amount;
+	    this.fixedPointAmount = 0;
+	    this.scale = amount.scale();
+	}
+
+	HighestAmount(final long fixedPointAmount, final int scale) {
+	    this.amount = null;
+	    this.fixedPointAmount = fixedPointAmount;
+	    this.scale = scale;
+	}
+
+	int compareTo(final HighestAmount other, final int fixedPointScale) {
+
+	    if (this.amount == null && other.amount == null) {
+		return Long.compare(this.fixedPointAmount, other.fixedPointAmount);
+	    }
+
+	    return this.toBigDecimal(fixedPointScale).compareTo(other.toBigDecimal(fixedPointScale));
+	}
+
+	BigDecimal toBigDecimal(final int fixedPointScale) {
+	    return this.amount != null ? this.amount
+		    : FixedPointAmounts.toBigDecimal(this.fixedPointAmount, fixedPointScale, this.scale);
+	}
+    }
+
+    /**
+     * The aggregates of one direction. The count, total and retired
+     * generation are read while producers wait, and the rest is filled in by
+     * <code>Direction.fold</code> afterwards.
+     */
+    private static final class Snapshot {
+
+	private final Generation generation;
+
+	/**
+	 * The highest amount of each entity over every generation so far.
+	 */
+	private Map<String, HighestAmount> highestAmounts;
+
+	private final long instructionCount;
+
+	private final BigDecimal total;
+
+	private Map<Date, BigDecimal> totalsPerDay;
+
+	Snapshot(final long instructionCount, final BigDecimal total, final Generation generation) {
+	    this.instructionCount = instructionCount;
+	    this.total = total;
+	    this.generation = generation;
+	}
+    }
+}
@@ -0,0 +1,327 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Adds up the net amount in USD of each (entity id, epoch day) pair, in the
+ * same pass as the other aggregates.
+ * <p>
+ * The pairs are the <code>long</code> keys of an open addressing table with
+ * linear probing, the entity id in the high half and the epoch day in the
+ * low half, and the amounts are held in parallel arrays. A pair therefore
+ * costs no objects in fixed point mode, and one <code>BigDecimal</code>
+ * otherwise, however many pairs there are. Each net amount is held as
+ * <code>AmountTotal</code> holds a total, so it is exactly the
+ * <code>BigDecimal</code> sum, including its scale.
+ */
+final class NetPositionAggregator {
+
+    /**
+     * Marks a free slot. Entity ids are not negative, so no key is -1.
+     */
+    private static final long EMPTY = -1L;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Scale of fixed point amounts, or
+     * <code>ReportConfiguration.NO_FIXED_POINT</code>.
+     */
+    private final int fixedPointScale;
+
+    /**
+     * The part of each net amount summed as a fixed point <code>long</code>.
+     */
+    private long[] fixedPointSums;
+
+    private long[] keys;
+
+    /**
+     * The largest scale of the amounts of each pair.
+     */
+    private int[] scales;
+
+    private int size;
+
+    /**
+     * The part of each net amount summed as a <code>BigDecimal</code>, or
+     * <code>null</code> while it is zero.
+     */
+    private BigDecimal[] sums;
+
+    /**
+     * @param fixedPointScale
+     *            the scale of fixed point amounts, or
+     *            <code>ReportConfiguration.NO_FIXED_POINT</code>
+     */
+    NetPositionAggregator(final int fixedPointScale) {
+	this.fixedPointScale = fixedPointScale;
+	this.allocate(NetPositionAggregator.INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds an incoming amount to the net amount of a pair, or subtracts an
+     * outgoing one.
+     */
+    void add(final int entityId, final int epochDay, final BigDecimal usdAmount, final boolean incoming) {
+
+	final int slot = this.slotOf(NetPositionAggregator.key(entityId, epochDay));
+	final BigDecimal sum = this.sums[slot] == null ? BigDecimal.ZERO : this.sums[slot];
+
+	this.sums[slot] = incoming ? sum.add(usdAmount) : sum.subtract(usdAmount);
+	this.scales[slot] = Math.max(this.scales[slot], usdAmount.scale());
+    }
+
+    /**
+     * Adds an incoming fixed point amount to the net amount of a pair, or
+     * subtracts an outgoing one.
+     *
+     * @param fixedPointAmount
+     *            the amount at the fixed point scale, which is not negative
+     * @param amountScale
+     *            the scale the amount would have as a <code>BigDecimal</code>
+     */
+    void add(final int entityId, final int epochDay, final long fixedPointAmount, final int amountScale,
+	    final boolean incoming) {
+	this.addFixedPoint(this.slotOf(NetPositionAggregator.key(entityId, epochDay)),
+		incoming ? fixedPointAmount : -fixedPointAmount, amountScale);
+    }
+
+    private void addFixedPoint(final int slot, final long fixedPointAmount, final int amountScale) {
+
+	final long sum = this.fixedPointSums[slot];
+	final long result = sum + fixedPointAmount;
+
+	if (((sum ^ result) & (fixedPointAmount ^ result)) < 0) {
+	    /*
+	     * Move the long part into the BigDecimal part before it
+	     * overflows...
+	     */
+	    final BigDecimal moved = BigDecimal.valueOf(sum, this.fixedPointScale);
+	    this.sums[slot] = this.sums[slot] == null ? moved : this.sums[slot].add(moved);
+	    this.fixedPointSums[slot] = fixedPointAmount;
+	} else {
+	    this.fixedPointSums[slot] = result;
+	}
+
+	this.scales[slot] = Math.max(this.scales[slot], amountScale);
+    }
+
+    /**
+     * Adds the net amounts of another aggregator to this one.
+     *
+     * @param other
+     *            the aggregator to merge into this one
+     * @param entityDictionary
+     *            the dictionary of the entity ids of this aggregator
+     * @param otherEntityDictionary
+     *            the dictionary of the entity ids of the other aggregator
+     */
+    void merge(final NetPositionAggregator other, final EntityDictionary entityDictionary,
+	    final EntityDictionary otherEntityDictionary) {
+
+	final boolean sharedDictionary = entityDictionary == otherEntityDictionary;
+
+	/*
+	 * Ids of another dictionary are translated by name, once per
+	 * entity...
+	 */
+	final int[] entityIds = new int[sharedDictionary ? 0 : otherEntityDictionary.size()];
+	Arrays.fill(entityIds, -1);
+
+	for (int otherSlot = 0; otherSlot < other.keys.length; otherSlot++) {
+
+	    final long otherKey = other.keys[otherSlot];
+
+	    if (otherKey == NetPositionAggregator.EMPTY) {
+		continue;
+	    }
+
+	    final int otherEntityId = (int) (otherKey >>> 32);
+	    int entityId = otherEntityId;
+
+	    if (!sharedDictionary) {
+		if (entityIds[otherEntityId] < 0) {
+		    entityIds[otherEntityId] = entityDictionary.getId(otherEntityDictionary.getEntity(otherEntityId));
+		}
+		entityId = entityIds[otherEntityId];
+	    }
+
+	    final int slot = this.slotOf(NetPositionAggregator.key(entityId, (int) otherKey));
+
+	    if (other.sums[otherSlot] != null) {
+		this.sums[slot] = this.sums[slot] == null ? BigDecimal.ZERO.add(other.sums[otherSlot])
+			: this.sums[slot].add(other.sums[otherSlot]);
+	    }
+
+	    this.addFixedPoint(slot, other.fixedPointSums[otherSlot], other.scales[otherSlot]);
+	}
+    }
+
+    /**
+     * @return the number of (entity, day) pairs
+     */
+    int size() {
+	return this.size;
+    }
+
+    /**
+     * Converts the net amounts into <code>NetPositions</code>, sorting the
+     * pairs by entity name and then by day.
+     *
+     * @param entityDictionary
+     *            the dictionary of the entity ids of this aggregator
+     * @return the net positions
+     */
+    NetPositions toNetPositions(final EntityDictionary entityDictionary) {
+
+	if (this.size == 0) {
+	    return NetPositions.EMPTY;
+	}
+
+	/*
+	 * Rank the entities by name, so that pairs sort as longs with the
+	 * rank in the high half and the day, made unsigned, in the low half...
+	 */
+	final boolean[] seen = new boolean[entityDictionary.size()];
+	int entityCount = 0;
+
+	for (final long key : this.keys) {
+	    if (key != NetPositionAggregator.EMPTY && !seen[(int) (key >>> 32)]) {
+		seen[(int) (key >>> 32)] = true;
+		entityCount++;
+	    }
+	}
+
+	final String[] names = new String[entityCount];
+	for (int entityId = 0, i = 0; entityId < seen.length; entityId++) {
+	    if (seen[entityId]) {
+		names[i++] = entityDictionary.getEntity(entityId);
+	    }
+	}
+	Arrays.sort(names);
+
+	final int[] rankOf = new int[seen.length];
+	final int[] entityIdOf = new int[entityCount];
+
+	for (int rank = 0; rank < names.length; rank++) {
+	    final int entityId = entityDictionary.getId(names[rank]);
+	    rankOf[entityId] = rank;
+	    entityIdOf[rank] = entityId;
+	}
+
+	final long[] order = new long[this.size];
+	int i = 0;
+
+	for (final long key : this.keys) {
+	    if (key != NetPositionAggregator.EMPTY) {
+		order[i++] = (long) rankOf[(int) (key >>> 32)] << 32 | ((int) key ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+	    }
+	}
+	Arrays.sort(order);
+
+	final String[] entities = new String[this.size];
+	final int[] epochDays = new int[this.size];
+	final BigDecimal[] netUSDAmounts = new BigDecimal[this.size];
+
+	for (int j = 0; j < order.length; j++) {
+
+	    final int entityId = entityIdOf[(int) (order[j] >>> 32)];
+	    final int epochDay = (int) order[j] ^ Integer.MIN_VALUE;
+
+	    entities[j] = names[(int) (order[j] >>> 32)];
+	    epochDays[j] = epochDay;
+	    netUSDAmounts[j] = this.toBigDecimal(this.slotOf(NetPositionAggregator.key(entityId, epochDay)));
+	}
+
+	return new NetPositions(entities, epochDays, netUSDAmounts);
+    }
+
+    private BigDecimal toBigDecimal(final int slot) {
+
+	if (this.fixedPointScale == ReportConfiguration.NO_FIXED_POINT) {
+	    return this.sums[slot];
+	}
+
+	final BigDecimal sum = this.sums[slot] == null ? BigDecimal.ZERO : this.sums[slot];
+
+	return sum.add(BigDecimal.valueOf(this.fixedPointSums[slot], this.fixedPointScale)).setScale(this.scales[slot],
+		RoundingMode.UNNECESSARY);
+    }
+
+    private static long key(final int entityId, final int epochDay) {
+	return (long) entityId << 32 | epochDay & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Finds the slot of a key, adding the key if it is not present.
+     */
+    private int slotOf(final long key) {
+
+	final int mask = this.keys.length - 1;
+	int slot = NetPositionAggregator.hash(key) & mask;
+
+	while (this.keys[slot] != key) {
+
+	    if (this.keys[slot] == NetPositionAggregator.EMPTY) {
+
+		if ((this.size + 1) * 2 > this.keys.length) {
+		    this.resize();
+		    return this.slotOf(key);
+		}
+
+		this.keys[slot] = key;
+		this.size++;
+		return slot;
+	    }
+
+	    slot = slot + 1 & mask;
+	}
+
+	return slot;
+    }
+
+    private static int hash(final long key) {
+	final long mixed = key * 0x9E3779B97F4A7C15L;
+	return (int) (mixed ^ mixed >>> 32);
+    }
+
+    private void allocate(final int capacity) {
+	this.keys = new long[capacity];
+	Arrays.fill(this.keys, NetPositionAggregator.EMPTY);
+	this.fixedPointSums = new long[capacity];
+	this.scales = new int[capacity];
+	this.sums = new BigDecimal[capacity];
+    }
+
+    private void resize() {
+
+	final long[] oldKeys = this.keys;
+	final long[] oldFixedPointSums = this.fixedPointSums;
+	final int[] oldScales = this.scales;
+	final BigDecimal[] oldSums = this.sums;
+
+	this.allocate(oldKeys.length * 2);
+
+	final int mask = this.keys.length - 1;
+
+	for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+
+	    if (oldKeys[oldSlot] == NetPositionAggregator.EMPTY) {
+		continue;
+	    }
+
+	    int slot = NetPositionAggregator.hash(oldKeys[oldSlot]) & mask;
+	    while (this.keys[slot] != NetPositionAggregator.EMPTY) {
+		slot = slot + 1 & mask;
+	    }
+
+	    this.keys[slot] = oldKeys[oldSlot];
+	    this.fixedPointSums[slot] = oldFixedPointSums[oldSlot];
+	    this.scales[slot] = oldScales[oldSlot];
+	    this.sums[slot] = oldSums[oldSlot];
+	}
+    }
+}
@@ -0,0 +1,115 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * The net amount in USD settled for each entity on each day: the incoming
+ * amounts minus the outgoing amounts, held in entity then settlement date
+ * order.
+ * <p>
+ * A pair is looked up with a binary search, O(log n). A net amount is
+ * exactly the sum of the incoming amounts minus the sum of the outgoing
+ * amounts of its entity and day, and has the largest scale of those amounts.
+ * Instances are immutable.
+ */
+public final class NetPositions {
+
+    static final NetPositions EMPTY = new NetPositions(new String[0], new int[0], new BigDecimal[0]);
+
+    private final String[] entities;
+
+    private final int[] epochDays;
+
+    private final BigDecimal[] netUSDAmounts;
+
+    /**
+     * @param entities
+     *            the entity of each pair, in order
+     * @param epochDays
+     *            the actual settlement epoch day of each pair, in order within
+     *            each entity
+     * @param netUSDAmounts
+     *            the net amount of each pair
+     */
+    NetPositions(final String[] entities, final int[] epochDays, final BigDecimal[] netUSDAmounts) {
+	this.entities = entities;
+	this.epochDays = epochDays;
+	this.netUSDAmounts = netUSDAmounts;
+    }
+
+    /**
+     * @param index
+     *            from 0 to <code>size() - 1</code>
+     * @return the entity of the <code>index</code>th pair
+     */
+    public String getEntity(final int index) {
+	return this.entities[index];
+    }
+
+    /**
+     * @param index
+     *            from 0 to <code>size() - 1</code>
+     * @return the actual settlement epoch day of the <code>index</code>th pair
+     */
+    public int getEpochDay(final int index) {
+	return this.epochDays[index];
+    }
+
+    /**
+     * @param index
+     *            from 0 to <code>size() - 1</code>
+     * @return the net amount in USD of the <code>index</code>th pair, positive
+     *         when more was settled incoming than outgoing
+     */
+    public BigDecimal getNetUSDAmount(final int index) {
+	return this.netUSDAmounts[index];
+    }
+
+    /**
+     * Gets the net amount settled for an entity on a day.
+     *
+     * @param entity
+     *            the entity
+     * @param day
+     *            the Actual Date of settlement
+     * @return the net amount, or <code>null</code> if nothing settled for the
+     *         entity that day
+     */
+    public BigDecimal getNetUSDAmountOn(final String entity, final LocalDate day) {
+
+	Objects.requireNonNull(entity);
+
+	final int epochDay = Math.toIntExact(day.toEpochDay());
+	int low = 0;
+	int high = this.entities.length - 1;
+
+	while (low <= high) {
+
+	    final int middle = low + high >>> 1;
+	    int comparison = this.entities[middle].compareTo(entity);
+
+	    if (comparison == 0) {
+		comparison = Integer.compare(this.epochDays[middle], epochDay);
+	    }
+
+	    if (comparison < 0) {
+		low = middle + 1;
+	    } else if (comparison > 0) {
+		high = middle - 1;
+	    } else {
+		return this.netUSDAmounts[middle];
+	    }
+	}
+
+	return null;
+    }
+
+    /**
+     * @return the number of (entity, day) pairs
+     */
+    public int size() {
+	return this.entities.length;
+    }
+}
@@ -0,0 +1,158 @@
+package com.jpmorgan.report.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds a <code>Report</code> on a fork/join pool.
+ * <p>
+ * The <code>Instructions</code> are split into chunks, each chunk is
+ * aggregated by its own <code>ReportAccumulator</code>, and the partial
+ * aggregates are merged back in input order. The resulting
+ * <code>Report</code> is identical to one built sequentially, including the
+ * scale of every <code>BigDecimal</code>, the tie order of the rankings and
+ * the order of any retained <code>Instructions</code>.
+ */
+public class ParallelReportBuilder {
+
+    /**
+     * The default number of <code>Instructions</code> below which a chunk is
+     * aggregated without being split further.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final int chunkSize;
+
+    private final ReportConfiguration configuration;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a builder that runs on the common fork/join pool.
+     *
+     * @param configuration
+     *            the options used to build the <code>Report</code>
+     */
+    public ParallelReportBuilder(final ReportConfiguration configuration) {
+	this(configuration, ForkJoinPool.commonPool(), ParallelReportBuilder.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a builder.
+     *
+     * @param configuration
+     *            the options used to build the <code>Report</code>
+     * @param pool
+     *            the pool to run on
+     * @param chunkSize
+     *            the number of <code>Instructions</code> below which a chunk
+     *            is aggregated without being split further
+     */
+    public ParallelReportBuilder(final ReportConfiguration configuration, final ForkJoinPool pool,
+	    final int chunkSize) {
+
+	Objects.requireNonNull(configuration);
+	Objects.requireNonNull(pool);
+
+	if (chunkSize < 1) {
+	    throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+	}
+
+	this.configuration = configuration;
+	this.pool = pool;
+	this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Builds a <code>Report</code>.
+     *
+     * @param instructions
+     *            the <code>Instructions</code> to report on
+     * @return the <code>Report</code>
+     */
+    public Report build(final List<Instruction> instructions) {
+
+	Objects.requireNonNull(instructions);
+
+	final List<Instruction> input = instructions instanceof RandomAccess ? instructions
+		: new ArrayList<>(instructions);
+
+	return this.pool.invoke(new AccumulateTask(input, null, 0, input.size())).toLazyReport();
+    }
+
+    /**
+     * Builds a <code>Report</code> from a columnar batch.
+     *
+     * @param instructions
+     *            the <code>Instructions</code> to report on
+     * @return the <code>Report</code>
+     */
+    public Report build(final InstructionBatch instructions) {
+
+	Objects.requireNonNull(instructions);
+
+	return this.pool.invoke(new AccumulateTask(null, instructions, 0, instructions.size())).toLazyReport();
+    }
+
+    /**
+     * Aggregates a range of the <code>Instructions</code>, splitting it in
+     * two while it is larger than the chunk size.
+     */
+    private final class AccumulateTask extends RecursiveTask<ReportAccumulator> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The rows to aggregate when building from a batch, otherwise
+	 * <code>null</code>.
+	 */
+	private final InstructionBatch batch;
+
+	private final int from;
+
+	private final List<Instruction> instructions;
+
+	private final int to;
+
+	AccumulateTask(final List<Instruction> instructions, final InstructionBatch batch, final int from,
+		final int to) {
+	    this.instructions = instructions;
+	    this.batch = batch;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	@Override
+	protected ReportAccumulator compute() {
+
+	    if (this.to - this.from <= ParallelReportBuilder.this.chunkSize) {
+
+		final ReportAccumulator accumulator = new ReportAccumulator(ParallelReportBuilder.this.configuration);
+
+		if (this.batch != null) {
+		    accumulator.acceptAll(this.batch, this.from, this.to);
+		} else {
+		    for (int i = this.from; i < this.to; i++) {
+			accumulator.accept(this.instructions.get(i));
+		    }
+		}
+
+		return accumulator;
+	    }
+
+	    final int middle = this.from + this.to >>> 1;
+	    final AccumulateTask right = new AccumulateTask(this.instructions, this.batch, middle,
+		    this.to);
+	    right.fork();
+
+	    final ReportAccumulator left = new AccumulateTask(this.instructions, this.batch, this.from,
+		    middle).compute();
+
+	    return left.merge(right.join());
+	}
+    }
+}
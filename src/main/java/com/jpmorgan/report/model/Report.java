@@ -1,227 +1,355 @@
 package com.jpmorgan.report.model;
 
 import java.math.BigDecimal;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+/**
+ * The result of processing <code>Instructions</code>.
+ * <p>
+ * Only the sections of its <code>ReportPlan</code> can be read; reading any
+ * other throws <code>IllegalStateException</code>. The instruction counts are
+ * always available. Sections may be computed on first access and are then
+ * kept, so a caller only pays for the sections it reads.
+ */
 public class Report {
 
+    private final LazySection<DailyTotals> incomingDailyTotals;
+
     /**
      * List of Incoming Entity rankings.
      */
-    private final List<EntityRanking> incomingEntityRankingList;
+    private final LazySection<List<EntityRanking>> incomingEntityRankingList;
 
     /**
-     * Map of valid Instructions, grouped by Buy or Sell (i.e B is outgoing, S
-     * is incoming).
+     * Valid incoming Instructions (i.e S is incoming), empty unless the
+     * Instructions were retained.
      */
-    private final Map<BuySell, List<Instruction>> instructionsByDirectionMap;
+    private final LazySection<List<Instruction>> incomingInstructions;
 
-    /**
-     * Map where key is Boolean of validity.
-     */
-    private final Map<Boolean, List<Instruction>> instructionsValidityMap;
+    private final long incomingInstructionCount;
 
     /**
-     * List of Outgoing Entity rankings.
+     * Invalid Instructions, empty unless the Instructions were retained.
      */
-    private final List<EntityRanking> outgoingEntityRankingList;
+    private final LazySection<List<Instruction>> invalidInstructions;
 
-    /**
-     * Constructor for the Report.
-     *
-     * @param instructions
-     *            constructs a Report from a <code>List</code> of
-     *            <code>Instruction</code> objects
-     */
-    public Report(final List<Instruction> instructions) {
+    private final long invalidInstructionCount;
 
-	Objects.requireNonNull(instructions);
+    private final Map<InvalidReason, Long> invalidInstructionCountByReason;
 
-	/*
-	 * Partition the Instructions according to whether they are valid or
-	 * not...
-	 */
-	this.instructionsValidityMap = Collections
-		.unmodifiableMap(instructions.stream().collect(Collectors.partitioningBy(this::isValidInstruction)));
+    private final LazySection<NetPositions> netPositions;
 
-	/*
-	 * Only valid Instructions will be processed...
-	 */
-	final List<Instruction> validInstructions = this.getValidInstructions();
+    private final LazySection<DailyTotals> outgoingDailyTotals;
 
-	/*
-	 * Apply the supplied business logic to the instructions...
-	 */
-	validInstructions.stream().forEach(instruction -> {
+    /**
+     * List of Outgoing Entity rankings.
+     */
+    private final LazySection<List<EntityRanking>> outgoingEntityRankingList;
 
-	    /*
-	     * Our Instructions have passed validation, therefore we can safely
-	     * set our Enum values to the supplied String values.
-	     */
-	    instruction.setBuySell(this.getEnumFromString(BuySell.class, instruction.getBuySellString()));
-	    instruction.setCurrency(this.getEnumFromString(Currency.class, instruction.getCurrencyString()));
+    /**
+     * Valid outgoing Instructions (i.e B is outgoing), empty unless the
+     * Instructions were retained.
+     */
+    private final LazySection<List<Instruction>> outgoingInstructions;
 
-	    /*
-	     * Now we shall set the USD amount using the formula supplied.
-	     */
-	    instruction.setUSDAmount(instruction.getPricePerUnit()
-		    .multiply(new BigDecimal(instruction.getUnits()).multiply(instruction.getExchangeRate())));
+    private final long outgoingInstructionCount;
 
-	    /*
-	     * Initially, we shall set the acutalSettlementDate to be the same
-	     * value as the settlementDate value.
-	     */
-	    instruction.setAcutalSettlementDate(instruction.getSettlementDate());
+    private final ReportPlan plan;
 
-	    /*
-	     * For now, we shall hard code the Instructions for AED or SAR
-	     * currencies to have working week Sunday to Thursday. In a real
-	     * application, I would seek to use Spring to provide access to a
-	     * properties file and have this List of currencies set there. This
-	     * List or Set would be injected into this class (which would be a
-	     * Spring Bean). I would NOT want the following to be in code I
-	     * actually developed professionally. The following is merely to
-	     * keep the number of dependencies down.
-	     */
+    /**
+     * Sketches of the valid Instructions, or <code>null</code> if they were
+     * not built.
+     */
+    private final ReportSketches sketches;
 
-	    final SimpleDateFormat simpleDateFormat = new SimpleDateFormat("EEEE");
-	    final String dayOfWeek = simpleDateFormat.format(instruction.getAcutalSettlementDate()).toUpperCase();
+    private final LazySection<BigDecimal> totalUSDAmountSettledIncoming;
 
-	    /*
-	     * A work week starts Monday and ends Friday, unless the currency of
-	     * the trade is AED or SAR, where the work week starts Sunday and
-	     * ends Thursday. No other holidays to be taken into account....
-	     */
-	    if (instruction.getCurrency() == Currency.AED || instruction.getCurrency() == Currency.SAR) {
-
-		if (dayOfWeek.equals("FRIDAY")) {
-
-		    /*
-		     * I could have refactored this into a private method, but I
-		     * want not want to keep this code in a professionally
-		     * delivered application. I will leave it in this form for
-		     * illustration...
-		     */
-		    final Calendar cal = Calendar.getInstance();
-		    cal.setTime(instruction.getAcutalSettlementDate());
-		    cal.add(Calendar.DATE, 2);
-		    instruction.setAcutalSettlementDate(cal.getTime());
-
-		}
-
-		/*
-		 * I could have refactored this into a private method, but I
-		 * want not want to keep this code in a professionally delivered
-		 * application. I will leave it in this form for illustration...
-		 */
-		if (dayOfWeek.equals("SATURDAY")) {
-
-		    final Calendar cal = Calendar.getInstance();
-		    cal.setTime(instruction.getAcutalSettlementDate());
-		    cal.add(Calendar.DATE, 1);
-		    instruction.setAcutalSettlementDate(cal.getTime());
-
-		}
-	    } else {
-
-		if (dayOfWeek.equals("SATURDAY")) {
-
-		    /*
-		     * I could have refactored this into a private method, but I
-		     * want not want to keep this code in a professionally
-		     * delivered application. I will leave it in this form for
-		     * illustration...
-		     */
-		    final Calendar cal = Calendar.getInstance();
-		    cal.setTime(instruction.getAcutalSettlementDate());
-		    cal.add(Calendar.DATE, 2);
-		    instruction.setAcutalSettlementDate(cal.getTime());
-
-		}
-
-		/*
-		 * I could have refactored this into a private method, but I
-		 * want not want to keep this code in a professionally delivered
-		 * application. I will leave it in this form for illustration...
-		 */
-		if (dayOfWeek.equals("SUNDAY")) {
-
-		    final Calendar cal = Calendar.getInstance();
-		    cal.setTime(instruction.getAcutalSettlementDate());
-		    cal.add(Calendar.DATE, 1);
-		    instruction.setAcutalSettlementDate(cal.getTime());
-
-		}
-	    }
+    private final LazySection<Map<Date, BigDecimal>> totalUSDAmountSettledIncomingPerDay;
 
-	});
+    private final LazySection<BigDecimal> totalUSDAmountSettledOutgoing;
 
-	this.instructionsByDirectionMap = this.getValidInstructions().stream()
-		.collect(Collectors.groupingBy(Instruction::getBuySell));
+    private final LazySection<Map<Date, BigDecimal>> totalUSDAmountSettledOutgoingPerDay;
 
-	this.incomingEntityRankingList = this.getEntityRankingList(this.getIncomingInstructions());
-	this.outgoingEntityRankingList = this.getEntityRankingList(this.getOutgoingInstructions());
+    /**
+     * Valid Instructions, empty unless the Instructions were retained.
+     */
+    private final LazySection<List<Instruction>> validInstructions;
 
+    /**
+     * Constructor for the Report.
+     *
+     * @param instructions
+     *            constructs a Report from a <code>List</code> of
+     *            <code>Instruction</code> objects
+     */
+    public Report(final List<Instruction> instructions) {
+	this(instructions, EntityRankingAggregator.UNBOUNDED);
     }
 
     /**
-     * Generates an <code>EntityRanking List</code> based on a <code>List</code>
-     * of <code>Instructions</code>.
+     * Constructor for a Report whose <code>EntityRanking</code> lists only
+     * hold the top ranked entities.
      *
      * @param instructions
-     *            the <code>List</code> of <code>Instructions</code> to generate
-     *            the <code>EntityRanking Set</code> from
-     * @return the <code>EntityRanking List</code>
+     *            constructs a Report from a <code>List</code> of
+     *            <code>Instruction</code> objects
+     * @param entityRankingLimit
+     *            the maximum number of entities in each
+     *            <code>EntityRanking List</code>, or
+     *            <code>EntityRankingAggregator.UNBOUNDED</code>
      */
-    private List<EntityRanking> getEntityRankingList(final List<Instruction> instructions) {
-
-	Objects.requireNonNull(instructions);
-
-	final Set<EntityRanking> entityRankingSet = new HashSet<>();
-
-	for (final String entity : instructions.stream().map(Instruction::getEntity).collect(Collectors.toSet())) {
-
-	    final Instruction highestUSDAmountInstruction = instructions.stream()
-		    .filter(instruction -> instruction.getEntity().equals(entity))
-		    .max(Comparator.comparing(Instruction::getUSDAmount)).get();
-
-	    final EntityRanking entityRanking = new EntityRanking();
-	    entityRanking.setEntity(entity);
-	    entityRanking.setHighestUSDAmount(highestUSDAmountInstruction.getUSDAmount());
+    public Report(final List<Instruction> instructions, final int entityRankingLimit) {
+	this(new ReportAccumulator(true, entityRankingLimit).acceptAll(Objects.requireNonNull(instructions).iterator()),
+		true);
+    }
 
-	    entityRankingSet.add(entityRanking);
+    /**
+     * Constructor for a Report of only some sections. The sections are
+     * computed on first access, and the <code>Instructions</code> are only
+     * retained if the plan includes them.
+     *
+     * @param instructions
+     *            constructs a Report from a <code>List</code> of
+     *            <code>Instruction</code> objects
+     * @param plan
+     *            the sections that may be read
+     */
+    public Report(final List<Instruction> instructions, final ReportPlan plan) {
+	this(new ReportAccumulator(ReportAccumulator.newConfiguration(true, EntityRankingAggregator.UNBOUNDED, plan))
+		.acceptAll(Objects.requireNonNull(instructions).iterator()), true);
+    }
 
+    /**
+     * Constructs a Report from the aggregates of a
+     * <code>ReportAccumulator</code>.
+     *
+     * @param accumulator
+     *            the <code>ReportAccumulator</code>
+     * @param lazy
+     *            <code>true</code> to compute each section on first access,
+     *            in which case the accumulator must not change afterwards, or
+     *            <code>false</code> to compute the planned sections now
+     */
+    Report(final ReportAccumulator accumulator, final boolean lazy) {
+
+	Objects.requireNonNull(accumulator);
+
+	this.plan = accumulator.getPlan();
+
+	this.validInstructions = LazySection.of(this.plan, ReportSection.INSTRUCTIONS,
+		accumulator::getValidInstructions);
+	this.invalidInstructions = LazySection.of(this.plan, ReportSection.INSTRUCTIONS,
+		accumulator::getInvalidInstructions);
+	this.incomingInstructions = LazySection.of(this.plan, ReportSection.INSTRUCTIONS,
+		accumulator::getIncomingInstructions);
+	this.outgoingInstructions = LazySection.of(this.plan, ReportSection.INSTRUCTIONS,
+		accumulator::getOutgoingInstructions);
+
+	this.invalidInstructionCount = accumulator.getInvalidInstructionCount();
+	this.invalidInstructionCountByReason = accumulator.getInvalidInstructionCountByReason();
+	this.incomingInstructionCount = accumulator.getIncomingInstructionCount();
+	this.outgoingInstructionCount = accumulator.getOutgoingInstructionCount();
+
+	this.totalUSDAmountSettledIncoming = LazySection.of(this.plan, ReportSection.TOTALS,
+		accumulator::getTotalUSDAmountSettledIncoming);
+	this.totalUSDAmountSettledOutgoing = LazySection.of(this.plan, ReportSection.TOTALS,
+		accumulator::getTotalUSDAmountSettledOutgoing);
+	this.totalUSDAmountSettledIncomingPerDay = LazySection.of(this.plan, ReportSection.DAILY_TOTALS,
+		() -> Report.sorted(accumulator.getTotalUSDAmountSettledIncomingPerDay()));
+	this.totalUSDAmountSettledOutgoingPerDay = LazySection.of(this.plan, ReportSection.DAILY_TOTALS,
+		() -> Report.sorted(accumulator.getTotalUSDAmountSettledOutgoingPerDay()));
+	this.incomingDailyTotals = LazySection.of(this.plan, ReportSection.DAILY_TOTALS,
+		() -> DailyTotals.of(this.totalUSDAmountSettledIncomingPerDay.get()));
+	this.outgoingDailyTotals = LazySection.of(this.plan, ReportSection.DAILY_TOTALS,
+		() -> DailyTotals.of(this.totalUSDAmountSettledOutgoingPerDay.get()));
+
+	this.incomingEntityRankingList = LazySection.of(this.plan, ReportSection.INCOMING_RANKING,
+		accumulator::getIncomingEntityRankingList);
+	this.outgoingEntityRankingList = LazySection.of(this.plan, ReportSection.OUTGOING_RANKING,
+		accumulator::getOutgoingEntityRankingList);
+
+	this.netPositions = LazySection.of(this.plan, ReportSection.NET_POSITIONS, accumulator::getNetPositions);
+
+	this.sketches = accumulator.getSketches();
+
+	if (!lazy) {
+	    /*
+	     * Compute every planned section now, so that the Report no longer
+	     * refers to the accumulator...
+	     */
+	    for (final LazySection<?> section : this.sections()) {
+		section.compute();
+	    }
 	}
+    }
 
-	List<EntityRanking> entityRankingList = new ArrayList<>();
-	entityRankingList.addAll(entityRankingSet);
-
-	entityRankingList = entityRankingList.stream()
-		.sorted((x, y) -> x.getHighestUSDAmount().compareTo(y.getHighestUSDAmount()))
-		.collect(Collectors.toList());
+    /**
+     * Constructs a Report from aggregates that were built elsewhere. The
+     * incoming and outgoing <code>Instructions</code> are the valid ones that
+     * sell and buy. The aggregates of sections that are not planned are
+     * ignored and may be <code>null</code>.
+     *
+     * @param plan
+     *            the sections that may be read
+     * @param validInstructions
+     *            the valid Instructions, empty unless they were retained
+     * @param invalidInstructions
+     *            the invalid Instructions, empty unless they were retained
+     * @param incomingInstructionCount
+     *            the number of valid incoming Instructions
+     * @param outgoingInstructionCount
+     *            the number of valid outgoing Instructions
+     * @param invalidInstructionCountByReason
+     *            the number of invalid Instructions by reason
+     * @param totalUSDAmountSettledIncoming
+     *            the total amount in USD settled incoming
+     * @param totalUSDAmountSettledOutgoing
+     *            the total amount in USD settled outgoing
+     * @param totalUSDAmountSettledIncomingPerDay
+     *            the total amount in USD settled incoming per day
+     * @param totalUSDAmountSettledOutgoingPerDay
+     *            the total amount in USD settled outgoing per day
+     * @param incomingEntityRankingList
+     *            the incoming <code>EntityRanking List</code>
+     * @param outgoingEntityRankingList
+     *            the outgoing <code>EntityRanking List</code>
+     * @param netPositions
+     *            the net amount in USD settled per entity per day
+     * @param sketches
+     *            the sketches of the valid Instructions, or
+     *            <code>null</code> if they were not built
+     */
+    Report(final ReportPlan plan, final List<Instruction> validInstructions,
+	    final List<Instruction> invalidInstructions, final long incomingInstructionCount,
+	    final long outgoingInstructionCount, final Map<InvalidReason, Long> invalidInstructionCountByReason,
+	    final BigDecimal totalUSDAmountSettledIncoming, final BigDecimal totalUSDAmountSettledOutgoing,
+	    final Map<Date, BigDecimal> totalUSDAmountSettledIncomingPerDay,
+	    final Map<Date, BigDecimal> totalUSDAmountSettledOutgoingPerDay,
+	    final List<EntityRanking> incomingEntityRankingList, final List<EntityRanking> outgoingEntityRankingList,
+	    final NetPositions netPositions, final ReportSketches sketches) {
+
+	this(plan, () -> validInstructions, () -> invalidInstructions, incomingInstructionCount,
+		outgoingInstructionCount, invalidInstructionCountByReason, totalUSDAmountSettledIncoming,
+		totalUSDAmountSettledOutgoing, () -> totalUSDAmountSettledIncomingPerDay,
+		() -> totalUSDAmountSettledOutgoingPerDay, () -> incomingEntityRankingList,
+		() -> outgoingEntityRankingList, () -> netPositions, sketches);
+    }
 
-	Collections.reverse(entityRankingList);
+    /**
+     * Constructs a Report whose sections, other than the counts and totals,
+     * are read from suppliers on first access. Each supplier is called at
+     * most once, and only if its section is planned and read. The incoming
+     * and outgoing <code>Instructions</code> are the valid ones that sell and
+     * buy.
+     *
+     * @param plan
+     *            the sections that may be read
+     * @param validInstructions
+     *            supplies the valid Instructions, empty unless they were
+     *            retained
+     * @param invalidInstructions
+     *            supplies the invalid Instructions, empty unless they were
+     *            retained
+     * @param incomingInstructionCount
+     *            the number of valid incoming Instructions
+     * @param outgoingInstructionCount
+     *            the number of valid outgoing Instructions
+     * @param invalidInstructionCountByReason
+     *            the number of invalid Instructions by reason
+     * @param totalUSDAmountSettledIncoming
+     *            the total amount in USD settled incoming
+     * @param totalUSDAmountSettledOutgoing
+     *            the total amount in USD settled outgoing
+     * @param totalUSDAmountSettledIncomingPerDay
+     *            supplies the total amount in USD settled incoming per day
+     * @param totalUSDAmountSettledOutgoingPerDay
+     *            supplies the total amount in USD settled outgoing per day
+     * @param incomingEntityRankingList
+     *            supplies the incoming <code>EntityRanking List</code>
+     * @param outgoingEntityRankingList
+     *            supplies the outgoing <code>EntityRanking List</code>
+     * @param netPositions
+     *            supplies the net amount in USD settled per entity per day
+     * @param sketches
+     *            the sketches of the valid Instructions, or
+     *            <code>null</code> if they were not built
+     */
+    Report(final ReportPlan plan, final Supplier<List<Instruction>> validInstructions,
+	    final Supplier<List<Instruction>> invalidInstructions, final long incomingInstructionCount,
+	    final long outgoingInstructionCount, final Map<InvalidReason, Long> invalidInstructionCountByReason,
+	    final BigDecimal totalUSDAmountSettledIncoming, final BigDecimal totalUSDAmountSettledOutgoing,
+	    final Supplier<Map<Date, BigDecimal>> totalUSDAmountSettledIncomingPerDay,
+	    final Supplier<Map<Date, BigDecimal>> totalUSDAmountSettledOutgoingPerDay,
+	    final Supplier<List<EntityRanking>> incomingEntityRankingList,
+	    final Supplier<List<EntityRanking>> outgoingEntityRankingList, final Supplier<NetPositions> netPositions,
+	    final ReportSketches sketches) {
+
+	this.plan = Objects.requireNonNull(plan);
+
+	this.validInstructions = LazySection.of(plan, ReportSection.INSTRUCTIONS,
+		() -> Collections.unmodifiableList(new ArrayList<>(validInstructions.get())));
+	this.invalidInstructions = LazySection.of(plan, ReportSection.INSTRUCTIONS,
+		() -> Collections.unmodifiableList(new ArrayList<>(invalidInstructions.get())));
+	this.incomingInstructions = LazySection.of(plan, ReportSection.INSTRUCTIONS,
+		() -> Report.filter(this.validInstructions.get(), BuySell.S));
+	this.outgoingInstructions = LazySection.of(plan, ReportSection.INSTRUCTIONS,
+		() -> Report.filter(this.validInstructions.get(), BuySell.B));
+
+	this.invalidInstructionCountByReason = Collections
+		.unmodifiableMap(new EnumMap<>(Objects.requireNonNull(invalidInstructionCountByReason)));
+	this.invalidInstructionCount = invalidInstructionCountByReason.values().stream().mapToLong(Long::longValue)
+		.sum();
+	this.incomingInstructionCount = incomingInstructionCount;
+	this.outgoingInstructionCount = outgoingInstructionCount;
+
+	this.totalUSDAmountSettledIncoming = LazySection.ofValue(plan, ReportSection.TOTALS,
+		totalUSDAmountSettledIncoming);
+	this.totalUSDAmountSettledOutgoing = LazySection.ofValue(plan, ReportSection.TOTALS,
+		totalUSDAmountSettledOutgoing);
+	this.totalUSDAmountSettledIncomingPerDay = LazySection.of(plan, ReportSection.DAILY_TOTALS,
+		() -> Report.sorted(totalUSDAmountSettledIncomingPerDay.get()));
+	this.totalUSDAmountSettledOutgoingPerDay = LazySection.of(plan, ReportSection.DAILY_TOTALS,
+		() -> Report.sorted(totalUSDAmountSettledOutgoingPerDay.get()));
+	this.incomingDailyTotals = LazySection.of(plan, ReportSection.DAILY_TOTALS,
+		() -> DailyTotals.of(this.totalUSDAmountSettledIncomingPerDay.get()));
+	this.outgoingDailyTotals = LazySection.of(plan, ReportSection.DAILY_TOTALS,
+		() -> DailyTotals.of(this.totalUSDAmountSettledOutgoingPerDay.get()));
+
+	this.incomingEntityRankingList = LazySection.of(plan, ReportSection.INCOMING_RANKING,
+		() -> Collections.unmodifiableList(new ArrayList<>(incomingEntityRankingList.get())));
+	this.outgoingEntityRankingList = LazySection.of(plan, ReportSection.OUTGOING_RANKING,
+		() -> Collections.unmodifiableList(new ArrayList<>(outgoingEntityRankingList.get())));
+
+	this.netPositions = LazySection.of(plan, ReportSection.NET_POSITIONS, netPositions);
+
+	this.sketches = sketches;
+    }
 
-	Integer rank = new Integer(1);
+    private static List<Instruction> filter(final List<Instruction> instructions, final BuySell buySell) {
+	return Collections.unmodifiableList(instructions.stream()
+		.filter(instruction -> instruction.getBuySell() == buySell).collect(Collectors.toList()));
+    }
 
-	for (final EntityRanking entityRanking : entityRankingList) {
-	    entityRanking.setRank(rank);
-	    rank++;
-	}
+    private static Map<Date, BigDecimal> sorted(final Map<Date, BigDecimal> totalsPerDay) {
+	return Collections.unmodifiableSortedMap(new TreeMap<>(totalsPerDay));
+    }
 
-	return entityRankingList;
+    private List<LazySection<?>> sections() {
+	return Arrays.asList(this.validInstructions, this.invalidInstructions, this.incomingInstructions,
+		this.outgoingInstructions, this.totalUSDAmountSettledIncoming, this.totalUSDAmountSettledOutgoing,
+		this.totalUSDAmountSettledIncomingPerDay, this.totalUSDAmountSettledOutgoingPerDay,
+		this.incomingDailyTotals, this.outgoingDailyTotals, this.incomingEntityRankingList,
+		this.outgoingEntityRankingList, this.netPositions);
     }
 
     /**
@@ -236,100 +364,147 @@ public class Report {
      * @return corresponding enum, or null
      */
     public <T extends Enum<T>> T getEnumFromString(final Class<T> c, final String string) {
-	if (c != null && string != null) {
-	    try {
-		return Enum.valueOf(c, string.trim().toUpperCase());
-	    } catch (final IllegalArgumentException ex) {
-	    }
-	}
-	return null;
+	return ReportAccumulator.getEnumFromString(c, string);
+    }
+
+    /**
+     * Returns the total amount in USD settled incoming on each day, in date
+     * order, indexed for range queries.
+     *
+     * @return the incoming <code>DailyTotals</code>
+     */
+    public DailyTotals getIncomingDailyTotals() {
+	return this.incomingDailyTotals.get();
     }
 
     public List<EntityRanking> getIncomingEntityRankingList() {
-	return this.incomingEntityRankingList;
+	return this.incomingEntityRankingList.get();
     }
 
+    public long getIncomingInstructionCount() {
+	return this.incomingInstructionCount;
+    }
+
+    /**
+     * Returns the valid incoming <code>Instructions</code>. The
+     * <code>List</code> is empty unless the <code>Instructions</code> were
+     * retained when the Report was built.
+     *
+     * @return <code>List</code> of incoming <code>Instructions</code>
+     */
     public List<Instruction> getIncomingInstructions() {
+	return this.incomingInstructions.get();
+    }
 
-	if (this.instructionsByDirectionMap.get(BuySell.S) != null) {
-	    return this.instructionsByDirectionMap.get(BuySell.S);
-	}
+    public long getInvalidInstructionCount() {
+	return this.invalidInstructionCount;
+    }
 
-	return new ArrayList<>();
+    /**
+     * Returns a <code>Map</code> where the key is why Instructions were
+     * rejected and the value is how many were rejected for that reason.
+     *
+     * @return <code>Map</code> of invalid instruction counts
+     */
+    public Map<InvalidReason, Long> getInvalidInstructionCountByReason() {
+	return this.invalidInstructionCountByReason;
     }
 
+    /**
+     * Returns the invalid <code>Instructions</code>. The <code>List</code> is
+     * empty unless the <code>Instructions</code> were retained when the Report
+     * was built.
+     *
+     * @return <code>List</code> of invalid <code>Instructions</code>
+     */
     public List<Instruction> getInvalidInstructions() {
-	return this.instructionsValidityMap.get(false);
+	return this.invalidInstructions.get();
     }
 
     /**
      * Returns a <code>Map</code> where the key is the Actual Date of settlement
-     * and the value is the total amount in USD settled incoming that day.
+     * and the value is the total amount in USD settled incoming that day,
+     * iterated in date order.
      *
      * @return <code>Map</code> of results.
      */
     public Map<Date, BigDecimal> getMapOfTotalUSDAmountSettledIncomingPerDay() {
-
-	final Map<Date, List<Instruction>> map = this.getIncomingInstructions().stream()
-		.collect(Collectors.groupingBy(Instruction::getAcutalSettlementDate));
-
-	final Map<Date, BigDecimal> totalsMap = new HashMap<>();
-
-	map.keySet().forEach(date -> {
-
-	    final List<Instruction> instructionsPerSettlementDate = map.get(date);
-
-	    BigDecimal total = new BigDecimal("0");
-
-	    for (final Instruction instruction : instructionsPerSettlementDate) {
-		total = total.add(instruction.getUSDAmount());
-	    }
-
-	    totalsMap.put(date, total);
-	});
-
-	return totalsMap;
+	return this.totalUSDAmountSettledIncomingPerDay.get();
     }
 
     /**
      * Returns a <code>Map</code> where the key is the Actual Date of settlement
-     * and the value is the total amount in USD settled outgoing that day.
+     * and the value is the total amount in USD settled outgoing that day,
+     * iterated in date order.
      *
      * @return <code>Map</code> of results.
      */
     public Map<Date, BigDecimal> getMapOfTotalUSDAmountSettledOutgoingPerDay() {
+	return this.totalUSDAmountSettledOutgoingPerDay.get();
+    }
 
-	final Map<Date, List<Instruction>> map = this.getOutgoingInstructions().stream()
-		.collect(Collectors.groupingBy(Instruction::getAcutalSettlementDate));
-
-	final Map<Date, BigDecimal> totalsMap = new HashMap<>();
-
-	map.keySet().forEach(date -> {
-
-	    final List<Instruction> instructionsPerSettlementDate = map.get(date);
+    /**
+     * Returns the total amount in USD settled outgoing on each day, in date
+     * order, indexed for range queries.
+     *
+     * @return the outgoing <code>DailyTotals</code>
+     */
+    public DailyTotals getOutgoingDailyTotals() {
+	return this.outgoingDailyTotals.get();
+    }
 
-	    BigDecimal total = new BigDecimal("0");
+    /**
+     * Returns the net amount in USD settled for each entity on each day,
+     * incoming less outgoing, in entity then date order.
+     *
+     * @return the <code>NetPositions</code>
+     */
+    public NetPositions getNetPositions() {
+	return this.netPositions.get();
+    }
 
-	    for (final Instruction instruction : instructionsPerSettlementDate) {
-		total = total.add(instruction.getUSDAmount());
-	    }
+    public List<EntityRanking> getOutgoingEntityRankingList() {
+	return this.outgoingEntityRankingList.get();
+    }
 
-	    totalsMap.put(date, total);
-	});
+    public long getOutgoingInstructionCount() {
+	return this.outgoingInstructionCount;
+    }
 
-	return totalsMap;
+    /**
+     * Returns the valid outgoing <code>Instructions</code>. The
+     * <code>List</code> is empty unless the <code>Instructions</code> were
+     * retained when the Report was built.
+     *
+     * @return <code>List</code> of outgoing <code>Instructions</code>
+     */
+    public List<Instruction> getOutgoingInstructions() {
+	return this.outgoingInstructions.get();
     }
 
-    public List<EntityRanking> getOutgoingEntityRankingList() {
-	return this.outgoingEntityRankingList;
+    /**
+     * @return the sections that may be read
+     */
+    public ReportPlan getPlan() {
+	return this.plan;
     }
 
-    public List<Instruction> getOutgoingInstructions() {
-	if (this.instructionsByDirectionMap.get(BuySell.B) != null) {
-	    return this.instructionsByDirectionMap.get(BuySell.B);
+    /**
+     * Returns the approximate analytics of the valid
+     * <code>Instructions</code>, which are only built when the
+     * <code>ReportConfiguration</code> enables sketching.
+     *
+     * @return the <code>ReportSketches</code>
+     * @throws IllegalStateException
+     *             if the sketches were not built
+     */
+    public ReportSketches getSketches() {
+
+	if (this.sketches == null) {
+	    throw new IllegalStateException("The Report was built without sketches");
 	}
 
-	return new ArrayList<>();
+	return this.sketches;
     }
 
     /**
@@ -338,14 +513,7 @@ public class Report {
      * @return the total amount in USD settled incoming
      */
     public BigDecimal getTotalUSDAmountSettledIncoming() {
-
-	BigDecimal total = new BigDecimal("0");
-
-	for (final Instruction instruction : this.getIncomingInstructions()) {
-	    total = total.add(instruction.getUSDAmount());
-	}
-
-	return total;
+	return this.totalUSDAmountSettledIncoming.get();
     }
 
     /**
@@ -354,52 +522,21 @@ public class Report {
      * @return the total amount in USD settled outgoing everyday
      */
     public BigDecimal getTotalUSDAmountSettledOutgoing() {
-
-	BigDecimal total = new BigDecimal("0");
-
-	for (final Instruction instruction : this.getOutgoingInstructions()) {
-	    total = total.add(instruction.getUSDAmount());
-	}
-
-	return total;
-
+	return this.totalUSDAmountSettledOutgoing.get();
     }
 
-    public List<Instruction> getValidInstructions() {
-	return this.instructionsValidityMap.get(true);
+    public long getValidInstructionCount() {
+	return this.incomingInstructionCount + this.outgoingInstructionCount;
     }
 
     /**
-     * This method will determine if the Instruction is valid. For example, the
-     * Instruction must be for a Buy or a Sell, therefore it might be a value of
-     * the BuySell Enum, etc...
+     * Returns the valid <code>Instructions</code>. The <code>List</code> is
+     * empty unless the <code>Instructions</code> were retained when the Report
+     * was built.
      *
-     * @param instruction
-     *            Instruction to determine validity for
-     * @return <code>true</code> if instruction is valid, otherwise
-     *         <code>false</code>
+     * @return <code>List</code> of valid <code>Instructions</code>
      */
-    private Boolean isValidInstruction(final Instruction instruction) {
-
-	Objects.requireNonNull(instruction);
-
-	/**
-	 * This code could be a lot more developed. The business could provide
-	 * more concise rules that determine <code>Instruction</code> validity.
-	 * In this case, we are just going to check that supplied
-	 * <code>String</code> values correspond to <code>Enum</code> values.
-	 * But we could do a lot more here to reject bad data...
-	 */
-
-	if (this.getEnumFromString(BuySell.class, instruction.getBuySellString()) == null) {
-	    return false;
-	}
-
-	if (this.getEnumFromString(Currency.class, instruction.getCurrencyString()) == null) {
-	    return false;
-	}
-
-	return true;
-
+    public List<Instruction> getValidInstructions() {
+	return this.validInstructions.get();
     }
 }
@@ -0,0 +1,1060 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import com.jpmorgan.report.date.EpochDays;
+import com.jpmorgan.report.date.SettlementCalendar;
+
+/**
+ * Builds a <code>Report</code> from <code>Instructions</code> supplied one at a
+ * time.
+ * <p>
+ * Only the aggregates (totals per direction, totals per day, the highest USD
+ * amount per entity and the instruction counts) are kept, so memory does not
+ * grow with the number of instructions. Retaining the
+ * <code>Instructions</code> themselves is opt-in. Entities are ranked by their
+ * id in an <code>EntityDictionary</code> and only named in the
+ * <code>Report</code>. With a
+ * <code>ReportPlan</code> only the aggregates of the planned sections are
+ * kept.
+ */
+public class ReportAccumulator {
+
+    private static final EnumCodes<BuySell> BUY_SELL_CODES = EnumCodes.of(BuySell.class);
+
+    private static final EnumCodes<Currency> CURRENCY_CODES = EnumCodes.of(Currency.class);
+
+    /**
+     * The dictionary of the last <code>InstructionBatch</code> accepted, or
+     * <code>null</code>.
+     */
+    private EntityDictionary batchEntityDictionary;
+
+    /**
+     * The id in <code>entityDictionary</code> of each entity id of
+     * <code>batchEntityDictionary</code>, or -1 if it has not been looked up.
+     */
+    private int[] batchEntityIds = new int[0];
+
+    /**
+     * Assigns the entity ids that the rankings of both directions are keyed
+     * by.
+     */
+    private final EntityDictionary entityDictionary = new EntityDictionary();
+
+    /**
+     * Scale of fixed point amounts, or
+     * <code>ReportConfiguration.NO_FIXED_POINT</code>.
+     */
+    private final int fixedPointScale;
+
+    private final DirectionAggregate incoming;
+
+    /**
+     * Invalid <code>Instructions</code>, only populated when instructions are
+     * retained.
+     */
+    private final List<Instruction> invalidInstructions = new ArrayList<>();
+
+    private long invalidInstructionCount;
+
+    /**
+     * Metrics to collect, or <code>null</code> if metrics are disabled.
+     */
+    private final ReportMetrics metrics;
+
+    /**
+     * The JFR recording of the <code>Report</code> being built, or
+     * <code>null</code> if metrics are disabled or a lazy <code>Report</code>
+     * was produced.
+     */
+    private ReportBuildRecording recording;
+
+    /**
+     * Invalid instruction counts, indexed by <code>InvalidReason</code>
+     * ordinal.
+     */
+    private final long[] invalidInstructionCountByReason = new long[InvalidReason.values().length];
+
+    /**
+     * The net amount of each (entity, day) pair, only populated when net
+     * positions are planned.
+     */
+    private final NetPositionAggregator netPositions;
+
+    /**
+     * <code>true</code> if net positions are planned.
+     */
+    private final boolean netted;
+
+    /**
+     * <code>true</code> if rankings, net positions or sketches are built, so
+     * entity ids are needed.
+     */
+    private final boolean keyedByEntity;
+
+    private final DirectionAggregate outgoing;
+
+    private final ReportPlan plan;
+
+    /**
+     * <code>true</code> if either ranking is planned, so entity ids are
+     * needed.
+     */
+    private final boolean ranked;
+
+    /**
+     * <code>true</code> once a lazy <code>Report</code> refers to the
+     * aggregates, which must then not change.
+     */
+    private boolean reported;
+
+    private final boolean retainInstructions;
+
+    private final SettlementCalendar settlementCalendar;
+
+    /**
+     * The sketches of the valid Instructions, or <code>null</code> if
+     * sketching is disabled.
+     */
+    private final SketchAggregator sketches;
+
+    /**
+     * Valid <code>Instructions</code> in the order they were accepted, only
+     * populated when instructions are retained.
+     */
+    private final List<Instruction> validInstructions = new ArrayList<>();
+
+    private final InstructionValidator validator;
+
+    /**
+     * Constructs an accumulator that does not retain the
+     * <code>Instructions</code>.
+     */
+    public ReportAccumulator() {
+	this(false);
+    }
+
+    /**
+     * Constructs an accumulator that ranks every entity.
+     *
+     * @param retainInstructions
+     *            <code>true</code> if the accepted <code>Instructions</code>
+     *            should be available from the <code>Report</code>
+     */
+    public ReportAccumulator(final boolean retainInstructions) {
+	this(retainInstructions, EntityRankingAggregator.UNBOUNDED);
+    }
+
+    /**
+     * Constructs an accumulator.
+     *
+     * @param retainInstructions
+     *            <code>true</code> if the accepted <code>Instructions</code>
+     *            should be available from the <code>Report</code>
+     * @param entityRankingLimit
+     *            the maximum number of entities in each
+     *            <code>EntityRanking List</code>, or
+     *            <code>EntityRankingAggregator.UNBOUNDED</code>
+     */
+    public ReportAccumulator(final boolean retainInstructions, final int entityRankingLimit) {
+	this(ReportAccumulator.newConfiguration(retainInstructions, entityRankingLimit));
+    }
+
+    /**
+     * Constructs an accumulator.
+     *
+     * @param configuration
+     *            the options used to build the <code>Report</code>
+     */
+    public ReportAccumulator(final ReportConfiguration configuration) {
+	this(configuration, configuration.getReportPlan());
+    }
+
+    /**
+     * Constructs an accumulator of a plan other than the configuration's.
+     *
+     * @param configuration
+     *            the options used to build the <code>Report</code>
+     * @param plan
+     *            the sections of the <code>Report</code>
+     */
+    ReportAccumulator(final ReportConfiguration configuration, final ReportPlan plan) {
+
+	Objects.requireNonNull(configuration);
+
+	this.plan = Objects.requireNonNull(plan);
+	this.ranked = this.plan.includes(ReportSection.INCOMING_RANKING)
+		|| this.plan.includes(ReportSection.OUTGOING_RANKING);
+	this.netted = this.plan.includes(ReportSection.NET_POSITIONS);
+	this.retainInstructions = configuration.isRetainInstructions()
+		&& this.plan.includes(ReportSection.INSTRUCTIONS);
+	this.settlementCalendar = configuration.getSettlementCalendar();
+	this.fixedPointScale = configuration.getFixedPointScale();
+	this.metrics = configuration.getMetrics();
+	this.validator = configuration.getValidator();
+	this.incoming = new DirectionAggregate(configuration.getEntityRankingLimit(), this.fixedPointScale,
+		this.entityDictionary, this.plan, ReportSection.INCOMING_RANKING);
+	this.outgoing = new DirectionAggregate(configuration.getEntityRankingLimit(), this.fixedPointScale,
+		this.entityDictionary, this.plan, ReportSection.OUTGOING_RANKING);
+	this.netPositions = new NetPositionAggregator(this.fixedPointScale);
+	this.sketches = configuration.isSketching()
+		? new SketchAggregator(this.entityDictionary, this.fixedPointScale)
+		: null;
+	this.keyedByEntity = this.ranked || this.netted || this.sketches != null;
+	this.recording = this.metrics == null ? null : ReportEvents.startReportBuild(this.metrics);
+    }
+
+    private static ReportConfiguration newConfiguration(final boolean retainInstructions,
+	    final int entityRankingLimit) {
+	return ReportAccumulator.newConfiguration(retainInstructions, entityRankingLimit, ReportPlan.ALL);
+    }
+
+    static ReportConfiguration newConfiguration(final boolean retainInstructions, final int entityRankingLimit,
+	    final ReportPlan plan) {
+
+	final ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(retainInstructions);
+	configuration.setEntityRankingLimit(entityRankingLimit);
+	configuration.setReportPlan(plan);
+
+	return configuration;
+    }
+
+    /**
+     * A common method for all enums since they can't have another base class
+     *
+     * @param <T>
+     *            Enum type
+     * @param c
+     *            enum type. All enums must be all caps.
+     * @param string
+     *            case insensitive
+     * @return corresponding enum, or null
+     */
+    static <T extends Enum<T>> T getEnumFromString(final Class<T> c, final String string) {
+	if (c != null && string != null) {
+	    return EnumCodes.of(c).get(string);
+	}
+	return null;
+    }
+
+    /**
+     * Validates an <code>Instruction</code>, applies the business logic to it
+     * and adds it to the aggregates.
+     *
+     * @param instruction
+     *            the <code>Instruction</code> to accept
+     */
+    public void accept(final Instruction instruction) {
+
+	Objects.requireNonNull(instruction);
+	this.checkNotReported();
+
+	if (this.metrics == null) {
+	    this.process(instruction);
+	} else {
+	    final long allocatedBytes = ThreadAllocation.allocatedBytes();
+	    this.process(instruction);
+	    this.metrics.addAllocatedBytes(ThreadAllocation.allocatedBytes() - allocatedBytes);
+	}
+    }
+
+    private void process(final Instruction instruction) {
+
+	long time = this.startTime();
+
+	final InvalidReason invalidReason = this.validator.validate(instruction);
+	instruction.setInvalidReason(invalidReason);
+
+	time = this.endPhase(ReportPhase.VALIDATION, time);
+	this.countInstruction(invalidReason);
+
+	if (invalidReason != null) {
+
+	    this.invalidInstructionCount++;
+	    this.invalidInstructionCountByReason[invalidReason.ordinal()]++;
+
+	    if (this.retainInstructions) {
+		this.invalidInstructions.add(instruction);
+	    }
+
+	    return;
+	}
+
+	/*
+	 * Our Instructions have passed validation, therefore we can safely set
+	 * our Enum values to the supplied String values.
+	 */
+	instruction.setBuySell(ReportAccumulator.BUY_SELL_CODES.get(instruction.getBuySellString()));
+	instruction.setCurrency(ReportAccumulator.CURRENCY_CODES.get(instruction.getCurrencyString()));
+
+	time = this.endPhase(ReportPhase.ENUM_RESOLUTION, time);
+
+	/*
+	 * Roll the settlement date forward to a business day for the currency
+	 * of the trade. A work week starts Monday and ends Friday, unless the
+	 * currency of the trade is AED or SAR, where the work week starts Sunday
+	 * and ends Thursday.
+	 */
+	final int acutalSettlementDate = this.settlementCalendar.roll(instruction.getCurrency(),
+		instruction.getSettlementEpochDay());
+	instruction.setAcutalSettlementEpochDay(acutalSettlementDate);
+
+	time = this.endPhase(ReportPhase.DATE_ROLLING, time);
+
+	/*
+	 * B is outgoing, S is incoming...
+	 */
+	final DirectionAggregate direction = instruction.getBuySell() == BuySell.S ? this.incoming : this.outgoing;
+	final int entityId = this.keyedByEntity ? this.entityDictionary.getId(instruction.getEntity()) : -1;
+
+	/*
+	 * Now we shall set the USD amount using the formula supplied. In fixed
+	 * point mode the amount is computed as a scaled long, and only becomes
+	 * a BigDecimal if the Instruction is retained or it does not fit.
+	 */
+	final long fixedPointAmount = this.fixedPointScale == ReportConfiguration.NO_FIXED_POINT
+		? FixedPointAmounts.OVERFLOW
+		: FixedPointAmounts.usdAmount(instruction.getPricePerUnit(), instruction.getUnits(),
+			instruction.getExchangeRate(), this.fixedPointScale);
+
+	if (fixedPointAmount == FixedPointAmounts.OVERFLOW) {
+
+	    final BigDecimal usdAmount = instruction.getPricePerUnit()
+		    .multiply(new BigDecimal(instruction.getUnits()).multiply(instruction.getExchangeRate()));
+	    instruction.setUSDAmount(usdAmount);
+
+	    time = this.endPhase(ReportPhase.USD_AMOUNT, time);
+	    direction.add(entityId, acutalSettlementDate, usdAmount);
+
+	    if (this.netted) {
+		this.netPositions.add(entityId, acutalSettlementDate, usdAmount, direction == this.incoming);
+	    }
+
+	    if (this.sketches != null) {
+		this.sketches.add(entityId, instruction.getCurrency(), usdAmount);
+	    }
+
+	} else {
+
+	    final int amountScale = instruction.getPricePerUnit().scale() + instruction.getExchangeRate().scale();
+
+	    if (this.retainInstructions) {
+		instruction.setUSDAmount(
+			FixedPointAmounts.toBigDecimal(fixedPointAmount, this.fixedPointScale, amountScale));
+	    }
+
+	    time = this.endPhase(ReportPhase.USD_AMOUNT, time);
+	    direction.add(entityId, acutalSettlementDate, fixedPointAmount, amountScale);
+
+	    if (this.netted) {
+		this.netPositions.add(entityId, acutalSettlementDate, fixedPointAmount, amountScale,
+			direction == this.incoming);
+	    }
+
+	    if (this.sketches != null) {
+		this.sketches.add(entityId, instruction.getCurrency(), fixedPointAmount);
+	    }
+	}
+
+	if (this.retainInstructions) {
+	    direction.instructions.add(instruction);
+	    this.validInstructions.add(instruction);
+	}
+
+	this.endPhase(ReportPhase.GROUPING, time);
+    }
+
+    /**
+     * Accepts every remaining <code>Instruction</code> of an
+     * <code>Iterator</code>.
+     *
+     * @param instructions
+     *            the <code>Instructions</code> to accept
+     * @return this accumulator
+     */
+    public ReportAccumulator acceptAll(final Iterator<Instruction> instructions) {
+
+	Objects.requireNonNull(instructions);
+
+	while (instructions.hasNext()) {
+	    this.accept(instructions.next());
+	}
+
+	return this;
+    }
+
+    /**
+     * Accepts every <code>Instruction</code> of a <code>Stream</code>, in
+     * encounter order.
+     *
+     * @param instructions
+     *            the <code>Instructions</code> to accept
+     * @return this accumulator
+     */
+    public ReportAccumulator acceptAll(final Stream<Instruction> instructions) {
+
+	Objects.requireNonNull(instructions);
+
+	instructions.sequential().forEachOrdered(this::accept);
+
+	return this;
+    }
+
+    /**
+     * Accepts every row of an <code>InstructionBatch</code>.
+     *
+     * @param instructions
+     *            the <code>Instructions</code> to accept
+     * @return this accumulator
+     */
+    public ReportAccumulator acceptAll(final InstructionBatch instructions) {
+	return this.acceptAll(instructions, 0, Objects.requireNonNull(instructions).size());
+    }
+
+    /**
+     * Accepts a range of the rows of an <code>InstructionBatch</code>. Rows
+     * are aggregated straight from the columns; an <code>Instruction</code>
+     * is only created for a row when instructions are retained or the
+     * validator is not <code>InstructionValidator.DEFAULT</code>.
+     *
+     * @param instructions
+     *            the <code>Instructions</code> to accept
+     * @param from
+     *            the first row to accept
+     * @param to
+     *            the row after the last row to accept
+     * @return this accumulator
+     */
+    public ReportAccumulator acceptAll(final InstructionBatch instructions, final int from, final int to) {
+
+	Objects.requireNonNull(instructions);
+
+	if (from < 0 || to > instructions.size() || from > to) {
+	    throw new IndexOutOfBoundsException("rows " + from + " to " + to + " of " + instructions.size());
+	}
+
+	this.checkNotReported();
+
+	final long allocatedBytes = this.metrics == null ? 0 : ThreadAllocation.allocatedBytes();
+
+	for (int row = from; row < to; row++) {
+
+	    if (this.retainInstructions || this.validator != InstructionValidator.DEFAULT) {
+		this.process(instructions.toInstruction(row));
+	    } else {
+		this.process(instructions, row);
+	    }
+	}
+
+	if (this.metrics != null) {
+	    this.metrics.addAllocatedBytes(ThreadAllocation.allocatedBytes() - allocatedBytes);
+	}
+
+	return this;
+    }
+
+    /**
+     * Applies the same validation and business logic as
+     * <code>accept(Instruction)</code> to a row of an
+     * <code>InstructionBatch</code>, checking the default rules against the
+     * columns.
+     */
+    private void process(final InstructionBatch instructions, final int row) {
+
+	long time = this.startTime();
+
+	final InvalidReason invalidReason;
+
+	if (instructions.getBuySellCode(row) == InstructionBatch.UNKNOWN_CODE) {
+	    invalidReason = InvalidReason.INVALID_BUY_SELL;
+	} else if (instructions.getCurrencyCode(row) == InstructionBatch.UNKNOWN_CODE) {
+	    invalidReason = InvalidReason.INVALID_CURRENCY;
+	} else if (instructions.getInstructionEpochDay(row) == EpochDays.NONE) {
+	    invalidReason = InvalidReason.INVALID_INSTRUCTION_DATE;
+	} else if (instructions.getSettlementEpochDay(row) == EpochDays.NONE) {
+	    invalidReason = InvalidReason.INVALID_SETTLEMENT_DATE;
+	} else if (instructions.getUnitsSignum(row) <= 0) {
+	    invalidReason = InvalidReason.INVALID_UNITS;
+	} else if (instructions.getPricePerUnitSignum(row) <= 0) {
+	    invalidReason = InvalidReason.INVALID_PRICE_PER_UNIT;
+	} else if (instructions.getExchangeRateSignum(row) <= 0) {
+	    invalidReason = InvalidReason.INVALID_EXCHANGE_RATE;
+	} else {
+	    invalidReason = null;
+	}
+
+	time = this.endPhase(ReportPhase.VALIDATION, time);
+	this.countInstruction(invalidReason);
+
+	if (invalidReason != null) {
+	    this.invalidInstructionCount++;
+	    this.invalidInstructionCountByReason[invalidReason.ordinal()]++;
+	    return;
+	}
+
+	final int acutalSettlementDate = this.settlementCalendar.roll(instructions.getCurrency(row),
+		instructions.getSettlementEpochDay(row));
+
+	time = this.endPhase(ReportPhase.DATE_ROLLING, time);
+
+	final DirectionAggregate direction = instructions.getBuySell(row) == BuySell.S ? this.incoming
+		: this.outgoing;
+	final int entityId = this.keyedByEntity ? this.entityId(instructions, row) : -1;
+
+	final long fixedPointAmount = this.fixedPointScale == ReportConfiguration.NO_FIXED_POINT
+		? FixedPointAmounts.OVERFLOW
+		: FixedPointAmounts.usdAmount(instructions.getUnscaledPricePerUnit(row),
+			instructions.getPricePerUnitScale(row), instructions.getUnitsAsLong(row),
+			instructions.getUnscaledExchangeRate(row), instructions.getExchangeRateScale(row),
+			this.fixedPointScale);
+
+	if (fixedPointAmount == FixedPointAmounts.OVERFLOW) {
+	    final BigDecimal usdAmount = instructions.getPricePerUnit(row)
+		    .multiply(new BigDecimal(instructions.getUnits(row)).multiply(instructions.getExchangeRate(row)));
+	    time = this.endPhase(ReportPhase.USD_AMOUNT, time);
+	    direction.add(entityId, acutalSettlementDate, usdAmount);
+
+	    if (this.netted) {
+		this.netPositions.add(entityId, acutalSettlementDate, usdAmount, direction == this.incoming);
+	    }
+
+	    if (this.sketches != null) {
+		this.sketches.add(entityId, instructions.getCurrency(row), usdAmount);
+	    }
+	} else {
+	    final int amountScale = instructions.getPricePerUnitScale(row) + instructions.getExchangeRateScale(row);
+
+	    time = this.endPhase(ReportPhase.USD_AMOUNT, time);
+	    direction.add(entityId, acutalSettlementDate, fixedPointAmount, amountScale);
+
+	    if (this.netted) {
+		this.netPositions.add(entityId, acutalSettlementDate, fixedPointAmount, amountScale,
+			direction == this.incoming);
+	    }
+
+	    if (this.sketches != null) {
+		this.sketches.add(entityId, instructions.getCurrency(row), fixedPointAmount);
+	    }
+	}
+
+	this.endPhase(ReportPhase.GROUPING, time);
+    }
+
+    /**
+     * Translates the entity id of a row to an id of this accumulator. Each
+     * entity of a batch is looked up by name once, after which its rows cost
+     * an array access.
+     */
+    private int entityId(final InstructionBatch instructions, final int row) {
+
+	final EntityDictionary dictionary = instructions.getEntityDictionary();
+
+	if (dictionary != this.batchEntityDictionary) {
+	    this.batchEntityDictionary = dictionary;
+	    this.batchEntityIds = new int[0];
+	}
+
+	final int batchEntityId = instructions.getEntityId(row);
+
+	if (batchEntityId >= this.batchEntityIds.length) {
+	    final int length = this.batchEntityIds.length;
+	    this.batchEntityIds = Arrays.copyOf(this.batchEntityIds, Math.max(batchEntityId + 1, dictionary.size()));
+	    Arrays.fill(this.batchEntityIds, length, this.batchEntityIds.length, -1);
+	}
+
+	int entityId = this.batchEntityIds[batchEntityId];
+
+	if (entityId < 0) {
+	    entityId = this.entityDictionary.getId(dictionary.getEntity(batchEntityId));
+	    this.batchEntityIds[batchEntityId] = entityId;
+	}
+
+	return entityId;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             if a lazy <code>Report</code> refers to the aggregates
+     */
+    private void checkNotReported() {
+	if (this.reported) {
+	    throw new IllegalStateException("The accumulator has been turned into a lazy Report");
+	}
+    }
+
+    /**
+     * Counts an Instruction in the metrics, if they are enabled.
+     */
+    private void countInstruction(final InvalidReason invalidReason) {
+	if (this.metrics != null) {
+	    this.metrics.addInstruction(invalidReason);
+	}
+    }
+
+    /**
+     * Ends the current phase, if metrics are enabled.
+     *
+     * @param phase
+     *            the phase that is ending
+     * @param startTime
+     *            when the phase started
+     * @return when the next phase starts
+     */
+    private long endPhase(final ReportPhase phase, final long startTime) {
+
+	if (this.metrics == null) {
+	    return 0;
+	}
+
+	final long now = System.nanoTime();
+	this.metrics.addPhaseNanos(phase, now - startTime);
+
+	return now;
+    }
+
+    /**
+     * Begins recording a section that a lazy <code>Report</code> computes on
+     * first access, after its build was committed.
+     *
+     * @return the recording, or <code>null</code> if the section is computed
+     *         as part of a build or metrics are disabled
+     */
+    private ReportBuildRecording startSection() {
+	return this.reported && this.metrics != null ? ReportEvents.startReportBuild(this.metrics) : null;
+    }
+
+    /**
+     * Commits the recording of a section, if there is one.
+     */
+    private void endSection(final ReportBuildRecording sectionRecording, final ReportSection section) {
+	if (sectionRecording != null) {
+	    sectionRecording.finish(this.metrics, section);
+	}
+    }
+
+    /**
+     * @return when the first phase starts, or 0 if metrics are disabled
+     */
+    private long startTime() {
+	return this.metrics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @return the number of per-entity and per-day aggregates held, which is
+     *         what grows with the input when Instructions are not retained
+     */
+    long getAggregateCount() {
+	return this.incoming.entityRankingAggregator.getEntityCount()
+		+ this.outgoing.entityRankingAggregator.getEntityCount() + this.incoming.totalsPerDay.size()
+		+ this.outgoing.totalsPerDay.size() + this.netPositions.size();
+    }
+
+    long getIncomingInstructionCount() {
+	return this.incoming.instructionCount;
+    }
+
+    long getInvalidInstructionCount() {
+	return this.invalidInstructionCount;
+    }
+
+    Map<InvalidReason, Long> getInvalidInstructionCountByReason() {
+
+	final Map<InvalidReason, Long> map = new EnumMap<>(InvalidReason.class);
+
+	for (final InvalidReason invalidReason : InvalidReason.values()) {
+	    if (this.invalidInstructionCountByReason[invalidReason.ordinal()] > 0) {
+		map.put(invalidReason, this.invalidInstructionCountByReason[invalidReason.ordinal()]);
+	    }
+	}
+
+	return Collections.unmodifiableMap(map);
+    }
+
+    NetPositions getNetPositions() {
+	final ReportBuildRecording sectionRecording = this.startSection();
+	final long time = this.startTime();
+	final NetPositions netPositions = this.netPositions.toNetPositions(this.entityDictionary);
+	this.endPhase(ReportPhase.GROUPING, time);
+	this.endSection(sectionRecording, ReportSection.NET_POSITIONS);
+	return netPositions;
+    }
+
+    /**
+     * @return the sketches, which later additions do not affect, or
+     *         <code>null</code> if sketching is disabled
+     */
+    ReportSketches getSketches() {
+	return this.sketches == null ? null : this.sketches.toReportSketches();
+    }
+
+    long getOutgoingInstructionCount() {
+	return this.outgoing.instructionCount;
+    }
+
+    /**
+     * @return the sections of the <code>Report</code> that are built
+     */
+    public ReportPlan getPlan() {
+	return this.plan;
+    }
+
+    /**
+     * @return <code>true</code> if the accepted <code>Instructions</code> are
+     *         retained
+     */
+    public boolean isRetainingInstructions() {
+	return this.retainInstructions;
+    }
+
+    /**
+     * Adds the aggregates of another accumulator to this one, as if its
+     * <code>Instructions</code> had been accepted after the
+     * <code>Instructions</code> of this one. Accumulators built over
+     * consecutive chunks of the input and merged in order give the same
+     * <code>Report</code> as a single accumulator over the whole input.
+     *
+     * @param other
+     *            the accumulator to merge into this one
+     * @return this accumulator
+     */
+    public ReportAccumulator merge(final ReportAccumulator other) {
+
+	Objects.requireNonNull(other);
+	this.checkNotReported();
+
+	if (!other.plan.equals(this.plan)) {
+	    throw new IllegalArgumentException("Cannot merge accumulators that differ in report plan");
+	}
+
+	if (other.retainInstructions != this.retainInstructions) {
+	    throw new IllegalArgumentException("Cannot merge accumulators that differ in retaining instructions");
+	}
+
+	if (other.fixedPointScale != this.fixedPointScale) {
+	    throw new IllegalArgumentException("Cannot merge accumulators that differ in fixed point scale");
+	}
+
+	if ((other.sketches == null) != (this.sketches == null)) {
+	    throw new IllegalArgumentException("Cannot merge accumulators that differ in sketching");
+	}
+
+	this.invalidInstructionCount += other.invalidInstructionCount;
+
+	for (int i = 0; i < this.invalidInstructionCountByReason.length; i++) {
+	    this.invalidInstructionCountByReason[i] += other.invalidInstructionCountByReason[i];
+	}
+
+	this.incoming.merge(other.incoming);
+	this.outgoing.merge(other.outgoing);
+	this.netPositions.merge(other.netPositions, this.entityDictionary, other.entityDictionary);
+
+	if (this.sketches != null) {
+	    this.sketches.merge(other.sketches);
+	}
+
+	this.validInstructions.addAll(other.validInstructions);
+	this.invalidInstructions.addAll(other.invalidInstructions);
+
+	return this;
+    }
+
+    /**
+     * Generates a <code>Report</code> from the <code>Instructions</code>
+     * accepted so far. The accumulator may continue to accept
+     * <code>Instructions</code> afterwards without affecting the returned
+     * <code>Report</code>.
+     *
+     * @return the <code>Report</code>
+     */
+    public Report toReport() {
+	return this.toReport(false);
+    }
+
+    /**
+     * Generates a <code>Report</code> whose sections are computed from the
+     * aggregates when they are first read, so a section that is never read
+     * costs nothing. The accumulator cannot accept or merge anything
+     * afterwards.
+     *
+     * @return the <code>Report</code>
+     */
+    public Report toLazyReport() {
+	this.reported = true;
+	return this.toReport(true);
+    }
+
+    private Report toReport(final boolean lazy) {
+
+	if (this.metrics == null) {
+	    return new Report(this, lazy);
+	}
+
+	final long allocatedBytes = ThreadAllocation.allocatedBytes();
+	final Report report = new Report(this, lazy);
+	this.metrics.addAllocatedBytes(ThreadAllocation.allocatedBytes() - allocatedBytes);
+	this.metrics.addReport();
+
+	/*
+	 * The sections of a lazy Report are recorded as they are computed, and
+	 * the next build starts here...
+	 */
+	this.recording.finish(this.metrics, null);
+	this.recording = lazy ? null : ReportEvents.startReportBuild(this.metrics);
+
+	return report;
+    }
+
+    List<EntityRanking> getIncomingEntityRankingList() {
+	final ReportBuildRecording sectionRecording = this.startSection();
+	final long time = this.startTime();
+	final List<EntityRanking> entityRankingList = this.incoming.entityRankingAggregator.getEntityRankingList();
+	this.endPhase(ReportPhase.RANKING, time);
+	this.endSection(sectionRecording, ReportSection.INCOMING_RANKING);
+	return entityRankingList;
+    }
+
+    List<Instruction> getIncomingInstructions() {
+	return ReportAccumulator.copyOf(this.incoming.instructions);
+    }
+
+    /**
+     * Makes every following <code>toReport()</code> cost time proportional to
+     * the number of settlement days and ranked entities, rather than to
+     * everything accepted so far: rankings are kept in order as amounts
+     * arrive, so only the ranked entities are walked, and only the totals of
+     * the settlement days that changed are converted. The totals of every day
+     * are still copied into each <code>Report</code>.
+     *
+     * @return this accumulator
+     */
+    ReportAccumulator enableIncrementalSnapshots() {
+
+	if (this.retainInstructions) {
+	    throw new IllegalStateException("Incremental snapshots do not retain instructions");
+	}
+
+	this.incoming.enableIncrementalSnapshots();
+	this.outgoing.enableIncrementalSnapshots();
+
+	return this;
+    }
+
+    List<Instruction> getInvalidInstructions() {
+	return ReportAccumulator.copyOf(this.invalidInstructions);
+    }
+
+    List<EntityRanking> getOutgoingEntityRankingList() {
+	final ReportBuildRecording sectionRecording = this.startSection();
+	final long time = this.startTime();
+	final List<EntityRanking> entityRankingList = this.outgoing.entityRankingAggregator.getEntityRankingList();
+	this.endPhase(ReportPhase.RANKING, time);
+	this.endSection(sectionRecording, ReportSection.OUTGOING_RANKING);
+	return entityRankingList;
+    }
+
+    List<Instruction> getOutgoingInstructions() {
+	return ReportAccumulator.copyOf(this.outgoing.instructions);
+    }
+
+    BigDecimal getTotalUSDAmountSettledIncoming() {
+	return this.incoming.total.toBigDecimal();
+    }
+
+    Map<Date, BigDecimal> getTotalUSDAmountSettledIncomingPerDay() {
+	final ReportBuildRecording sectionRecording = this.startSection();
+	final long time = this.startTime();
+	final Map<Date, BigDecimal> map = this.incoming.getTotalsPerDay();
+	this.endPhase(ReportPhase.GROUPING, time);
+	this.endSection(sectionRecording, ReportSection.DAILY_TOTALS);
+	return map;
+    }
+
+    BigDecimal getTotalUSDAmountSettledOutgoing() {
+	return this.outgoing.total.toBigDecimal();
+    }
+
+    Map<Date, BigDecimal> getTotalUSDAmountSettledOutgoingPerDay() {
+	final ReportBuildRecording sectionRecording = this.startSection();
+	final long time = this.startTime();
+	final Map<Date, BigDecimal> map = this.outgoing.getTotalsPerDay();
+	this.endPhase(ReportPhase.GROUPING, time);
+	this.endSection(sectionRecording, ReportSection.DAILY_TOTALS);
+	return map;
+    }
+
+    List<Instruction> getValidInstructions() {
+	return ReportAccumulator.copyOf(this.validInstructions);
+    }
+
+    private static Map<Date, BigDecimal> toDateMap(final Map<Integer, AmountTotal> totalsPerDay) {
+
+	final Map<Date, BigDecimal> map = new HashMap<>();
+	totalsPerDay.forEach((epochDay, total) -> map.put(EpochDays.toDate(epochDay), total.toBigDecimal()));
+
+	return Collections.unmodifiableMap(map);
+    }
+
+    private static List<Instruction> copyOf(final List<Instruction> instructions) {
+	return Collections.unmodifiableList(new ArrayList<>(instructions));
+    }
+
+    /**
+     * The aggregates of one direction (incoming or outgoing).
+     */
+    private static final class DirectionAggregate {
+
+	private final EntityRankingAggregator entityRankingAggregator;
+
+	private final int fixedPointScale;
+
+	private long instructionCount;
+
+	/**
+	 * Which of the aggregates below are maintained, according to the
+	 * <code>ReportPlan</code>.
+	 */
+	private final boolean ranked;
+
+	private final boolean totalled;
+
+	private final boolean totalledPerDay;
+
+	/**
+	 * Valid <code>Instructions</code> of this direction, only populated
+	 * when instructions are retained.
+	 */
+	private final List<Instruction> instructions = new ArrayList<>();
+
+	private final AmountTotal total;
+
+	/**
+	 * Map where the key is the actual settlement date in epoch days.
+	 */
+	private final Map<Integer, AmountTotal> totalsPerDay = new HashMap<>();
+
+	/**
+	 * Days whose totals changed since <code>publishedTotalsPerDay</code>,
+	 * or <code>null</code> unless snapshots are incremental.
+	 */
+	private Set<Integer> changedDays;
+
+	/**
+	 * The totals per day last returned, never modified once returned.
+	 */
+	private Map<Date, BigDecimal> publishedTotalsPerDay;
+
+	DirectionAggregate(final int entityRankingLimit, final int fixedPointScale,
+		final EntityDictionary entityDictionary, final ReportPlan plan, final ReportSection ranking) {
+	    this.fixedPointScale = fixedPointScale;
+	    this.ranked = plan.includes(ranking);
+	    this.totalled = plan.includes(ReportSection.TOTALS);
+	    this.totalledPerDay = plan.includes(ReportSection.DAILY_TOTALS);
+	    this.entityRankingAggregator = new EntityRankingAggregator(entityRankingLimit, fixedPointScale,
+		    entityDictionary);
+	    this.total = new AmountTotal(fixedPointScale);
+	}
+
+	void add(final int entityId, final int acutalSettlementDate, final BigDecimal usdAmount) {
+	    this.instructionCount++;
+
+	    if (this.totalled) {
+		this.total.add(usdAmount);
+	    }
+
+	    if (this.totalledPerDay) {
+		this.totalPerDay(acutalSettlementDate).add(usdAmount);
+	    }
+
+	    if (this.ranked) {
+		this.entityRankingAggregator.accept(entityId, usdAmount);
+	    }
+	}
+
+	void add(final int entityId, final int acutalSettlementDate, final long fixedPointAmount,
+		final int amountScale) {
+	    this.instructionCount++;
+
+	    if (this.totalled) {
+		this.total.add(fixedPointAmount, amountScale);
+	    }
+
+	    if (this.totalledPerDay) {
+		this.totalPerDay(acutalSettlementDate).add(fixedPointAmount, amountScale);
+	    }
+
+	    if (this.ranked) {
+		this.entityRankingAggregator.accept(entityId, fixedPointAmount, amountScale);
+	    }
+	}
+
+	void merge(final DirectionAggregate other) {
+	    this.instructionCount += other.instructionCount;
+	    this.total.merge(other.total);
+	    other.totalsPerDay.forEach((day, total) -> this.totalPerDay(day).merge(total));
+	    this.entityRankingAggregator.merge(other.entityRankingAggregator);
+	    this.instructions.addAll(other.instructions);
+	}
+
+	void enableIncrementalSnapshots() {
+	    this.entityRankingAggregator.enableRankingOrder();
+	    this.changedDays = new HashSet<>(this.totalsPerDay.keySet());
+	    this.publishedTotalsPerDay = new HashMap<>();
+	}
+
+	/**
+	 * With incremental snapshots only the days that changed since the last
+	 * call are converted, and the last map is returned again if none did.
+	 * When one did, the totals of every day are copied.
+	 */
+	Map<Date, BigDecimal> getTotalsPerDay() {
+
+	    if (this.changedDays == null) {
+		return ReportAccumulator.toDateMap(this.totalsPerDay);
+	    }
+
+	    if (!this.changedDays.isEmpty()) {
+
+		final Map<Date, BigDecimal> map = new HashMap<>(this.publishedTotalsPerDay);
+		for (final Integer epochDay : this.changedDays) {
+		    map.put(EpochDays.toDate(epochDay), this.totalsPerDay.get(epochDay).toBigDecimal());
+		}
+
+		this.publishedTotalsPerDay = map;
+		this.changedDays.clear();
+	    }
+
+	    return Collections.unmodifiableMap(this.publishedTotalsPerDay);
+	}
+
+	private AmountTotal totalPerDay(final int acutalSettlementDate) {
+
+	    if (this.changedDays != null) {
+		this.changedDays.add(acutalSettlementDate);
+	    }
+
+	    AmountTotal total = this.totalsPerDay.get(acutalSettlementDate);
+
+	    if (total == null) {
+		total = new AmountTotal(this.fixedPointScale);
+		this.totalsPerDay.put(acutalSettlementDate, total);
+	    }
+
+	    return total;
+	}
+    }
+}
@@ -0,0 +1,47 @@
+package com.jpmorgan.report.model;
+
+/**
+ * The recording of one <code>Report</code> build as a JFR event. It begins
+ * when the build starts, taking a baseline of the <code>ReportMetrics</code>,
+ * and is committed once the build's sections are computed, holding what was
+ * added to the metrics in between.
+ */
+interface ReportBuildRecording {
+
+    /**
+     * A recording that records nothing, used when the JVM does not support
+     * flight recording.
+     */
+    ReportBuildRecording NONE = new ReportBuildRecording() {
+
+	@Override
+	public void start(final ReportMetrics metrics) {
+	    /* Nothing to record... */
+	}
+
+	@Override
+	public void finish(final ReportMetrics metrics, final ReportSection section) {
+	    /* Nothing to record... */
+	}
+    };
+
+    /**
+     * Begins the recording.
+     *
+     * @param metrics
+     *            the metrics the build adds to
+     */
+    void start(ReportMetrics metrics);
+
+    /**
+     * Commits what was added to the metrics since the recording began.
+     *
+     * @param metrics
+     *            the metrics the build adds to
+     * @param section
+     *            the section computed on first access by a lazy
+     *            <code>Report</code>, or <code>null</code> for the build
+     *            itself
+     */
+    void finish(ReportMetrics metrics, ReportSection section);
+}
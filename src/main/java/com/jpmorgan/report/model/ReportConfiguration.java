@@ -0,0 +1,179 @@
+package com.jpmorgan.report.model;
+
+import java.util.Objects;
+
+import com.jpmorgan.report.date.SettlementCalendar;
+
+/**
+ * Options used when building a <code>Report</code>. A
+ * <code>ReportAccumulator</code> takes a copy of the options when it is
+ * constructed, so changing them afterwards does not affect it.
+ */
+public class ReportConfiguration {
+
+    /**
+     * Value used for the fixed point scale when USD amounts are computed with
+     * <code>BigDecimal</code> only.
+     */
+    public static final int NO_FIXED_POINT = -1;
+
+    private int entityRankingLimit = EntityRankingAggregator.UNBOUNDED;
+
+    private int fixedPointScale = ReportConfiguration.NO_FIXED_POINT;
+
+    /**
+     * Metrics to collect, or <code>null</code> if metrics are disabled.
+     */
+    private ReportMetrics metrics;
+
+    private ReportPlan reportPlan = ReportPlan.ALL;
+
+    private boolean retainInstructions;
+
+    private SettlementCalendar settlementCalendar = SettlementCalendar.DEFAULT;
+
+    private boolean sketching;
+
+    private InstructionValidator validator = InstructionValidator.DEFAULT;
+
+    /**
+     * @return the maximum number of entities in each
+     *         <code>EntityRanking List</code>, or
+     *         <code>EntityRankingAggregator.UNBOUNDED</code>
+     */
+    public int getEntityRankingLimit() {
+	return this.entityRankingLimit;
+    }
+
+    /**
+     * @return the number of decimal places of fixed point USD amounts, or
+     *         <code>NO_FIXED_POINT</code>
+     */
+    public int getFixedPointScale() {
+	return this.fixedPointScale;
+    }
+
+    /**
+     * @return the metrics to collect, or <code>null</code> if metrics are
+     *         disabled
+     */
+    public ReportMetrics getMetrics() {
+	return this.metrics;
+    }
+
+    /**
+     * @return the sections of the <code>Report</code> to build
+     */
+    public ReportPlan getReportPlan() {
+	return this.reportPlan;
+    }
+
+    /**
+     * @return the calendar used to roll settlement dates to business days
+     */
+    public SettlementCalendar getSettlementCalendar() {
+	return this.settlementCalendar;
+    }
+
+    /**
+     * @return the validator that decides which Instructions are valid
+     */
+    public InstructionValidator getValidator() {
+	return this.validator;
+    }
+
+    /**
+     * @return <code>true</code> if the accepted <code>Instructions</code>
+     *         should be available from the <code>Report</code>
+     */
+    public boolean isRetainInstructions() {
+	return this.retainInstructions;
+    }
+
+    /**
+     * @return <code>true</code> if <code>ReportSketches</code> are built
+     */
+    public boolean isSketching() {
+	return this.sketching;
+    }
+
+    public void setEntityRankingLimit(final int entityRankingLimit) {
+	this.entityRankingLimit = entityRankingLimit;
+    }
+
+    /**
+     * Enables fixed point mode, where USD amounts and totals are held as
+     * <code>longs</code> scaled by <code>fixedPointScale</code> decimal
+     * places. An amount that needs more decimal places, or does not fit in a
+     * <code>long</code>, falls back to <code>BigDecimal</code>, so the
+     * <code>Report</code> is exactly the same as without fixed point mode,
+     * including the scale of every amount. The USD amount of an
+     * <code>Instruction</code> is only set when the instructions are retained
+     * or the amount fell back to <code>BigDecimal</code>.
+     *
+     * @param fixedPointScale
+     *            the number of decimal places, from 0 to 18, or
+     *            <code>NO_FIXED_POINT</code>
+     */
+    public void setFixedPointScale(final int fixedPointScale) {
+
+	if (fixedPointScale != ReportConfiguration.NO_FIXED_POINT
+		&& (fixedPointScale < 0 || fixedPointScale > FixedPointAmounts.MAX_SCALE)) {
+	    throw new IllegalArgumentException("Unsupported fixed point scale: " + fixedPointScale);
+	}
+
+	this.fixedPointScale = fixedPointScale;
+    }
+
+    /**
+     * Enables per-phase metrics.
+     *
+     * @param metrics
+     *            the metrics to collect into, or <code>null</code> to disable
+     *            metrics
+     */
+    public void setMetrics(final ReportMetrics metrics) {
+	this.metrics = metrics;
+    }
+
+    /**
+     * Restricts the <code>Report</code> to some sections. Only the aggregates
+     * of the planned sections are maintained, and the
+     * <code>Instructions</code> are only retained if the plan includes them.
+     *
+     * @param reportPlan
+     *            the sections of the <code>Report</code> to build
+     */
+    public void setReportPlan(final ReportPlan reportPlan) {
+	this.reportPlan = Objects.requireNonNull(reportPlan);
+    }
+
+    public void setRetainInstructions(final boolean retainInstructions) {
+	this.retainInstructions = retainInstructions;
+    }
+
+    public void setSettlementCalendar(final SettlementCalendar settlementCalendar) {
+	this.settlementCalendar = Objects.requireNonNull(settlementCalendar);
+    }
+
+    /**
+     * Enables <code>ReportSketches</code>, which are fed from the valid
+     * <code>Instructions</code> in the same pass as the other aggregates, in
+     * constant memory per entity and per currency. A
+     * <code>SpillingReportBuilder</code> cannot build them.
+     *
+     * @param sketching
+     *            <code>true</code> to build <code>ReportSketches</code>
+     */
+    public void setSketching(final boolean sketching) {
+	this.sketching = sketching;
+    }
+
+    /**
+     * @param validator
+     *            the validator that decides which Instructions are valid
+     */
+    public void setValidator(final InstructionValidator validator) {
+	this.validator = Objects.requireNonNull(validator);
+    }
+}
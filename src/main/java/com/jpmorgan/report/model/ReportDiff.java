@@ -0,0 +1,472 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The changes from one <code>Report</code> to another, such as yesterday's
+ * and today's, or an original and its rerun.
+ * <p>
+ * The totals per day are compared as a sorted merge of the two
+ * <code>DailyTotals</code>, which are already in date order. The
+ * <code>EntityRanking Lists</code> and the invalid <code>Instructions</code>
+ * are sorted by entity and by <code>INSTRUCTION_ORDER</code>, and then
+ * merged the same way, so a diff costs O(n log n) for n entities or
+ * <code>Instructions</code> and never builds a <code>Map</code> of either
+ * <code>Report</code>. Amounts are compared by value, so a total that only
+ * differs in scale is not a change.
+ * <p>
+ * A section is only compared if both <code>ReportPlans</code> include it, and
+ * the invalid <code>Instructions</code> only if both <code>Reports</code>
+ * retained them; otherwise its changes are empty. Instances are immutable.
+ */
+public final class ReportDiff {
+
+    /**
+     * The order invalid <code>Instructions</code> are matched in: by entity,
+     * then by each field as it was read, with missing fields first. Two
+     * <code>Instructions</code> that compare as equal are the same
+     * instruction.
+     */
+    public static final Comparator<Instruction> INSTRUCTION_ORDER = Comparator
+	    .comparing(Instruction::getEntity, ReportDiff.nullsFirst())
+	    .thenComparing(Instruction::getBuySellString, ReportDiff.nullsFirst())
+	    .thenComparing(Instruction::getCurrencyString, ReportDiff.nullsFirst())
+	    .thenComparingInt(Instruction::getInstructionEpochDay)
+	    .thenComparingInt(Instruction::getSettlementEpochDay)
+	    .thenComparing(Instruction::getUnits, ReportDiff.nullsFirst())
+	    .thenComparing(Instruction::getPricePerUnit, ReportDiff.nullsFirst())
+	    .thenComparing(Instruction::getExchangeRate, ReportDiff.nullsFirst())
+	    .thenComparing(Instruction::getInvalidReason, ReportDiff.nullsFirst());
+
+    private final List<Instruction> addedInvalidInstructions;
+
+    private final List<DayChange> incomingDayChanges;
+
+    private final List<RankingChange> incomingRankingChanges;
+
+    private final Map<InvalidReason, Long> invalidInstructionCountChanges;
+
+    private final List<DayChange> outgoingDayChanges;
+
+    private final List<RankingChange> outgoingRankingChanges;
+
+    private final List<Instruction> removedInvalidInstructions;
+
+    private ReportDiff(final Report before, final Report after) {
+
+	final ReportPlan beforePlan = before.getPlan();
+	final ReportPlan afterPlan = after.getPlan();
+
+	if (beforePlan.includes(ReportSection.DAILY_TOTALS) && afterPlan.includes(ReportSection.DAILY_TOTALS)) {
+	    this.incomingDayChanges = ReportDiff.diff(before.getIncomingDailyTotals(), after.getIncomingDailyTotals());
+	    this.outgoingDayChanges = ReportDiff.diff(before.getOutgoingDailyTotals(), after.getOutgoingDailyTotals());
+	} else {
+	    this.incomingDayChanges = Collections.emptyList();
+	    this.outgoingDayChanges = Collections.emptyList();
+	}
+
+	this.incomingRankingChanges = beforePlan.includes(ReportSection.INCOMING_RANKING)
+		&& afterPlan.includes(ReportSection.INCOMING_RANKING)
+			? ReportDiff.diff(before.getIncomingEntityRankingList(), after.getIncomingEntityRankingList())
+			: Collections.emptyList();
+	this.outgoingRankingChanges = beforePlan.includes(ReportSection.OUTGOING_RANKING)
+		&& afterPlan.includes(ReportSection.OUTGOING_RANKING)
+			? ReportDiff.diff(before.getOutgoingEntityRankingList(), after.getOutgoingEntityRankingList())
+			: Collections.emptyList();
+
+	final Map<InvalidReason, Long> invalidInstructionCountChanges = new EnumMap<>(InvalidReason.class);
+
+	for (final InvalidReason invalidReason : InvalidReason.values()) {
+
+	    final long change = after.getInvalidInstructionCountByReason().getOrDefault(invalidReason, 0L)
+		    - before.getInvalidInstructionCountByReason().getOrDefault(invalidReason, 0L);
+
+	    if (change != 0) {
+		invalidInstructionCountChanges.put(invalidReason, change);
+	    }
+	}
+
+	this.invalidInstructionCountChanges = Collections.unmodifiableMap(invalidInstructionCountChanges);
+
+	final List<Instruction> added = new ArrayList<>();
+	final List<Instruction> removed = new ArrayList<>();
+
+	if (ReportDiff.retainedInstructions(before) && ReportDiff.retainedInstructions(after)) {
+	    ReportDiff.diff(before.getInvalidInstructions(), after.getInvalidInstructions(), added, removed);
+	}
+
+	this.addedInvalidInstructions = Collections.unmodifiableList(added);
+	this.removedInvalidInstructions = Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * Compares two <code>Reports</code>.
+     *
+     * @param before
+     *            the earlier <code>Report</code>
+     * @param after
+     *            the later <code>Report</code>
+     * @return the changes from <code>before</code> to <code>after</code>
+     */
+    public static ReportDiff between(final Report before, final Report after) {
+	return new ReportDiff(Objects.requireNonNull(before), Objects.requireNonNull(after));
+    }
+
+    /**
+     * Merges two <code>DailyTotals</code>, which are in date order.
+     */
+    private static List<DayChange> diff(final DailyTotals before, final DailyTotals after) {
+
+	final List<DayChange> changes = new ArrayList<>();
+	int i = 0;
+	int j = 0;
+
+	while (i < before.size() || j < after.size()) {
+
+	    final int comparison = i == before.size() ? 1
+		    : j == after.size() ? -1 : Integer.compare(before.getEpochDay(i), after.getEpochDay(j));
+
+	    if (comparison < 0) {
+		changes.add(new DayChange(before.getEpochDay(i), before.getTotal(i), null));
+		i++;
+	    } else if (comparison > 0) {
+		changes.add(new DayChange(after.getEpochDay(j), null, after.getTotal(j)));
+		j++;
+	    } else {
+		if (before.getTotal(i).compareTo(after.getTotal(j)) != 0) {
+		    changes.add(new DayChange(before.getEpochDay(i), before.getTotal(i), after.getTotal(j)));
+		}
+		i++;
+		j++;
+	    }
+	}
+
+	return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Sorts two <code>EntityRanking Lists</code> by entity and merges them.
+     * The changes are in entity order.
+     */
+    private static List<RankingChange> diff(final List<EntityRanking> before, final List<EntityRanking> after) {
+
+	final Comparator<EntityRanking> byEntity = Comparator.comparing(EntityRanking::getEntity);
+	final List<EntityRanking> sortedBefore = new ArrayList<>(before);
+	final List<EntityRanking> sortedAfter = new ArrayList<>(after);
+	sortedBefore.sort(byEntity);
+	sortedAfter.sort(byEntity);
+
+	final List<RankingChange> changes = new ArrayList<>();
+	int i = 0;
+	int j = 0;
+
+	while (i < sortedBefore.size() || j < sortedAfter.size()) {
+
+	    final EntityRanking from = i == sortedBefore.size() ? null : sortedBefore.get(i);
+	    final EntityRanking to = j == sortedAfter.size() ? null : sortedAfter.get(j);
+	    final int comparison = from == null ? 1 : to == null ? -1 : byEntity.compare(from, to);
+
+	    if (comparison < 0) {
+		changes.add(new RankingChange(from, null));
+		i++;
+	    } else if (comparison > 0) {
+		changes.add(new RankingChange(null, to));
+		j++;
+	    } else {
+		if (!from.getRank().equals(to.getRank())
+			|| from.getHighestUSDAmount().compareTo(to.getHighestUSDAmount()) != 0) {
+		    changes.add(new RankingChange(from, to));
+		}
+		i++;
+		j++;
+	    }
+	}
+
+	return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Sorts two <code>Instruction Lists</code> by
+     * <code>INSTRUCTION_ORDER</code> and merges them. An
+     * <code>Instruction</code> that occurs more often in one
+     * <code>List</code> than the other is added or removed that many times.
+     */
+    private static void diff(final List<Instruction> before, final List<Instruction> after,
+	    final List<Instruction> added, final List<Instruction> removed) {
+
+	final List<Instruction> sortedBefore = new ArrayList<>(before);
+	final List<Instruction> sortedAfter = new ArrayList<>(after);
+	sortedBefore.sort(ReportDiff.INSTRUCTION_ORDER);
+	sortedAfter.sort(ReportDiff.INSTRUCTION_ORDER);
+
+	int i = 0;
+	int j = 0;
+
+	while (i < sortedBefore.size() || j < sortedAfter.size()) {
+
+	    final int comparison = i == sortedBefore.size() ? 1
+		    : j == sortedAfter.size() ? -1
+			    : ReportDiff.INSTRUCTION_ORDER.compare(sortedBefore.get(i), sortedAfter.get(j));
+
+	    if (comparison < 0) {
+		removed.add(sortedBefore.get(i++));
+	    } else if (comparison > 0) {
+		added.add(sortedAfter.get(j++));
+	    } else {
+		i++;
+		j++;
+	    }
+	}
+    }
+
+    private static <T extends Comparable<? super T>> Comparator<T> nullsFirst() {
+	return Comparator.nullsFirst(Comparator.naturalOrder());
+    }
+
+    /**
+     * @return <code>true</code> if the invalid <code>Instructions</code> of
+     *         a <code>Report</code> were retained, or there were none
+     */
+    private static boolean retainedInstructions(final Report report) {
+	return report.getPlan().includes(ReportSection.INSTRUCTIONS)
+		&& report.getInvalidInstructions().size() == report.getInvalidInstructionCount();
+    }
+
+    /**
+     * Returns the invalid <code>Instructions</code> of the later
+     * <code>Report</code> that the earlier one does not have, in
+     * <code>INSTRUCTION_ORDER</code>.
+     *
+     * @return <code>List</code> of added <code>Instructions</code>
+     */
+    public List<Instruction> getAddedInvalidInstructions() {
+	return this.addedInvalidInstructions;
+    }
+
+    /**
+     * @return the changes to the total amount in USD settled incoming each
+     *         day, in date order
+     */
+    public List<DayChange> getIncomingDayChanges() {
+	return this.incomingDayChanges;
+    }
+
+    /**
+     * @return the changes to the incoming <code>EntityRanking List</code>, in
+     *         entity order
+     */
+    public List<RankingChange> getIncomingRankingChanges() {
+	return this.incomingRankingChanges;
+    }
+
+    /**
+     * Returns a <code>Map</code> where the key is why Instructions were
+     * rejected and the value is how many more were rejected for that reason,
+     * negative if fewer were. Reasons whose count did not change are left
+     * out.
+     *
+     * @return <code>Map</code> of invalid instruction count changes
+     */
+    public Map<InvalidReason, Long> getInvalidInstructionCountChanges() {
+	return this.invalidInstructionCountChanges;
+    }
+
+    /**
+     * @return the changes to the total amount in USD settled outgoing each
+     *         day, in date order
+     */
+    public List<DayChange> getOutgoingDayChanges() {
+	return this.outgoingDayChanges;
+    }
+
+    /**
+     * @return the changes to the outgoing <code>EntityRanking List</code>, in
+     *         entity order
+     */
+    public List<RankingChange> getOutgoingRankingChanges() {
+	return this.outgoingRankingChanges;
+    }
+
+    /**
+     * Returns the invalid <code>Instructions</code> of the earlier
+     * <code>Report</code> that the later one does not have, in
+     * <code>INSTRUCTION_ORDER</code>.
+     *
+     * @return <code>List</code> of removed <code>Instructions</code>
+     */
+    public List<Instruction> getRemovedInvalidInstructions() {
+	return this.removedInvalidInstructions;
+    }
+
+    /**
+     * @return <code>true</code> if nothing compared has changed
+     */
+    public boolean isEmpty() {
+	return this.incomingDayChanges.isEmpty() && this.outgoingDayChanges.isEmpty()
+		&& this.incomingRankingChanges.isEmpty() && this.outgoingRankingChanges.isEmpty()
+		&& this.invalidInstructionCountChanges.isEmpty() && this.addedInvalidInstructions.isEmpty()
+		&& this.removedInvalidInstructions.isEmpty();
+    }
+
+    /**
+     * A change to the total amount in USD settled on one day.
+     */
+    public static final class DayChange {
+
+	private final BigDecimal after;
+
+	private final BigDecimal before;
+
+	private final int epochDay;
+
+	DayChange(final int epochDay, final BigDecimal before, final BigDecimal after) {
+	    this.epochDay = epochDay;
+	    this.before = before;
+	    this.after = after;
+	}
+
+	/**
+	 * @return the total of the later <code>Report</code>, or
+	 *         <code>null</code> if nothing settled that day
+	 */
+	public BigDecimal getAfter() {
+	    return this.after;
+	}
+
+	/**
+	 * @return the total of the earlier <code>Report</code>, or
+	 *         <code>null</code> if nothing settled that day
+	 */
+	public BigDecimal getBefore() {
+	    return this.before;
+	}
+
+	/**
+	 * @return the Actual Date of settlement
+	 */
+	public LocalDate getDay() {
+	    return LocalDate.ofEpochDay(this.epochDay);
+	}
+
+	/**
+	 * @return the later total less the earlier one, a missing total
+	 *         counting as zero
+	 */
+	public BigDecimal getDelta() {
+	    return (this.after == null ? BigDecimal.ZERO : this.after)
+		    .subtract(this.before == null ? BigDecimal.ZERO : this.before);
+	}
+
+	/**
+	 * @return the Actual Date of settlement as an epoch day
+	 */
+	public int getEpochDay() {
+	    return this.epochDay;
+	}
+    }
+
+    /**
+     * A change to the ranking of one entity.
+     */
+    public static final class RankingChange {
+
+	/**
+	 * How an entity's ranking changed.
+	 */
+	public enum Kind {
+
+	    /**
+	     * The entity is only ranked in the later <code>Report</code>.
+	     */
+	    ENTERED,
+
+	    /**
+	     * The entity is only ranked in the earlier <code>Report</code>.
+	     */
+	    LEFT,
+
+	    /**
+	     * The entity is ranked in both, at a different rank.
+	     */
+	    MOVED,
+
+	    /**
+	     * The entity keeps its rank, with a different highest amount.
+	     */
+	    CHANGED_AMOUNT
+	}
+
+	private final EntityRanking after;
+
+	private final EntityRanking before;
+
+	RankingChange(final EntityRanking before, final EntityRanking after) {
+	    this.before = before;
+	    this.after = after;
+	}
+
+	/**
+	 * @return the highest amount in USD of the later <code>Report</code>,
+	 *         or <code>null</code> if the entity is not ranked in it
+	 */
+	public BigDecimal getAfterHighestUSDAmount() {
+	    return this.after == null ? null : this.after.getHighestUSDAmount();
+	}
+
+	/**
+	 * @return the rank in the later <code>Report</code>, or
+	 *         <code>null</code> if the entity is not ranked in it
+	 */
+	public Integer getAfterRank() {
+	    return this.after == null ? null : this.after.getRank();
+	}
+
+	/**
+	 * @return the highest amount in USD of the earlier <code>Report</code>,
+	 *         or <code>null</code> if the entity is not ranked in it
+	 */
+	public BigDecimal getBeforeHighestUSDAmount() {
+	    return this.before == null ? null : this.before.getHighestUSDAmount();
+	}
+
+	/**
+	 * @return the rank in the earlier <code>Report</code>, or
+	 *         <code>null</code> if the entity is not ranked in it
+	 */
+	public Integer getBeforeRank() {
+	    return this.before == null ? null : this.before.getRank();
+	}
+
+	/**
+	 * @return the entity whose ranking changed
+	 */
+	public String getEntity() {
+	    return this.before == null ? this.after.getEntity() : this.before.getEntity();
+	}
+
+	/**
+	 * @return how the ranking of the entity changed between the two
+	 *         <code>Reports</code>
+	 */
+	public Kind getKind() {
+
+	    if (this.before == null) {
+		return Kind.ENTERED;
+	    }
+
+	    if (this.after == null) {
+		return Kind.LEFT;
+	    }
+
+	    return this.before.getRank().equals(this.after.getRank()) ? Kind.CHANGED_AMOUNT : Kind.MOVED;
+	}
+    }
+}
@@ -0,0 +1,68 @@
+package com.jpmorgan.report.model;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Records JFR events when the JVM supports flight recording.
+ * <p>
+ * The events are built from <code>src/jfr/java</code>, which is only
+ * compiled on JDK 11 and later, so they are found by name: on a Java 8 build,
+ * or a JVM without <code>jdk.jfr</code>, nothing is recorded.
+ */
+final class ReportEvents {
+
+    private static final String REPORT_BUILD_EVENT = "com.jpmorgan.report.model.ReportBuildEvent";
+
+    /**
+     * Constructs a <code>ReportBuildEvent</code>, or <code>null</code> if
+     * flight recording is not available.
+     */
+    private static final Constructor<? extends ReportBuildRecording> REPORT_BUILD = ReportEvents
+	    .findReportBuildEvent();
+
+    private ReportEvents() {
+    }
+
+    /**
+     * Begins recording a <code>Report</code> build.
+     *
+     * @param metrics
+     *            the metrics the build adds to
+     * @return the recording, which records nothing if flight recording is
+     *         not available
+     */
+    static ReportBuildRecording startReportBuild(final ReportMetrics metrics) {
+
+	if (ReportEvents.REPORT_BUILD == null) {
+	    return ReportBuildRecording.NONE;
+	}
+
+	final ReportBuildRecording recording;
+
+	try {
+	    recording = ReportEvents.REPORT_BUILD.newInstance();
+	} catch (final ReflectiveOperationException e) {
+	    throw new IllegalStateException("Cannot construct " + ReportEvents.REPORT_BUILD_EVENT, e);
+	}
+
+	recording.start(metrics);
+
+	return recording;
+    }
+
+    private static Constructor<? extends ReportBuildRecording> findReportBuildEvent() {
+
+	try {
+	    /*
+	     * The event class is only loaded once jdk.jfr is known to be
+	     * present...
+	     */
+	    Class.forName("jdk.jfr.Event", false, ReportEvents.class.getClassLoader());
+
+	    return Class.forName(ReportEvents.REPORT_BUILD_EVENT, true, ReportEvents.class.getClassLoader())
+		    .asSubclass(ReportBuildRecording.class).getDeclaredConstructor();
+	} catch (final ReflectiveOperationException | LinkageError e) {
+	    return null;
+	}
+    }
+}
@@ -0,0 +1,148 @@
+package com.jpmorgan.report.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-phase measurements of building <code>Reports</code>.
+ * <p>
+ * Metrics are collected by every <code>ReportAccumulator</code> constructed
+ * with a <code>ReportConfiguration</code> that holds them, and are disabled
+ * otherwise, when they cost a single <code>null</code> check per phase. They
+ * may be shared between threads, for example by the accumulators of a
+ * <code>ParallelReportBuilder</code>, in which case phase times add up across
+ * threads. Each time a <code>Report</code> is produced, what its build added
+ * to the metrics is also committed as a
+ * <code>com.jpmorgan.report.ReportBuild</code> JFR event, if the model was
+ * built on JDK 11 or later, the JVM supports flight recording and the event
+ * is enabled.
+ */
+public class ReportMetrics {
+
+    /**
+     * Value returned for allocated bytes when the JVM does not measure them.
+     */
+    public static final long UNSUPPORTED = -1;
+
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private final LongAdder instructionCount = new LongAdder();
+
+    private final LongAdder[] invalidInstructionCountByReason = ReportMetrics
+	    .newAdders(InvalidReason.values().length);
+
+    private final LongAdder[] phaseNanos = ReportMetrics.newAdders(ReportPhase.values().length);
+
+    private final LongAdder reportCount = new LongAdder();
+
+    private static LongAdder[] newAdders(final int length) {
+
+	final LongAdder[] adders = new LongAdder[length];
+	for (int i = 0; i < length; i++) {
+	    adders[i] = new LongAdder();
+	}
+
+	return adders;
+    }
+
+    /**
+     * @return the bytes allocated by the threads building the Reports, or
+     *         <code>UNSUPPORTED</code> if the JVM does not measure them
+     */
+    public long getAllocatedBytes() {
+	return ThreadAllocation.isSupported() ? this.allocatedBytes.sum() : ReportMetrics.UNSUPPORTED;
+    }
+
+    /**
+     * @return the number of Instructions accepted, valid or not
+     */
+    public long getInstructionCount() {
+	return this.instructionCount.sum();
+    }
+
+    /**
+     * @return the number of invalid Instructions
+     */
+    public long getInvalidInstructionCount() {
+
+	long count = 0;
+	for (final LongAdder adder : this.invalidInstructionCountByReason) {
+	    count += adder.sum();
+	}
+
+	return count;
+    }
+
+    /**
+     * Returns a <code>Map</code> where the key is why Instructions were
+     * rejected and the value is how many were rejected for that reason.
+     *
+     * @return <code>Map</code> of invalid instruction counts
+     */
+    public Map<InvalidReason, Long> getInvalidInstructionCountByReason() {
+
+	final Map<InvalidReason, Long> map = new EnumMap<>(InvalidReason.class);
+
+	for (final InvalidReason invalidReason : InvalidReason.values()) {
+	    final long count = this.invalidInstructionCountByReason[invalidReason.ordinal()].sum();
+	    if (count > 0) {
+		map.put(invalidReason, count);
+	    }
+	}
+
+	return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * @param phase
+     *            the phase
+     * @return the time spent in the phase, in nanoseconds
+     */
+    public long getPhaseNanos(final ReportPhase phase) {
+	return this.phaseNanos[Objects.requireNonNull(phase).ordinal()].sum();
+    }
+
+    /**
+     * @return the number of Reports produced
+     */
+    public long getReportCount() {
+	return this.reportCount.sum();
+    }
+
+    @Override
+    public String toString() {
+
+	final StringBuilder builder = new StringBuilder("ReportMetrics[instructions=")
+		.append(this.getInstructionCount()).append(", invalid=").append(this.getInvalidInstructionCountByReason());
+
+	for (final ReportPhase phase : ReportPhase.values()) {
+	    builder.append(", ").append(phase).append("=").append(this.getPhaseNanos(phase)).append("ns");
+	}
+
+	return builder.append(", allocatedBytes=").append(this.getAllocatedBytes()).append("]").toString();
+    }
+
+    void addAllocatedBytes(final long bytes) {
+	this.allocatedBytes.add(bytes);
+    }
+
+    void addInstruction(final InvalidReason invalidReason) {
+
+	this.instructionCount.increment();
+
+	if (invalidReason != null) {
+	    this.invalidInstructionCountByReason[invalidReason.ordinal()].increment();
+	}
+    }
+
+    void addPhaseNanos(final ReportPhase phase, final long nanos) {
+	this.phaseNanos[phase.ordinal()].add(nanos);
+    }
+
+    void addReport() {
+	this.reportCount.increment();
+    }
+}
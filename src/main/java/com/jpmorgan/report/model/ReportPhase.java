@@ -0,0 +1,40 @@
+package com.jpmorgan.report.model;
+
+/**
+ * The phases of building a <code>Report</code> that are timed by
+ * <code>ReportMetrics</code>.
+ */
+public enum ReportPhase {
+
+    /**
+     * Checking that an Instruction is valid.
+     */
+    VALIDATION,
+
+    /**
+     * Setting the <code>BuySell</code> and <code>Currency</code> of a valid
+     * Instruction.
+     */
+    ENUM_RESOLUTION,
+
+    /**
+     * Rolling the settlement date to a business day.
+     */
+    DATE_ROLLING,
+
+    /**
+     * Computing the USD amount.
+     */
+    USD_AMOUNT,
+
+    /**
+     * Adding the USD amount to the totals, the totals per day and the highest
+     * amount per entity, and producing the totals per day for the Report.
+     */
+    GROUPING,
+
+    /**
+     * Producing the <code>EntityRanking Lists</code> for the Report.
+     */
+    RANKING
+}
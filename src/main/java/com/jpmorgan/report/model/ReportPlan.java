@@ -0,0 +1,89 @@
+package com.jpmorgan.report.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The sections of a <code>Report</code> that a caller needs.
+ * <p>
+ * A <code>ReportAccumulator</code> only maintains the aggregates of the
+ * planned sections, so a caller that only reads the totals does not pay for
+ * grouping by day or ranking entities. Reading a section that was not planned
+ * throws <code>IllegalStateException</code>. Plans are immutable.
+ */
+public final class ReportPlan {
+
+    /**
+     * A plan that includes every section.
+     */
+    public static final ReportPlan ALL = new ReportPlan(EnumSet.allOf(ReportSection.class));
+
+    /**
+     * A plan that only includes the instruction counts.
+     */
+    public static final ReportPlan COUNTS_ONLY = new ReportPlan(EnumSet.noneOf(ReportSection.class));
+
+    private final Set<ReportSection> sections;
+
+    private ReportPlan(final EnumSet<ReportSection> sections) {
+	this.sections = Collections.unmodifiableSet(sections);
+    }
+
+    /**
+     * @param first
+     *            a section to include
+     * @param rest
+     *            any other sections to include
+     * @return a plan of the sections
+     */
+    public static ReportPlan of(final ReportSection first, final ReportSection... rest) {
+	return new ReportPlan(EnumSet.of(Objects.requireNonNull(first), rest));
+    }
+
+    /**
+     * @param sections
+     *            the sections to include, which may be none
+     * @return a plan of the sections
+     */
+    static ReportPlan copyOf(final Collection<ReportSection> sections) {
+
+	final EnumSet<ReportSection> set = EnumSet.noneOf(ReportSection.class);
+	set.addAll(sections);
+
+	return new ReportPlan(set);
+    }
+
+    /**
+     * @return the planned sections
+     */
+    public Set<ReportSection> getSections() {
+	return this.sections;
+    }
+
+    /**
+     * @param section
+     *            a section
+     * @return <code>true</code> if the section is planned
+     */
+    public boolean includes(final ReportSection section) {
+	return this.sections.contains(section);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+	return obj instanceof ReportPlan && ((ReportPlan) obj).sections.equals(this.sections);
+    }
+
+    @Override
+    public int hashCode() {
+	return this.sections.hashCode();
+    }
+
+    @Override
+    public String toString() {
+	return "ReportPlan" + this.sections;
+    }
+}
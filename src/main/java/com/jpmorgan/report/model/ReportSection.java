@@ -0,0 +1,43 @@
+package com.jpmorgan.report.model;
+
+/**
+ * A part of a <code>Report</code> that a <code>ReportPlan</code> may include.
+ * The instruction counts are always included.
+ */
+public enum ReportSection {
+
+    /**
+     * The total amount in USD settled in each direction.
+     */
+    TOTALS,
+
+    /**
+     * The total amount in USD settled on each day, as <code>Maps</code> and
+     * as <code>DailyTotals</code>.
+     */
+    DAILY_TOTALS,
+
+    /**
+     * The incoming <code>EntityRanking List</code>.
+     */
+    INCOMING_RANKING,
+
+    /**
+     * The outgoing <code>EntityRanking List</code>.
+     */
+    OUTGOING_RANKING,
+
+    /**
+     * The valid, invalid, incoming and outgoing <code>Instruction
+     * Lists</code>, which are only populated when instructions are retained.
+     */
+    INSTRUCTIONS,
+
+    /**
+     * The net amount in USD settled for each entity on each day, as
+     * <code>NetPositions</code>. It is recomputed from every (entity, day)
+     * pair on each <code>Report</code>, so <code>IntradayReport</code> and
+     * <code>LiveReport</code> leave it out of their snapshots.
+     */
+    NET_POSITIONS
+}
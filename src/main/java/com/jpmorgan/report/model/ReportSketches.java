@@ -0,0 +1,142 @@
+package com.jpmorgan.report.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.jpmorgan.report.sketch.DistinctCountSketch;
+import com.jpmorgan.report.sketch.HeavyHitters;
+import com.jpmorgan.report.sketch.QuantileSketch;
+
+/**
+ * Approximate analytics of the valid <code>Instructions</code> of a
+ * <code>Report</code>, built in constant memory per entity and per currency,
+ * however many <code>Instructions</code> there are: the distribution of the
+ * USD amounts of each entity, the number of distinct entities that settle in
+ * each currency, and the entities that settle the most USD.
+ * <p>
+ * The sketches are shared with the <code>ReportAccumulator</code> that
+ * produced them, which copies any of them before it changes it, so they are
+ * produced in time proportional to what changed since the previous
+ * <code>ReportSketches</code>. The getters of sketches return copies, which
+ * can be merged with the sketches of other <code>Reports</code> built apart.
+ * Instances are immutable.
+ */
+public final class ReportSketches {
+
+    /**
+     * The amount sketch of each entity, by id, in chunks.
+     */
+    private final QuantileSketch[][] amountDistributions;
+
+    private final DistinctCountSketch[] distinctEntities;
+
+    private final HeavyHitters heavyHitters;
+
+    /**
+     * Map where the key is an entity and the value is its id, which may
+     * include entities added after these sketches were produced.
+     */
+    private final Map<String, Integer> ids;
+
+    /**
+     * Shares the sketches of a <code>SketchAggregator</code>.
+     */
+    ReportSketches(final QuantileSketch[][] amountDistributions, final Map<String, Integer> ids,
+	    final DistinctCountSketch[] distinctEntities, final HeavyHitters heavyHitters) {
+	this.amountDistributions = amountDistributions;
+	this.ids = ids;
+	this.distinctEntities = distinctEntities;
+	this.heavyHitters = heavyHitters;
+    }
+
+    /**
+     * @return the amount sketch of an entity, or <code>null</code> if it has
+     *         none
+     */
+    private QuantileSketch amountDistribution(final String entity) {
+
+	final Integer id = this.ids.get(Objects.requireNonNull(entity));
+
+	if (id == null) {
+	    return null;
+	}
+
+	final int chunkIndex = id >>> SketchAggregator.CHUNK_BITS;
+
+	if (chunkIndex >= this.amountDistributions.length || this.amountDistributions[chunkIndex] == null) {
+	    return null;
+	}
+
+	return this.amountDistributions[chunkIndex][id & SketchAggregator.CHUNK_SIZE - 1];
+    }
+
+    /**
+     * @param entity
+     *            the entity
+     * @return a copy of the sketch of the USD amounts of the entity's valid
+     *         <code>Instructions</code>, or <code>null</code> if it has none
+     */
+    public QuantileSketch getAmountDistribution(final String entity) {
+
+	final QuantileSketch amountDistribution = this.amountDistribution(entity);
+
+	return amountDistribution == null ? null : amountDistribution.copy();
+    }
+
+    /**
+     * Estimates a quantile of the USD amounts of an entity, such as its
+     * median or 99th percentile, within the relative accuracy of
+     * <code>QuantileSketch</code>.
+     *
+     * @param entity
+     *            the entity
+     * @param quantile
+     *            from 0 to 1
+     * @return the estimate, or <code>null</code> if the entity has no valid
+     *         <code>Instructions</code>
+     */
+    public Double getAmountQuantile(final String entity, final double quantile) {
+
+	final QuantileSketch amountDistribution = this.amountDistribution(entity);
+
+	return amountDistribution == null ? null : amountDistribution.getQuantile(quantile);
+    }
+
+    /**
+     * @param currency
+     *            the currency
+     * @return a copy of the sketch of the entities settling in the currency
+     */
+    public DistinctCountSketch getDistinctEntities(final Currency currency) {
+	return this.distinctEntities[currency.ordinal()].copy();
+    }
+
+    /**
+     * @param currency
+     *            the currency
+     * @return the estimated number of distinct entities settling in the
+     *         currency
+     */
+    public long getDistinctEntityCount(final Currency currency) {
+	return this.distinctEntities[currency.ordinal()].getEstimate();
+    }
+
+    /**
+     * Returns the entities with the largest estimated USD amount settled,
+     * incoming and outgoing together, largest first.
+     *
+     * @return <code>List</code> of heavy hitters
+     */
+    public List<HeavyHitters.Entry> getHeavyHitters() {
+	return Collections.unmodifiableList(this.heavyHitters.getHeavyHitters());
+    }
+
+    /**
+     * @return a copy of the heavy hitters
+     */
+    public HeavyHitters getHeavyHittersSketch() {
+	return this.heavyHitters.copy();
+    }
+}
@@ -0,0 +1,904 @@
+package com.jpmorgan.report.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+import com.jpmorgan.report.date.EpochDays;
+
+/**
+ * Writes a built <code>Report</code> in a compact, versioned binary form, and
+ * reads it back from a memory mapped file without rerunning the build.
+ * <p>
+ * A snapshot holds the instruction counts and the sections of the
+ * <code>ReportPlan</code>: the direction totals, the totals per day in date
+ * order, the <code>EntityRanking Lists</code> and the net positions in entity
+ * then date order. If the
+ * <code>Instructions</code> were retained they follow as columns, with the
+ * <code>Strings</code> they use stored once in a table. A snapshot is read back
+ * as a <code>Report</code> with the same plan, but without
+ * <code>ReportSketches</code>, which are not stored. All numbers are big
+ * endian; a <code>BigDecimal</code> is its scale followed by the length and
+ * bytes of its unscaled value.
+ * <p>
+ * After a fixed header, the counts and totals, every later section, and the
+ * string table and each column set of the <code>Instructions</code> are each
+ * preceded by their length in bytes and followed by their CRC-32. A reader
+ * only decodes the counts and totals up front, and decodes any other section
+ * from the buffer the first time the <code>Report</code> reads it, so a
+ * consumer that only reads the totals never builds an
+ * <code>Instruction</code> or an <code>EntityRanking</code>. A reader that
+ * asks to verify the snapshot checks every checksum first, without decoding.
+ * <p>
+ * The format is identified by <code>MAGIC</code> and
+ * <code>FORMAT_VERSION</code>, and a reader rejects any other version, so a
+ * change to the layout must raise the version. Enums are stored by ordinal.
+ */
+public final class ReportSnapshot {
+
+    /**
+     * The version of the layout written.
+     */
+    public static final short FORMAT_VERSION = 5;
+
+    /**
+     * The first four bytes of every snapshot, "JPRS".
+     */
+    public static final int MAGIC = 0x4A505253;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final short INSTRUCTIONS = 1;
+
+    private static final byte NO_ORDINAL = -1;
+
+    private static final int NULL_LENGTH = -1;
+
+    private ReportSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a <code>Report</code> to a file, replacing it if it
+     * exists.
+     *
+     * @param report
+     *            the <code>Report</code>
+     * @param path
+     *            the file to write
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public static void write(final Report report, final Path path) throws IOException {
+
+	Objects.requireNonNull(path);
+
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+		StandardOpenOption.TRUNCATE_EXISTING)) {
+	    ReportSnapshot.write(report, channel);
+	}
+    }
+
+    /**
+     * Writes a snapshot of a <code>Report</code> to a channel, through a
+     * buffer of fixed size if the channel is a <code>FileChannel</code>. The
+     * length of each section is filled in once it is written, at its position
+     * in a file; on any other channel the buffer grows to hold the section
+     * being written.
+     *
+     * @param report
+     *            the <code>Report</code>
+     * @param channel
+     *            the channel to write to, which is left open
+     * @throws IOException
+     *             if the channel cannot be written
+     */
+    public static void write(final Report report, final WritableByteChannel channel) throws IOException {
+
+	Objects.requireNonNull(report);
+
+	final Encoder encoder = new Encoder(Objects.requireNonNull(channel));
+	final ReportPlan plan = report.getPlan();
+	final boolean instructions = plan.includes(ReportSection.INSTRUCTIONS)
+		&& (!report.getValidInstructions().isEmpty() || !report.getInvalidInstructions().isEmpty());
+
+	encoder.ensure(12);
+	encoder.buffer.putInt(ReportSnapshot.MAGIC);
+	encoder.buffer.putShort(ReportSnapshot.FORMAT_VERSION);
+	encoder.buffer.putShort(instructions ? ReportSnapshot.INSTRUCTIONS : 0);
+
+	int sections = 0;
+	for (final ReportSection section : plan.getSections()) {
+	    sections |= 1 << section.ordinal();
+	}
+	encoder.buffer.putInt(sections);
+
+	ReportSnapshot.writeSection(encoder, section -> {
+
+	    section.putLong(report.getIncomingInstructionCount());
+	    section.putLong(report.getOutgoingInstructionCount());
+
+	    section.putInt(report.getInvalidInstructionCountByReason().size());
+	    for (final Map.Entry<InvalidReason, Long> entry : report.getInvalidInstructionCountByReason().entrySet()) {
+		section.putByte((byte) entry.getKey().ordinal());
+		section.putLong(entry.getValue());
+	    }
+
+	    if (plan.includes(ReportSection.TOTALS)) {
+		section.putBigDecimal(report.getTotalUSDAmountSettledIncoming());
+		section.putBigDecimal(report.getTotalUSDAmountSettledOutgoing());
+	    }
+	});
+
+	if (plan.includes(ReportSection.DAILY_TOTALS)) {
+	    ReportSnapshot.writeSection(encoder, section -> ReportSnapshot.writeTotalsPerDay(section,
+		    report.getMapOfTotalUSDAmountSettledIncomingPerDay()));
+	    ReportSnapshot.writeSection(encoder, section -> ReportSnapshot.writeTotalsPerDay(section,
+		    report.getMapOfTotalUSDAmountSettledOutgoingPerDay()));
+	}
+
+	if (plan.includes(ReportSection.INCOMING_RANKING)) {
+	    ReportSnapshot.writeSection(encoder,
+		    section -> ReportSnapshot.writeEntityRankingList(section, report.getIncomingEntityRankingList()));
+	}
+
+	if (plan.includes(ReportSection.OUTGOING_RANKING)) {
+	    ReportSnapshot.writeSection(encoder,
+		    section -> ReportSnapshot.writeEntityRankingList(section, report.getOutgoingEntityRankingList()));
+	}
+
+	if (plan.includes(ReportSection.NET_POSITIONS)) {
+	    ReportSnapshot.writeSection(encoder,
+		    section -> ReportSnapshot.writeNetPositions(section, report.getNetPositions()));
+	}
+
+	if (instructions) {
+
+	    final Map<String, Integer> strings = new HashMap<>();
+	    final List<String> table = new ArrayList<>();
+
+	    for (final List<Instruction> list : ReportSnapshot.instructionLists(report)) {
+		for (final Instruction instruction : list) {
+		    ReportSnapshot.intern(strings, table, instruction.getEntity());
+		    ReportSnapshot.intern(strings, table, instruction.getBuySellString());
+		    ReportSnapshot.intern(strings, table, instruction.getCurrencyString());
+		}
+	    }
+
+	    ReportSnapshot.writeSection(encoder, section -> {
+		section.putInt(table.size());
+		for (final String string : table) {
+		    section.putString(string);
+		}
+	    });
+
+	    for (final List<Instruction> list : ReportSnapshot.instructionLists(report)) {
+		ReportSnapshot.writeSection(encoder, section -> ReportSnapshot.writeColumns(section, list, strings));
+	    }
+	}
+
+	encoder.flush();
+    }
+
+    /**
+     * Writes a section preceded by its length in bytes, which is filled in
+     * once the section is written, and followed by its checksum.
+     */
+    private static void writeSection(final Encoder encoder, final SectionWriter writer) throws IOException {
+	encoder.startSection();
+	writer.write(encoder);
+	encoder.endSection();
+    }
+
+    private static void writeTotalsPerDay(final Encoder encoder, final Map<Date, BigDecimal> totalsPerDay)
+	    throws IOException {
+
+	final Map<Integer, BigDecimal> sorted = new TreeMap<>();
+	totalsPerDay.forEach((date, amount) -> sorted.put(EpochDays.toEpochDay(date), amount));
+
+	encoder.putInt(sorted.size());
+	for (final Map.Entry<Integer, BigDecimal> entry : sorted.entrySet()) {
+	    encoder.putInt(entry.getKey());
+	    encoder.putBigDecimal(entry.getValue());
+	}
+    }
+
+    private static void writeEntityRankingList(final Encoder encoder, final List<EntityRanking> entityRankingList)
+	    throws IOException {
+
+	encoder.putInt(entityRankingList.size());
+	for (final EntityRanking entityRanking : entityRankingList) {
+	    encoder.putString(entityRanking.getEntity());
+	    encoder.putInt(entityRanking.getRank());
+	    encoder.putBigDecimal(entityRanking.getHighestUSDAmount());
+	}
+    }
+
+    private static void writeNetPositions(final Encoder encoder, final NetPositions netPositions)
+	    throws IOException {
+
+	encoder.putInt(netPositions.size());
+	for (int i = 0; i < netPositions.size(); i++) {
+	    encoder.putString(netPositions.getEntity(i));
+	    encoder.putInt(netPositions.getEpochDay(i));
+	    encoder.putBigDecimal(netPositions.getNetUSDAmount(i));
+	}
+    }
+
+    private static void writeColumns(final Encoder encoder, final List<Instruction> instructions,
+	    final Map<String, Integer> strings) throws IOException {
+
+	encoder.putInt(instructions.size());
+
+	for (final Instruction instruction : instructions) {
+	    encoder.putInt(ReportSnapshot.idOf(strings, instruction.getEntity()));
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putInt(ReportSnapshot.idOf(strings, instruction.getBuySellString()));
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putInt(ReportSnapshot.idOf(strings, instruction.getCurrencyString()));
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putByte(ReportSnapshot.ordinalOf(instruction.getBuySell()));
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putByte(ReportSnapshot.ordinalOf(instruction.getCurrency()));
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putByte(ReportSnapshot.ordinalOf(instruction.getInvalidReason()));
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putInt(instruction.getInstructionEpochDay());
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putInt(instruction.getSettlementEpochDay());
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putInt(instruction.getAcutalSettlementEpochDay());
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putBigInteger(instruction.getUnits());
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putBigDecimal(instruction.getPricePerUnit());
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putBigDecimal(instruction.getExchangeRate());
+	}
+	for (final Instruction instruction : instructions) {
+	    encoder.putBigDecimal(instruction.getUSDAmount());
+	}
+    }
+
+    /**
+     * Reads a snapshot by memory mapping a file. The counts and totals are
+     * read now, and every other section is decoded from the mapping the first
+     * time it is read, so the file must not be changed in place while the
+     * <code>Report</code> is in use. The mapping does not depend on the file
+     * staying open.
+     *
+     * @param path
+     *            the file written by <code>write</code>
+     * @return the <code>Report</code>
+     * @throws IOException
+     *             if the file cannot be read or is not a snapshot of a
+     *             supported version
+     */
+    public static Report read(final Path path) throws IOException {
+	return ReportSnapshot.read(path, false);
+    }
+
+    /**
+     * Reads a snapshot by memory mapping a file, as <code>read(Path)</code>
+     * does, optionally checking the checksum of every section first.
+     *
+     * @param path
+     *            the file written by <code>write</code>
+     * @param verify
+     *            <code>true</code> to check every section now, so that a
+     *            damaged file is rejected here rather than when a section is
+     *            read
+     * @return the <code>Report</code>
+     * @throws IOException
+     *             if the file cannot be read, is not a snapshot of a
+     *             supported version, or fails verification
+     */
+    public static Report read(final Path path, final boolean verify) throws IOException {
+
+	Objects.requireNonNull(path);
+
+	try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+	    return ReportSnapshot.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), verify);
+	}
+    }
+
+    /**
+     * Reads a snapshot from a buffer, starting at its position. The counts
+     * and totals are read now, and every other section is decoded from the
+     * buffer the first time it is read, so its contents must not change
+     * while the <code>Report</code> is in use. A section found to be corrupt
+     * when it is decoded throws <code>UncheckedIOException</code>.
+     *
+     * @param buffer
+     *            the buffer holding the snapshot
+     * @return the <code>Report</code>
+     * @throws IOException
+     *             if the buffer does not hold a snapshot of a supported
+     *             version, or is shorter than the sections it holds
+     */
+    public static Report read(final ByteBuffer buffer) throws IOException {
+	return ReportSnapshot.read(buffer, false);
+    }
+
+    /**
+     * Reads a snapshot from a buffer, as <code>read(ByteBuffer)</code> does,
+     * optionally checking the checksum of every section first.
+     *
+     * @param buffer
+     *            the buffer holding the snapshot
+     * @param verify
+     *            <code>true</code> to check every section now, so that a
+     *            damaged snapshot is rejected here rather than when a section
+     *            is read
+     * @return the <code>Report</code>
+     * @throws IOException
+     *             if the buffer does not hold a snapshot of a supported
+     *             version, is shorter than the sections it holds, or fails
+     *             verification
+     */
+    public static Report read(final ByteBuffer buffer, final boolean verify) throws IOException {
+
+	Objects.requireNonNull(buffer);
+
+	try {
+
+	    if (buffer.remaining() < 8 || buffer.getInt() != ReportSnapshot.MAGIC) {
+		throw new IOException("Not a report snapshot");
+	    }
+
+	    final short version = buffer.getShort();
+
+	    if (version != ReportSnapshot.FORMAT_VERSION) {
+		throw new IOException("Unsupported report snapshot version " + version);
+	    }
+
+	    final short flags = buffer.getShort();
+	    final int sections = buffer.getInt();
+
+	    final List<ReportSection> planned = new ArrayList<>();
+	    for (final ReportSection section : ReportSection.values()) {
+		if ((sections & 1 << section.ordinal()) != 0) {
+		    planned.add(section);
+		}
+	    }
+	    final ReportPlan plan = ReportPlan.copyOf(planned);
+
+	    final ByteBuffer head = ReportSnapshot.section(buffer, verify);
+
+	    final long incomingInstructionCount = head.getLong();
+	    final long outgoingInstructionCount = head.getLong();
+
+	    final Map<InvalidReason, Long> invalidInstructionCountByReason = new EnumMap<>(InvalidReason.class);
+	    final InvalidReason[] invalidReasons = InvalidReason.values();
+
+	    for (int i = head.getInt(); i > 0; i--) {
+		final byte ordinal = head.get();
+		invalidInstructionCountByReason.put(invalidReasons[ordinal], head.getLong());
+	    }
+
+	    /*
+	     * The sections that are not planned are not in the snapshot, and stay
+	     * null...
+	     */
+	    BigDecimal totalIncoming = null;
+	    BigDecimal totalOutgoing = null;
+	    ByteBuffer totalsIncomingPerDay = null;
+	    ByteBuffer totalsOutgoingPerDay = null;
+	    ByteBuffer incomingEntityRankingList = null;
+	    ByteBuffer outgoingEntityRankingList = null;
+	    ByteBuffer netPositions = null;
+
+	    if (plan.includes(ReportSection.TOTALS)) {
+		totalIncoming = ReportSnapshot.getBigDecimal(head);
+		totalOutgoing = ReportSnapshot.getBigDecimal(head);
+	    }
+
+	    if (plan.includes(ReportSection.DAILY_TOTALS)) {
+		totalsIncomingPerDay = ReportSnapshot.section(buffer, verify);
+		totalsOutgoingPerDay = ReportSnapshot.section(buffer, verify);
+	    }
+
+	    if (plan.includes(ReportSection.INCOMING_RANKING)) {
+		incomingEntityRankingList = ReportSnapshot.section(buffer, verify);
+	    }
+
+	    if (plan.includes(ReportSection.OUTGOING_RANKING)) {
+		outgoingEntityRankingList = ReportSnapshot.section(buffer, verify);
+	    }
+
+	    if (plan.includes(ReportSection.NET_POSITIONS)) {
+		netPositions = ReportSnapshot.section(buffer, verify);
+	    }
+
+	    Supplier<List<Instruction>> validInstructions = Collections::emptyList;
+	    Supplier<List<Instruction>> invalidInstructions = Collections::emptyList;
+
+	    if ((flags & ReportSnapshot.INSTRUCTIONS) != 0) {
+
+		/*
+		 * The valid and invalid Instructions share the string table,
+		 * which is decoded once, by whichever is read first...
+		 */
+		final LazySection<String[]> table = LazySection.of(plan, ReportSection.INSTRUCTIONS,
+			ReportSnapshot.decoding(ReportSnapshot.section(buffer, verify), ReportSnapshot::readTable));
+
+		validInstructions = ReportSnapshot.decoding(ReportSnapshot.section(buffer, verify),
+			columns -> ReportSnapshot.readColumns(columns, table.get()));
+		invalidInstructions = ReportSnapshot.decoding(ReportSnapshot.section(buffer, verify),
+			columns -> ReportSnapshot.readColumns(columns, table.get()));
+	    }
+
+	    return new Report(plan, validInstructions, invalidInstructions, incomingInstructionCount,
+		    outgoingInstructionCount, invalidInstructionCountByReason, totalIncoming, totalOutgoing,
+		    ReportSnapshot.decoding(totalsIncomingPerDay, ReportSnapshot::readTotalsPerDay),
+		    ReportSnapshot.decoding(totalsOutgoingPerDay, ReportSnapshot::readTotalsPerDay),
+		    ReportSnapshot.decoding(incomingEntityRankingList, ReportSnapshot::readEntityRankingList),
+		    ReportSnapshot.decoding(outgoingEntityRankingList, ReportSnapshot::readEntityRankingList),
+		    ReportSnapshot.decoding(netPositions, ReportSnapshot::readNetPositions), null);
+
+	} catch (final BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+	    throw new IOException("Truncated or corrupt report snapshot", e);
+	}
+    }
+
+    /**
+     * Reads the length of a section and skips it and its checksum.
+     *
+     * @param verify
+     *            <code>true</code> to check the checksum
+     * @return a buffer of the section alone
+     * @throws IOException
+     *             if the section is verified and does not match its checksum
+     */
+    private static ByteBuffer section(final ByteBuffer buffer, final boolean verify) throws IOException {
+
+	final int length = buffer.getInt();
+
+	if (length < 0 || length > buffer.remaining()) {
+	    throw new BufferUnderflowException();
+	}
+
+	final ByteBuffer section = buffer.slice();
+	section.limit(length);
+	buffer.position(buffer.position() + length);
+
+	final int checksum = buffer.getInt();
+
+	if (verify) {
+
+	    final CRC32 crc = new CRC32();
+	    crc.update(section.duplicate());
+
+	    if ((int) crc.getValue() != checksum) {
+		throw new IOException("Report snapshot section does not match its checksum");
+	    }
+	}
+
+	return section;
+    }
+
+    /**
+     * @return a supplier that decodes a section, from its start each time it
+     *         is called, or <code>null</code> if the section is not in the
+     *         snapshot
+     */
+    private static <T> Supplier<T> decoding(final ByteBuffer section, final Function<ByteBuffer, T> reader) {
+
+	if (section == null) {
+	    return null;
+	}
+
+	return () -> {
+	    try {
+		return reader.apply(section.duplicate());
+	    } catch (final BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+		throw new UncheckedIOException(new IOException("Corrupt report snapshot section", e));
+	    }
+	};
+    }
+
+    private static Map<Date, BigDecimal> readTotalsPerDay(final ByteBuffer buffer) {
+
+	final Map<Date, BigDecimal> map = new HashMap<>();
+
+	for (int i = buffer.getInt(); i > 0; i--) {
+	    final int epochDay = buffer.getInt();
+	    map.put(EpochDays.toDate(epochDay), ReportSnapshot.getBigDecimal(buffer));
+	}
+
+	return map;
+    }
+
+    private static List<EntityRanking> readEntityRankingList(final ByteBuffer buffer) {
+
+	final int size = buffer.getInt();
+	final List<EntityRanking> list = new ArrayList<>(size);
+
+	for (int i = 0; i < size; i++) {
+
+	    final EntityRanking entityRanking = new EntityRanking();
+	    entityRanking.setEntity(ReportSnapshot.getString(buffer));
+	    entityRanking.setRank(buffer.getInt());
+	    entityRanking.setHighestUSDAmount(ReportSnapshot.getBigDecimal(buffer));
+	    list.add(entityRanking);
+	}
+
+	return list;
+    }
+
+    private static NetPositions readNetPositions(final ByteBuffer buffer) {
+
+	final int size = buffer.getInt();
+	final String[] entities = new String[size];
+	final int[] epochDays = new int[size];
+	final BigDecimal[] netUSDAmounts = new BigDecimal[size];
+
+	for (int i = 0; i < size; i++) {
+	    entities[i] = ReportSnapshot.getString(buffer);
+	    epochDays[i] = buffer.getInt();
+	    netUSDAmounts[i] = ReportSnapshot.getBigDecimal(buffer);
+	}
+
+	return new NetPositions(entities, epochDays, netUSDAmounts);
+    }
+
+    private static String[] readTable(final ByteBuffer buffer) {
+
+	final String[] table = new String[buffer.getInt()];
+	for (int i = 0; i < table.length; i++) {
+	    table[i] = ReportSnapshot.getString(buffer);
+	}
+
+	return table;
+    }
+
+    private static List<Instruction> readColumns(final ByteBuffer buffer, final String[] table) {
+
+	final Instruction[] instructions = new Instruction[buffer.getInt()];
+	final BuySell[] buySells = BuySell.values();
+	final Currency[] currencies = Currency.values();
+	final InvalidReason[] invalidReasons = InvalidReason.values();
+
+	for (int i = 0; i < instructions.length; i++) {
+	    instructions[i] = new Instruction();
+	    instructions[i].setEntity(ReportSnapshot.stringOf(table, buffer.getInt()));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setBuySellString(ReportSnapshot.stringOf(table, buffer.getInt()));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setCurrencyString(ReportSnapshot.stringOf(table, buffer.getInt()));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setBuySell(ReportSnapshot.valueOf(buySells, buffer.get()));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setCurrency(ReportSnapshot.valueOf(currencies, buffer.get()));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setInvalidReason(ReportSnapshot.valueOf(invalidReasons, buffer.get()));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setInstructionEpochDay(buffer.getInt());
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setSettlementEpochDay(buffer.getInt());
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setAcutalSettlementEpochDay(buffer.getInt());
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setUnits(ReportSnapshot.getBigInteger(buffer));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setPricePerUnit(ReportSnapshot.getBigDecimal(buffer));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setExchangeRate(ReportSnapshot.getBigDecimal(buffer));
+	}
+	for (final Instruction instruction : instructions) {
+	    instruction.setUSDAmount(ReportSnapshot.getBigDecimal(buffer));
+	}
+
+	return Arrays.asList(instructions);
+    }
+
+    private static List<List<Instruction>> instructionLists(final Report report) {
+
+	final List<List<Instruction>> lists = new ArrayList<>(2);
+	lists.add(report.getValidInstructions());
+	lists.add(report.getInvalidInstructions());
+
+	return lists;
+    }
+
+    private static void intern(final Map<String, Integer> strings, final List<String> table, final String string) {
+
+	if (string != null && !strings.containsKey(string)) {
+	    strings.put(string, table.size());
+	    table.add(string);
+	}
+    }
+
+    private static int idOf(final Map<String, Integer> strings, final String string) {
+	return string == null ? ReportSnapshot.NULL_LENGTH : strings.get(string);
+    }
+
+    private static String stringOf(final String[] table, final int id) {
+	return id == ReportSnapshot.NULL_LENGTH ? null : table[id];
+    }
+
+    private static byte ordinalOf(final Enum<?> value) {
+	return value == null ? ReportSnapshot.NO_ORDINAL : (byte) value.ordinal();
+    }
+
+    private static <T> T valueOf(final T[] values, final byte ordinal) {
+	return ordinal == ReportSnapshot.NO_ORDINAL ? null : values[ordinal];
+    }
+
+    private static BigDecimal getBigDecimal(final ByteBuffer buffer) {
+
+	final int scale = buffer.getInt();
+	final BigInteger unscaled = ReportSnapshot.getBigInteger(buffer);
+
+	return unscaled == null ? null : new BigDecimal(unscaled, scale);
+    }
+
+    private static BigInteger getBigInteger(final ByteBuffer buffer) {
+
+	final int length = buffer.getInt();
+
+	if (length == ReportSnapshot.NULL_LENGTH) {
+	    return null;
+	}
+
+	final byte[] bytes = new byte[length];
+	buffer.get(bytes);
+
+	return new BigInteger(bytes);
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+
+	final int length = buffer.getInt();
+
+	if (length == ReportSnapshot.NULL_LENGTH) {
+	    return null;
+	}
+
+	final byte[] bytes = new byte[length];
+	buffer.get(bytes);
+
+	return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes values into a buffer, which is written to the channel whenever
+     * it fills.
+     */
+    private static final class Encoder {
+
+	private ByteBuffer buffer = ByteBuffer.allocate(ReportSnapshot.BUFFER_SIZE);
+
+	private final WritableByteChannel channel;
+
+	/**
+	 * The channel written to if it is a file, whose lengths are filled in
+	 * at their position, or <code>null</code>.
+	 */
+	private final FileChannel file;
+
+	/**
+	 * The position of the file when the first byte was written.
+	 */
+	private final long filePosition;
+
+	/**
+	 * The checksum of the section being written, up to
+	 * <code>checksummed</code>.
+	 */
+	private final CRC32 checksum = new CRC32();
+
+	/**
+	 * The offset up to which the section being written is checksummed.
+	 */
+	private long checksummed;
+
+	/**
+	 * The offset of the length of the section being written, or -1.
+	 */
+	private long sectionStart = -1;
+
+	/**
+	 * The number of bytes flushed.
+	 */
+	private long size;
+
+	Encoder(final WritableByteChannel channel) throws IOException {
+	    this.channel = channel;
+	    this.file = channel instanceof FileChannel ? (FileChannel) channel : null;
+	    this.filePosition = this.file == null ? 0 : this.file.position();
+	}
+
+	/**
+	 * Makes room for <code>size</code> bytes, growing the buffer if a
+	 * single value does not fit in it. While a section is written to a
+	 * channel other than a file, the buffer grows instead of being
+	 * flushed, so that its length can still be filled in.
+	 */
+	void ensure(final int size) throws IOException {
+
+	    if (this.buffer.remaining() >= size) {
+		return;
+	    }
+
+	    if (this.sectionStart >= 0 && this.file == null) {
+
+		final long capacity = Math.max(2L * this.buffer.capacity(), (long) this.buffer.position() + size);
+
+		if (capacity > Integer.MAX_VALUE) {
+		    throw new IOException("Report snapshot section is too large to buffer");
+		}
+
+		this.buffer.flip();
+		this.buffer = ByteBuffer.allocate((int) capacity).put(this.buffer);
+		return;
+	    }
+
+	    this.flush();
+
+	    if (this.buffer.capacity() < size) {
+		this.buffer = ByteBuffer.allocate(size);
+	    }
+	}
+
+	void flush() throws IOException {
+
+	    if (this.sectionStart >= 0) {
+		this.updateChecksum();
+	    }
+
+	    this.buffer.flip();
+	    this.size += this.buffer.remaining();
+	    while (this.buffer.hasRemaining()) {
+		this.channel.write(this.buffer);
+	    }
+	    this.buffer.clear();
+	}
+
+	/**
+	 * Reserves the length of a section, which starts after it.
+	 */
+	void startSection() throws IOException {
+	    this.ensure(4);
+	    this.sectionStart = this.size + this.buffer.position();
+	    this.buffer.putInt(0);
+	    this.checksum.reset();
+	    this.checksummed = this.sectionStart + 4;
+	}
+
+	/**
+	 * Adds the bytes of the section in the buffer that are not yet
+	 * checksummed.
+	 */
+	private void updateChecksum() {
+
+	    final ByteBuffer bytes = this.buffer.duplicate();
+	    bytes.flip();
+	    bytes.position((int) (this.checksummed - this.size));
+	    this.checksum.update(bytes);
+	    this.checksummed = this.size + this.buffer.position();
+	}
+
+	/**
+	 * Fills in the length of the section being written: in the buffer if
+	 * it has not been flushed, and otherwise in the file. Then writes its
+	 * checksum.
+	 */
+	void endSection() throws IOException {
+
+	    this.updateChecksum();
+
+	    final long length = this.size + this.buffer.position() - this.sectionStart - 4;
+
+	    if (length > Integer.MAX_VALUE) {
+		throw new IOException("Report snapshot section of " + length + " bytes is too large");
+	    }
+
+	    if (this.sectionStart >= this.size) {
+		this.buffer.putInt((int) (this.sectionStart - this.size), (int) length);
+	    } else {
+
+		final ByteBuffer bytes = ByteBuffer.allocate(4).putInt(0, (int) length);
+		final long position = this.filePosition + this.sectionStart;
+
+		while (bytes.hasRemaining()) {
+		    this.file.write(bytes, position + bytes.position());
+		}
+	    }
+
+	    this.sectionStart = -1;
+	    this.putInt((int) this.checksum.getValue());
+	}
+
+	void putBigDecimal(final BigDecimal value) throws IOException {
+
+	    this.putInt(value == null ? 0 : value.scale());
+	    this.putBigInteger(value == null ? null : value.unscaledValue());
+	}
+
+	void putBigInteger(final BigInteger value) throws IOException {
+	    this.putBytes(value == null ? null : value.toByteArray());
+	}
+
+	void putByte(final byte value) throws IOException {
+	    this.ensure(1);
+	    this.buffer.put(value);
+	}
+
+	void putBytes(final byte[] bytes) throws IOException {
+
+	    if (bytes == null) {
+		this.putInt(ReportSnapshot.NULL_LENGTH);
+		return;
+	    }
+
+	    this.ensure(4 + bytes.length);
+	    this.buffer.putInt(bytes.length);
+	    this.buffer.put(bytes);
+	}
+
+	void putInt(final int value) throws IOException {
+	    this.ensure(4);
+	    this.buffer.putInt(value);
+	}
+
+	void putLong(final long value) throws IOException {
+	    this.ensure(8);
+	    this.buffer.putLong(value);
+	}
+
+	void putString(final String string) throws IOException {
+	    this.putBytes(string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+	}
+    }
+
+    /**
+     * Writes a section to an <code>Encoder</code>.
+     */
+    @FunctionalInterface
+    private interface SectionWriter {
+	void write(Encoder encoder) throws IOException;
+    }
+}
@@ -0,0 +1,243 @@
+package com.jpmorgan.report.model;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import com.jpmorgan.report.date.EpochDays;
+import com.jpmorgan.report.date.SettlementCalendar;
+
+/**
+ * Keeps a <code>Report</code> over a rolling window of settlement days, such
+ * as the last 30, without rebuilding it from the <code>Instructions</code>
+ * each time the window moves.
+ * <p>
+ * Each <code>Instruction</code> is aggregated into a bucket for its actual
+ * settlement day, after rolling to a business day, so adding a day's
+ * <code>Instructions</code> costs the size of that bucket. Each bucket is a
+ * <code>ReportAccumulator</code> holding the totals and the highest amount of
+ * each entity in each direction for its day. Moving the window forward drops
+ * the buckets that fall out of it whole. The window's <code>Report</code> is
+ * merged from the buckets inside the window, in day order, and kept until the
+ * window changes, so it never touches the <code>Instructions</code> and is
+ * identical to a <code>Report</code> built from the <code>Instructions</code>
+ * of the window.
+ * <p>
+ * Buckets for days after the window are kept until the window reaches them.
+ * <code>Instructions</code> for days before the window, or with no settlement
+ * date, are counted and ignored. The <code>Instructions</code> are not
+ * retained. Updates are applied one at a time, and readers call
+ * <code>getReport()</code> from any thread.
+ */
+public class RollingReport {
+
+    private static final EnumCodes<Currency> CURRENCY_CODES = EnumCodes.of(Currency.class);
+
+    /**
+     * Aggregates keyed by actual settlement epoch day.
+     */
+    private final NavigableMap<Integer, ReportAccumulator> buckets = new TreeMap<>();
+
+    private final ReportConfiguration configuration;
+
+    private long ignoredInstructionCount;
+
+    /**
+     * The last epoch day of the window.
+     */
+    private int lastDay;
+
+    /**
+     * The window's <code>Report</code>, or <code>null</code> until it is next
+     * read after a change.
+     */
+    private volatile Report report;
+
+    private final SettlementCalendar settlementCalendar;
+
+    private final int windowDays;
+
+    /**
+     * Constructs a rolling report over an empty window.
+     *
+     * @param configuration
+     *            the options used to build each bucket and
+     *            <code>Report</code>, which must not retain instructions
+     * @param windowDays
+     *            the number of settlement days in the window
+     * @param lastDay
+     *            the epoch day the window ends on
+     */
+    public RollingReport(final ReportConfiguration configuration, final int windowDays, final int lastDay) {
+
+	Objects.requireNonNull(configuration);
+
+	if (configuration.isRetainInstructions()) {
+	    throw new IllegalArgumentException("A rolling report cannot retain instructions");
+	}
+
+	if (windowDays < 1) {
+	    throw new IllegalArgumentException("windowDays must be positive: " + windowDays);
+	}
+
+	this.configuration = configuration;
+	this.settlementCalendar = configuration.getSettlementCalendar();
+	this.windowDays = windowDays;
+	this.lastDay = lastDay;
+    }
+
+    /**
+     * Adds an <code>Instruction</code> to the bucket of its actual settlement
+     * day.
+     *
+     * @param instruction
+     *            the <code>Instruction</code>
+     */
+    public synchronized void accept(final Instruction instruction) {
+
+	Objects.requireNonNull(instruction);
+
+	final int day = this.settlementDay(instruction);
+
+	if (day == EpochDays.NONE || day < this.getFirstDay()) {
+	    this.ignoredInstructionCount++;
+	    return;
+	}
+
+	this.buckets.computeIfAbsent(day, key -> new ReportAccumulator(this.configuration)).accept(instruction);
+
+	if (day <= this.lastDay) {
+	    this.report = null;
+	}
+    }
+
+    /**
+     * Adds every remaining <code>Instruction</code> of an
+     * <code>Iterator</code>.
+     *
+     * @param instructions
+     *            the <code>Instructions</code>
+     * @return this rolling report
+     */
+    public synchronized RollingReport acceptAll(final Iterator<Instruction> instructions) {
+
+	Objects.requireNonNull(instructions);
+
+	while (instructions.hasNext()) {
+	    this.accept(instructions.next());
+	}
+
+	return this;
+    }
+
+    /**
+     * Moves the window forward to end on a later day, dropping the buckets
+     * of the days that leave it.
+     *
+     * @param lastDay
+     *            the epoch day the window ends on, not before the current
+     *            one
+     * @return the number of buckets dropped
+     */
+    public synchronized int advanceTo(final int lastDay) {
+
+	if (lastDay < this.lastDay) {
+	    throw new IllegalArgumentException("The window cannot move back from " + this.lastDay + " to " + lastDay);
+	}
+
+	if (lastDay == this.lastDay) {
+	    return 0;
+	}
+
+	this.lastDay = lastDay;
+	this.report = null;
+
+	final Map<Integer, ReportAccumulator> evicted = this.buckets.headMap(this.getFirstDay(), false);
+	final int evictedCount = evicted.size();
+	evicted.clear();
+
+	return evictedCount;
+    }
+
+    /**
+     * @return the number of buckets held, including those of days after the
+     *         window
+     */
+    public synchronized int getBucketCount() {
+	return this.buckets.size();
+    }
+
+    /**
+     * @return the first epoch day of the window
+     */
+    public synchronized int getFirstDay() {
+	return this.lastDay - this.windowDays + 1;
+    }
+
+    /**
+     * @return the number of <code>Instructions</code> ignored because they
+     *         settle before the window or have no settlement date
+     */
+    public synchronized long getIgnoredInstructionCount() {
+	return this.ignoredInstructionCount;
+    }
+
+    /**
+     * @return the last epoch day of the window
+     */
+    public synchronized int getLastDay() {
+	return this.lastDay;
+    }
+
+    /**
+     * Merges the buckets of the window into a <code>Report</code>, unless it
+     * has not changed since the last call.
+     *
+     * @return the <code>Report</code> of the window
+     */
+    public Report getReport() {
+
+	final Report current = this.report;
+
+	if (current != null) {
+	    return current;
+	}
+
+	synchronized (this) {
+
+	    if (this.report == null) {
+
+		final ReportAccumulator window = new ReportAccumulator(this.configuration);
+
+		for (final ReportAccumulator bucket : this.buckets.subMap(this.getFirstDay(), true, this.lastDay, true)
+			.values()) {
+		    window.merge(bucket);
+		}
+
+		this.report = window.toReport();
+	    }
+
+	    return this.report;
+	}
+    }
+
+    /**
+     * The day an <code>Instruction</code> settles on, rolled to a business
+     * day as <code>ReportAccumulator</code> rolls it. An
+     * <code>Instruction</code> whose currency is unknown keeps its settlement
+     * date, and will be counted as invalid in that day's bucket.
+     */
+    private int settlementDay(final Instruction instruction) {
+
+	final int settlementDay = instruction.getSettlementEpochDay();
+	final Currency currency = RollingReport.CURRENCY_CODES.get(instruction.getCurrencyString());
+
+	if (settlementDay == EpochDays.NONE || currency == null) {
+	    return settlementDay;
+	}
+
+	return this.settlementCalendar.roll(currency, settlementDay);
+    }
+}
@@ -0,0 +1,274 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.jpmorgan.report.sketch.DistinctCountSketch;
+import com.jpmorgan.report.sketch.Hashes;
+import com.jpmorgan.report.sketch.HeavyHitters;
+import com.jpmorgan.report.sketch.QuantileSketch;
+
+/**
+ * Feeds the sketches of a <code>Report</code> from the valid
+ * <code>Instructions</code>, in the same pass as the other aggregates: a
+ * <code>QuantileSketch</code> of the USD amounts of each entity, a
+ * <code>DistinctCountSketch</code> of the entities of each currency, and the
+ * <code>HeavyHitters</code> by USD amount settled in either direction.
+ * <p>
+ * Sketches are held by entity id, along with the hash of each entity, so
+ * adding an amount hashes nothing. Amounts are sketched as
+ * <code>doubles</code>.
+ * <p>
+ * <code>ReportSketches</code> share the sketches rather than copying them,
+ * and the aggregator copies a sketch, or a chunk of the amount sketches,
+ * the first time it changes it after they were shared. Producing
+ * <code>ReportSketches</code> after each delta therefore costs what the
+ * delta touched, not the number of entities.
+ */
+final class SketchAggregator {
+
+    static final int CHUNK_BITS = 8;
+
+    static final int CHUNK_SIZE = 1 << SketchAggregator.CHUNK_BITS;
+
+    /**
+     * The amount sketch of each entity, by id, in chunks of
+     * <code>CHUNK_SIZE</code>; <code>null</code> for an entity with no valid
+     * <code>Instruction</code>.
+     */
+    private QuantileSketch[][] amountDistributions = new QuantileSketch[0][];
+
+    /**
+     * The epoch each amount sketch was created or copied in, by id.
+     */
+    private int[] amountDistributionEpochs = new int[SketchAggregator.CHUNK_SIZE];
+
+    /**
+     * The epoch <code>amountDistributions</code> was created or copied in.
+     */
+    private int amountDistributionsEpoch;
+
+    /**
+     * The epoch each chunk of <code>amountDistributions</code> was created or
+     * copied in.
+     */
+    private int[] chunkEpochs = new int[0];
+
+    /**
+     * The entities of each currency, indexed by ordinal.
+     */
+    private final DistinctCountSketch[] distinctEntities = new DistinctCountSketch[Currency.values().length];
+
+    /**
+     * The epoch each sketch of <code>distinctEntities</code> was created or
+     * copied in.
+     */
+    private final int[] distinctEntitiesEpochs = new int[Currency.values().length];
+
+    private final EntityDictionary entityDictionary;
+
+    /**
+     * The hash of each entity, indexed by id.
+     */
+    private long[] entityHashes = new long[SketchAggregator.CHUNK_SIZE];
+
+    /**
+     * Incremented each time the sketches are shared with
+     * <code>ReportSketches</code>: anything created or copied in an earlier
+     * epoch may be shared, and is copied before it is changed.
+     */
+    private int epoch;
+
+    /**
+     * The value of one unit of a fixed point amount.
+     */
+    private final double fixedPointUnit;
+
+    private HeavyHitters heavyHitters = new HeavyHitters();
+
+    /**
+     * The epoch <code>heavyHitters</code> was created or copied in.
+     */
+    private int heavyHittersEpoch;
+
+    /**
+     * Map where the key is an entity with an amount sketch and the value is
+     * its id. Ids never change, so the map is shared with every
+     * <code>ReportSketches</code>, which read it concurrently.
+     */
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * @param entityDictionary
+     *            the dictionary of the entity ids added
+     * @param fixedPointScale
+     *            the scale of fixed point amounts, or
+     *            <code>ReportConfiguration.NO_FIXED_POINT</code>
+     */
+    SketchAggregator(final EntityDictionary entityDictionary, final int fixedPointScale) {
+
+	this.entityDictionary = entityDictionary;
+	this.fixedPointUnit = fixedPointScale == ReportConfiguration.NO_FIXED_POINT ? 1 : Math.pow(10, -fixedPointScale);
+
+	for (int i = 0; i < this.distinctEntities.length; i++) {
+	    this.distinctEntities[i] = new DistinctCountSketch();
+	}
+    }
+
+    void add(final int entityId, final Currency currency, final BigDecimal usdAmount) {
+	this.add(entityId, currency, usdAmount.doubleValue());
+    }
+
+    /**
+     * @param fixedPointAmount
+     *            the amount at the fixed point scale
+     */
+    void add(final int entityId, final Currency currency, final long fixedPointAmount) {
+	this.add(entityId, currency, fixedPointAmount * this.fixedPointUnit);
+    }
+
+    private void add(final int entityId, final Currency currency, final double usdAmount) {
+
+	this.amountDistribution(entityId).add(usdAmount);
+
+	this.distinctEntities(currency.ordinal()).addHash(this.entityHashes[entityId]);
+	this.heavyHitters().add(this.entityDictionary.getEntity(entityId), this.entityHashes[entityId], usdAmount);
+    }
+
+    /**
+     * Gets the amount sketch of an entity to change it, creating it and
+     * hashing the entity the first time, and copying it, and its chunk, if
+     * they may be shared.
+     */
+    private QuantileSketch amountDistribution(final int entityId) {
+
+	final int chunkIndex = entityId >>> SketchAggregator.CHUNK_BITS;
+
+	if (chunkIndex >= this.amountDistributions.length) {
+	    final int length = Math.max(chunkIndex + 1, this.amountDistributions.length * 2);
+	    this.amountDistributions = Arrays.copyOf(this.amountDistributions, length);
+	    this.chunkEpochs = Arrays.copyOf(this.chunkEpochs, length);
+	    this.amountDistributionsEpoch = this.epoch;
+	}
+
+	if (entityId >= this.entityHashes.length) {
+	    final int capacity = Math.max(entityId + 1, this.entityHashes.length * 2);
+	    this.entityHashes = Arrays.copyOf(this.entityHashes, capacity);
+	    this.amountDistributionEpochs = Arrays.copyOf(this.amountDistributionEpochs, capacity);
+	}
+
+	QuantileSketch[] chunk = this.amountDistributions[chunkIndex];
+
+	if (chunk == null || this.chunkEpochs[chunkIndex] != this.epoch) {
+
+	    if (this.amountDistributionsEpoch != this.epoch) {
+		this.amountDistributions = this.amountDistributions.clone();
+		this.amountDistributionsEpoch = this.epoch;
+	    }
+
+	    chunk = chunk == null ? new QuantileSketch[SketchAggregator.CHUNK_SIZE] : chunk.clone();
+	    this.amountDistributions[chunkIndex] = chunk;
+	    this.chunkEpochs[chunkIndex] = this.epoch;
+	}
+
+	final int slot = entityId & SketchAggregator.CHUNK_SIZE - 1;
+	QuantileSketch amountDistribution = chunk[slot];
+
+	if (amountDistribution == null) {
+	    final String entity = this.entityDictionary.getEntity(entityId);
+	    amountDistribution = new QuantileSketch();
+	    this.entityHashes[entityId] = Hashes.hash(entity);
+	    this.ids.put(entity, entityId);
+	} else if (this.amountDistributionEpochs[entityId] != this.epoch) {
+	    amountDistribution = amountDistribution.copy();
+	} else {
+	    return amountDistribution;
+	}
+
+	chunk[slot] = amountDistribution;
+	this.amountDistributionEpochs[entityId] = this.epoch;
+
+	return amountDistribution;
+    }
+
+    /**
+     * Gets the sketch of the entities of a currency to change it, copying it
+     * if it may be shared.
+     */
+    private DistinctCountSketch distinctEntities(final int ordinal) {
+
+	if (this.distinctEntitiesEpochs[ordinal] != this.epoch) {
+	    this.distinctEntities[ordinal] = this.distinctEntities[ordinal].copy();
+	    this.distinctEntitiesEpochs[ordinal] = this.epoch;
+	}
+
+	return this.distinctEntities[ordinal];
+    }
+
+    /**
+     * Gets the heavy hitters to change them, copying them if they may be
+     * shared.
+     */
+    private HeavyHitters heavyHitters() {
+
+	if (this.heavyHittersEpoch != this.epoch) {
+	    this.heavyHitters = this.heavyHitters.copy();
+	    this.heavyHittersEpoch = this.epoch;
+	}
+
+	return this.heavyHitters;
+    }
+
+    /**
+     * Adds the sketches of another aggregator to this one. Ids of another
+     * dictionary are translated by name.
+     *
+     * @param other
+     *            the aggregator to merge into this one
+     */
+    void merge(final SketchAggregator other) {
+
+	final boolean sharedDictionary = other.entityDictionary == this.entityDictionary;
+
+	for (int chunkIndex = 0; chunkIndex < other.amountDistributions.length; chunkIndex++) {
+
+	    final QuantileSketch[] chunk = other.amountDistributions[chunkIndex];
+
+	    for (int slot = 0; chunk != null && slot < chunk.length; slot++) {
+
+		if (chunk[slot] == null) {
+		    continue;
+		}
+
+		final int otherId = chunkIndex << SketchAggregator.CHUNK_BITS | slot;
+		final int entityId = sharedDictionary ? otherId
+			: this.entityDictionary.getId(other.entityDictionary.getEntity(otherId));
+
+		this.amountDistribution(entityId).merge(chunk[slot]);
+	    }
+	}
+
+	for (int i = 0; i < this.distinctEntities.length; i++) {
+	    this.distinctEntities(i).merge(other.distinctEntities[i]);
+	}
+
+	this.heavyHitters().merge(other.heavyHitters);
+    }
+
+    /**
+     * Shares the sketches with a new <code>ReportSketches</code>, which later
+     * additions do not affect: whatever is changed afterwards is copied first.
+     *
+     * @return the sketches of everything added so far
+     */
+    ReportSketches toReportSketches() {
+
+	final ReportSketches sketches = new ReportSketches(this.amountDistributions, this.ids,
+		this.distinctEntities.clone(), this.heavyHitters);
+	this.epoch++;
+
+	return sketches;
+    }
+}
@@ -0,0 +1,646 @@
+package com.jpmorgan.report.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import com.jpmorgan.report.date.EpochDays;
+
+/**
+ * Builds a <code>Report</code> while holding aggregates for no more than a
+ * memory budget, for inputs whose aggregation would otherwise take most of the
+ * heap. The budget bounds what is held while <code>Instructions</code> are
+ * accepted; the <code>Report</code> itself, whose net positions hold a pair
+ * for every entity and settlement day of the input, must still fit in the
+ * heap.
+ * <p>
+ * <code>Instructions</code> are aggregated by a <code>ReportAccumulator</code>
+ * until its per-entity and per-day aggregates pass the budget. They are then
+ * spilled to a run file in a temporary directory, whose header counts its
+ * net positions so that the merge can size its arrays, with the daily totals
+ * sorted by day, the highest amounts sorted by entity and the net positions
+ * sorted by entity then day, and a new accumulator takes over.
+ * <code>toReport</code> merges the runs in a single streaming pass: daily
+ * totals and net positions are added up, the highest amount of each entity is
+ * kept, and the ranking is selected with a bounded heap when the
+ * configuration limits it. The <code>Report</code> is identical to one built
+ * in memory, including the scale of every <code>BigDecimal</code> and the tie
+ * order of the rankings.
+ * <p>
+ * <code>Instructions</code> cannot be retained, and
+ * <code>ReportSketches</code> cannot be built, since they would not fit the
+ * budget: a sketch of each entity's amounts cannot be spilled. A builder is
+ * not thread-safe and builds a single <code>Report</code>.
+ */
+public class SpillingReportBuilder {
+
+    /**
+     * The estimated heap cost of a per-entity or per-day aggregate, including
+     * its share of the entity dictionary.
+     */
+    static final int AGGREGATE_BYTES = 160;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The number of rows of a batch accepted between budget checks.
+     */
+    private static final int SLICE_SIZE = 1024;
+
+    private ReportAccumulator accumulator;
+
+    private final ReportConfiguration configuration;
+
+    private final Path directory;
+
+    private final long memoryBudget;
+
+    private boolean reported;
+
+    /**
+     * The run files spilled so far, oldest first.
+     */
+    private final List<Path> runs = new ArrayList<>();
+
+    /**
+     * Constructs a builder.
+     *
+     * @param configuration
+     *            the options used to build the <code>Report</code>, which must
+     *            neither retain <code>Instructions</code> nor build sketches
+     * @param directory
+     *            the directory for run files, which are deleted by
+     *            <code>toReport</code>
+     * @param memoryBudget
+     *            the estimated number of bytes of aggregates held before they
+     *            are spilled
+     */
+    public SpillingReportBuilder(final ReportConfiguration configuration, final Path directory,
+	    final long memoryBudget) {
+
+	Objects.requireNonNull(configuration);
+	Objects.requireNonNull(directory);
+
+	if (configuration.isRetainInstructions() && configuration.getReportPlan().includes(ReportSection.INSTRUCTIONS)) {
+	    throw new IllegalArgumentException("Instructions cannot be retained within a memory budget");
+	}
+
+	if (configuration.isSketching()) {
+	    throw new IllegalArgumentException("Sketches cannot be built within a memory budget");
+	}
+
+	if (memoryBudget < 1) {
+	    throw new IllegalArgumentException("memoryBudget must be positive: " + memoryBudget);
+	}
+
+	this.configuration = configuration;
+	this.directory = directory;
+	this.memoryBudget = memoryBudget;
+	this.accumulator = new ReportAccumulator(configuration);
+    }
+
+    /**
+     * Processes an <code>Instruction</code>, spilling the aggregates if they
+     * pass the budget.
+     *
+     * @param instruction
+     *            the <code>Instruction</code>
+     * @throws IOException
+     *             if a run file cannot be written
+     */
+    public void accept(final Instruction instruction) throws IOException {
+
+	this.checkNotReported();
+	this.accumulator.accept(instruction);
+	this.spillIfOverBudget();
+    }
+
+    /**
+     * Processes every <code>Instruction</code> of an <code>Iterator</code>.
+     *
+     * @param instructions
+     *            the <code>Instructions</code>
+     * @return this builder
+     * @throws IOException
+     *             if a run file cannot be written
+     */
+    public SpillingReportBuilder acceptAll(final Iterator<Instruction> instructions) throws IOException {
+
+	Objects.requireNonNull(instructions);
+
+	while (instructions.hasNext()) {
+	    this.accept(instructions.next());
+	}
+
+	return this;
+    }
+
+    /**
+     * Processes every row of a columnar batch.
+     *
+     * @param instructions
+     *            the <code>Instructions</code>
+     * @return this builder
+     * @throws IOException
+     *             if a run file cannot be written
+     */
+    public SpillingReportBuilder acceptAll(final InstructionBatch instructions) throws IOException {
+
+	Objects.requireNonNull(instructions);
+	this.checkNotReported();
+
+	for (int from = 0; from < instructions.size(); from += SpillingReportBuilder.SLICE_SIZE) {
+	    this.accumulator.acceptAll(instructions, from,
+		    Math.min(from + SpillingReportBuilder.SLICE_SIZE, instructions.size()));
+	    this.spillIfOverBudget();
+	}
+
+	return this;
+    }
+
+    /**
+     * @return the number of run files spilled so far
+     */
+    public int getRunCount() {
+	return this.runs.size();
+    }
+
+    /**
+     * Generates the <code>Report</code>, merging and deleting any run files.
+     * The builder cannot accept anything afterwards.
+     *
+     * @return the <code>Report</code>
+     * @throws IOException
+     *             if a run file cannot be written or read
+     */
+    public Report toReport() throws IOException {
+
+	this.checkNotReported();
+	this.reported = true;
+
+	if (this.runs.isEmpty()) {
+	    return this.accumulator.toReport();
+	}
+
+	try {
+	    this.spill();
+	    return this.merge();
+	} finally {
+	    for (final Path run : this.runs) {
+		Files.deleteIfExists(run);
+	    }
+	}
+    }
+
+    private void checkNotReported() {
+	if (this.reported) {
+	    throw new IllegalStateException("The Report has already been built");
+	}
+    }
+
+    private void spillIfOverBudget() throws IOException {
+	if (this.accumulator.getAggregateCount() * SpillingReportBuilder.AGGREGATE_BYTES > this.memoryBudget) {
+	    this.spill();
+	}
+    }
+
+    /**
+     * Writes the aggregates of the accumulator to a new run file, and replaces
+     * the accumulator with an empty one.
+     */
+    private void spill() throws IOException {
+
+	final Path run = Files.createTempFile(this.directory, "report-run", ".tmp");
+	this.runs.add(run);
+
+	try (DataOutputStream output = new DataOutputStream(
+		new BufferedOutputStream(Files.newOutputStream(run), SpillingReportBuilder.BUFFER_SIZE))) {
+
+	    final NetPositions netPositions = this.accumulator.getNetPositions();
+
+	    output.writeLong(this.accumulator.getIncomingInstructionCount());
+	    output.writeLong(this.accumulator.getOutgoingInstructionCount());
+	    output.writeInt(netPositions.size());
+
+	    final Map<InvalidReason, Long> invalidInstructionCountByReason = this.accumulator
+		    .getInvalidInstructionCountByReason();
+	    for (final InvalidReason invalidReason : InvalidReason.values()) {
+		output.writeLong(invalidInstructionCountByReason.getOrDefault(invalidReason, 0L));
+	    }
+
+	    SpillingReportBuilder.writeBigDecimal(output, this.accumulator.getTotalUSDAmountSettledIncoming());
+	    SpillingReportBuilder.writeBigDecimal(output, this.accumulator.getTotalUSDAmountSettledOutgoing());
+
+	    SpillingReportBuilder.writeTotalsPerDay(output, this.accumulator.getTotalUSDAmountSettledIncomingPerDay());
+	    SpillingReportBuilder.writeTotalsPerDay(output, this.accumulator.getTotalUSDAmountSettledOutgoingPerDay());
+
+	    SpillingReportBuilder.writeHighestUSDAmounts(output, this.accumulator.getIncomingEntityRankingList());
+	    SpillingReportBuilder.writeHighestUSDAmounts(output, this.accumulator.getOutgoingEntityRankingList());
+
+	    SpillingReportBuilder.writeNetPositions(output, netPositions);
+	}
+
+	this.accumulator = new ReportAccumulator(this.configuration);
+    }
+
+    /**
+     * Merges the run files, reading each one once from start to end.
+     */
+    private Report merge() throws IOException {
+
+	final List<DataInputStream> inputs = new ArrayList<>();
+
+	try {
+	    for (final Path run : this.runs) {
+		inputs.add(new DataInputStream(
+			new BufferedInputStream(Files.newInputStream(run), SpillingReportBuilder.BUFFER_SIZE)));
+	    }
+
+	    long incomingInstructionCount = 0;
+	    long outgoingInstructionCount = 0;
+	    long netPositionCount = 0;
+	    final long[] invalidInstructionCounts = new long[InvalidReason.values().length];
+	    BigDecimal totalUSDAmountSettledIncoming = null;
+	    BigDecimal totalUSDAmountSettledOutgoing = null;
+	    final Map<Integer, BigDecimal> incomingPerDay = new TreeMap<>();
+	    final Map<Integer, BigDecimal> outgoingPerDay = new TreeMap<>();
+
+	    for (final DataInputStream input : inputs) {
+
+		incomingInstructionCount += input.readLong();
+		outgoingInstructionCount += input.readLong();
+		netPositionCount += input.readInt();
+
+		for (int i = 0; i < invalidInstructionCounts.length; i++) {
+		    invalidInstructionCounts[i] += input.readLong();
+		}
+
+		totalUSDAmountSettledIncoming = SpillingReportBuilder.add(totalUSDAmountSettledIncoming,
+			SpillingReportBuilder.readBigDecimal(input));
+		totalUSDAmountSettledOutgoing = SpillingReportBuilder.add(totalUSDAmountSettledOutgoing,
+			SpillingReportBuilder.readBigDecimal(input));
+
+		SpillingReportBuilder.readTotalsPerDay(input, incomingPerDay);
+		SpillingReportBuilder.readTotalsPerDay(input, outgoingPerDay);
+	    }
+
+	    /*
+	     * Every run is now at its incoming highest amounts, which are
+	     * followed by its outgoing ones...
+	     */
+	    final int limit = this.configuration.getEntityRankingLimit();
+	    final List<EntityRanking> incomingEntityRankingList = SpillingReportBuilder.mergeRanking(inputs, limit);
+	    final List<EntityRanking> outgoingEntityRankingList = SpillingReportBuilder.mergeRanking(inputs, limit);
+	    final NetPositions netPositions = SpillingReportBuilder.mergeNetPositions(inputs,
+		    Math.toIntExact(netPositionCount));
+
+	    final Map<InvalidReason, Long> invalidInstructionCountByReason = new EnumMap<>(InvalidReason.class);
+	    for (final InvalidReason invalidReason : InvalidReason.values()) {
+		if (invalidInstructionCounts[invalidReason.ordinal()] > 0) {
+		    invalidInstructionCountByReason.put(invalidReason, invalidInstructionCounts[invalidReason.ordinal()]);
+		}
+	    }
+
+	    return new Report(this.configuration.getReportPlan(), Collections.emptyList(), Collections.emptyList(),
+		    incomingInstructionCount, outgoingInstructionCount, invalidInstructionCountByReason,
+		    totalUSDAmountSettledIncoming, totalUSDAmountSettledOutgoing,
+		    SpillingReportBuilder.toDateMap(incomingPerDay), SpillingReportBuilder.toDateMap(outgoingPerDay),
+		    incomingEntityRankingList, outgoingEntityRankingList, netPositions, null);
+
+	} finally {
+	    for (final InputStream input : inputs) {
+		input.close();
+	    }
+	}
+    }
+
+    /**
+     * Merges the highest amounts of every run, which are sorted by entity,
+     * keeping the amount of the earliest run when two compare as equal, as
+     * the in-memory build does. The ranking is then selected the same way as
+     * <code>EntityRankingAggregator</code> selects it.
+     */
+    private static List<EntityRanking> mergeRanking(final List<DataInputStream> inputs, final int limit)
+	    throws IOException {
+
+	final PriorityQueue<RunCursor> cursors = new PriorityQueue<>();
+
+	for (int run = 0; run < inputs.size(); run++) {
+	    final RunCursor cursor = new RunCursor(inputs.get(run), run, false);
+	    if (cursor.next()) {
+		cursors.add(cursor);
+	    }
+	}
+
+	final boolean bounded = limit != EntityRankingAggregator.UNBOUNDED;
+
+	/*
+	 * When bounded, a min-heap whose head is the weakest ranked entity...
+	 */
+	final PriorityQueue<EntityRanking> heap = new PriorityQueue<>(
+		EntityRankingAggregator.RANKING_ORDER.reversed());
+	final List<EntityRanking> entityRankingList = new ArrayList<>();
+
+	while (!cursors.isEmpty()) {
+
+	    final RunCursor first = cursors.poll();
+	    final String entity = first.entity;
+	    BigDecimal highestUSDAmount = first.amount;
+
+	    SpillingReportBuilder.advance(cursors, first);
+
+	    while (!cursors.isEmpty() && cursors.peek().entity.equals(entity)) {
+
+		final RunCursor cursor = cursors.poll();
+
+		if (cursor.amount.compareTo(highestUSDAmount) > 0) {
+		    highestUSDAmount = cursor.amount;
+		}
+
+		SpillingReportBuilder.advance(cursors, cursor);
+	    }
+
+	    final EntityRanking entityRanking = new EntityRanking();
+	    entityRanking.setEntity(entity);
+	    entityRanking.setHighestUSDAmount(highestUSDAmount);
+
+	    if (!bounded) {
+		entityRankingList.add(entityRanking);
+	    } else if (heap.size() < limit) {
+		heap.add(entityRanking);
+	    } else if (EntityRankingAggregator.RANKING_ORDER.compare(entityRanking, heap.peek()) < 0) {
+		heap.poll();
+		heap.add(entityRanking);
+	    }
+	}
+
+	entityRankingList.addAll(heap);
+	entityRankingList.sort(EntityRankingAggregator.RANKING_ORDER);
+
+	int rank = 1;
+
+	for (final EntityRanking entityRanking : entityRankingList) {
+	    entityRanking.setRank(rank);
+	    rank++;
+	}
+
+	return entityRankingList;
+    }
+
+    /**
+     * Merges the net positions of every run, which are sorted by entity then
+     * day, adding up the net amounts of each pair. The arrays are sized for
+     * the pairs of every run, which is never fewer than the merged pairs, and
+     * trimmed at the end.
+     */
+    private static NetPositions mergeNetPositions(final List<DataInputStream> inputs, final int runPairCount)
+	    throws IOException {
+
+	final PriorityQueue<RunCursor> cursors = new PriorityQueue<>();
+
+	for (int run = 0; run < inputs.size(); run++) {
+	    final RunCursor cursor = new RunCursor(inputs.get(run), run, true);
+	    if (cursor.next()) {
+		cursors.add(cursor);
+	    }
+	}
+
+	final String[] entities = new String[runPairCount];
+	final int[] epochDays = new int[runPairCount];
+	final BigDecimal[] netUSDAmounts = new BigDecimal[runPairCount];
+	int size = 0;
+
+	while (!cursors.isEmpty()) {
+
+	    final RunCursor first = cursors.poll();
+	    final String entity = first.entity;
+	    final int epochDay = first.epochDay;
+	    BigDecimal netUSDAmount = first.amount;
+
+	    SpillingReportBuilder.advance(cursors, first);
+
+	    while (!cursors.isEmpty() && cursors.peek().entity.equals(entity) && cursors.peek().epochDay == epochDay) {
+
+		final RunCursor cursor = cursors.poll();
+		netUSDAmount = netUSDAmount.add(cursor.amount);
+
+		SpillingReportBuilder.advance(cursors, cursor);
+	    }
+
+	    entities[size] = entity;
+	    epochDays[size] = epochDay;
+	    netUSDAmounts[size] = netUSDAmount;
+	    size++;
+	}
+
+	return new NetPositions(Arrays.copyOf(entities, size), Arrays.copyOf(epochDays, size),
+		Arrays.copyOf(netUSDAmounts, size));
+    }
+
+    private static void advance(final PriorityQueue<RunCursor> cursors, final RunCursor cursor) throws IOException {
+	if (cursor.next()) {
+	    cursors.add(cursor);
+	}
+    }
+
+    private static BigDecimal add(final BigDecimal total, final BigDecimal amount) {
+	return total == null ? amount : total.add(amount);
+    }
+
+    private static Map<Date, BigDecimal> toDateMap(final Map<Integer, BigDecimal> totalsPerDay) {
+
+	final Map<Date, BigDecimal> map = new TreeMap<>();
+	totalsPerDay.forEach((epochDay, total) -> map.put(EpochDays.toDate(epochDay), total));
+
+	return map;
+    }
+
+    private static void writeTotalsPerDay(final DataOutputStream output, final Map<Date, BigDecimal> totalsPerDay)
+	    throws IOException {
+
+	final Map<Integer, BigDecimal> sorted = new TreeMap<>();
+	totalsPerDay.forEach((date, amount) -> sorted.put(EpochDays.toEpochDay(date), amount));
+
+	output.writeInt(sorted.size());
+	for (final Map.Entry<Integer, BigDecimal> entry : sorted.entrySet()) {
+	    output.writeInt(entry.getKey());
+	    SpillingReportBuilder.writeBigDecimal(output, entry.getValue());
+	}
+    }
+
+    private static void readTotalsPerDay(final DataInputStream input, final Map<Integer, BigDecimal> totalsPerDay)
+	    throws IOException {
+
+	final int size = input.readInt();
+
+	for (int i = 0; i < size; i++) {
+	    final int epochDay = input.readInt();
+	    totalsPerDay.merge(epochDay, SpillingReportBuilder.readBigDecimal(input), BigDecimal::add);
+	}
+    }
+
+    /**
+     * Writes the highest amount of each entity, sorted by entity, ending with
+     * an empty entity.
+     */
+    private static void writeHighestUSDAmounts(final DataOutputStream output,
+	    final List<EntityRanking> entityRankingList) throws IOException {
+
+	final List<EntityRanking> sorted = new ArrayList<>(entityRankingList);
+	sorted.sort((a, b) -> a.getEntity().compareTo(b.getEntity()));
+
+	for (final EntityRanking entityRanking : sorted) {
+	    SpillingReportBuilder.writeString(output, entityRanking.getEntity());
+	    SpillingReportBuilder.writeBigDecimal(output, entityRanking.getHighestUSDAmount());
+	}
+
+	output.writeInt(-1);
+    }
+
+    /**
+     * Writes the net positions, which are sorted by entity then day, ending
+     * with an empty entity.
+     */
+    private static void writeNetPositions(final DataOutputStream output, final NetPositions netPositions)
+	    throws IOException {
+
+	for (int i = 0; i < netPositions.size(); i++) {
+	    SpillingReportBuilder.writeString(output, netPositions.getEntity(i));
+	    output.writeInt(netPositions.getEpochDay(i));
+	    SpillingReportBuilder.writeBigDecimal(output, netPositions.getNetUSDAmount(i));
+	}
+
+	output.writeInt(-1);
+    }
+
+    private static void writeBigDecimal(final DataOutputStream output, final BigDecimal value) throws IOException {
+
+	final byte[] unscaledValue = value.unscaledValue().toByteArray();
+
+	output.writeInt(value.scale());
+	output.writeInt(unscaledValue.length);
+	output.write(unscaledValue);
+    }
+
+    private static BigDecimal readBigDecimal(final DataInputStream input) throws IOException {
+
+	final int scale = input.readInt();
+	final byte[] unscaledValue = new byte[input.readInt()];
+	input.readFully(unscaledValue);
+
+	return new BigDecimal(new BigInteger(unscaledValue), scale);
+    }
+
+    private static void writeString(final DataOutputStream output, final String string) throws IOException {
+
+	final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+
+	output.writeInt(bytes.length);
+	output.write(bytes);
+    }
+
+    /**
+     * @return the string, or <code>null</code> at the end of a section
+     */
+    private static String readString(final DataInputStream input) throws IOException {
+
+	final int length = input.readInt();
+
+	if (length < 0) {
+	    return null;
+	}
+
+	final byte[] bytes = new byte[length];
+	input.readFully(bytes);
+
+	return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The current entry of a run during a merge, either an entity's highest
+     * amount or the net amount of an entity on a day. Cursors are ordered by
+     * entity, then by day, then by run, so that equal entries come out oldest
+     * run first.
+     */
+    private static final class RunCursor implements Comparable<RunCursor> {
+
+	/**
+	 * The highest amount of the entity, or its net amount on the day.
+	 */
+	BigDecimal amount;
+
+	String entity;
+
+	/**
+	 * The day of a net amount, or 0 for a highest amount.
+	 */
+	int epochDay;
+
+	private final DataInputStream input;
+
+	/**
+	 * <code>true</code> if the section is of net positions.
+	 */
+	private final boolean netted;
+
+	private final int run;
+
+	RunCursor(final DataInputStream input, final int run, final boolean netted) {
+	    this.input = input;
+	    this.run = run;
+	    this.netted = netted;
+	}
+
+	/**
+	 * Moves to the next entry of the run.
+	 *
+	 * @return <code>false</code> at the end of the section
+	 */
+	boolean next() throws IOException {
+
+	    this.entity = SpillingReportBuilder.readString(this.input);
+
+	    if (this.entity == null) {
+		return false;
+	    }
+
+	    if (this.netted) {
+		this.epochDay = this.input.readInt();
+	    }
+
+	    this.amount = SpillingReportBuilder.readBigDecimal(this.input);
+	    return true;
+	}
+
+	@Override
+	public int compareTo(final RunCursor other) {
+
+	    int comparison = this.entity.compareTo(other.entity);
+
+	    if (comparison == 0) {
+		comparison = Integer.compare(this.epochDay, other.epochDay);
+	    }
+
+	    return comparison != 0 ? comparison : Integer.compare(this.run, other.run);
+	}
+    }
+}
@@ -0,0 +1,141 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A running total of USD amounts that many threads may add to at once.
+ * <p>
+ * The total is split into stripes, each updated with compare and swap, so
+ * threads adding to different stripes never contend. Stripes are spaced a
+ * cache line apart so that they do not share one. As with
+ * <code>AmountTotal</code>, fixed point amounts are summed as
+ * <code>longs</code>, an amount that would overflow its stripe is added to
+ * the <code>BigDecimal</code> part instead, and the total is exactly the
+ * <code>BigDecimal</code> sum of the amounts, including its scale.
+ */
+final class StripedAmount {
+
+    /**
+     * Array slots between two stripes, enough to fill a 64 byte cache line.
+     */
+    private static final int SPACING = 8;
+
+    private final int fixedPointScale;
+
+    private final AtomicLongArray fixedPointSums;
+
+    /**
+     * The largest scale of the amounts added, which is the scale of the
+     * total.
+     */
+    private final AtomicInteger scale = new AtomicInteger();
+
+    private final AtomicReferenceArray<BigDecimal> sums;
+
+    /**
+     * @param stripes
+     *            the number of stripes
+     * @param fixedPointScale
+     *            the scale of fixed point amounts, or
+     *            <code>ReportConfiguration.NO_FIXED_POINT</code>
+     */
+    StripedAmount(final int stripes, final int fixedPointScale) {
+
+	this.fixedPointScale = fixedPointScale;
+	this.fixedPointSums = new AtomicLongArray(stripes * StripedAmount.SPACING);
+	this.sums = new AtomicReferenceArray<>(stripes * StripedAmount.SPACING);
+
+	final BigDecimal zero = new BigDecimal("0");
+	for (int stripe = 0; stripe < stripes; stripe++) {
+	    this.sums.set(stripe * StripedAmount.SPACING, zero);
+	}
+    }
+
+    /**
+     * @param stripe
+     *            the stripe of the calling thread
+     * @param amount
+     *            the amount
+     */
+    void add(final int stripe, final BigDecimal amount) {
+	this.addToSum(stripe * StripedAmount.SPACING, amount);
+	this.raiseScale(amount.scale());
+    }
+
+    /**
+     * @param stripe
+     *            the stripe of the calling thread
+     * @param fixedPointAmount
+     *            the amount at the fixed point scale
+     * @param amountScale
+     *            the scale the amount would have as a <code>BigDecimal</code>
+     */
+    void add(final int stripe, final long fixedPointAmount, final int amountScale) {
+
+	final int index = stripe * StripedAmount.SPACING;
+
+	for (;;) {
+
+	    final long sum = this.fixedPointSums.get(index);
+	    final long result = sum + fixedPointAmount;
+
+	    if (((sum ^ result) & (fixedPointAmount ^ result)) < 0) {
+		this.addToSum(index, BigDecimal.valueOf(fixedPointAmount, this.fixedPointScale));
+		break;
+	    }
+
+	    if (this.fixedPointSums.compareAndSet(index, sum, result)) {
+		break;
+	    }
+	}
+
+	this.raiseScale(amountScale);
+    }
+
+    /**
+     * Sums the stripes. The total is only exact if no thread is adding at the
+     * same time.
+     *
+     * @return the total
+     */
+    BigDecimal toBigDecimal() {
+
+	BigDecimal sum = new BigDecimal("0");
+	BigInteger fixedPointSum = BigInteger.ZERO;
+
+	for (int index = 0; index < this.sums.length(); index += StripedAmount.SPACING) {
+	    sum = sum.add(this.sums.get(index));
+	    fixedPointSum = fixedPointSum.add(BigInteger.valueOf(this.fixedPointSums.get(index)));
+	}
+
+	if (this.fixedPointScale == ReportConfiguration.NO_FIXED_POINT) {
+	    return sum;
+	}
+
+	return sum.add(new BigDecimal(fixedPointSum, this.fixedPointScale)).setScale(this.scale.get(),
+		RoundingMode.UNNECESSARY);
+    }
+
+    private void addToSum(final int index, final BigDecimal amount) {
+
+	BigDecimal sum;
+	do {
+	    sum = this.sums.get(index);
+	} while (!this.sums.compareAndSet(index, sum, sum.add(amount)));
+    }
+
+    private void raiseScale(final int amountScale) {
+
+	int current;
+	while ((current = this.scale.get()) < amountScale) {
+	    if (this.scale.compareAndSet(current, amountScale)) {
+		return;
+	    }
+	}
+    }
+}
@@ -0,0 +1,57 @@
+package com.jpmorgan.report.model;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Reads the number of bytes the current thread has allocated, on JVMs that
+ * expose it through <code>com.sun.management.ThreadMXBean</code>.
+ */
+final class ThreadAllocation {
+
+    /**
+     * The bean, or <code>null</code> if allocations are not measured.
+     */
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = ThreadAllocation.loadThreadMXBean();
+
+    private ThreadAllocation() {
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, or 0 if
+     *         allocations are not measured
+     */
+    static long allocatedBytes() {
+
+	if (ThreadAllocation.THREAD_MX_BEAN == null) {
+	    return 0;
+	}
+
+	return ThreadAllocation.THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static boolean isSupported() {
+	return ThreadAllocation.THREAD_MX_BEAN != null;
+    }
+
+    private static com.sun.management.ThreadMXBean loadThreadMXBean() {
+
+	try {
+	    final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+	    if (bean instanceof com.sun.management.ThreadMXBean) {
+
+		final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+
+		if (threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+		    return threadMXBean;
+		}
+	    }
+	} catch (final LinkageError | UnsupportedOperationException e) {
+	    /*
+	     * Not a HotSpot based JVM...
+	     */
+	}
+
+	return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.jpmorgan.report.model;
+
+/**
+ * A rule that an <code>Instruction</code> must satisfy to be valid.
+ * <p>
+ * Rules are checked before any business logic is applied, so they must only
+ * read the fields supplied with the <code>Instruction</code>. A rule must not
+ * throw for bad input; it reports it by returning a reason instead.
+ */
+@FunctionalInterface
+public interface ValidationRule {
+
+    /**
+     * Checks an <code>Instruction</code>.
+     *
+     * @param instruction
+     *            the <code>Instruction</code> to check
+     * @return <code>null</code> if the rule is satisfied, otherwise why the
+     *         <code>Instruction</code> is invalid
+     */
+    InvalidReason check(Instruction instruction);
+}
@@ -0,0 +1,77 @@
+package com.jpmorgan.report.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.jpmorgan.report.date.EpochDays;
+
+/**
+ * The built-in <code>ValidationRules</code>.
+ */
+public final class ValidationRules {
+
+    /**
+     * The buy/sell value must be B or S, ignoring case.
+     */
+    public static final ValidationRule BUY_SELL = instruction -> EnumCodes.of(BuySell.class)
+	    .get(instruction.getBuySellString()) == null ? InvalidReason.INVALID_BUY_SELL : null;
+
+    /**
+     * The currency must be a known <code>Currency</code>, ignoring case.
+     */
+    public static final ValidationRule CURRENCY = instruction -> EnumCodes.of(Currency.class)
+	    .get(instruction.getCurrencyString()) == null ? InvalidReason.INVALID_CURRENCY : null;
+
+    /**
+     * The instruction date must have been supplied and parsed.
+     */
+    public static final ValidationRule INSTRUCTION_DATE = instruction -> instruction
+	    .getInstructionEpochDay() == EpochDays.NONE ? InvalidReason.INVALID_INSTRUCTION_DATE : null;
+
+    /**
+     * The settlement date must have been supplied and parsed.
+     */
+    public static final ValidationRule SETTLEMENT_DATE = instruction -> instruction
+	    .getSettlementEpochDay() == EpochDays.NONE ? InvalidReason.INVALID_SETTLEMENT_DATE : null;
+
+    /**
+     * The units must be positive.
+     */
+    public static final ValidationRule POSITIVE_UNITS = instruction -> ValidationRules
+	    .isPositive(instruction.getUnits()) ? null : InvalidReason.INVALID_UNITS;
+
+    /**
+     * The price per unit must be positive.
+     */
+    public static final ValidationRule POSITIVE_PRICE_PER_UNIT = instruction -> ValidationRules
+	    .isPositive(instruction.getPricePerUnit()) ? null : InvalidReason.INVALID_PRICE_PER_UNIT;
+
+    /**
+     * The exchange rate must be positive.
+     */
+    public static final ValidationRule POSITIVE_EXCHANGE_RATE = instruction -> ValidationRules
+	    .isPositive(instruction.getExchangeRate()) ? null : InvalidReason.INVALID_EXCHANGE_RATE;
+
+    /**
+     * The rules of <code>InstructionValidator.DEFAULT</code>, in the order
+     * they are checked.
+     */
+    public static final List<ValidationRule> DEFAULT_RULES = Collections.unmodifiableList(
+	    Arrays.asList(ValidationRules.BUY_SELL, ValidationRules.CURRENCY, ValidationRules.INSTRUCTION_DATE,
+		    ValidationRules.SETTLEMENT_DATE, ValidationRules.POSITIVE_UNITS,
+		    ValidationRules.POSITIVE_PRICE_PER_UNIT, ValidationRules.POSITIVE_EXCHANGE_RATE));
+
+    private ValidationRules() {
+    }
+
+    private static boolean isPositive(final BigDecimal value) {
+	return value != null && value.signum() > 0;
+    }
+
+    private static boolean isPositive(final BigInteger value) {
+	return value != null && value.signum() > 0;
+    }
+}
@@ -0,0 +1,143 @@
+package com.jpmorgan.report.sketch;
+
+/**
+ * A count-min sketch, which estimates the total weight added for each key in
+ * a fixed amount of memory.
+ * <p>
+ * Each of <code>depth</code> rows of <code>width</code> counters adds a
+ * key's weight to one counter, chosen by a hash that differs per row, and
+ * the estimate of a key is the smallest of its counters. An estimate is
+ * never below the true total, and with probability
+ * <code>1 - 2^-depth</code> exceeds it by at most
+ * <code>2 / width</code> of the total weight added. Two sketches of the same
+ * dimensions merge by adding their counters.
+ * <p>
+ * A sketch is not thread-safe.
+ */
+public final class CountMinSketch {
+
+    private final double[][] counters;
+
+    private final int mask;
+
+    private double totalWeight;
+
+    /**
+     * Constructs a sketch.
+     *
+     * @param depth
+     *            the number of rows
+     * @param width
+     *            the number of counters in each row, a power of two
+     */
+    public CountMinSketch(final int depth, final int width) {
+
+	if (depth < 1) {
+	    throw new IllegalArgumentException("depth must be positive: " + depth);
+	}
+
+	if (width < 1 || Integer.bitCount(width) != 1) {
+	    throw new IllegalArgumentException("width must be a power of two: " + width);
+	}
+
+	this.counters = new double[depth][width];
+	this.mask = width - 1;
+    }
+
+    private CountMinSketch(final CountMinSketch other) {
+
+	this.counters = new double[other.counters.length][];
+	for (int row = 0; row < this.counters.length; row++) {
+	    this.counters[row] = other.counters[row].clone();
+	}
+
+	this.mask = other.mask;
+	this.totalWeight = other.totalWeight;
+    }
+
+    /**
+     * Adds weight to a key.
+     *
+     * @param hash
+     *            a 64 bit hash of the key, such as one from
+     *            <code>Hashes</code>
+     * @param weight
+     *            the weight, not negative
+     */
+    public void add(final long hash, final double weight) {
+
+	if (!(weight >= 0)) {
+	    throw new IllegalArgumentException("Cannot add weight " + weight);
+	}
+
+	for (int row = 0; row < this.counters.length; row++) {
+	    this.counters[row][this.column(hash, row)] += weight;
+	}
+
+	this.totalWeight += weight;
+    }
+
+    /**
+     * @return an independent copy of this sketch
+     */
+    public CountMinSketch copy() {
+	return new CountMinSketch(this);
+    }
+
+    /**
+     * @param hash
+     *            the hash of a key
+     * @return the estimated total weight of the key, never less than the
+     *         true total
+     */
+    public double estimate(final long hash) {
+
+	double estimate = Double.POSITIVE_INFINITY;
+
+	for (int row = 0; row < this.counters.length; row++) {
+	    estimate = Math.min(estimate, this.counters[row][this.column(hash, row)]);
+	}
+
+	return estimate;
+    }
+
+    public int getDepth() {
+	return this.counters.length;
+    }
+
+    /**
+     * @return the total weight added to every key
+     */
+    public double getTotalWeight() {
+	return this.totalWeight;
+    }
+
+    public int getWidth() {
+	return this.mask + 1;
+    }
+
+    /**
+     * Adds the counters of another sketch to this one.
+     *
+     * @param other
+     *            a sketch with the same depth and width
+     */
+    public void merge(final CountMinSketch other) {
+
+	if (other.counters.length != this.counters.length || other.mask != this.mask) {
+	    throw new IllegalArgumentException("Cannot merge sketches that differ in depth or width");
+	}
+
+	for (int row = 0; row < this.counters.length; row++) {
+	    for (int column = 0; column <= this.mask; column++) {
+		this.counters[row][column] += other.counters[row][column];
+	    }
+	}
+
+	this.totalWeight += other.totalWeight;
+    }
+
+    private int column(final long hash, final int row) {
+	return (int) Hashes.mix(hash + row * 0x9E3779B97F4A7C15L) & this.mask;
+    }
+}
@@ -0,0 +1,53 @@
+package com.jpmorgan.report.sketch;
+
+/**
+ * The 64 bit hashes the sketches are fed with. Every bit of a hash depends on
+ * every bit of its input, which both HyperLogLog registers and count-min rows
+ * rely on, and the hash of a <code>String</code> is the same in every JVM, so
+ * sketches built apart can be merged.
+ */
+public final class Hashes {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private Hashes() {
+    }
+
+    /**
+     * Hashes the characters of a <code>String</code>: FNV-1a over the UTF-16
+     * code units, finished with <code>mix</code>.
+     *
+     * @param string
+     *            the <code>String</code>
+     * @return its hash
+     */
+    public static long hash(final String string) {
+
+	long hash = Hashes.FNV_OFFSET_BASIS;
+
+	for (int i = 0; i < string.length(); i++) {
+	    hash = (hash ^ string.charAt(i)) * Hashes.FNV_PRIME;
+	}
+
+	return Hashes.mix(hash);
+    }
+
+    /**
+     * The 64 bit finalizer of MurmurHash3, which spreads each input bit over
+     * the whole result.
+     *
+     * @param value
+     *            the value to mix
+     * @return the mixed value
+     */
+    public static long mix(final long value) {
+
+	long mixed = value;
+	mixed = (mixed ^ mixed >>> 33) * 0xFF51AFD7ED558CCDL;
+	mixed = (mixed ^ mixed >>> 33) * 0xC4CEB9FE1A85EC53L;
+
+	return mixed ^ mixed >>> 33;
+    }
+}
@@ -0,0 +1,232 @@
+package com.jpmorgan.report.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the keys with the largest total weight, such as the entities that
+ * settle the most USD, in a fixed amount of memory.
+ * <p>
+ * Every weight is added to a <code>CountMinSketch</code>, and the
+ * <code>capacity</code> keys with the largest estimates so far are kept as
+ * candidates. A key whose estimate passes the smallest candidate's replaces
+ * it, so any key whose total is a large enough share of the whole is a
+ * candidate, with an estimate that overstates its total by at most the
+ * sketch's error. Two instances of the same dimensions merge by merging
+ * their sketches and keeping the best of both sets of candidates, by their
+ * merged estimates.
+ * <p>
+ * An instance is not thread-safe.
+ */
+public final class HeavyHitters {
+
+    public static final int DEFAULT_CAPACITY = 20;
+
+    public static final int DEFAULT_DEPTH = 4;
+
+    public static final int DEFAULT_WIDTH = 2048;
+
+    /**
+     * Order of the heavy hitters: largest estimate first, ties broken by key.
+     */
+    private static final Comparator<Entry> ORDER = Comparator.comparingDouble(Entry::getEstimate).reversed()
+	    .thenComparing(Entry::getKey);
+
+    /**
+     * The estimate of each candidate, as of its last update.
+     */
+    private final Map<String, Double> candidates = new HashMap<>();
+
+    private final int capacity;
+
+    /**
+     * The candidate with the smallest estimate, or <code>null</code> if it
+     * must be found again.
+     */
+    private String minimum;
+
+    private final CountMinSketch sketch;
+
+    /**
+     * Constructs an instance with the default capacity and dimensions.
+     */
+    public HeavyHitters() {
+	this(HeavyHitters.DEFAULT_CAPACITY, HeavyHitters.DEFAULT_DEPTH, HeavyHitters.DEFAULT_WIDTH);
+    }
+
+    /**
+     * Constructs an instance.
+     *
+     * @param capacity
+     *            the number of heavy hitters kept
+     * @param depth
+     *            the number of rows of the sketch
+     * @param width
+     *            the number of counters in each row of the sketch, a power
+     *            of two
+     */
+    public HeavyHitters(final int capacity, final int depth, final int width) {
+
+	if (capacity < 1) {
+	    throw new IllegalArgumentException("capacity must be positive: " + capacity);
+	}
+
+	this.capacity = capacity;
+	this.sketch = new CountMinSketch(depth, width);
+    }
+
+    private HeavyHitters(final HeavyHitters other) {
+	this.capacity = other.capacity;
+	this.sketch = other.sketch.copy();
+	this.candidates.putAll(other.candidates);
+	this.minimum = other.minimum;
+    }
+
+    /**
+     * Adds weight to a key.
+     *
+     * @param key
+     *            the key
+     * @param weight
+     *            the weight, not negative
+     */
+    public void add(final String key, final double weight) {
+	this.add(key, Hashes.hash(key), weight);
+    }
+
+    /**
+     * Adds weight to a key whose hash is already known.
+     *
+     * @param key
+     *            the key
+     * @param hash
+     *            <code>Hashes.hash(key)</code>
+     * @param weight
+     *            the weight, not negative
+     */
+    public void add(final String key, final long hash, final double weight) {
+
+	this.sketch.add(hash, weight);
+	this.offer(key, this.sketch.estimate(hash));
+    }
+
+    private void offer(final String key, final double estimate) {
+
+	if (this.candidates.containsKey(key) || this.candidates.size() < this.capacity) {
+
+	    this.candidates.put(key, estimate);
+
+	    if (key.equals(this.minimum) || this.minimum != null && estimate < this.candidates.get(this.minimum)) {
+		this.minimum = null;
+	    }
+
+	    return;
+	}
+
+	if (this.minimum == null) {
+	    for (final Map.Entry<String, Double> candidate : this.candidates.entrySet()) {
+		if (this.minimum == null || candidate.getValue() < this.candidates.get(this.minimum)) {
+		    this.minimum = candidate.getKey();
+		}
+	    }
+	}
+
+	if (estimate > this.candidates.get(this.minimum)) {
+	    this.candidates.remove(this.minimum);
+	    this.candidates.put(key, estimate);
+	    this.minimum = null;
+	}
+    }
+
+    /**
+     * @return an independent copy of this instance
+     */
+    public HeavyHitters copy() {
+	return new HeavyHitters(this);
+    }
+
+    /**
+     * @return the candidates by their current estimates, largest first
+     */
+    public List<Entry> getHeavyHitters() {
+
+	final List<Entry> entries = new ArrayList<>(this.candidates.size());
+
+	for (final String key : this.candidates.keySet()) {
+	    entries.add(new Entry(key, this.sketch.estimate(Hashes.hash(key))));
+	}
+
+	entries.sort(HeavyHitters.ORDER);
+
+	return entries;
+    }
+
+    /**
+     * @return the total weight added to every key
+     */
+    public double getTotalWeight() {
+	return this.sketch.getTotalWeight();
+    }
+
+    /**
+     * Adds the weights of another instance to this one.
+     *
+     * @param other
+     *            an instance with the same capacity and dimensions
+     */
+    public void merge(final HeavyHitters other) {
+
+	if (other.capacity != this.capacity) {
+	    throw new IllegalArgumentException("Cannot merge heavy hitters that differ in capacity");
+	}
+
+	this.sketch.merge(other.sketch);
+
+	final Set<String> keys = new HashSet<>(this.candidates.keySet());
+	keys.addAll(other.candidates.keySet());
+
+	final List<Entry> entries = new ArrayList<>(keys.size());
+	for (final String key : keys) {
+	    entries.add(new Entry(key, this.sketch.estimate(Hashes.hash(key))));
+	}
+	entries.sort(HeavyHitters.ORDER);
+
+	this.candidates.clear();
+	this.minimum = null;
+
+	for (final Entry entry : entries.subList(0, Math.min(this.capacity, entries.size()))) {
+	    this.candidates.put(entry.key, entry.estimate);
+	}
+    }
+
+    /**
+     * A heavy hitter and its estimated total weight.
+     */
+    public static final class Entry {
+
+	private final double estimate;
+
+	private final String key;
+
+	Entry(final String key, final double estimate) {
+	    this.key = key;
+	    this.estimate = estimate;
+	}
+
+	/**
+	 * @return the estimated total weight, never less than the true total
+	 */
+	public double getEstimate() {
+	    return this.estimate;
+	}
+
+	public String getKey() {
+	    return this.key;
+	}
+    }
+}
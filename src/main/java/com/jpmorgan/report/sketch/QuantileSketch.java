@@ -0,0 +1,257 @@
+package com.jpmorgan.report.sketch;
+
+/**
+ * A mergeable histogram of non-negative values, from which any quantile can
+ * be read with a bounded relative error.
+ * <p>
+ * Positive values are counted in logarithmic buckets: bucket <code>i</code>
+ * holds the values in <code>(gamma^(i-1), gamma^i]</code>, where
+ * <code>gamma = (1 + a) / (1 - a)</code> for a relative accuracy
+ * <code>a</code>, and a quantile is read as the middle of its bucket, so it
+ * is within <code>a</code> of the value at that rank. Adding a value is
+ * O(1). The buckets are a dense array over the range of indexes seen, which
+ * never holds more than <code>maxBucketCount</code> counters: beyond that,
+ * the lowest buckets are collapsed into one, so only the lowest quantiles
+ * lose accuracy. Two sketches with the same accuracy merge by adding their
+ * counts, giving the sketch of all their values.
+ * <p>
+ * A sketch is not thread-safe.
+ */
+public final class QuantileSketch {
+
+    public static final int DEFAULT_MAX_BUCKET_COUNT = 2048;
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private static final int INITIAL_BUCKET_COUNT = 32;
+
+    private long count;
+
+    /**
+     * Counts of the buckets from index <code>offset</code> up.
+     */
+    private long[] counts = new long[0];
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private final int maxBucketCount;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private int offset;
+
+    private final double relativeAccuracy;
+
+    private long zeroCount;
+
+    /**
+     * Constructs a sketch with the default accuracy and size.
+     */
+    public QuantileSketch() {
+	this(QuantileSketch.DEFAULT_RELATIVE_ACCURACY, QuantileSketch.DEFAULT_MAX_BUCKET_COUNT);
+    }
+
+    /**
+     * Constructs a sketch.
+     *
+     * @param relativeAccuracy
+     *            the largest relative error of a quantile, between 0 and 1
+     * @param maxBucketCount
+     *            the largest number of buckets held
+     */
+    public QuantileSketch(final double relativeAccuracy, final int maxBucketCount) {
+
+	if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+	    throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1: " + relativeAccuracy);
+	}
+
+	if (maxBucketCount < 2) {
+	    throw new IllegalArgumentException("maxBucketCount must be at least 2: " + maxBucketCount);
+	}
+
+	this.relativeAccuracy = relativeAccuracy;
+	this.maxBucketCount = maxBucketCount;
+	this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+	this.logGamma = Math.log(this.gamma);
+    }
+
+    private QuantileSketch(final QuantileSketch other) {
+	this.relativeAccuracy = other.relativeAccuracy;
+	this.maxBucketCount = other.maxBucketCount;
+	this.gamma = other.gamma;
+	this.logGamma = other.logGamma;
+	this.count = other.count;
+	this.counts = other.counts.clone();
+	this.max = other.max;
+	this.min = other.min;
+	this.offset = other.offset;
+	this.zeroCount = other.zeroCount;
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value
+     *            a finite value, not negative
+     */
+    public void add(final double value) {
+
+	if (!(value >= 0) || Double.isInfinite(value)) {
+	    throw new IllegalArgumentException("Cannot add " + value);
+	}
+
+	if (value < Double.MIN_NORMAL) {
+	    this.zeroCount++;
+	} else {
+	    final int slot = this.slotOf((int) Math.ceil(Math.log(value) / this.logGamma));
+	    this.counts[slot]++;
+	}
+
+	this.count++;
+	this.min = Math.min(this.min, value);
+	this.max = Math.max(this.max, value);
+    }
+
+    /**
+     * @return an independent copy of this sketch
+     */
+    public QuantileSketch copy() {
+	return new QuantileSketch(this);
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() {
+	return this.count;
+    }
+
+    /**
+     * @return the largest value added, or <code>NaN</code> if none was
+     */
+    public double getMax() {
+	return this.count == 0 ? Double.NaN : this.max;
+    }
+
+    /**
+     * @return the smallest value added, or <code>NaN</code> if none was
+     */
+    public double getMin() {
+	return this.count == 0 ? Double.NaN : this.min;
+    }
+
+    /**
+     * Estimates the value at a quantile: the value at 0-based rank
+     * <code>floor(quantile * (count - 1))</code> of the values in order.
+     *
+     * @param quantile
+     *            from 0 to 1, such as 0.99
+     * @return the estimate, or <code>NaN</code> if no value was added
+     */
+    public double getQuantile(final double quantile) {
+
+	if (!(quantile >= 0 && quantile <= 1)) {
+	    throw new IllegalArgumentException("quantile must be between 0 and 1: " + quantile);
+	}
+
+	if (this.count == 0) {
+	    return Double.NaN;
+	}
+
+	final long rank = (long) Math.floor(quantile * (this.count - 1));
+
+	if (rank < this.zeroCount) {
+	    return 0;
+	}
+
+	long seen = this.zeroCount;
+	int slot = 0;
+
+	while (seen + this.counts[slot] <= rank) {
+	    seen += this.counts[slot];
+	    slot++;
+	}
+
+	final double estimate = 2 * Math.pow(this.gamma, this.offset + slot) / (this.gamma + 1);
+
+	return Math.max(this.min, Math.min(this.max, estimate));
+    }
+
+    /**
+     * @return the largest relative error of a quantile
+     */
+    public double getRelativeAccuracy() {
+	return this.relativeAccuracy;
+    }
+
+    /**
+     * Adds the values of another sketch to this one.
+     *
+     * @param other
+     *            a sketch with the same relative accuracy
+     */
+    public void merge(final QuantileSketch other) {
+
+	if (other.gamma != this.gamma) {
+	    throw new IllegalArgumentException("Cannot merge sketches that differ in relative accuracy");
+	}
+
+	for (int slot = 0; slot < other.counts.length; slot++) {
+	    if (other.counts[slot] != 0) {
+		final int thisSlot = this.slotOf(other.offset + slot);
+		this.counts[thisSlot] += other.counts[slot];
+	    }
+	}
+
+	this.zeroCount += other.zeroCount;
+	this.count += other.count;
+	this.min = Math.min(this.min, other.min);
+	this.max = Math.max(this.max, other.max);
+    }
+
+    /**
+     * Finds the slot of a bucket index, growing the array to cover it, or
+     * collapsing the lowest buckets when it would pass the maximum size. The
+     * array may be replaced, so it must be read after the call.
+     */
+    private int slotOf(final int index) {
+
+	if (this.counts.length == 0) {
+	    this.counts = new long[Math.min(QuantileSketch.INITIAL_BUCKET_COUNT, this.maxBucketCount)];
+	    this.offset = index - this.counts.length / 2;
+	}
+
+	if (index >= this.offset && index < this.offset + this.counts.length) {
+	    return index - this.offset;
+	}
+
+	if (index < this.offset && this.counts.length == this.maxBucketCount) {
+	    return 0;
+	}
+
+	final int low = Math.min(this.offset, index);
+	final int high = Math.max(this.offset + this.counts.length - 1, index);
+	final int length = (int) Math.min(this.maxBucketCount,
+		Math.max((long) high - low + 1, 2L * this.counts.length));
+
+	/*
+	 * Growing down keeps the highest index in place, growing up keeps the
+	 * lowest, and anything below the new offset joins its first bucket...
+	 */
+	final int newOffset = index < this.offset ? high - length + 1 : Math.max(low, high - length + 1);
+	final long[] newCounts = new long[length];
+
+	for (int slot = 0; slot < this.counts.length; slot++) {
+	    newCounts[Math.max(0, this.offset + slot - newOffset)] += this.counts[slot];
+	}
+
+	this.counts = newCounts;
+	this.offset = newOffset;
+
+	return Math.max(0, index - newOffset);
+    }
+}
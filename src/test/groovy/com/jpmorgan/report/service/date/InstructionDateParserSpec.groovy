@@ -0,0 +1,44 @@
+package com.jpmorgan.report.service.date
+
+import java.time.LocalDate
+
+import com.jpmorgan.report.date.EpochDays
+import com.jpmorgan.report.date.InstructionDateParser
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for instruction date parser")
+@Subject(InstructionDateParser)
+class InstructionDateParserSpec extends Specification {
+
+    @Unroll
+    def "The date '#text' will be parsed to #expected"() {
+
+	expect: "The date is parsed to the same day as java.time"
+	InstructionDateParser.DEFAULT.parse(text) == LocalDate.parse(expected).toEpochDay()
+
+	and: "A repeated date is parsed to the same day from the cache"
+	InstructionDateParser.DEFAULT.parse(new String(text)) == LocalDate.parse(expected).toEpochDay()
+
+	where:
+	text           || expected
+	"08 Sep 2018"  || "2018-09-08"
+	"1 jan 1970"   || "1970-01-01"
+	" 29 FEB 2016" || "2016-02-29"
+	"31 Dec 1969"  || "1969-12-31"
+	"01 Mar 2400"  || "2400-03-01"
+    }
+
+    @Unroll
+    def "The text '#text' will not be parsed as a date"() {
+
+	expect: "The text is not a date"
+	InstructionDateParser.DEFAULT.parse(text) == EpochDays.NONE
+
+	where:
+	text << [null, "", "2018-09-08", "29 Feb 2018", "32 Jan 2018", "08 Sept 2018", "08 Sep 18", "008 Sep 2018"]
+    }
+}
@@ -0,0 +1,51 @@
+package com.jpmorgan.report.service.date
+
+import java.time.LocalDate
+
+import com.jpmorgan.report.date.SettlementCalendar
+import com.jpmorgan.report.model.Currency
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for settlement calendar")
+@Subject(SettlementCalendar)
+class SettlementCalendarSpec extends Specification {
+
+    @Unroll
+    def "A #currency settlement date of #date will be rolled to #expected"() {
+
+	expect: "The settlement date is rolled to the next business day of the currency"
+	LocalDate.ofEpochDay(SettlementCalendar.DEFAULT.roll(currency,
+	    (int) LocalDate.parse(date).toEpochDay())).toString() == expected
+
+	where:
+	currency     | date         || expected
+	Currency.SAR | "2018-09-06" || "2018-09-06"
+	Currency.SAR | "2018-09-07" || "2018-09-09"
+	Currency.AED | "2018-09-08" || "2018-09-09"
+	Currency.SGP | "2018-09-07" || "2018-09-07"
+	Currency.SGP | "2018-09-08" || "2018-09-10"
+	Currency.SGP | "2018-09-09" || "2018-09-10"
+	Currency.SGP | "2100-01-02" || "2100-01-04"
+	Currency.SGP | "1969-12-27" || "1969-12-29"
+    }
+
+    def "A settlement date on a holiday will be rolled past the holiday and the following weekend"() {
+
+	given: "A calendar where Friday 7 Sep 2018 and Monday 10 Sep 2018 are SGP holidays"
+	SettlementCalendar calendar = new SettlementCalendar([(Currency.SGP): [LocalDate.of(2018, 9, 7),
+		LocalDate.of(2018, 9, 10)]]);
+
+	expect: "SGP dates are rolled past the holidays"
+	!calendar.isBusinessDay(Currency.SGP, (int) LocalDate.of(2018, 9, 7).toEpochDay())
+	calendar.roll(Currency.SGP, (int) LocalDate.of(2018, 9, 7).toEpochDay()) == LocalDate.of(2018, 9, 11)
+	    .toEpochDay()
+
+	and: "Other currencies are not affected"
+	calendar.roll(Currency.AED, (int) LocalDate.of(2018, 9, 10).toEpochDay()) == LocalDate.of(2018, 9, 10)
+	    .toEpochDay()
+    }
+}
@@ -0,0 +1,91 @@
+package com.jpmorgan.report.service.io
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import com.jpmorgan.report.io.InstructionFileReader
+import com.jpmorgan.report.io.MalformedInstructionException
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.InstructionBatch
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.service.model.SampleInstructions
+import com.jpmorgan.report.service.model.SyntheticInstructions
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for instruction file reader")
+@Subject(InstructionFileReader)
+class InstructionFileReaderSpec extends Specification {
+
+    private Path file;
+
+    def setup() {
+	file = Files.createTempFile("instructions", ".csv");
+    }
+
+    def cleanup() {
+	Files.deleteIfExists(file);
+    }
+
+    def "An instruction file will be read into the same Instructions as the sample Data"() {
+
+	given: "The sample Data written to a file with a header line"
+	SyntheticInstructions.write(file, SampleInstructions.create(), true, "\r\n");
+
+	when: "The file is read"
+	List<Instruction> instructions = new InstructionFileReader(',' as char, true).readAll(file);
+
+	then: "The Instructions will match the sample Data field for field"
+	instructions.size() == 10
+	instructions*.entity == SampleInstructions.create()*.entity
+	instructions*.buySellString == SampleInstructions.create()*.buySellString
+	instructions*.currencyString == SampleInstructions.create()*.currencyString
+	instructions*.exchangeRate == SampleInstructions.create()*.exchangeRate
+	instructions*.pricePerUnit == SampleInstructions.create()*.pricePerUnit
+	instructions*.units == SampleInstructions.create()*.units
+	instructions*.settlementDate == SampleInstructions.create()*.settlementDate
+	instructions*.instructionDate == SampleInstructions.create()*.instructionDate
+
+	and: "A Report built from the file will match a Report built from the sample Data"
+	new Report(instructions).getTotalUSDAmountSettledOutgoing() == new Report(SampleInstructions.create())
+	    .getTotalUSDAmountSettledOutgoing()
+    }
+
+    def "An instruction file read into a batch will give the same Report as reading it into Instructions"() {
+
+	given: "The sample Data written to a file, with one price too wide for a long"
+	List<Instruction> sample = SampleInstructions.create();
+	sample.find { it.entity == "tim" }.setPricePerUnit(new BigDecimal("1234567890123456789.5"));
+	SyntheticInstructions.write(file, sample, false);
+
+	when: "The file is read both ways"
+	Report expected = new Report(new InstructionFileReader().readAll(file));
+	InstructionBatch batch = new InstructionFileReader().readBatch(file);
+	Report report = new ReportAccumulator().acceptAll(batch).toReport();
+
+	then: "The Reports match"
+	batch.size() == 10
+	report.getInvalidInstructionCount() == 1
+	report.getTotalUSDAmountSettledIncoming().equals(expected.getTotalUSDAmountSettledIncoming())
+	report.getTotalUSDAmountSettledOutgoing().equals(expected.getTotalUSDAmountSettledOutgoing())
+	report.getMapOfTotalUSDAmountSettledOutgoingPerDay() == expected.getMapOfTotalUSDAmountSettledOutgoingPerDay()
+	report.getOutgoingEntityRankingList()*.entity == expected.getOutgoingEntityRankingList()*.entity
+    }
+
+    def "A malformed line will be reported with its line number"() {
+
+	given: "A file whose second line has a non numeric price"
+	Files.write(file, ("foo,B,0.50,SGP,01 Jan 2016,02 Jan 2016,200,100.25\n"
+	    + "bar,S,0.50,SGP,01 Jan 2016,02 Jan 2016,200,1O0.25").getBytes("UTF-8"));
+
+	when: "The file is read"
+	new InstructionFileReader().readAll(file);
+
+	then: "The malformed line is reported"
+	MalformedInstructionException e = thrown();
+	e.lineNumber == 2
+    }
+}
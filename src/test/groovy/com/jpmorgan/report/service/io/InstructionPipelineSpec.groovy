@@ -0,0 +1,219 @@
+package com.jpmorgan.report.service.io
+
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.channels.ReadableByteChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicLong
+
+import com.jpmorgan.report.io.InstructionFileReader
+import com.jpmorgan.report.io.InstructionPipeline
+import com.jpmorgan.report.io.MalformedInstructionException
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.service.model.ReportComparison
+import com.jpmorgan.report.service.model.SyntheticInstructions
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.util.concurrent.BlockingVariable
+import spock.util.concurrent.PollingConditions
+
+@Title("Tests for instruction pipeline")
+@Subject(InstructionPipeline)
+class InstructionPipelineSpec extends Specification {
+
+    private Path directory;
+
+    def setup() {
+	directory = Files.createTempDirectory("instructions");
+    }
+
+    def cleanup() {
+	directory.toFile().deleteDir();
+    }
+
+    def "Files built through the pipeline give the same Report as reading them one after another"() {
+
+	given: "Several files with a header line, one of them empty, read in small chunks by few workers"
+	List<Path> files = (0..5).collect { int i -> writeInstructions(directory.resolve("desk" + i + ".csv"), 80L + i,
+		i == 3 ? 0 : 1500 + 400 * i) };
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(true);
+	InstructionPipeline pipeline = new InstructionPipeline(configuration,
+		{ new InstructionFileReader(',' as char, true) }, 2, 3, 2, 4096);
+
+	and: "The Report of the files read in sequence"
+	ReportAccumulator accumulator = new ReportAccumulator(configuration);
+	files.each { Path file -> new InstructionFileReader(',' as char, true).read(file, accumulator.&accept) };
+	Report expected = accumulator.toReport();
+
+	when: "The files are built through the pipeline"
+	Report report = pipeline.build(files);
+
+	then: "The Reports are identical, including the retained Instructions"
+	ReportComparison.same(report, expected)
+    }
+
+    def "A slow file does not hold back the others"() {
+
+	given: "Three files, the first of which blocks before its first byte until released"
+	List<Path> files = (0..2).collect { int i -> writeInstructions(directory.resolve("desk" + i + ".csv"), 85L + i, 1500) };
+	CountDownLatch release = new CountDownLatch(1);
+	Map<Path, CountingChannel> channels = new ConcurrentHashMap<>();
+
+	and: "A pipeline with a reader per file, whose queues hold far fewer chunks than a file"
+	ReportConfiguration configuration = new ReportConfiguration();
+	InstructionPipeline pipeline = new InstructionPipeline(configuration,
+		{ new InstructionFileReader(',' as char, true) }, 3, 2, 2, 1024) {
+	    @Override
+	    protected ReadableByteChannel open(final Path path) {
+		CountingChannel channel = new CountingChannel(FileChannel.open(path), path == files[0] ? release : null);
+		channels.put(path, channel);
+		return channel;
+	    }
+	};
+
+	and: "The Report of the files read in sequence"
+	ReportAccumulator accumulator = new ReportAccumulator(configuration);
+	files.each { Path file -> new InstructionFileReader(',' as char, true).read(file, accumulator.&accept) };
+	Report expected = accumulator.toReport();
+
+	when: "The files are built through the pipeline"
+	BlockingVariable<Report> report = new BlockingVariable<>(30);
+	Thread.start { report.set(pipeline.build(files)) };
+
+	then: "The other files are read to their end while the first is blocked, so all but a queue of their chunks were parsed"
+	new PollingConditions(timeout: 10).eventually {
+	    assert files.drop(1).every { Path file -> channels[file]?.endOfFile }
+	}
+	channels[files[0]].delivered.get() == 0
+	files.drop(1).every { Path file -> channels[file].delivered.get() == Files.size(file) }
+
+	when: "The first file is released"
+	release.countDown();
+
+	then: "The Report is the same as reading the files in sequence"
+	ReportComparison.same(report.get(), expected)
+    }
+
+    def "Bounded queues hold back the readers while the parsers are busy"() {
+
+	given: "Three files and parse workers that cannot start until released"
+	List<Path> files = (0..2).collect { int i -> writeInstructions(directory.resolve("desk" + i + ".csv"), 95L + i, 1500) };
+	CountDownLatch release = new CountDownLatch(1);
+	Map<Path, CountingChannel> channels = new ConcurrentHashMap<>();
+	int queueCapacity = 4;
+	int chunkSize = 1024;
+
+	and: "A pipeline with a reader per file"
+	ReportConfiguration configuration = new ReportConfiguration();
+	InstructionPipeline pipeline = new InstructionPipeline(configuration,
+		{ release.await(); new InstructionFileReader(',' as char, true) }, 3, 2, queueCapacity, chunkSize) {
+	    @Override
+	    protected ReadableByteChannel open(final Path path) {
+		CountingChannel channel = new CountingChannel(FileChannel.open(path), null);
+		channels.put(path, channel);
+		return channel;
+	    }
+	};
+
+	and: "The Report of the files read in sequence"
+	ReportAccumulator accumulator = new ReportAccumulator(configuration);
+	files.each { Path file -> new InstructionFileReader(',' as char, true).read(file, accumulator.&accept) };
+	Report expected = accumulator.toReport();
+
+	when: "The files are built through the pipeline, and the readers are given time to run ahead"
+	BlockingVariable<Report> report = new BlockingVariable<>(30);
+	Thread.start { report.set(pipeline.build(files)) };
+	new PollingConditions(timeout: 10).eventually {
+	    assert channels.size() == files.size()
+	}
+	Thread.sleep(1000);
+
+	then: "No more chunks were read than the chunk queue holds and a chunk waiting in each reader"
+	channels.values()*.delivered*.get().sum() <= (queueCapacity + files.size()) * chunkSize
+	files.sum { Files.size(it) } > 10 * (queueCapacity + files.size()) * chunkSize
+
+	when: "The parse workers are released"
+	release.countDown();
+
+	then: "The Report is the same as reading the files in sequence"
+	ReportComparison.same(report.get(), expected)
+    }
+
+    def "A malformed line is reported with its file and line number"() {
+
+	given: "A good file, and a file with a malformed line past its first chunk"
+	Path good = writeInstructions(directory.resolve("good.csv"), 90L, 500);
+	Path bad = writeInstructions(directory.resolve("bad.csv"), 91L, 500);
+	List<String> lines = Files.readAllLines(bad);
+	lines.set(400, lines.get(400).replace(",", ";"));
+	Files.write(bad, lines);
+	InstructionPipeline pipeline = new InstructionPipeline(new ReportConfiguration(),
+		{ new InstructionFileReader(',' as char, true) }, 2, 2, 1, 1024);
+
+	when: "The files are built through the pipeline"
+	pipeline.build([good, bad]);
+
+	then: "The malformed line is reported"
+	IOException e = thrown();
+	e.message.contains("bad.csv")
+	e.cause instanceof MalformedInstructionException
+	((MalformedInstructionException) e.cause).lineNumber == 401
+    }
+
+    private static Path writeInstructions(final Path path, final long seed, final int count) {
+	return SyntheticInstructions.write(path, SyntheticInstructions.create(seed, count, 60), true);
+    }
+
+    /**
+     * Counts the bytes read from a file, and blocks the first read until
+     * released.
+     */
+    private static class CountingChannel implements ReadableByteChannel {
+
+	final AtomicLong delivered = new AtomicLong();
+
+	volatile boolean endOfFile;
+
+	private final ReadableByteChannel channel;
+
+	private final CountDownLatch release;
+
+	CountingChannel(final ReadableByteChannel channel, final CountDownLatch release) {
+	    this.channel = channel;
+	    this.release = release;
+	}
+
+	@Override
+	int read(final ByteBuffer buffer) {
+
+	    release?.await();
+	    int count = channel.read(buffer);
+
+	    if (count < 0) {
+		endOfFile = true;
+	    } else {
+		delivered.addAndGet(count);
+	    }
+
+	    return count;
+	}
+
+	@Override
+	boolean isOpen() {
+	    return channel.isOpen();
+	}
+
+	@Override
+	void close() {
+	    channel.close();
+	}
+    }
+}
@@ -0,0 +1,182 @@
+package com.jpmorgan.report.service.io
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+
+import com.jpmorgan.report.date.SettlementCalendar
+import com.jpmorgan.report.io.ReportCache
+import com.jpmorgan.report.model.Currency
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.service.model.ReportComparison
+import com.jpmorgan.report.service.model.SyntheticInstructions
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for report cache")
+@Subject(ReportCache)
+class ReportCacheSpec extends Specification {
+
+    private Path directory;
+
+    private Path file;
+
+    def setup() {
+	directory = Files.createTempDirectory("report-cache");
+	file = writeInstructions(Files.createTempFile("instructions", ".csv"), 50L);
+    }
+
+    def cleanup() {
+	directory.toFile().deleteDir();
+	Files.deleteIfExists(file);
+    }
+
+    def "A rerun over an unchanged file loads the stored Report"() {
+
+	given: "A cache"
+	ReportCache cache = new ReportCache(directory, 1L << 20);
+
+	when: "The same file is reported twice, by two caches sharing the directory"
+	Report built = cache.getReport(file, new ReportConfiguration());
+	Report loaded = new ReportCache(directory, 1L << 20).getReport(file, new ReportConfiguration());
+
+	then: "The second Report is loaded, and is the same"
+	cache.getMissCount() == 1
+	loaded.getTotalUSDAmountSettledIncoming() == built.getTotalUSDAmountSettledIncoming()
+	loaded.getMapOfTotalUSDAmountSettledOutgoingPerDay() == built.getMapOfTotalUSDAmountSettledOutgoingPerDay()
+	loaded.getIncomingEntityRankingList()*.entity == built.getIncomingEntityRankingList()*.entity
+	loaded.getInvalidInstructionCountByReason() == built.getInvalidInstructionCountByReason()
+    }
+
+    def "An entry damaged inside a section is deleted and rebuilt"() {
+
+	given: "A cache holding the Report of the file"
+	ReportCache cache = new ReportCache(directory, 1L << 20);
+	Report built = cache.getReport(file, new ReportConfiguration());
+
+	and: "A byte flipped in the middle of the entry, well past the counts and totals"
+	Path entry = Files.list(directory).find { it.toString().endsWith(".report") };
+	byte[] bytes = Files.readAllBytes(entry);
+	bytes[bytes.length.intdiv(2)] ^= 0x10;
+	Files.write(entry, bytes);
+
+	when: "The file is reported again, and then once more"
+	Report rebuilt = cache.getReport(file, new ReportConfiguration());
+	Report loaded = cache.getReport(file, new ReportConfiguration());
+
+	then: "The damaged entry was rebuilt rather than loaded, and the new entry is loaded"
+	cache.getMissCount() == 2
+	cache.getHitCount() == 1
+	ReportComparison.same(rebuilt, built)
+	ReportComparison.same(loaded, built)
+    }
+
+    def "Entries are keyed by the file contents and the configuration"() {
+
+	given: "A cache holding the Report of the file"
+	ReportCache cache = new ReportCache(directory, 1L << 20);
+	cache.getReport(file, new ReportConfiguration());
+
+	and: "A copy of the file, and configurations with another limit and another calendar"
+	Path copy = Files.copy(file, directory.resolveSibling(file.getFileName().toString() + ".copy"));
+	ReportConfiguration limited = new ReportConfiguration();
+	limited.setEntityRankingLimit(5);
+	ReportConfiguration holidays = new ReportConfiguration();
+	holidays.setSettlementCalendar(new SettlementCalendar([(Currency.SGP): [java.time.LocalDate.of(2018, 9, 10)]]));
+
+	when: "They are reported"
+	cache.getReport(copy, new ReportConfiguration());
+	Report limitedReport = cache.getReport(file, limited);
+	cache.getReport(file, holidays);
+
+	and: "The file is changed and reported again"
+	writeInstructions(file, 51L);
+	cache.getReport(file, new ReportConfiguration());
+
+	then: "Only the copy hits"
+	cache.getHitCount() == 1
+	cache.getMissCount() == 4
+	limitedReport.getIncomingEntityRankingList().size() == 5
+
+	cleanup:
+	Files.deleteIfExists(copy)
+    }
+
+    def "The least recently used entries are evicted to stay under the size limit"() {
+
+	given: "Three files and a cache with room for about two of their Reports"
+	List<Path> files = [file, writeInstructions(Files.createTempFile("instructions", ".csv"), 60L),
+	    writeInstructions(Files.createTempFile("instructions", ".csv"), 70L)];
+	ReportCache probe = new ReportCache(Files.createTempDirectory("report-cache"), 1L << 20);
+	probe.getReport(file, new ReportConfiguration());
+	long entrySize = entrySizes(probe)[0];
+	ReportCache cache = new ReportCache(directory, (long) (entrySize * 2.5));
+
+	when: "The first two are stored, the first is used again and the third is stored"
+	cache.getReport(files[0], new ReportConfiguration());
+	age(directory, 20000L);
+	cache.getReport(files[1], new ReportConfiguration());
+	age(directory, 10000L);
+	cache.getReport(files[0], new ReportConfiguration());
+	cache.getReport(files[2], new ReportConfiguration());
+
+	then: "The second was evicted, and the entries fit"
+	cache.getHitCount() == 1
+	entrySizes(cache).size() == 2
+	entrySizes(cache).sum() <= entrySize * 2.5
+
+	when: "The first and third are reported again, then the second"
+	[0, 2, 1].each { cache.getReport(files[it], new ReportConfiguration()) };
+
+	then: "Only the second is built again"
+	cache.getHitCount() == 3
+	cache.getMissCount() == 4
+
+	cleanup:
+	files.drop(1).each { Files.deleteIfExists(it) }
+    }
+
+    def "Caches in many threads share a directory safely"() {
+
+	given: "The expected Report"
+	Report expected = new ReportCache(Files.createTempDirectory("report-cache"), 1L << 20)
+		.getReport(file, new ReportConfiguration());
+
+	when: "Threads with their own caches report the file at the same time"
+	List<Report> reports = Collections.synchronizedList([]);
+	List<Thread> threads = (0..<8).collect {
+	    Thread.start {
+		ReportCache cache = new ReportCache(directory, 1L << 20);
+		5.times { reports.add(cache.getReport(file, new ReportConfiguration())) };
+	    }
+	};
+	threads*.join();
+
+	then: "Every Report is complete and one entry was stored"
+	reports.size() == 40
+	reports.every { it.getTotalUSDAmountSettledOutgoing() == expected.getTotalUSDAmountSettledOutgoing() }
+	Files.list(directory).findAll { it.toString().endsWith(".report") }.size() == 1
+    }
+
+    private static Path writeInstructions(final Path path, final long seed) {
+	return SyntheticInstructions.write(path, SyntheticInstructions.create(seed, 2000, 50), false);
+    }
+
+    private static List<Long> entrySizes(final ReportCache cache) {
+	Path directory = cache.@directory;
+	return Files.list(directory).findAll { it.toString().endsWith(".report") }.collect { Files.size(it) };
+    }
+
+    /**
+     * Moves the last use of every entry back, so that the order of uses does
+     * not depend on the resolution of file times.
+     */
+    private static void age(final Path directory, final long millis) {
+	Files.list(directory).findAll { it.toString().endsWith(".report") }.each {
+	    Files.setLastModifiedTime(it, FileTime.fromMillis(Files.getLastModifiedTime(it).toMillis() - millis))
+	};
+    }
+}
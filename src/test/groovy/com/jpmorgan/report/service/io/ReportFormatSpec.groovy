@@ -0,0 +1,100 @@
+package com.jpmorgan.report.service.io
+
+import java.nio.channels.Channels
+import java.time.LocalDate
+
+import com.jpmorgan.report.io.ReportFormat
+import com.jpmorgan.report.io.ReportWriter
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportPlan
+import com.jpmorgan.report.model.ReportSection
+import com.jpmorgan.report.service.model.SyntheticInstructions
+
+import groovy.json.JsonSlurper
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for report formats")
+@Subject(ReportFormat)
+class ReportFormatSpec extends Specification {
+
+    def "Numbers, dates and strings are written as their standard forms"() {
+
+	given: "Amounts of every sign and scale, days from 1600 to 2400, and awkward names"
+	List<BigDecimal> amounts = ["0", "-0.001", "12.5000", "1E+3", "-9223372036854775808", "9223372036854775807.99",
+	    "123456789012345678901234567890.5", "0.000000012"].collect { new BigDecimal(it) };
+	List<Integer> days = (-134774..156000).step(97);
+	List<String> names = ["plain", "a,b", "say \"hi\"", "tab\there", "café 😀"];
+
+	when: "They are written"
+	String decimals = render { ReportWriter writer -> amounts.each { writer.writeDecimal(it).newLine() } };
+	String dates = render { ReportWriter writer -> days.each { writer.writeDate(it).newLine() } };
+	String csv = render { ReportWriter writer -> names.each { writer.writeCsvField(it).newLine() } };
+	String json = render { ReportWriter writer -> writer.write('['); names.each { writer.writeJsonString(it).write(',') }; writer.write('0]') };
+
+	then: "Each equals the standard form"
+	decimals.readLines() == amounts*.toPlainString()
+	dates.readLines() == days.collect { LocalDate.ofEpochDay(it).toString() }
+	csv.readLines() == ["plain", "\"a,b\"", "\"say \"\"hi\"\"\"", "tab\there", "café 😀"]
+	new JsonSlurper().parseText(json) == names + [0]
+    }
+
+    def "The JSON of a Report holds every planned section"() {
+
+	given: "A Report"
+	Report report = new Report(SyntheticInstructions.create(90L, 2000, 60));
+
+	when: "It is rendered as JSON and parsed"
+	String text = render { ReportWriter writer -> ReportFormat.JSON.render(report, writer) };
+	Map json = new JsonSlurper().parseText(text);
+
+	then: "The counts, totals, days, rankings and Instructions are those of the Report"
+	json.validInstructionCount == report.getValidInstructionCount()
+	json.invalidInstructionCountByReason == report.getInvalidInstructionCountByReason().collectEntries { k, v -> [k.name(), v] }
+	(json.incoming.total as BigDecimal) == report.getTotalUSDAmountSettledIncoming()
+	json.outgoing.dailyTotals*.date == report.getMapOfTotalUSDAmountSettledOutgoingPerDay().keySet().collect {
+	    it.toInstant().atZone(TimeZone.getDefault().toZoneId()).toLocalDate().toString()
+	}
+	json.incoming.ranking*.entity == report.getIncomingEntityRankingList()*.entity
+	json.outgoing.ranking*.rank == report.getOutgoingEntityRankingList()*.rank
+
+	and: "Every amount is written exactly, which the slurper cannot check for integers beyond a long"
+	report.getOutgoingEntityRankingList().every { text.contains("\"highestUSDAmount\":" + it.highestUSDAmount.toPlainString() + "}") }
+	json.incoming.instructions.size() == report.getIncomingInstructions().size()
+    }
+
+    @Unroll
+    def "The #format of a Report is the same every time and leaves out unplanned sections"() {
+
+	given: "Two Reports of the same Instructions, planned without rankings"
+	ReportPlan plan = ReportPlan.of(ReportSection.TOTALS, ReportSection.DAILY_TOTALS);
+	Report first = new Report(SyntheticInstructions.create(91L, 2000, 60), plan);
+	Report second = new Report(SyntheticInstructions.create(91L, 2000, 60), plan);
+
+	when: "Both are rendered"
+	String a = render { ReportWriter writer -> format.render(first, writer) };
+	String b = render { ReportWriter writer -> format.render(second, writer) };
+
+	then: "The output is identical, and has daily totals but no rankings"
+	a == b
+	a.contains(LocalDate.ofEpochDay(first.getIncomingDailyTotals().getEpochDay(0)).toString())
+	!a.contains(ranking)
+
+	where:
+	format             | ranking
+	ReportFormat.TEXT  | "Ranking of entities"
+	ReportFormat.CSV   | "ranking,"
+	ReportFormat.JSON  | "\"ranking\""
+    }
+
+    private static String render(final Closure closure) {
+
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	ReportWriter writer = new ReportWriter(Channels.newChannel(out));
+	closure.call(writer);
+	writer.flush();
+	return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,74 @@
+package com.jpmorgan.report.service.model
+
+import java.time.LocalDate
+
+import com.jpmorgan.report.date.EpochDays
+import com.jpmorgan.report.model.DailyTotals
+import com.jpmorgan.report.model.Report
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for daily totals")
+@Subject(DailyTotals)
+class DailyTotalsSpec extends Specification {
+
+    def "Every range total equals the sum of the daily totals in the range"() {
+
+	given: "The incoming daily totals of a Report"
+	Report report = new Report(SyntheticInstructions.create(60L, 3000, 100));
+	DailyTotals totals = report.getIncomingDailyTotals();
+	Map<Date, BigDecimal> map = report.getMapOfTotalUSDAmountSettledIncomingPerDay();
+	LocalDate first = LocalDate.of(2018, 8, 25);
+
+	expect: "Each range from late August to mid October matches a brute force sum"
+	(0..<50).every { int from ->
+	    (from..<50).every { int to ->
+		LocalDate start = first.plusDays(from);
+		LocalDate end = first.plusDays(to);
+		BigDecimal expected = map.findAll { Date day, BigDecimal total ->
+		    int epochDay = EpochDays.toEpochDay(day);
+		    epochDay >= start.toEpochDay() && epochDay <= end.toEpochDay()
+		}.values().inject(BigDecimal.ZERO) { a, b -> a + b };
+		totals.getTotalBetween(start, end).compareTo(expected) == 0
+	    }
+	}
+
+	and: "The whole range is the direction total"
+	totals.getTotalBetween(Integer.MIN_VALUE, Integer.MAX_VALUE).compareTo(report.getTotalUSDAmountSettledIncoming()) == 0
+    }
+
+    def "Days are iterated in date order"() {
+
+	given: "The outgoing daily totals of a Report"
+	Report report = new Report(SyntheticInstructions.create(61L, 3000, 100));
+	DailyTotals totals = report.getOutgoingDailyTotals();
+	List<LocalDate> days = [];
+	totals.forEach { LocalDate day, BigDecimal total -> days.add(day) };
+
+	expect: "The days are sorted, and so is the per day Map"
+	days.size() == totals.size()
+	days == days.sort(false)
+	days.first() == totals.getFirstDay()
+	days.last() == totals.getLastDay()
+	report.getMapOfTotalUSDAmountSettledOutgoingPerDay().keySet().toList() == report
+		.getMapOfTotalUSDAmountSettledOutgoingPerDay().keySet().sort(false)
+
+	and: "Each day's total can be looked up"
+	days.every { totals.getTotalOn(it) == report.getMapOfTotalUSDAmountSettledOutgoingPerDay()[EpochDays.toDate(it.toEpochDay())] }
+	totals.getTotalOn(LocalDate.of(2000, 1, 1)) == null
+    }
+
+    def "A direction without instructions has no days"() {
+
+	given: "The daily totals of an empty Report"
+	DailyTotals totals = new Report([]).getIncomingDailyTotals();
+
+	expect: "There are no days and every range is zero"
+	totals.size() == 0
+	totals.getFirstDay() == null
+	totals.getLastDay() == null
+	totals.getTotalBetween(LocalDate.of(2018, 1, 1), LocalDate.of(2019, 1, 1)) == BigDecimal.ZERO
+    }
+}
@@ -0,0 +1,125 @@
+package com.jpmorgan.report.service.model
+
+import java.util.concurrent.ForkJoinPool
+
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.ParallelReportBuilder
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+
+import spock.lang.Specification
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests that fixed point amounts give the same Report as BigDecimal amounts")
+class FixedPointSpec extends Specification {
+
+    @Unroll
+    def "A Report built with fixed point scale #scale is identical to a BigDecimal Report for seed #seed"() {
+
+	given: "A BigDecimal report over synthetic Instructions"
+	Report expected = new Report(SyntheticInstructions.create(seed, 20000, 300));
+
+	when: "The same Instructions are reported on in fixed point mode"
+	Report report = new ReportAccumulator(configuration(scale))
+		.acceptAll(SyntheticInstructions.create(seed, 20000, 300).iterator()).toReport();
+
+	then: "The Reports are identical, including the scale of every amount"
+	sameAmounts(report, expected)
+
+	and: "The retained Instructions have the same USD amounts"
+	report.getValidInstructions()*.USDAmount.equals(expected.getValidInstructions()*.USDAmount)
+
+	where:
+	seed | scale
+	1L   | 6
+	2L   | 8
+	3L   | 12
+	4L   | 18
+	5L   | 0
+    }
+
+    def "Totals that do not fit in a long are identical to a BigDecimal Report"() {
+
+	given: "Instructions whose USD amounts add up to more than a long can hold at the scale"
+	List<Instruction> instructions = large();
+
+	when: "They are reported on with and without fixed point mode"
+	Report expected = new Report(instructions);
+	Report report = new ReportAccumulator(configuration(3)).acceptAll(large().iterator()).toReport();
+
+	then: "The Reports are identical"
+	expected.getTotalUSDAmountSettledIncoming().unscaledValue() > Long.MAX_VALUE
+	sameAmounts(report, expected)
+    }
+
+    def "A fixed point Report built in parallel is identical to a BigDecimal Report"() {
+
+	given: "A BigDecimal report over synthetic Instructions"
+	Report expected = new Report(SyntheticInstructions.create(42L, 20000, 300));
+
+	and: "A parallel fixed point builder"
+	ForkJoinPool pool = new ForkJoinPool(4);
+	ParallelReportBuilder builder = new ParallelReportBuilder(configuration(8), pool, 500);
+
+	when: "The same Instructions are reported on in parallel"
+	Report report = builder.build(SyntheticInstructions.create(42L, 20000, 300));
+
+	then: "The Reports are identical"
+	sameAmounts(report, expected)
+
+	cleanup:
+	pool.shutdown()
+    }
+
+    def "An unsupported fixed point scale is rejected"() {
+
+	when: "The scale is larger than a long can hold"
+	configuration(19);
+
+	then: "It is rejected"
+	thrown(IllegalArgumentException)
+    }
+
+    private static ReportConfiguration configuration(final int scale) {
+
+	final ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(true);
+	configuration.setFixedPointScale(scale);
+
+	return configuration;
+    }
+
+    private static List<Instruction> large() {
+
+	final List<Instruction> instructions = new ArrayList<>();
+
+	for (int i = 0; i < 50; i++) {
+
+	    final Instruction instruction = new Instruction();
+	    instruction.setEntity("entity" + i % 7);
+	    instruction.setBuySellString("S");
+	    instruction.setCurrencyString("SGP");
+	    instruction.setExchangeRate(new BigDecimal("1.00"));
+	    instruction.setInstructionDate("03 Sep 2018");
+	    instruction.setSettlementDate("04 Sep 2018");
+	    instruction.setUnits(BigInteger.valueOf(1000));
+	    instruction.setPricePerUnit(new BigDecimal("900000000000.5"));
+	    instructions.add(instruction);
+	}
+
+	return instructions;
+    }
+
+    private static boolean sameAmounts(final Report report, final Report expected) {
+	return report.getTotalUSDAmountSettledIncoming().equals(expected.getTotalUSDAmountSettledIncoming()) &&
+		report.getTotalUSDAmountSettledOutgoing().equals(expected.getTotalUSDAmountSettledOutgoing()) &&
+		report.getMapOfTotalUSDAmountSettledIncomingPerDay().equals(expected.getMapOfTotalUSDAmountSettledIncomingPerDay()) &&
+		report.getMapOfTotalUSDAmountSettledOutgoingPerDay().equals(expected.getMapOfTotalUSDAmountSettledOutgoingPerDay()) &&
+		report.getIncomingEntityRankingList()*.entity == expected.getIncomingEntityRankingList()*.entity &&
+		report.getIncomingEntityRankingList()*.highestUSDAmount.equals(expected.getIncomingEntityRankingList()*.highestUSDAmount) &&
+		report.getOutgoingEntityRankingList()*.entity == expected.getOutgoingEntityRankingList()*.entity &&
+		report.getOutgoingEntityRankingList()*.highestUSDAmount.equals(expected.getOutgoingEntityRankingList()*.highestUSDAmount);
+    }
+}
@@ -0,0 +1,108 @@
+package com.jpmorgan.report.service.model
+
+import java.util.concurrent.ForkJoinPool
+
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.InstructionBatch
+import com.jpmorgan.report.model.InvalidReason
+import com.jpmorgan.report.model.ParallelReportBuilder
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for columnar instruction batch")
+@Subject(InstructionBatch)
+class InstructionBatchSpec extends Specification {
+
+    def "A row of a batch reads back as the Instruction it was added from"() {
+
+	given: "A batch of the sample Data, including one with an unknown currency and one with a wide price"
+	List<Instruction> instructions = SampleInstructions.create();
+	instructions[1].setPricePerUnit(new BigDecimal("12345678901234567890.123"));
+	InstructionBatch batch = new InstructionBatch();
+	instructions.each { batch.add(it) };
+
+	when: "The rows are turned back into Instructions"
+	List<Instruction> rows = (0..<batch.size()).collect { batch.toInstruction(it) };
+
+	then: "Every field is the same"
+	rows*.entity == instructions*.entity
+	rows*.buySellString == instructions*.buySellString
+	rows*.currencyString == instructions*.currencyString
+	rows*.exchangeRate.equals(instructions*.exchangeRate)
+	rows*.pricePerUnit.equals(instructions*.pricePerUnit)
+	rows*.units == instructions*.units
+	rows*.instructionEpochDay == instructions*.instructionEpochDay
+	rows*.settlementEpochDay == instructions*.settlementEpochDay
+
+	and: "Entities are encoded once each"
+	batch.getEntityDictionary().size() == instructions*.entity.unique().size()
+    }
+
+    @Unroll
+    def "An Instruction without #field is added to a batch and rejected as #reason"() {
+
+	given: "The sample Data, the first of which has no #field"
+	List<Instruction> instructions = SampleInstructions.create();
+	instructions[0]."$field" = null;
+	InstructionBatch batch = new InstructionBatch();
+	instructions.each { batch.add(it) };
+
+	when: "The batch is aggregated"
+	Report report = new ReportAccumulator().acceptAll(batch).toReport();
+
+	then: "The row reads back without it"
+	batch.toInstruction(0)."$field" == null
+
+	and: "It is rejected for it, as it is when built from the Instructions"
+	report.getInvalidInstructionCountByReason()[reason] == 1
+	report.getInvalidInstructionCountByReason() == new Report(instructions).getInvalidInstructionCountByReason()
+
+	where:
+	field          | reason
+	"units"        | InvalidReason.INVALID_UNITS
+	"pricePerUnit" | InvalidReason.INVALID_PRICE_PER_UNIT
+	"exchangeRate" | InvalidReason.INVALID_EXCHANGE_RATE
+    }
+
+    @Unroll
+    def "A Report aggregated over a batch is identical to one built from Instructions with fixed point scale #scale"() {
+
+	given: "A Report built from synthetic Instructions"
+	Report expected = new Report(SyntheticInstructions.create(7L, 20000, 300));
+
+	and: "The same Instructions in a batch"
+	InstructionBatch batch = new InstructionBatch();
+	SyntheticInstructions.create(7L, 20000, 300).each { batch.add(it) };
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setFixedPointScale(scale);
+
+	when: "The batch is aggregated sequentially and in parallel"
+	Report report = new ReportAccumulator(configuration).acceptAll(batch).toReport();
+	ForkJoinPool pool = new ForkJoinPool(4);
+	Report parallel = new ParallelReportBuilder(configuration, pool, 1000).build(batch);
+
+	then: "The Reports are identical"
+	[report, parallel].every { Report x ->
+	    x.getValidInstructionCount() == expected.getValidInstructionCount() &&
+		    x.getInvalidInstructionCountByReason() == expected.getInvalidInstructionCountByReason() &&
+		    x.getTotalUSDAmountSettledIncoming().equals(expected.getTotalUSDAmountSettledIncoming()) &&
+		    x.getTotalUSDAmountSettledOutgoing().equals(expected.getTotalUSDAmountSettledOutgoing()) &&
+		    x.getMapOfTotalUSDAmountSettledIncomingPerDay().equals(expected.getMapOfTotalUSDAmountSettledIncomingPerDay()) &&
+		    x.getMapOfTotalUSDAmountSettledOutgoingPerDay().equals(expected.getMapOfTotalUSDAmountSettledOutgoingPerDay()) &&
+		    x.getIncomingEntityRankingList()*.entity == expected.getIncomingEntityRankingList()*.entity &&
+		    x.getOutgoingEntityRankingList()*.highestUSDAmount.equals(expected.getOutgoingEntityRankingList()*.highestUSDAmount)
+	}
+
+	cleanup:
+	pool.shutdown()
+
+	where:
+	scale << [ReportConfiguration.NO_FIXED_POINT, 10]
+    }
+}
@@ -0,0 +1,100 @@
+package com.jpmorgan.report.service.model
+
+import com.jpmorgan.report.model.BuySell
+import com.jpmorgan.report.model.Currency
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.InstructionBatch
+import com.jpmorgan.report.model.InstructionValidator
+import com.jpmorgan.report.model.InvalidReason
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.model.ValidationRule
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for instruction validator")
+@Subject(InstructionValidator)
+class InstructionValidatorSpec extends Specification {
+
+    @Unroll
+    def "An Instruction with #field of #value is rejected with #reason"() {
+
+	given: "A valid Instruction with one field changed"
+	Instruction instruction = SampleInstructions.create()[1];
+	instruction."$field" = value;
+
+	and: "A columnar batch holding the Instruction"
+	InstructionBatch batch = new InstructionBatch();
+	batch.add(instruction);
+
+	expect: "The default validator gives the reason"
+	InstructionValidator.DEFAULT.validate(instruction) == reason
+
+	and: "The batch is rejected in the same way"
+	new ReportAccumulator().acceptAll(batch).toReport().getInvalidInstructionCountByReason() == [(reason): 1L]
+
+	where:
+	field              | value                  | reason
+	"buySellString"    | "X"                    | InvalidReason.INVALID_BUY_SELL
+	"currencyString"   | "GB"                   | InvalidReason.INVALID_CURRENCY
+	"currencyString"   | "SG1"                  | InvalidReason.INVALID_CURRENCY
+	"instructionDate"  | "31 Feb 2016"          | InvalidReason.INVALID_INSTRUCTION_DATE
+	"settlementDate"   | "next week"            | InvalidReason.INVALID_SETTLEMENT_DATE
+	"units"            | BigInteger.ZERO        | InvalidReason.INVALID_UNITS
+	"pricePerUnit"     | new BigDecimal("-1.5") | InvalidReason.INVALID_PRICE_PER_UNIT
+	"exchangeRate"     | new BigDecimal("0.00") | InvalidReason.INVALID_EXCHANGE_RATE
+    }
+
+    def "A missing amount is rejected instead of failing the Report"() {
+
+	given: "An Instruction without a price"
+	Instruction instruction = SampleInstructions.create()[1];
+	instruction.setPricePerUnit(null);
+
+	when: "It is accepted"
+	Report report = new ReportAccumulator().acceptAll([instruction].iterator()).toReport();
+
+	then: "It is rejected"
+	report.getInvalidInstructionCountByReason() == [(InvalidReason.INVALID_PRICE_PER_UNIT): 1L]
+    }
+
+    def "Codes are resolved ignoring case and surrounding white space"() {
+
+	given: "A Report"
+	Report report = new Report(SampleInstructions.create());
+
+	expect: "Codes resolve as Enum.valueOf would after trimming and upper casing"
+	report.getEnumFromString(Currency, " sgp\t") == Currency.SGP
+	report.getEnumFromString(Currency, "sAr") == Currency.SAR
+	report.getEnumFromString(BuySell, "s") == BuySell.S
+	report.getEnumFromString(BuySell, "") == null
+	report.getEnumFromString(BuySell, "BS") == null
+	report.getEnumFromString(Currency, "SGPX") == null
+	report.getEnumFromString(Currency, "SÉP") == null
+	report.getEnumFromString(Currency, null) == null
+    }
+
+    def "A rule added to the validator is checked after the default rules"() {
+
+	given: "A validator that also rejects the entity foo"
+	ValidationRule notFoo = { Instruction x -> x.entity == "foo" ? InvalidReason.REJECTED_BY_RULE : null } as ValidationRule;
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setValidator(InstructionValidator.DEFAULT.and(notFoo));
+
+	when: "Reports are built from Instructions and from a batch"
+	Report report = new ReportAccumulator(configuration).acceptAll(SampleInstructions.create().iterator())
+		.toReport();
+	InstructionBatch batch = new InstructionBatch();
+	SampleInstructions.create().each { batch.add(it) };
+	Report batchReport = new ReportAccumulator(configuration).acceptAll(batch).toReport();
+
+	then: "The Instructions of foo are rejected by the rule"
+	report.getInvalidInstructionCountByReason() == [(InvalidReason.INVALID_CURRENCY): 1L, (InvalidReason.REJECTED_BY_RULE): 2L]
+	batchReport.getInvalidInstructionCountByReason() == report.getInvalidInstructionCountByReason()
+	!report.getIncomingEntityRankingList()*.entity.contains("foo")
+    }
+}
@@ -0,0 +1,100 @@
+package com.jpmorgan.report.service.model
+
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.IntradayReport
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for intraday report")
+@Subject(IntradayReport)
+class IntradayReportSpec extends Specification {
+
+    @Unroll
+    def "Every snapshot matches a Report rebuilt from the Instructions so far with limit #limit and scale #scale"() {
+
+	given: "An intraday report"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setEntityRankingLimit(limit);
+	configuration.setFixedPointScale(scale);
+	IntradayReport intradayReport = new IntradayReport(configuration);
+	List<Instruction> instructions = SyntheticInstructions.create(11L, 6000, 200);
+
+	expect: "Each delta gives the same Report as a rebuild"
+	instructions.collate(1000).every { List<Instruction> delta ->
+	    Report report = intradayReport.apply(delta);
+	    int count = report.getValidInstructionCount() + report.getInvalidInstructionCount();
+	    Report expected = new ReportAccumulator(configuration)
+		    .acceptAll(SyntheticInstructions.create(11L, 6000, 200).subList(0, count).iterator()).toReport();
+	    ReportComparison.same(report, expected) && intradayReport.getReport().is(report)
+	}
+
+	where:
+	limit | scale
+	0     | ReportConfiguration.NO_FIXED_POINT
+	10    | ReportConfiguration.NO_FIXED_POINT
+	10    | 10
+    }
+
+    def "Readers always see a consistent snapshot while deltas are applied"() {
+
+	given: "An intraday report and a reader that checks every snapshot it sees"
+	IntradayReport intradayReport = new IntradayReport();
+	AtomicBoolean done = new AtomicBoolean();
+	AtomicInteger inconsistent = new AtomicInteger();
+	Thread reader = Thread.start {
+	    while (!done.get()) {
+		Report report = intradayReport.getReport();
+		long count = report.getValidInstructionCount() + report.getInvalidInstructionCount();
+		BigDecimal perDay = report.getMapOfTotalUSDAmountSettledIncomingPerDay().values()
+			.inject(BigDecimal.ZERO) { a, b -> a + b };
+		if (count % 500 != 0 || perDay.compareTo(report.getTotalUSDAmountSettledIncoming()) != 0) {
+		    inconsistent.incrementAndGet();
+		}
+	    }
+	};
+
+	when: "Deltas are applied"
+	SyntheticInstructions.create(12L, 20000, 300).collate(500).each { intradayReport.apply(it) };
+	done.set(true);
+	reader.join();
+
+	then: "No snapshot was partly updated"
+	inconsistent.get() == 0
+	intradayReport.getReport().getValidInstructionCount() + intradayReport.getReport().getInvalidInstructionCount() == 20000
+    }
+
+    def "An intraday report cannot retain Instructions"() {
+
+	given: "A configuration that retains Instructions"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(true);
+
+	when: "An intraday report is constructed"
+	new IntradayReport(configuration);
+
+	then: "It is rejected"
+	thrown(IllegalArgumentException)
+    }
+
+    def "Snapshots leave out net positions"() {
+
+	given: "An intraday report of the default plan, and a delta applied"
+	IntradayReport intradayReport = new IntradayReport();
+	intradayReport.apply(SyntheticInstructions.create(13L, 100, 10));
+
+	when: "The net positions of the snapshot are read"
+	intradayReport.getReport().getNetPositions();
+
+	then: "They were not planned"
+	thrown(IllegalStateException)
+    }
+}
@@ -0,0 +1,187 @@
+package com.jpmorgan.report.service.model
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.LiveReport
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for live report")
+@Subject(LiveReport)
+class LiveReportSpec extends Specification {
+
+    @Unroll
+    def "#threads producers give the same Report as a single accumulator with limit #limit and scale #scale"() {
+
+	given: "A live report and the Instructions of each producer"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setEntityRankingLimit(limit);
+	configuration.setFixedPointScale(scale);
+	LiveReport liveReport = new LiveReport(configuration, 4);
+	List<List<Instruction>> produced = (0..<threads).collect { SyntheticInstructions.create(20L + it, 5000, 300) };
+
+	and: "The Report built from all of them by one accumulator"
+	ReportAccumulator accumulator = new ReportAccumulator(configuration);
+	(0..<threads).each { accumulator.acceptAll(SyntheticInstructions.create(20L + it, 5000, 300).iterator()) };
+	Report expected = accumulator.toReport();
+
+	when: "The producers add their Instructions at the same time"
+	run(produced) { Instruction instruction -> liveReport.accept(instruction) };
+	Report report = liveReport.snapshot();
+
+	then: "Nothing was lost"
+	ReportComparison.same(report, expected)
+
+	where:
+	threads | limit | scale
+	1       | 0     | ReportConfiguration.NO_FIXED_POINT
+	8       | 0     | ReportConfiguration.NO_FIXED_POINT
+	8       | 10    | ReportConfiguration.NO_FIXED_POINT
+	8       | 0     | 10
+	8       | 10    | 3
+    }
+
+    @Unroll
+    def "Snapshots taken between batches add up every earlier batch with limit #limit and scale #scale"() {
+
+	given: "A live report and Instructions split into batches"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setEntityRankingLimit(limit);
+	configuration.setFixedPointScale(scale);
+	LiveReport liveReport = new LiveReport(configuration, 4);
+	List<Instruction> instructions = SyntheticInstructions.create(40L, 6000, 200);
+	List<List<Instruction>> batches = instructions.collate(1000);
+
+	and: "The Report of each prefix of the batches, built by one accumulator"
+	List<Report> expected = (1..batches.size()).collect { int count ->
+	    ReportAccumulator accumulator = new ReportAccumulator(configuration);
+	    accumulator.acceptAll(SyntheticInstructions.create(40L, 6000, 200).take(count * 1000).iterator());
+	    accumulator.toReport()
+	};
+
+	when: "A snapshot is taken after each batch"
+	List<Report> reports = batches.collect { List<Instruction> batch ->
+	    liveReport.acceptAll(batch);
+	    liveReport.snapshot()
+	};
+
+	then: "Each snapshot is the Report of every batch so far"
+	(0..<batches.size()).every { int i -> ReportComparison.same(reports[i], expected[i]) }
+
+	where:
+	limit | scale
+	0     | ReportConfiguration.NO_FIXED_POINT
+	10    | ReportConfiguration.NO_FIXED_POINT
+	0     | 10
+	10    | 3
+    }
+
+    def "Snapshots taken under contention never see a partly added Instruction"() {
+
+	given: "A live report, producers that add the same amount to one entity on one day and a reader"
+	LiveReport liveReport = new LiveReport(new ReportConfiguration(), 8);
+	List<List<Instruction>> produced = (0..<8).collect { producer ->
+	    (0..<5000).collect { hundredUSD("entity" + producer) }
+	};
+	AtomicBoolean done = new AtomicBoolean();
+	AtomicInteger snapshots = new AtomicInteger();
+	AtomicInteger inconsistent = new AtomicInteger();
+	Thread reader = Thread.start {
+	    while (!done.get()) {
+		Report report = liveReport.snapshot();
+		BigDecimal expectedTotal = 100.0 * report.getIncomingInstructionCount();
+		BigDecimal perDay = report.getMapOfTotalUSDAmountSettledIncomingPerDay().values()
+			.inject(BigDecimal.ZERO) { a, b -> a + b };
+		if (report.getTotalUSDAmountSettledIncoming().compareTo(expectedTotal) != 0
+		|| perDay.compareTo(expectedTotal) != 0) {
+		    inconsistent.incrementAndGet();
+		}
+		snapshots.incrementAndGet();
+	    }
+	};
+
+	when: "The producers add their Instructions"
+	run(produced) { Instruction instruction -> liveReport.accept(instruction) };
+	done.set(true);
+	reader.join();
+
+	then: "Every snapshot was consistent and the last one counts every Instruction"
+	snapshots.get() > 0
+	inconsistent.get() == 0
+	liveReport.snapshot().getIncomingInstructionCount() == 40000
+	liveReport.snapshot().getIncomingEntityRankingList().size() == 8
+    }
+
+    def "The same Instructions give the same Report whether 1, 2, 4 or 8 producer threads add them"() {
+
+	given: "The Instructions of 8 producers"
+	List<List<Instruction>> produced = (0..<8).collect { SyntheticInstructions.create(30L + it, 20000, 1000) };
+
+	when: "The same Instructions are added by 1, 2, 4 and 8 producers"
+	Map<Integer, Report> reports = [:];
+	[1, 2, 4, 8].each { int threads ->
+	    LiveReport liveReport = new LiveReport();
+	    List<List<Instruction>> shares = produced.flatten().collate(produced.flatten().size().intdiv(threads) as int);
+	    run(shares) { Instruction instruction -> liveReport.accept(instruction) };
+	    reports[threads] = liveReport.snapshot();
+	};
+
+	then: "Every run gives the same Report"
+	reports.values().every { ReportComparison.same(it, reports[1]) }
+	reports[1].getValidInstructionCount() + reports[1].getInvalidInstructionCount() == 160000
+    }
+
+    def "A live report cannot retain Instructions"() {
+
+	given: "A configuration that retains Instructions"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(true);
+
+	when: "A live report is constructed"
+	new LiveReport(configuration);
+
+	then: "It is rejected"
+	thrown(IllegalArgumentException)
+    }
+
+    private static Instruction hundredUSD(final String entity) {
+
+	final Instruction instruction = new Instruction();
+	instruction.setEntity(entity);
+	instruction.setBuySellString("S");
+	instruction.setCurrencyString("SGP");
+	instruction.setExchangeRate(new BigDecimal("2.0"));
+	instruction.setInstructionDate("01 Jan 2016");
+	instruction.setSettlementDate("04 Jan 2016");
+	instruction.setUnits(BigInteger.valueOf(100));
+	instruction.setPricePerUnit(new BigDecimal("0.5"));
+	return instruction;
+    }
+
+    /**
+     * Starts one thread per List, releases them together and waits for all of
+     * them.
+     */
+    private static void run(final List<List<Instruction>> produced, final Closure accept) {
+
+	CountDownLatch start = new CountDownLatch(1);
+	List<Thread> producers = produced.collect { List<Instruction> instructions ->
+	    Thread.start {
+		start.await();
+		instructions.each(accept);
+	    }
+	};
+
+	start.countDown();
+	producers*.join();
+    }
+}
@@ -0,0 +1,123 @@
+package com.jpmorgan.report.service.model
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.time.LocalDate
+import java.util.concurrent.ForkJoinPool
+
+import com.jpmorgan.report.model.BuySell
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.NetPositions
+import com.jpmorgan.report.model.ParallelReportBuilder
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.model.ReportSnapshot
+import com.jpmorgan.report.model.SpillingReportBuilder
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for net positions")
+@Subject(NetPositions)
+class NetPositionsSpec extends Specification {
+
+    def "Each net amount is the incoming amounts less the outgoing amounts of its entity and day"() {
+
+	given: "A Report over synthetic Instructions"
+	Report report = new Report(SyntheticInstructions.create(70L, 20000, 300));
+	NetPositions net = report.getNetPositions();
+
+	and: "The net amounts worked out from the retained Instructions"
+	Map<List<Object>, BigDecimal> expected = [:];
+	report.getValidInstructions().each { Instruction x ->
+	    List<Object> key = [x.entity, x.acutalSettlementEpochDay];
+	    BigDecimal sum = expected.get(key, new BigDecimal("0"));
+	    expected[key] = x.buySell == BuySell.S ? sum.add(x.USDAmount) : sum.subtract(x.USDAmount);
+	};
+
+	expect: "The pairs are in entity then day order, with identical amounts"
+	net.size() == expected.size()
+	(0..<net.size()).collect { [net.getEntity(it), net.getEpochDay(it)] } == expected.keySet().sort { a, b ->
+	    a[0] <=> b[0] ?: a[1] <=> b[1]
+	}
+	(0..<net.size()).every { net.getNetUSDAmount(it).equals(expected[[net.getEntity(it), net.getEpochDay(it)]]) }
+
+	and: "A pair can be looked up, and a missing pair is null"
+	(0..<net.size()).every {
+	    net.getNetUSDAmountOn(net.getEntity(it), LocalDate.ofEpochDay(net.getEpochDay(it))).is(net.getNetUSDAmount(it))
+	}
+	net.getNetUSDAmountOn("entity0", LocalDate.of(2000, 1, 1)) == null
+    }
+
+    @Unroll
+    def "Net positions built #how are identical to those built in memory"() {
+
+	given: "The net positions of an in-memory Report"
+	NetPositions expected = new Report(SyntheticInstructions.create(71L, 20000, 300)).getNetPositions();
+
+	when: "The same Instructions are reported on another way"
+	NetPositions net = build(SyntheticInstructions.create(71L, 20000, 300)).getNetPositions();
+
+	then: "Every pair and amount is identical, including its scale"
+	net.size() == expected.size()
+	(0..<net.size()).every {
+	    net.getEntity(it) == expected.getEntity(it) && net.getEpochDay(it) == expected.getEpochDay(it) &&
+		    net.getNetUSDAmount(it).equals(expected.getNetUSDAmount(it))
+	}
+
+	where:
+	how                | build
+	"in fixed point"   | { List<Instruction> x -> new ReportAccumulator(fixedPoint()).acceptAll(x.iterator()).toReport() }
+	"in parallel"      | { List<Instruction> x -> parallel(x) }
+	"by spilling runs" | { List<Instruction> x -> spilled(x) }
+	"from a snapshot"  | { List<Instruction> x -> snapshot(new Report(x)) }
+    }
+
+    private static ReportConfiguration fixedPoint() {
+
+	final ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setFixedPointScale(8);
+
+	return configuration;
+    }
+
+    private static Report parallel(final List<Instruction> instructions) {
+
+	ForkJoinPool pool = new ForkJoinPool(4);
+
+	try {
+	    return new ParallelReportBuilder(fixedPoint(), pool, 500).build(instructions);
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    private static Report spilled(final List<Instruction> instructions) {
+
+	Path directory = Files.createTempDirectory("net-positions");
+	SpillingReportBuilder builder = new SpillingReportBuilder(new ReportConfiguration(), directory, 400000L);
+
+	try {
+	    Report report = builder.acceptAll(instructions.iterator()).toReport();
+	    assert builder.getRunCount() > 1;
+	    return report;
+	} finally {
+	    Files.delete(directory);
+	}
+    }
+
+    private static Report snapshot(final Report report) {
+
+	Path path = Files.createTempFile("net-positions", ".snapshot");
+
+	try {
+	    ReportSnapshot.write(report, path);
+	    return ReportSnapshot.read(path);
+	} finally {
+	    Files.delete(path);
+	}
+    }
+}
@@ -0,0 +1,47 @@
+package com.jpmorgan.report.service.model
+
+import java.util.concurrent.ForkJoinPool
+
+import com.jpmorgan.report.model.ParallelReportBuilder
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for parallel report builder")
+@Subject(ParallelReportBuilder)
+class ParallelReportBuilderSpec extends Specification {
+
+    def "A Report built in parallel will be identical to a Report built sequentially"() {
+
+	given: "A sequential report over synthetic Instructions"
+	Report expected = new Report(SyntheticInstructions.create(42L, 20000, 300));
+
+	and: "A parallel builder that splits the Instructions into many small chunks"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(true);
+	ForkJoinPool pool = new ForkJoinPool(4);
+	ParallelReportBuilder builder = new ParallelReportBuilder(configuration, pool, 500);
+
+	when: "The same Instructions are reported on in parallel"
+	Report report = builder.build(SyntheticInstructions.create(42L, 20000, 300));
+
+	then: "The Reports are identical, including the scale of every amount and the order of the Instructions"
+	ReportComparison.same(report, expected)
+
+	cleanup:
+	pool.shutdown()
+    }
+
+    def "Merging accumulators that differ in retaining Instructions is rejected"() {
+
+	when: "A retaining accumulator is merged with one that is not"
+	new ReportAccumulator(true).merge(new ReportAccumulator(false));
+
+	then: "The merge is rejected"
+	thrown(IllegalArgumentException)
+    }
+}
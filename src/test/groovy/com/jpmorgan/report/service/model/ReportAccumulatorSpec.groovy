@@ -0,0 +1,104 @@
+package com.jpmorgan.report.service.model
+
+import com.jpmorgan.report.model.EntityDictionary
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.InstructionBatch
+import com.jpmorgan.report.model.InvalidReason
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for report accumulator")
+@Subject(ReportAccumulator)
+class ReportAccumulatorSpec extends Specification {
+
+    def "A Report built by streaming Instructions will contain the same aggregates as a Report built from a List"() {
+
+	given: "A report built from a List of Instructions"
+	Report expected = new Report(SampleInstructions.create());
+
+	when: "A report is built by accepting the Instructions one at a time"
+	ReportAccumulator accumulator = new ReportAccumulator();
+	SampleInstructions.create().each { accumulator.accept(it) };
+	Report report = accumulator.toReport();
+
+	then: "The report will contain the same aggregates"
+	report.getValidInstructionCount() == expected.getValidInstructionCount()
+	report.getIncomingInstructionCount() == expected.getIncomingInstructionCount()
+	report.getOutgoingInstructionCount() == expected.getOutgoingInstructionCount()
+	report.getInvalidInstructionCount() == 1
+	report.getTotalUSDAmountSettledIncoming() == expected.getTotalUSDAmountSettledIncoming()
+	report.getTotalUSDAmountSettledOutgoing() == expected.getTotalUSDAmountSettledOutgoing()
+	report.getMapOfTotalUSDAmountSettledIncomingPerDay() == expected.getMapOfTotalUSDAmountSettledIncomingPerDay()
+	report.getMapOfTotalUSDAmountSettledOutgoingPerDay() == expected.getMapOfTotalUSDAmountSettledOutgoingPerDay()
+	report.getIncomingEntityRankingList()*.entity == expected.getIncomingEntityRankingList()*.entity
+	report.getOutgoingEntityRankingList()*.highestUSDAmount == expected.getOutgoingEntityRankingList()*.highestUSDAmount
+    }
+
+    def "A Report built by streaming Instructions will not retain the Instructions unless asked to"() {
+
+	when: "A report is built from a Stream without retaining the Instructions"
+	Report report = new ReportAccumulator().acceptAll(SampleInstructions.create().stream()).toReport();
+
+	then: "The report will not contain any Instructions"
+	report.getValidInstructionCount() == 9
+	report.getValidInstructions().isEmpty()
+	report.getIncomingInstructions().isEmpty()
+	report.getInvalidInstructions().isEmpty()
+
+	when: "A report is built from an Iterator retaining the Instructions"
+	report = new ReportAccumulator(true).acceptAll(SampleInstructions.create().iterator()).toReport();
+
+	then: "The report will contain the Instructions"
+	report.getValidInstructions().size() == 9
+	report.getIncomingInstructions().size() == 5
+	report.getOutgoingInstructions().size() == 4
+	report.getInvalidInstructions().size() == 1
+    }
+
+    def "An Instruction with an unparseable date will be rejected with a reason"() {
+
+	given: "The sample Data with an unparseable settlement date on the first Instruction"
+	List<Instruction> instructions = SampleInstructions.create();
+	instructions.get(0).setSettlementDate("31 Feb 2018");
+
+	when: "A report is built"
+	Report report = new ReportAccumulator(true).acceptAll(instructions.iterator()).toReport();
+
+	then: "The Instruction is rejected with a reason rather than a null date"
+	report.getInvalidInstructionCount() == 2
+	report.getInvalidInstructionCountByReason() == [(InvalidReason.INVALID_CURRENCY): 1L,
+	    (InvalidReason.INVALID_SETTLEMENT_DATE): 1L]
+	instructions.get(0).invalidReason == InvalidReason.INVALID_SETTLEMENT_DATE
+	instructions.get(0).settlementDate == null
+    }
+
+    def "Entities are ranked the same whichever dictionary their batch ids come from"() {
+
+	given: "Synthetic Instructions split into batches with their own dictionaries, and one with a shared dictionary"
+	List<Instruction> instructions = SyntheticInstructions.create(80L, 6000, 150);
+	Report expected = new Report(SyntheticInstructions.create(80L, 6000, 150), 20);
+	EntityDictionary shared = new EntityDictionary();
+	List<InstructionBatch> batches = instructions.collate(1000).withIndex().collect { List<Instruction> chunk, int i ->
+	    InstructionBatch batch = i == 2 ? new InstructionBatch(shared, 16) : new InstructionBatch();
+	    chunk.each { batch.add(it) };
+	    batch
+	};
+
+	when: "The batches are accepted by one accumulator, and by accumulators that are merged"
+	ReportAccumulator single = new ReportAccumulator(false, 20);
+	batches.each { single.acceptAll(it) };
+	ReportAccumulator merged = batches.collect { new ReportAccumulator(false, 20).acceptAll(it) }
+		.inject { ReportAccumulator a, ReportAccumulator b -> a.merge(b) };
+
+	then: "The top 20 entities of both directions are those of a Report built from the Instructions"
+	[single.toReport(), merged.toReport()].every { Report report ->
+	    report.getIncomingEntityRankingList()*.entity == expected.getIncomingEntityRankingList()*.entity &&
+		    report.getOutgoingEntityRankingList()*.entity == expected.getOutgoingEntityRankingList()*.entity &&
+		    report.getOutgoingEntityRankingList()*.highestUSDAmount == expected.getOutgoingEntityRankingList()*.highestUSDAmount
+	}
+    }
+}
@@ -0,0 +1,85 @@
+package com.jpmorgan.report.service.model
+
+import com.jpmorgan.report.model.EntityRanking
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.NetPositions
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportSection
+
+/**
+ * Compares two <code>Reports</code> for the specifications that build one
+ * in two ways. Every section planned in the <code>Report</code> under test is
+ * compared, so the expected one must plan it too; amounts are compared with
+ * <code>equals</code>, so their scales must match. A difference fails the
+ * assertion that found it.
+ */
+class ReportComparison {
+
+    static boolean same(final Report report, final Report expected) {
+
+	assert report.getInvalidInstructionCountByReason() == expected.getInvalidInstructionCountByReason();
+	assert report.getInvalidInstructionCount() == expected.getInvalidInstructionCount();
+	assert report.getIncomingInstructionCount() == expected.getIncomingInstructionCount();
+	assert report.getOutgoingInstructionCount() == expected.getOutgoingInstructionCount();
+
+	if (report.getPlan().includes(ReportSection.TOTALS)) {
+	    assert report.getTotalUSDAmountSettledIncoming().equals(expected.getTotalUSDAmountSettledIncoming());
+	    assert report.getTotalUSDAmountSettledOutgoing().equals(expected.getTotalUSDAmountSettledOutgoing());
+	}
+
+	if (report.getPlan().includes(ReportSection.DAILY_TOTALS)) {
+	    assert report.getMapOfTotalUSDAmountSettledIncomingPerDay().equals(expected.getMapOfTotalUSDAmountSettledIncomingPerDay());
+	    assert report.getMapOfTotalUSDAmountSettledOutgoingPerDay().equals(expected.getMapOfTotalUSDAmountSettledOutgoingPerDay());
+	}
+
+	if (report.getPlan().includes(ReportSection.INCOMING_RANKING)) {
+	    assert sameRankings(report.getIncomingEntityRankingList(), expected.getIncomingEntityRankingList());
+	}
+
+	if (report.getPlan().includes(ReportSection.OUTGOING_RANKING)) {
+	    assert sameRankings(report.getOutgoingEntityRankingList(), expected.getOutgoingEntityRankingList());
+	}
+
+	if (report.getPlan().includes(ReportSection.INSTRUCTIONS)) {
+	    assert sameInstructions(report.getValidInstructions(), expected.getValidInstructions());
+	    assert sameInstructions(report.getInvalidInstructions(), expected.getInvalidInstructions());
+	    assert sameInstructions(report.getIncomingInstructions(), expected.getIncomingInstructions());
+	    assert sameInstructions(report.getOutgoingInstructions(), expected.getOutgoingInstructions());
+	}
+
+	if (report.getPlan().includes(ReportSection.NET_POSITIONS)) {
+	    assert sameNetPositions(report.getNetPositions(), expected.getNetPositions());
+	}
+
+	return true;
+    }
+
+    private static boolean sameInstruction(final Instruction a, final Instruction b) {
+	return a.getEntity() == b.getEntity() && a.getBuySellString() == b.getBuySellString() &&
+		a.getCurrencyString() == b.getCurrencyString() && a.getBuySell() == b.getBuySell() &&
+		a.getCurrency() == b.getCurrency() && a.getInvalidReason() == b.getInvalidReason() &&
+		a.getInstructionEpochDay() == b.getInstructionEpochDay() &&
+		a.getSettlementEpochDay() == b.getSettlementEpochDay() &&
+		a.getAcutalSettlementEpochDay() == b.getAcutalSettlementEpochDay() &&
+		a.getUnits() == b.getUnits() && Objects.equals(a.getPricePerUnit(), b.getPricePerUnit()) &&
+		Objects.equals(a.getExchangeRate(), b.getExchangeRate()) &&
+		Objects.equals(a.getUSDAmount(), b.getUSDAmount());
+    }
+
+    private static boolean sameInstructions(final List<Instruction> instructions, final List<Instruction> expected) {
+	return instructions.size() == expected.size() &&
+		[instructions, expected].transpose().every { Instruction a, Instruction b -> sameInstruction(a, b) };
+    }
+
+    private static boolean sameNetPositions(final NetPositions netPositions, final NetPositions expected) {
+	return netPositions.size() == expected.size() && (0..<netPositions.size()).every {
+	    netPositions.getEntity(it) == expected.getEntity(it) && netPositions.getEpochDay(it) == expected.getEpochDay(it) &&
+		    netPositions.getNetUSDAmount(it).equals(expected.getNetUSDAmount(it))
+	};
+    }
+
+    private static boolean sameRankings(final List<EntityRanking> rankings, final List<EntityRanking> expected) {
+	return rankings*.entity == expected*.entity && rankings*.rank == expected*.rank &&
+		rankings*.highestUSDAmount.equals(expected*.highestUSDAmount);
+    }
+}
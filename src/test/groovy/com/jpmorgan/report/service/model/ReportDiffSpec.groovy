@@ -0,0 +1,92 @@
+package com.jpmorgan.report.service.model
+
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.InvalidReason
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportDiff
+import com.jpmorgan.report.model.ReportDiff.RankingChange
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for report diff")
+@Subject(ReportDiff)
+class ReportDiffSpec extends Specification {
+
+    def "A Report does not differ from a rerun of its Instructions"() {
+
+	when: "A Report is compared with one built again from the same Instructions"
+	ReportDiff diff = ReportDiff.between(new Report(SyntheticInstructions.create(80L, 20000, 300)),
+		new Report(SyntheticInstructions.create(80L, 20000, 300)));
+
+	then: "There are no changes"
+	diff.isEmpty()
+    }
+
+    def "The changes between two Reports account for every difference"() {
+
+	given: "Yesterday's Instructions, and today's which drop some and add others"
+	List<Instruction> yesterday = SyntheticInstructions.create(81L, 20000, 300);
+	List<Instruction> today = SyntheticInstructions.create(81L, 20000, 300).drop(2000) +
+		SyntheticInstructions.create(82L, 3000, 320);
+
+	and: "Their Reports"
+	Report before = new Report(yesterday);
+	Report after = new Report(today);
+
+	when: "They are compared"
+	ReportDiff diff = ReportDiff.between(before, after);
+
+	then: "The day changes are in date order, and add up to the change in each total"
+	diff.getIncomingDayChanges()*.epochDay == diff.getIncomingDayChanges()*.epochDay.sort(false)
+	diff.getIncomingDayChanges()*.delta.sum().compareTo(
+		after.getTotalUSDAmountSettledIncoming() - before.getTotalUSDAmountSettledIncoming()) == 0
+	diff.getOutgoingDayChanges()*.delta.sum().compareTo(
+		after.getTotalUSDAmountSettledOutgoing() - before.getTotalUSDAmountSettledOutgoing()) == 0
+
+	and: "Each ranking change matches the two EntityRanking Lists"
+	sameRankings(diff.getIncomingRankingChanges(), before.getIncomingEntityRankingList(),
+		after.getIncomingEntityRankingList())
+	sameRankings(diff.getOutgoingRankingChanges(), before.getOutgoingEntityRankingList(),
+		after.getOutgoingEntityRankingList())
+	diff.getIncomingRankingChanges()*.kind.contains(RankingChange.Kind.ENTERED)
+
+	and: "The invalid Instructions added and removed match the counts"
+	diff.getAddedInvalidInstructions().size() - diff.getRemovedInvalidInstructions().size() ==
+		diff.getInvalidInstructionCountChanges().values().sum(0L)
+	diff.getAddedInvalidInstructions().every { it.invalidReason == InvalidReason.INVALID_CURRENCY }
+	diff.getRemovedInvalidInstructions().size() == yesterday.take(2000).count { it.invalidReason != null }
+    }
+
+    def "Sections that are not retained are not compared"() {
+
+	when: "Reports that did not retain Instructions are compared"
+	ReportDiff diff = ReportDiff.between(
+		new ReportAccumulator().acceptAll(SyntheticInstructions.create(83L, 2000, 50).iterator()).toReport(),
+		new ReportAccumulator().acceptAll(SyntheticInstructions.create(84L, 2000, 50).iterator()).toReport());
+
+	then: "The invalid counts differ, but no invalid Instructions are listed"
+	!diff.isEmpty()
+	diff.getAddedInvalidInstructions().isEmpty()
+	diff.getRemovedInvalidInstructions().isEmpty()
+    }
+
+    /**
+     * Checks the ranking changes against a brute force comparison by entity.
+     */
+    private static boolean sameRankings(final List<RankingChange> changes, final List before, final List after) {
+
+	Map<String, Object> from = before.collectEntries { [it.entity, it] };
+	Map<String, Object> to = after.collectEntries { [it.entity, it] };
+	Set<String> changed = (from.keySet() + to.keySet()).findAll {
+	    from[it]?.rank != to[it]?.rank || from[it]?.highestUSDAmount != to[it]?.highestUSDAmount
+	} as Set;
+
+	assert changes*.entity == changed.sort();
+	assert changes.every { it.beforeRank == from[it.entity]?.rank && it.afterRank == to[it.entity]?.rank };
+
+	return true;
+    }
+}
@@ -0,0 +1,126 @@
+package com.jpmorgan.report.service.model
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import com.jpmorgan.report.model.InvalidReason
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.model.ReportMetrics
+import com.jpmorgan.report.model.ReportPhase
+
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for report metrics")
+@Subject(ReportMetrics)
+class ReportMetricsSpec extends Specification {
+
+    def "Building a Report with metrics enabled records every phase and the instruction counts"() {
+
+	given: "A configuration with metrics"
+	ReportMetrics metrics = new ReportMetrics();
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setMetrics(metrics);
+
+	when: "A Report is built from the sample Data"
+	Report report = new ReportAccumulator(configuration).acceptAll(SampleInstructions.create().iterator())
+		.toReport();
+
+	then: "The counts match the Report"
+	metrics.getInstructionCount() == 10
+	metrics.getInvalidInstructionCount() == report.getInvalidInstructionCount()
+	metrics.getInvalidInstructionCountByReason() == [(InvalidReason.INVALID_CURRENCY): 1L]
+	metrics.getReportCount() == 1
+
+	and: "Time is recorded for every phase"
+	ReportPhase.values().every { metrics.getPhaseNanos(it) > 0 }
+
+	and: "Allocations are recorded where the JVM measures them"
+	metrics.getAllocatedBytes() > 0 || metrics.getAllocatedBytes() == ReportMetrics.UNSUPPORTED
+    }
+
+    @Requires({ ReportMetricsSpec.buildEventsAvailable() })
+    def "Building a Report with metrics enabled commits a JFR event of what the build added"() {
+
+	given: "A configuration with metrics"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setMetrics(new ReportMetrics());
+
+	when: "Two Reports are built by one accumulator while flight recording"
+	List<Object> events = ReportMetricsSpec.recordBuilds {
+	    ReportAccumulator accumulator = new ReportAccumulator(configuration);
+	    accumulator.acceptAll(SyntheticInstructions.create(100L, 500, 20).iterator()).toReport();
+	    accumulator.acceptAll(SampleInstructions.create().iterator()).toReport();
+	};
+
+	then: "The second event holds the metrics of its build only"
+	events.size() == 2
+	events[0].getLong("instructionCount") == 500
+	events[1].getString("section") == null
+	events[1].getLong("instructionCount") == 10
+	events[1].getLong("invalidInstructionCount") == 1
+
+	and: "Each lasts from the previous Report to its computed sections"
+	events.every { it.getDuration().toNanos() > 0 && it.getLong("rankingTime") > 0 }
+    }
+
+    @Requires({ ReportMetricsSpec.buildEventsAvailable() })
+    def "A lazy Report commits an event for each section computed on first access"() {
+
+	given: "A configuration with metrics"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setMetrics(new ReportMetrics());
+
+	when: "A lazy Report is built, then its incoming ranking is read, while flight recording"
+	List<Object> events = ReportMetricsSpec.recordBuilds {
+	    new ReportAccumulator(configuration).acceptAll(SampleInstructions.create().iterator()).toLazyReport()
+		    .getIncomingEntityRankingList();
+	};
+
+	then: "The build is committed without ranking, and the ranking on its own"
+	events*.getString("section") == [null, "INCOMING_RANKING"]
+	events[0].getLong("instructionCount") == 10
+	events[0].getLong("rankingTime") == 0
+	events[1].getLong("instructionCount") == 0
+	events[1].getLong("rankingTime") > 0
+    }
+
+    /**
+     * The events are only compiled on JDK 11 and later, so <code>jdk.jfr</code>
+     * is only used through dynamic calls.
+     */
+    static boolean buildEventsAvailable() {
+
+	try {
+	    Class.forName("com.jpmorgan.report.model.ReportBuildEvent");
+	    return true;
+	} catch (ClassNotFoundException e) {
+	    return false;
+	}
+    }
+
+    private static List<Object> recordBuilds(final Closure<?> builds) {
+
+	Object recording = Class.forName("jdk.jfr.Recording").newInstance();
+	Path file = Files.createTempFile("report", ".jfr");
+
+	try {
+	    recording.enable("com.jpmorgan.report.ReportBuild");
+	    recording.start();
+	    builds.call();
+	    recording.stop();
+	    recording.dump(file);
+
+	    return Class.forName("jdk.jfr.consumer.RecordingFile").readAllEvents(file)
+		    .findAll { it.getEventType().getName() == "com.jpmorgan.report.ReportBuild" }
+		    .sort { it.getStartTime() };
+	} finally {
+	    recording.close();
+	    Files.deleteIfExists(file);
+	}
+    }
+}
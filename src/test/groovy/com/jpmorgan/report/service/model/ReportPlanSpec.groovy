@@ -0,0 +1,114 @@
+package com.jpmorgan.report.service.model
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.model.ReportPlan
+import com.jpmorgan.report.model.ReportSection
+import com.jpmorgan.report.model.ReportSnapshot
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for report plans")
+@Subject(ReportPlan)
+class ReportPlanSpec extends Specification {
+
+    def "Only the planned sections of a Report can be read"() {
+
+	given: "A Report of the totals and the incoming ranking"
+	List<Instruction> instructions = SyntheticInstructions.create(70L, 3000, 100);
+	Report expected = new Report(SyntheticInstructions.create(70L, 3000, 100));
+	Report report = new Report(instructions, ReportPlan.of(ReportSection.TOTALS, ReportSection.INCOMING_RANKING));
+
+	expect: "The planned sections and the counts equal those of a full Report"
+	report.getTotalUSDAmountSettledIncoming() == expected.getTotalUSDAmountSettledIncoming()
+	report.getTotalUSDAmountSettledOutgoing() == expected.getTotalUSDAmountSettledOutgoing()
+	report.getIncomingEntityRankingList()*.entity == expected.getIncomingEntityRankingList()*.entity
+	report.getValidInstructionCount() == expected.getValidInstructionCount()
+	report.getInvalidInstructionCountByReason() == expected.getInvalidInstructionCountByReason()
+
+	when: "An unplanned section is read"
+	report.getOutgoingEntityRankingList();
+
+	then: "It is refused"
+	thrown(IllegalStateException)
+
+	when: "Another unplanned section is read"
+	report.getMapOfTotalUSDAmountSettledIncomingPerDay();
+
+	then: "It is refused too"
+	thrown(IllegalStateException)
+    }
+
+    def "A lazy Report computes each section once, and freezes its accumulator"() {
+
+	given: "A lazy Report"
+	ReportAccumulator accumulator = new ReportAccumulator()
+		.acceptAll(SyntheticInstructions.create(71L, 3000, 100).iterator());
+	Report eager = accumulator.toReport();
+	Report lazy = accumulator.toLazyReport();
+
+	expect: "Its sections equal those of an eager Report, and are kept"
+	lazy.getMapOfTotalUSDAmountSettledOutgoingPerDay() == eager.getMapOfTotalUSDAmountSettledOutgoingPerDay()
+	lazy.getOutgoingEntityRankingList()*.highestUSDAmount == eager.getOutgoingEntityRankingList()*.highestUSDAmount
+	lazy.getOutgoingEntityRankingList().is(lazy.getOutgoingEntityRankingList())
+	lazy.getIncomingDailyTotals().is(lazy.getIncomingDailyTotals())
+
+	when: "The accumulator is given another Instruction"
+	accumulator.accept(SyntheticInstructions.create(72L, 1, 1)[0]);
+
+	then: "It is refused"
+	thrown(IllegalStateException)
+    }
+
+    def "Accumulators with different plans cannot be merged"() {
+
+	given: "Two accumulators with different plans"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setReportPlan(ReportPlan.COUNTS_ONLY);
+
+	when: "They are merged"
+	new ReportAccumulator().merge(new ReportAccumulator(configuration));
+
+	then: "The merge is refused"
+	thrown(IllegalArgumentException)
+    }
+
+    def "A snapshot keeps the plan of its Report"() {
+
+	given: "A Report of the daily totals, with retained Instructions that are not planned"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(true);
+	configuration.setReportPlan(ReportPlan.of(ReportSection.DAILY_TOTALS));
+	ReportAccumulator accumulator = new ReportAccumulator(configuration)
+		.acceptAll(SyntheticInstructions.create(73L, 3000, 100).iterator());
+	Report report = accumulator.toReport();
+	Path path = Files.createTempFile("report", ".snapshot");
+
+	when: "It is written and read back"
+	ReportSnapshot.write(report, path);
+	Report read = ReportSnapshot.read(path);
+
+	then: "The plan and the daily totals are the same, and the Instructions were not retained"
+	!accumulator.isRetainingInstructions()
+	read.getPlan() == report.getPlan()
+	read.getMapOfTotalUSDAmountSettledIncomingPerDay() == report.getMapOfTotalUSDAmountSettledIncomingPerDay()
+	read.getOutgoingDailyTotals().getTotalBetween(Integer.MIN_VALUE, Integer.MAX_VALUE) == report
+		.getOutgoingDailyTotals().getTotalBetween(Integer.MIN_VALUE, Integer.MAX_VALUE)
+
+	when: "An unplanned section of the read Report is read"
+	read.getValidInstructions();
+
+	then: "It is refused"
+	thrown(IllegalStateException)
+
+	cleanup:
+	Files.deleteIfExists(path)
+    }
+}
@@ -0,0 +1,149 @@
+package com.jpmorgan.report.service.model
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.ForkJoinPool
+
+import com.jpmorgan.report.model.Currency
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.IntradayReport
+import com.jpmorgan.report.model.ParallelReportBuilder
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.model.ReportSketches
+import com.jpmorgan.report.model.SpillingReportBuilder
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for the sketches of a Report")
+@Subject(ReportSketches)
+class ReportSketchesSpec extends Specification {
+
+    @Unroll
+    def "The sketches built #how match the exact analytics"() {
+
+	given: "Synthetic Instructions, and their exact analytics"
+	List<Instruction> instructions = SyntheticInstructions.create(90L, 30000, 200);
+	List<Instruction> valid = new Report(instructions).getValidInstructions();
+	Map<String, List<BigDecimal>> amounts = valid.groupBy { it.entity }.collectEntries { entity, list ->
+	    [entity, list*.USDAmount.sort()]
+	};
+	Map<Currency, Integer> entityCounts = valid.groupBy { it.currency }.collectEntries { currency, list ->
+	    [currency, list*.entity.unique().size()]
+	};
+
+	when: "The sketches are built"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setSketching(true);
+	configuration.setFixedPointScale(fixedPointScale);
+	ReportSketches sketches = build(configuration, instructions).getSketches();
+
+	then: "Every entity's median and 99th percentile are within 1%"
+	amounts.every { entity, list ->
+	    [0.5, 0.99].every { double q ->
+		double exact = list[(int) Math.floor(q * (list.size() - 1))].doubleValue();
+		Math.abs(sketches.getAmountQuantile(entity, q) - exact) <= exact * 0.01 + 1e-9
+	    }
+	}
+	sketches.getAmountQuantile("unknown", 0.5) == null
+
+	and: "The distinct entities of each currency are close to exact"
+	entityCounts.every { currency, count -> Math.abs(sketches.getDistinctEntityCount(currency) - count) <= 2 }
+
+	and: "The top heavy hitter is the entity settling the most USD"
+	sketches.getHeavyHitters()[0].key == amounts.max { it.value.sum() }.key
+
+	where:
+	how                    | fixedPointScale                    | build
+	"in memory"            | ReportConfiguration.NO_FIXED_POINT | { c, x -> new ReportAccumulator(c).acceptAll(x.iterator()).toReport() }
+	"in fixed point"       | 2                                  | { c, x -> new ReportAccumulator(c).acceptAll(x.iterator()).toReport() }
+	"in parallel"          | ReportConfiguration.NO_FIXED_POINT | { c, x -> parallel(c, x) }
+    }
+
+    private static Report parallel(final ReportConfiguration configuration, final List<Instruction> instructions) {
+
+	ForkJoinPool pool = new ForkJoinPool(4);
+
+	try {
+	    return new ParallelReportBuilder(configuration, pool, 500).build(instructions);
+	} finally {
+	    pool.shutdown();
+	}
+    }
+
+    def "Each intraday snapshot keeps its own sketches as later deltas arrive"() {
+
+	given: "An intraday report that sketches, and its snapshot after the first delta"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setSketching(true);
+	IntradayReport intradayReport = new IntradayReport(configuration);
+	List<Instruction> instructions = SyntheticInstructions.create(92L, 20000, 600);
+	ReportSketches first = intradayReport.apply(instructions.subList(0, 5000)).getSketches();
+	Map<String, Double> medians = first.getHeavyHitters().collectEntries { [it.key, first.getAmountQuantile(it.key, 0.5)] };
+	long distinct = first.getDistinctEntityCount(Currency.SGP);
+
+	when: "The other deltas are applied"
+	ReportSketches last = instructions.subList(5000, 20000).collate(2500).collect { intradayReport.apply(it) }.last()
+		.getSketches();
+
+	then: "The first snapshot's sketches are unchanged"
+	first.getHeavyHitters().every { first.getAmountQuantile(it.key, 0.5) == medians[it.key] }
+	first.getDistinctEntityCount(Currency.SGP) == distinct
+	first.getAmountDistribution(first.getHeavyHitters()[0].key).getCount() < last
+		.getAmountDistribution(first.getHeavyHitters()[0].key).getCount()
+
+	and: "The last snapshot's sketches match those built in one pass"
+	ReportSketches expected = new ReportAccumulator(configuration).acceptAll(instructions.iterator()).toReport()
+		.getSketches();
+	expected.getHeavyHitters()*.key == last.getHeavyHitters()*.key
+	expected.getHeavyHitters().every { last.getAmountQuantile(it.key, 0.99) == expected.getAmountQuantile(it.key, 0.99) }
+	Currency.values().every { last.getDistinctEntityCount(it) == expected.getDistinctEntityCount(it) }
+    }
+
+    def "Sketches cannot be built within a memory budget"() {
+
+	given: "A configuration that sketches"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setSketching(true);
+	Path directory = Files.createTempDirectory("sketches");
+
+	when: "A spilling builder is constructed"
+	new SpillingReportBuilder(configuration, directory, 400000L);
+
+	then: "It is rejected"
+	thrown(IllegalArgumentException)
+
+	cleanup:
+	Files.delete(directory)
+    }
+
+    def "A Report built without sketching has no sketches"() {
+
+	given: "A Report of the default configuration"
+	Report report = new Report(SyntheticInstructions.create(91L, 100, 10));
+
+	when: "Its sketches are read"
+	report.getSketches();
+
+	then: "They were not built"
+	thrown(IllegalStateException)
+    }
+
+    def "Accumulators that differ in sketching cannot be merged"() {
+
+	given: "One accumulator that sketches and one that does not"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setSketching(true);
+	ReportAccumulator accumulator = new ReportAccumulator(configuration);
+
+	when: "They are merged"
+	accumulator.merge(new ReportAccumulator(new ReportConfiguration()));
+
+	then: "The merge is refused"
+	thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,142 @@
+package com.jpmorgan.report.service.model
+
+import java.nio.ByteBuffer
+import java.nio.channels.Channels
+import java.nio.file.Files
+import java.nio.file.Path
+
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.model.ReportPlan
+import com.jpmorgan.report.model.ReportSection
+import com.jpmorgan.report.model.ReportSnapshot
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for report snapshots")
+@Subject(ReportSnapshot)
+class ReportSnapshotSpec extends Specification {
+
+    @Unroll
+    def "A Report read back from a snapshot file equals the one written with retain #retain and scale #scale"() {
+
+	given: "A Report and a file"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(retain);
+	configuration.setFixedPointScale(scale);
+	Report report = new ReportAccumulator(configuration)
+		.acceptAll(SyntheticInstructions.create(40L, 5000, 200).iterator()).toReport();
+	Path path = Files.createTempFile("report", ".snapshot");
+
+	when: "The Report is written and read back"
+	ReportSnapshot.write(report, path);
+	Report read = ReportSnapshot.read(path);
+
+	then: "Every section is the same, including the retained Instructions"
+	ReportComparison.same(read, report)
+
+	cleanup:
+	Files.deleteIfExists(path)
+
+	where:
+	retain | scale
+	false  | ReportConfiguration.NO_FIXED_POINT
+	false  | 10
+	true   | ReportConfiguration.NO_FIXED_POINT
+    }
+
+    def "The sample Report survives a round trip through a channel"() {
+
+	given: "The sample Report written to a channel"
+	Report report = new Report(SampleInstructions.create());
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	ReportSnapshot.write(report, Channels.newChannel(bytes));
+
+	when: "It is read back"
+	Report read = ReportSnapshot.read(ByteBuffer.wrap(bytes.toByteArray()));
+
+	then: "It is the same Report"
+	ReportComparison.same(read, report)
+	read.getOutgoingInstructions()*.entity == report.getOutgoingInstructions()*.entity
+	read.getInvalidInstructions()*.invalidReason == report.getInvalidInstructions()*.invalidReason
+    }
+
+    def "A snapshot written to a stream has the same bytes as one written to a file"() {
+
+	given: "A Report whose retained Instructions take sections larger than the write buffer"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(true);
+	Report report = new ReportAccumulator(configuration)
+		.acceptAll(SyntheticInstructions.create(41L, 5000, 200).iterator()).toReport();
+	Path path = Files.createTempFile("report", ".snapshot");
+
+	when: "It is written to a file, whose section lengths are filled in at their position, and to a stream"
+	ReportSnapshot.write(report, path);
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	ReportSnapshot.write(report, Channels.newChannel(out));
+
+	then: "The bytes are the same, and read back as the Report"
+	Files.size(path) > 64 * 1024
+	Files.readAllBytes(path) == out.toByteArray()
+	ReportComparison.same(ReportSnapshot.read(ByteBuffer.wrap(out.toByteArray())), report)
+
+	cleanup:
+	Files.deleteIfExists(path)
+    }
+
+    def "Only the sections that are read are decoded"() {
+
+	given: "A snapshot whose incoming ranking, its last section, claims one more entity than it holds"
+	Report report = new Report(SampleInstructions.create(),
+		ReportPlan.of(ReportSection.TOTALS, ReportSection.INCOMING_RANKING));
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	ReportSnapshot.write(report, Channels.newChannel(out));
+	ByteBuffer bytes = ByteBuffer.wrap(out.toByteArray());
+	int ranking = (0..<bytes.limit() - 8).find { int i -> bytes.getInt(i) == bytes.limit() - i - 8 } + 4;
+	bytes.putInt(ranking, bytes.getInt(ranking) + 1);
+
+	when: "It is read"
+	Report read = ReportSnapshot.read(bytes);
+
+	then: "The totals are read without decoding the ranking"
+	read.getTotalUSDAmountSettledIncoming() == report.getTotalUSDAmountSettledIncoming()
+	read.getTotalUSDAmountSettledOutgoing() == report.getTotalUSDAmountSettledOutgoing()
+
+	when: "The ranking is read"
+	read.getIncomingEntityRankingList();
+
+	then: "It is decoded, and found to be corrupt"
+	thrown(UncheckedIOException)
+
+	when: "The snapshot is read again, verifying it"
+	ReportSnapshot.read(ByteBuffer.wrap(bytes.array()), true);
+
+	then: "It is rejected before any section is read"
+	thrown(IOException)
+    }
+
+    @Unroll
+    def "#description is rejected"() {
+
+	given: "The bytes of a snapshot"
+	ByteArrayOutputStream out = new ByteArrayOutputStream();
+	ReportSnapshot.write(new Report(SampleInstructions.create()), Channels.newChannel(out));
+	byte[] bytes = change(out.toByteArray());
+
+	when: "It is read"
+	ReportSnapshot.read(ByteBuffer.wrap(bytes));
+
+	then: "An IOException is thrown"
+	thrown(IOException)
+
+	where:
+	description              | change
+	"A file of another kind" | { byte[] b -> b[0] = 0; b }
+	"Another version"        | { byte[] b -> b[5] = (byte) (ReportSnapshot.FORMAT_VERSION + 1); b }
+	"A truncated file"       | { byte[] b -> Arrays.copyOf(b, b.length - 10) }
+    }
+}
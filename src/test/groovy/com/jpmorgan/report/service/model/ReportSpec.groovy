@@ -217,6 +217,22 @@ class ReportSpec extends Specification {
 	entityRanking3.rank == 4
     }
 
+    def "A Report with an entity ranking limit will only rank the top entities"() {
+
+	when: "A report has been generated with an entity ranking limit of 2"
+	Report report = new Report(instructions, 2);
+
+	List<EntityRanking> entityRankingList = report.getIncomingEntityRankingList();
+
+	then: "The report will only contain the 2 highest ranked entities"
+	entityRankingList.size() == 2
+	entityRankingList.get(0).entity == "bar"
+	entityRankingList.get(0).rank == 1
+	entityRankingList.get(1).entity == "foo"
+	entityRankingList.get(1).rank == 2
+	report.getOutgoingEntityRankingList()*.entity == ["bar", "foo"]
+    }
+
     def "A Report will correctly set the Actual Settlement Date to be a working day for incoming Instructions"() {
 
 	when: "A report has been generated"
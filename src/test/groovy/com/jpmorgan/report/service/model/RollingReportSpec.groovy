@@ -0,0 +1,74 @@
+package com.jpmorgan.report.service.model
+
+import java.time.LocalDate
+
+import com.jpmorgan.report.model.Instruction
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.model.RollingReport
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+
+@Title("Tests for rolling report")
+@Subject(RollingReport)
+class RollingReportSpec extends Specification {
+
+    def "The window's Report is the Report of the Instructions settling in the window, as the window moves"() {
+
+	given: "A ten day window ending on the 15th of September 2018"
+	int lastDay = (int) LocalDate.of(2018, 9, 15).toEpochDay();
+	RollingReport rolling = new RollingReport(new ReportConfiguration(), 10, lastDay);
+
+	when: "Synthetic Instructions settling through September are added"
+	rolling.acceptAll(SyntheticInstructions.create(30L, 20000, 200).iterator());
+
+	then: "The Report equals one built from the Instructions settling in the window"
+	ReportComparison.same(rolling.getReport(), expected(lastDay - 9, lastDay))
+	rolling.getIgnoredInstructionCount() > 0
+
+	when: "The window moves forward five days"
+	int evicted = rolling.advanceTo(lastDay + 5);
+
+	then: "The five oldest buckets are dropped, and the Report follows the window"
+	evicted == 5
+	rolling.getFirstDay() == lastDay - 4
+	ReportComparison.same(rolling.getReport(), expected(lastDay - 4, lastDay + 5))
+	rolling.getReport().is(rolling.getReport())
+    }
+
+    def "The window cannot move back"() {
+
+	given: "A rolling report"
+	RollingReport rolling = new RollingReport(new ReportConfiguration(), 30, 17800);
+
+	when: "It is moved back a day"
+	rolling.advanceTo(17799);
+
+	then: "It is refused"
+	thrown(IllegalArgumentException)
+    }
+
+    /**
+     * Builds the Report of the synthetic Instructions whose actual settlement
+     * day, or settlement day if they are invalid, is within a window.
+     */
+    private static Report expected(final int firstDay, final int lastDay) {
+
+	List<Instruction> all = SyntheticInstructions.create(30L, 20000, 200);
+	new Report(all);
+
+	List<Instruction> fresh = SyntheticInstructions.create(30L, 20000, 200);
+	List<Instruction> window = [];
+	all.eachWithIndex { Instruction x, int i ->
+	    int day = x.invalidReason == null ? x.acutalSettlementEpochDay : x.settlementEpochDay;
+	    if (day >= firstDay && day <= lastDay) {
+		window.add(fresh[i]);
+	    }
+	};
+
+	return new ReportAccumulator().acceptAll(window.iterator()).toReport();
+    }
+}
@@ -0,0 +1,73 @@
+package com.jpmorgan.report.service.model
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import com.jpmorgan.report.model.EntityRankingAggregator
+import com.jpmorgan.report.model.Report
+import com.jpmorgan.report.model.ReportAccumulator
+import com.jpmorgan.report.model.ReportConfiguration
+import com.jpmorgan.report.model.SpillingReportBuilder
+
+import spock.lang.Specification
+import spock.lang.Subject
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for spilling report builder")
+@Subject(SpillingReportBuilder)
+class SpillingReportBuilderSpec extends Specification {
+
+    private Path directory;
+
+    def setup() {
+	directory = Files.createTempDirectory("report-runs");
+    }
+
+    def cleanup() {
+	directory.toFile().deleteDir();
+    }
+
+    @Unroll
+    def "A Report built within a small budget is identical to one built in memory, with limit #limit and scale #scale"() {
+
+	given: "A configuration, and the Report built in memory with it"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setEntityRankingLimit(limit);
+	configuration.setFixedPointScale(scale);
+	Report expected = new ReportAccumulator(configuration)
+		.acceptAll(SyntheticInstructions.create(seed, 20000, 400).iterator()).toReport();
+
+	and: "A builder whose budget holds about a hundred aggregates"
+	SpillingReportBuilder builder = new SpillingReportBuilder(configuration, directory, 100 * 160);
+
+	when: "The same Instructions are built within the budget"
+	Report report = builder.acceptAll(SyntheticInstructions.create(seed, 20000, 400).iterator()).toReport();
+
+	then: "The aggregates were spilled many times, and the run files are deleted"
+	builder.getRunCount() > 10
+	Files.list(directory).count() == 0
+
+	and: "The Reports are identical, including the scale of every amount"
+	ReportComparison.same(report, expected)
+
+	where:
+	seed | limit                                 | scale
+	60L  | EntityRankingAggregator.UNBOUNDED     | ReportConfiguration.NO_FIXED_POINT
+	61L  | 5                                     | ReportConfiguration.NO_FIXED_POINT
+	62L  | 25                                    | 6
+    }
+
+    def "Instructions cannot be retained within a budget"() {
+
+	given: "A configuration that retains Instructions"
+	ReportConfiguration configuration = new ReportConfiguration();
+	configuration.setRetainInstructions(true);
+
+	when: "A builder is constructed with it"
+	new SpillingReportBuilder(configuration, directory, 1024 * 1024);
+
+	then: "It is refused"
+	thrown(IllegalArgumentException)
+    }
+}
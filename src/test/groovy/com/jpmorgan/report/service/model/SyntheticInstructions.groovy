@@ -0,0 +1,70 @@
+package com.jpmorgan.report.service.model
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.text.SimpleDateFormat
+import java.time.LocalDate
+
+import com.jpmorgan.report.model.Instruction
+
+/**
+ * Generates reproducible random <code>Instructions</code> for the
+ * specifications that compare two ways of building a Report, and writes
+ * <code>Instructions</code> to instruction files.
+ */
+class SyntheticInstructions {
+
+    /**
+     * The header line of an instruction file.
+     */
+    static final String HEADER = "entity,buySell,exchangeRate,currency,instructionDate,settlementDate,units,pricePerUnit";
+
+    private static final String[] CURRENCIES = ["AED", "SAR", "SGP", "GBP"];
+
+    static List<Instruction> create(final long seed, final int count, final int entities) {
+
+	final Random random = new Random(seed);
+	final List<Instruction> instructions = new ArrayList<>(count);
+
+	for (int i = 0; i < count; i++) {
+
+	    final Instruction instruction = new Instruction();
+	    instruction.setEntity("entity" + random.nextInt(entities));
+	    instruction.setBuySellString(random.nextBoolean() ? "B" : "S");
+	    instruction.setCurrencyString(CURRENCIES[random.nextInt(CURRENCIES.length)]);
+	    instruction.setExchangeRate(BigDecimal.valueOf(1 + random.nextInt(100000), random.nextInt(5)));
+	    instruction.setInstructionDate(toDate(LocalDate.of(2018, 1, 1).plusDays(random.nextInt(30))));
+	    instruction.setSettlementDate(toDate(LocalDate.of(2018, 9, 1).plusDays(random.nextInt(30))));
+	    instruction.setUnits(BigInteger.valueOf(1 + random.nextInt(10000)));
+	    instruction.setPricePerUnit(BigDecimal.valueOf(1 + (random.nextLong() & 0xFFFFFFFFFL), random.nextInt(7)));
+	    instructions.add(instruction);
+	}
+
+	return instructions;
+    }
+
+    /**
+     * Writes <code>Instructions</code> to an instruction file, one line each
+     * in the columns of <code>HEADER</code>, with a missing date left empty.
+     */
+    static Path write(final Path path, final List<Instruction> instructions, final boolean header,
+	    final String lineSeparator = "\n") {
+
+	final List<String> lines = header ? [HEADER] : [];
+	instructions.each { Instruction x ->
+	    lines.add([x.entity, x.buySellString, x.exchangeRate, x.currencyString, format(x.instructionDate),
+		format(x.settlementDate), x.units, x.pricePerUnit].join(","));
+	};
+	Files.write(path, (lines.join(lineSeparator) + lineSeparator).getBytes("UTF-8"));
+
+	return path;
+    }
+
+    private static String format(final Date date) {
+	return date == null ? "" : new SimpleDateFormat("dd MMM yyyy", Locale.ENGLISH).format(date);
+    }
+
+    private static Date toDate(final LocalDate date) {
+	return Date.from(date.atStartOfDay(TimeZone.getDefault().toZoneId()).toInstant());
+    }
+}
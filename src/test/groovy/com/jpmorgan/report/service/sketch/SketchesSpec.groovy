@@ -0,0 +1,116 @@
+package com.jpmorgan.report.service.sketch
+
+import com.jpmorgan.report.sketch.DistinctCountSketch
+import com.jpmorgan.report.sketch.HeavyHitters
+import com.jpmorgan.report.sketch.QuantileSketch
+
+import spock.lang.Specification
+import spock.lang.Title
+import spock.lang.Unroll
+
+@Title("Tests for the quantile, distinct count and heavy hitter sketches")
+class SketchesSpec extends Specification {
+
+    @Unroll
+    def "The quantile #quantile is within the relative accuracy of the exact value"() {
+
+	given: "Skewed values and their sketch"
+	Random random = new Random(80L);
+	List<Double> values = (1..50000).collect { Math.exp(random.nextGaussian() * 3) * 1000 };
+	QuantileSketch sketch = new QuantileSketch();
+	values.each { sketch.add(it) };
+
+	when: "The quantile is estimated"
+	List<Double> sorted = values.sort(false);
+	double exact = sorted[(int) Math.floor(quantile * (values.size() - 1))];
+	double estimate = sketch.getQuantile(quantile);
+
+	then: "It is within the relative accuracy"
+	Math.abs(estimate - exact) <= exact * (sketch.getRelativeAccuracy() + 1e-9)
+	sketch.getCount() == values.size()
+
+	where:
+	quantile << [0, 0.01, 0.5, 0.9, 0.99, 0.999, 1]
+    }
+
+    def "Merged sketches give the same quantiles as a sketch of all the values"() {
+
+	given: "Values split between two sketches, and one sketch of them all"
+	Random random = new Random(81L);
+	QuantileSketch whole = new QuantileSketch();
+	QuantileSketch left = new QuantileSketch();
+	QuantileSketch right = new QuantileSketch();
+	(1..20000).each {
+	    double value = it % 100 == 0 ? 0 : random.nextDouble() * Math.pow(10, random.nextInt(9));
+	    whole.add(value);
+	    (it % 2 == 0 ? left : right).add(value);
+	};
+
+	when: "The halves are merged"
+	left.merge(right);
+
+	then: "Every quantile is the same"
+	left.getCount() == whole.getCount()
+	(0..100).every { left.getQuantile(it / 100) == whole.getQuantile(it / 100) }
+    }
+
+    def "A sketch of bounded size keeps the accuracy of the high quantiles"() {
+
+	given: "A sketch of few buckets fed values over a wide range"
+	QuantileSketch sketch = new QuantileSketch(0.01, 100);
+	List<Double> values = (1..10000).collect { Math.pow(1.005, it) };
+	values.each { sketch.add(it) };
+
+	expect: "The high quantiles are accurate"
+	[0.99, 0.999].every {
+	    double exact = values[(int) Math.floor(it * (values.size() - 1))];
+	    Math.abs(sketch.getQuantile(it) - exact) <= exact * 0.01
+	}
+    }
+
+    def "The distinct count is within a few percent, and merging counts the union"() {
+
+	given: "Two sketches of overlapping values"
+	DistinctCountSketch first = new DistinctCountSketch();
+	DistinctCountSketch second = new DistinctCountSketch();
+	(0..<60000).each { first.add("entity" + it) };
+	(40000..<100000).each { second.add("entity" + it) };
+	(0..<1000).each { first.add("entity" + it) };
+
+	when: "They are merged"
+	long firstEstimate = first.getEstimate();
+	first.merge(second);
+
+	then: "Each estimate is close to the exact count"
+	Math.abs(firstEstimate - 60000) <= 60000 * 0.05
+	Math.abs(first.getEstimate() - 100000) <= 100000 * 0.05
+
+	and: "Small counts are close to exact"
+	DistinctCountSketch small = new DistinctCountSketch();
+	(0..<100).each { small.add("entity" + it) };
+	Math.abs(small.getEstimate() - 100) <= 2
+    }
+
+    def "The heavy hitters are the keys with the largest weights, even when merged"() {
+
+	given: "Many light keys and a few heavy ones, split between two instances"
+	HeavyHitters first = new HeavyHitters(5, 4, 1024);
+	HeavyHitters second = new HeavyHitters(5, 4, 1024);
+	(0..<20000).each {
+	    HeavyHitters hitters = it % 2 == 0 ? first : second;
+	    hitters.add("light" + it, 1);
+	    if (it % 10 == 0) {
+		hitters.add("heavy" + (it % 30), 100);
+	    }
+	};
+
+	when: "They are merged"
+	first.merge(second);
+	List<HeavyHitters.Entry> entries = first.getHeavyHitters();
+
+	then: "The heavy keys come first, and no estimate is below the true total"
+	entries.take(3)*.key as Set == ["heavy0", "heavy10", "heavy20"] as Set
+	entries.take(3).every { it.estimate >= 66600 }
+	first.getTotalWeight() == 20000 + 2000 * 100
+    }
+}